@@ -0,0 +1,71 @@
+package com.scada.gateway.acquisition;
+
+import com.scada.gateway.tag.CompiledTag;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tags of one server that share the same polling rate and are read together once per period.
+ */
+@Getter
+public class RateGroup {
+
+    private final String serverId;
+    private final long periodMillis;
+    private final List<CompiledTag> tags;
+    private final int[] tagIndices;
+
+    private final AtomicLong cycles;
+    private final AtomicLong overruns;
+    private volatile long lastCycleNanos;
+    private volatile long maxCycleNanos;
+
+    public RateGroup(String serverId, long periodMillis, List<CompiledTag> tags) {
+        this(serverId, periodMillis, tags, new AtomicLong(), new AtomicLong());
+    }
+
+    private RateGroup(String serverId, long periodMillis, List<CompiledTag> tags, AtomicLong cycles,
+                      AtomicLong overruns) {
+        this.serverId = serverId;
+        this.periodMillis = periodMillis;
+        this.tags = List.copyOf(tags);
+        this.tagIndices = tags.stream().mapToInt(CompiledTag::getIndex).toArray();
+        this.cycles = cycles;
+        this.overruns = overruns;
+    }
+
+    /**
+     * Returns a group of the same rate with other tags that continues the statistics of this one.
+     */
+    RateGroup withTags(List<CompiledTag> tags) {
+        RateGroup group = new RateGroup(serverId, periodMillis, tags, cycles, overruns);
+        group.lastCycleNanos = lastCycleNanos;
+        group.maxCycleNanos = maxCycleNanos;
+        return group;
+    }
+
+    /**
+     * Records the duration of a finished cycle, from its start until the last response arrived.
+     */
+    void recordCycle(long durationNanos) {
+        cycles.incrementAndGet();
+        lastCycleNanos = durationNanos;
+        if (durationNanos > maxCycleNanos) {
+            maxCycleNanos = durationNanos;
+        }
+    }
+
+    /**
+     * Counts a slot in which no cycle was started because the previous one had not finished,
+     * and returns the number of overruns so far.
+     */
+    long recordOverrun() {
+        return overruns.incrementAndGet();
+    }
+
+    public String getName() {
+        return serverId + "@" + periodMillis + "ms";
+    }
+}
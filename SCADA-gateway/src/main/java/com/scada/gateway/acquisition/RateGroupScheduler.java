@@ -0,0 +1,238 @@
+package com.scada.gateway.acquisition;
+
+import com.scada.gateway.tag.CompiledTag;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Groups the tags of a server by polling rate and runs every group on its own fixed-rate timer.
+ * <p>
+ * Each group is driven by a virtual thread, so blocking reads do not hold a platform thread
+ * and hundreds of servers can be polled without growing a thread pool per server.
+ * Cycle start times are derived from the initial start and the period, so a slow cycle
+ * does not shift the following ones. A cycle lasts until the last response of its requests
+ * arrived, as signalled by the future the cycle task returns. A group never runs two cycles at
+ * once: a slot in which the previous cycle is still waiting for responses is skipped and
+ * counted as an overrun, so values of a tag are never published out of order.
+ * <p>
+ * {@link #update(List)} regroups the tags while the scheduler runs: a group keeps its thread and
+ * schedule as long as its rate is in use and only picks up its new tags with the next cycle.
+ */
+@Slf4j
+public class RateGroupScheduler {
+
+    private final String serverId;
+    private final Function<RateGroup, CompletableFuture<?>> cycleTask;
+    /** Worker of each polling rate, by rate. */
+    private final Map<Long, Worker> workers = new TreeMap<>();
+    private volatile List<RateGroup> groups;
+    private volatile boolean running;
+
+    private static final class Worker {
+        private volatile RateGroup group;
+        private volatile boolean active = true;
+        private Thread thread;
+        /** Completion of the last cycle and its start time; only used by the worker thread. */
+        private CompletableFuture<?> lastCycle;
+        private long lastCycleStarted;
+
+        private Worker(RateGroup group) {
+            this.group = group;
+        }
+    }
+
+    /**
+     * @param cycleTask sends the requests of one cycle of a group and returns a future that
+     *                  completes once all of them finished, successfully or not
+     */
+    public RateGroupScheduler(String serverId, List<CompiledTag> tags,
+                              Function<RateGroup, CompletableFuture<?>> cycleTask) {
+        this.serverId = serverId;
+        this.cycleTask = cycleTask;
+        for (RateGroup group : buildGroups(serverId, tags)) {
+            workers.put(group.getPeriodMillis(), new Worker(group));
+        }
+        this.groups = currentGroups();
+    }
+
+    static List<RateGroup> buildGroups(String serverId, List<CompiledTag> tags) {
+        Map<Long, List<CompiledTag>> byRate = new TreeMap<>();
+        if (tags != null) {
+            for (CompiledTag tag : tags) {
+                if (tag.getPollingRate() <= 0) {
+                    log.warn("Tag {} on {} has no valid pollingRate, skipped", tag.getAddress(), serverId);
+                    continue;
+                }
+                byRate.computeIfAbsent(tag.getPollingRate(), rate -> new ArrayList<>()).add(tag);
+            }
+        }
+
+        List<RateGroup> result = new ArrayList<>(byRate.size());
+        byRate.forEach((rate, groupTags) -> result.add(new RateGroup(serverId, rate, groupTags)));
+        return Collections.unmodifiableList(result);
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        workers.values().forEach(this::startWorker);
+    }
+
+    private void startWorker(Worker worker) {
+        RateGroup group = worker.group;
+        worker.thread = Thread.ofVirtual()
+                .name("poll-" + group.getName())
+                .start(() -> runGroup(worker));
+        log.info("Scheduled rate group {} with {} tags", group.getName(), group.getTags().size());
+    }
+
+    /**
+     * Regroups the scheduler to {@code tags}. Groups whose tags did not change keep running
+     * untouched, changed groups read their new tags from the next cycle on, groups of new rates
+     * are started and those of rates no longer used stopped.
+     */
+    public synchronized void update(List<CompiledTag> tags) {
+        Map<Long, RateGroup> updated = new TreeMap<>();
+        for (RateGroup group : buildGroups(serverId, tags)) {
+            updated.put(group.getPeriodMillis(), group);
+        }
+
+        int changed = 0;
+        int removed = 0;
+        for (Iterator<Map.Entry<Long, Worker>> it = workers.entrySet().iterator(); it.hasNext(); ) {
+            Worker worker = it.next().getValue();
+            RateGroup group = updated.remove(worker.group.getPeriodMillis());
+            if (group == null) {
+                worker.active = false;
+                if (worker.thread != null) {
+                    worker.thread.interrupt();
+                }
+                it.remove();
+                removed++;
+            } else if (!group.getTags().equals(worker.group.getTags())) {
+                worker.group = worker.group.withTags(group.getTags());
+                changed++;
+            }
+        }
+        for (RateGroup group : updated.values()) {
+            Worker worker = new Worker(group);
+            workers.put(group.getPeriodMillis(), worker);
+            if (running) {
+                startWorker(worker);
+            }
+        }
+        groups = currentGroups();
+
+        if (changed + removed + updated.size() > 0) {
+            log.info("Rate groups of {} updated: {} added, {} removed, {} changed",
+                    serverId, updated.size(), removed, changed);
+        }
+    }
+
+    private List<RateGroup> currentGroups() {
+        List<RateGroup> result = new ArrayList<>(workers.size());
+        workers.values().forEach(worker -> result.add(worker.group));
+        return Collections.unmodifiableList(result);
+    }
+
+    private void runGroup(Worker worker) {
+        long periodNanos = TimeUnit.MILLISECONDS.toNanos(worker.group.getPeriodMillis());
+        long nextStart = System.nanoTime();
+
+        while (running && worker.active) {
+            long delay = nextStart - System.nanoTime();
+            if (delay > 0) {
+                try {
+                    Thread.sleep(Duration.ofNanos(delay));
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+
+            runCycle(worker);
+
+            nextStart += periodNanos;
+            long late = System.nanoTime() - nextStart;
+            if (late >= periodNanos) {
+                // Skip the slots that were missed entirely instead of firing them back to back.
+                long missed = late / periodNanos;
+                nextStart += missed * periodNanos;
+                for (long i = 0; i < missed; i++) {
+                    overrun(worker.group, late);
+                }
+            }
+        }
+    }
+
+    private void runCycle(Worker worker) {
+        RateGroup group = worker.group;
+        long started = System.nanoTime();
+        if (worker.lastCycle != null && !worker.lastCycle.isDone()) {
+            overrun(group, started - worker.lastCycleStarted);
+            return;
+        }
+
+        CompletableFuture<?> cycle;
+        try {
+            cycle = cycleTask.apply(group);
+        } catch (Exception e) {
+            log.error("Error in rate group {}: {}", group.getName(), e.getMessage());
+            cycle = CompletableFuture.completedFuture(null);
+        }
+        worker.lastCycle = cycle;
+        worker.lastCycleStarted = started;
+        cycle.whenComplete((ignored, error) -> group.recordCycle(System.nanoTime() - started));
+    }
+
+    private void overrun(RateGroup group, long cycleNanos) {
+        long overruns = group.recordOverrun();
+        if (overruns == 1 || overruns % 100 == 0) {
+            log.atWarn()
+                    .addKeyValue("group", group.getName())
+                    .addKeyValue("cycleMillis", TimeUnit.NANOSECONDS.toMillis(cycleNanos))
+                    .addKeyValue("periodMillis", group.getPeriodMillis())
+                    .addKeyValue("overruns", overruns)
+                    .log("Rate group overrun");
+        }
+    }
+
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+
+        for (Worker worker : workers.values()) {
+            if (worker.thread != null) {
+                worker.thread.interrupt();
+            }
+        }
+        for (Worker worker : workers.values()) {
+            try {
+                if (worker.thread != null) {
+                    worker.thread.join(Duration.ofSeconds(5));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            worker.thread = null;
+        }
+    }
+
+    public List<RateGroup> getGroups() {
+        return groups;
+    }
+}
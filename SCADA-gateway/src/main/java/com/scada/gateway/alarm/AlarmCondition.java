@@ -0,0 +1,43 @@
+package com.scada.gateway.alarm;
+
+import com.scada.gateway.event.Event;
+import com.scada.gateway.tag.AlarmLimits;
+import lombok.Getter;
+
+/**
+ * Alarm conditions evaluated per tag. The ordinal is the bit of the condition in the state
+ * masks of the {@link AlarmEngine}; the code is what the event journal stores and must not change.
+ */
+@Getter
+public enum AlarmCondition {
+    HIHI(1, Event.ERROR),
+    HI(2, Event.WARNING),
+    LO(3, Event.WARNING),
+    LOLO(4, Event.ERROR),
+    RATE_OF_CHANGE(5, Event.WARNING),
+    DEVIATION(6, Event.WARNING);
+
+    private final int code;
+    private final int severity;
+
+    AlarmCondition(int code, int severity) {
+        this.code = code;
+        this.severity = severity;
+    }
+
+    int bit() {
+        return 1 << ordinal();
+    }
+
+    /** Returns the configured limit this condition is checked against. */
+    public double limitOf(AlarmLimits limits) {
+        return switch (this) {
+            case HIHI -> limits.getHiHi();
+            case HI -> limits.getHi();
+            case LO -> limits.getLo();
+            case LOLO -> limits.getLoLo();
+            case RATE_OF_CHANGE -> limits.getRateOfChange();
+            case DEVIATION -> limits.getDeviation();
+        };
+    }
+}
@@ -0,0 +1,318 @@
+package com.scada.gateway.alarm;
+
+import com.scada.gateway.event.EventRecorder;
+import com.scada.gateway.model.Sample;
+import com.scada.gateway.tag.AlarmLimits;
+import com.scada.gateway.tag.CompiledTag;
+import com.scada.gateway.tag.TagTable;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Evaluates the limit, rate-of-change and deviation alarms of every acquired value, before the
+ * deadband filter, so no crossing is hidden by suppression.
+ * <p>
+ * The state of a tag is two bit masks, one bit per {@link AlarmCondition}: the active alarms
+ * and the conditions whose delay is running, plus the start time of each delay and the last
+ * value for the rate of change, all in arrays indexed by tag index. A sample that changes
+ * nothing costs a few comparisons and allocates nothing; only transitions create objects.
+ * <p>
+ * A high alarm is raised at {@code value >= limit} and cleared below {@code limit - hysteresis},
+ * low alarms, the deviation from the setpoint and the rate of change per second likewise, so a
+ * value or rate hovering at the limit does not toggle the alarm. A condition must hold for the
+ * on-delay before the alarm is raised and be gone for the off-delay before it clears. Delays
+ * are checked when values arrive and by a sweep thread every {@link #SWEEP_INTERVAL}, so they
+ * also end for a value that stays constant or is no longer reported. Values with bad or
+ * uncertain quality leave the alarm state as it is.
+ * <p>
+ * Changes of the state of a tag are guarded by one of {@link #LOCK_STRIPES} locks, which
+ * values that change nothing do not take.
+ */
+@Slf4j
+@Component
+public class AlarmEngine {
+
+    private static final AlarmCondition[] CONDITIONS = AlarmCondition.values();
+    static final Duration SWEEP_INTERVAL = Duration.ofMillis(100);
+    private static final int LOCK_STRIPES = 64;
+
+    private final TagTable tagTable;
+    private final EventRecorder events;
+    private final List<AlarmListener> listeners;
+    private final int[] active;
+    private final AtomicIntegerArray pending;
+    /** {@code System.nanoTime()} at which the delay of a condition started, per tag and condition. */
+    private final long[] pendingSince;
+    private final double[] lastValue;
+    /** {@code System.nanoTime()} of {@code lastValue} for the rate of change, {@code 0} if there is none. */
+    private final long[] lastTime;
+    private final LongAdder raised = new LongAdder();
+    private final LongAdder cleared = new LongAdder();
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private volatile boolean running;
+    private Thread sweeper;
+
+    public AlarmEngine(TagTable tagTable, EventRecorder events, ObjectProvider<AlarmListener> listeners) {
+        this.tagTable = tagTable;
+        this.events = events;
+        this.listeners = listeners.orderedStream().toList();
+        int capacity = tagTable.capacity();
+        this.active = new int[capacity];
+        this.pending = new AtomicIntegerArray(capacity);
+        this.pendingSince = new long[capacity * CONDITIONS.length];
+        this.lastValue = new double[capacity];
+        this.lastTime = new long[capacity];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    @PostConstruct
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        sweeper = Thread.ofVirtual().name("alarm-delays").start(this::sweepLoop);
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        running = false;
+        if (sweeper != null) {
+            sweeper.interrupt();
+            try {
+                sweeper.join(Duration.ofSeconds(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            sweeper = null;
+        }
+    }
+
+    private Object lock(int index) {
+        return locks[index & (LOCK_STRIPES - 1)];
+    }
+
+    /**
+     * Drops the delays and the rate-of-change history of a tag. If {@code clearActive} is set,
+     * its active alarms are cleared too, each reported as a cleared transition with the last
+     * value of the tag.
+     */
+    public void reset(CompiledTag tag, boolean clearActive) {
+        int index = tag.getIndex();
+        synchronized (lock(index)) {
+            if (clearActive) {
+                for (int bits = active[index]; bits != 0; bits &= bits - 1) {
+                    fire(tag, tag.getAlarms(), CONDITIONS[Integer.numberOfTrailingZeros(bits)], false,
+                            lastValue[index]);
+                }
+                active[index] = 0;
+            }
+            pending.set(index, 0);
+            lastTime[index] = 0;
+        }
+    }
+
+    /**
+     * Evaluates the alarms of {@code tag} against {@code sample}, received at {@code now}
+     * ({@code System.nanoTime()}). Only a value that changes a condition, or arrives while a
+     * delay runs, takes the lock of the tag.
+     */
+    public void evaluate(CompiledTag tag, Sample sample, long now) {
+        AlarmLimits limits = tag.getAlarms();
+        if (limits == null || !sample.isNumeric() || !sample.isGood()) {
+            return;
+        }
+        int index = tag.getIndex();
+        double value = sample.doubleValue();
+        double rate = Double.NaN;
+        if (!Double.isNaN(limits.getRateOfChange())) {
+            long last = lastTime[index];
+            if (last != 0 && now != last) {
+                rate = Math.abs(value - lastValue[index]) * 1e9 / (now - last);
+            }
+            lastTime[index] = now;
+        }
+        lastValue[index] = value;
+
+        // Pending is written after active, so with no delay running the active mask read here is current.
+        if (pending.get(index) == 0) {
+            int current = active[index];
+            if (conditions(limits, value, rate, current) == current) {
+                return;
+            }
+        }
+        synchronized (lock(index)) {
+            int current = active[index];
+            int raw = conditions(limits, value, rate, current);
+            transition(tag, limits, index, current, raw, raw ^ current, value, now);
+        }
+    }
+
+    /**
+     * Returns the mask of the conditions that hold for {@code value} and {@code rate}, the rate
+     * of change per second or {@code NaN} if there is none yet.
+     */
+    private static int conditions(AlarmLimits limits, double value, double rate, int current) {
+        double hysteresis = limits.getHysteresis();
+        int raw = 0;
+        if (above(value, limits.getHiHi(), hysteresis, current, AlarmCondition.HIHI)) {
+            raw |= AlarmCondition.HIHI.bit();
+        }
+        if (above(value, limits.getHi(), hysteresis, current, AlarmCondition.HI)) {
+            raw |= AlarmCondition.HI.bit();
+        }
+        if (below(value, limits.getLo(), hysteresis, current, AlarmCondition.LO)) {
+            raw |= AlarmCondition.LO.bit();
+        }
+        if (below(value, limits.getLoLo(), hysteresis, current, AlarmCondition.LOLO)) {
+            raw |= AlarmCondition.LOLO.bit();
+        }
+        if (above(Math.abs(value - limits.getSetpoint()), limits.getDeviation(), hysteresis, current,
+                AlarmCondition.DEVIATION)) {
+            raw |= AlarmCondition.DEVIATION.bit();
+        }
+        if (!Double.isNaN(rate)) {
+            if (above(rate, limits.getRateOfChange(), hysteresis, current, AlarmCondition.RATE_OF_CHANGE)) {
+                raw |= AlarmCondition.RATE_OF_CHANGE.bit();
+            }
+        } else {
+            // No rate yet: keep the current state.
+            raw |= current & AlarmCondition.RATE_OF_CHANGE.bit();
+        }
+        return raw;
+    }
+
+    private void sweepLoop() {
+        while (running) {
+            try {
+                Thread.sleep(SWEEP_INTERVAL);
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                sweep(System.nanoTime());
+            } catch (Exception e) {
+                log.error("Alarm delay sweep failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Ends the delays that have run out at {@code now} for tags without a newer value. A pending
+     * condition still holds as of the last value, so it is checked as if that value arrived again.
+     */
+    void sweep(long now) {
+        for (int index = 0; index < active.length; index++) {
+            if (pending.get(index) == 0) {
+                continue;
+            }
+            synchronized (lock(index)) {
+                int waiting = pending.get(index);
+                CompiledTag tag = tagTable.get(index);
+                AlarmLimits limits = tag != null ? tag.getAlarms() : null;
+                if (waiting == 0 || limits == null) {
+                    continue;
+                }
+                int current = active[index];
+                transition(tag, limits, index, current, current ^ waiting, waiting, lastValue[index], now);
+            }
+        }
+    }
+
+    private static boolean above(double value, double limit, double hysteresis, int current, AlarmCondition condition) {
+        return (current & condition.bit()) != 0 ? value > limit - hysteresis : value >= limit;
+    }
+
+    private static boolean below(double value, double limit, double hysteresis, int current, AlarmCondition condition) {
+        return (current & condition.bit()) != 0 ? value < limit + hysteresis : value <= limit;
+    }
+
+    /**
+     * Advances the delays of all conditions that differ from their alarm state and stores the new
+     * state; the caller holds the lock of the tag.
+     */
+    private void transition(CompiledTag tag, AlarmLimits limits, int index, int current, int raw, int changed,
+                           double value, long now) {
+        int waiting = pending.get(index);
+        for (int bits = changed | waiting; bits != 0; bits &= bits - 1) {
+            int bit = Integer.lowestOneBit(bits);
+            if ((changed & bit) == 0) {
+                // Condition went back to its alarm state before the delay ended.
+                waiting &= ~bit;
+                continue;
+            }
+            int condition = Integer.numberOfTrailingZeros(bit);
+            boolean raise = (raw & bit) != 0;
+            long delay = raise ? limits.getOnDelayNanos() : limits.getOffDelayNanos();
+            int slot = index * CONDITIONS.length + condition;
+            if ((waiting & bit) == 0 && delay > 0) {
+                waiting |= bit;
+                pendingSince[slot] = now;
+                continue;
+            }
+            if ((waiting & bit) != 0 && now - pendingSince[slot] < delay) {
+                continue;
+            }
+            waiting &= ~bit;
+            current ^= bit;
+            fire(tag, limits, CONDITIONS[condition], raise, value);
+        }
+        active[index] = current;
+        pending.set(index, waiting);
+    }
+
+    private void fire(CompiledTag tag, AlarmLimits limits, AlarmCondition condition, boolean raise, double value) {
+        (raise ? raised : cleared).increment();
+        events.alarm(tag, condition, raise, value);
+        if (listeners.isEmpty()) {
+            return;
+        }
+        AlarmTransition transition = new AlarmTransition(tag, condition, raise, value,
+                limits != null ? condition.limitOf(limits) : Double.NaN, System.currentTimeMillis());
+        for (AlarmListener listener : listeners) {
+            try {
+                listener.alarmChanged(transition);
+            } catch (Exception e) {
+                log.error("Alarm listener {} failed: {}", listener.getClass().getSimpleName(), e.getMessage());
+            }
+        }
+    }
+
+    public record ActiveAlarm(int id, String path, List<AlarmCondition> conditions) {
+    }
+
+    /** Returns the tags that have active alarms, in tag index order. */
+    public List<ActiveAlarm> getActive() {
+        List<ActiveAlarm> result = new ArrayList<>();
+        for (int index = 0; index < active.length; index++) {
+            int mask = active[index];
+            CompiledTag tag = mask != 0 ? tagTable.get(index) : null;
+            if (tag != null) {
+                result.add(new ActiveAlarm(index, tag.getPath(), Arrays.stream(CONDITIONS)
+                        .filter(condition -> (mask & condition.bit()) != 0)
+                        .toList()));
+            }
+        }
+        return result;
+    }
+
+    public long getRaisedCount() {
+        return raised.sum();
+    }
+
+    public long getClearedCount() {
+        return cleared.sum();
+    }
+}
@@ -0,0 +1,10 @@
+package com.scada.gateway.alarm;
+
+/**
+ * Receives alarm transitions from the {@link AlarmEngine}. Called on the acquisition thread
+ * that evaluated the sample, so implementations must not block.
+ */
+public interface AlarmListener {
+
+    void alarmChanged(AlarmTransition transition);
+}
@@ -0,0 +1,11 @@
+package com.scada.gateway.alarm;
+
+import com.scada.gateway.tag.CompiledTag;
+
+/**
+ * An alarm that was raised or cleared. {@code value} is the tag value that caused the
+ * transition, {@code limit} the limit of the condition and {@code timestamp} epoch milliseconds.
+ */
+public record AlarmTransition(CompiledTag tag, AlarmCondition condition, boolean raised, double value,
+                              double limit, long timestamp) {
+}
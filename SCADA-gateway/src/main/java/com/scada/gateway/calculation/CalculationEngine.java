@@ -0,0 +1,234 @@
+package com.scada.gateway.calculation;
+
+import com.scada.gateway.model.Sample;
+import com.scada.gateway.pipeline.AcquisitionCycle;
+import com.scada.gateway.pipeline.AcquisitionPipeline;
+import com.scada.gateway.pipeline.SampleSink;
+import com.scada.gateway.script.ScriptContext;
+import com.scada.gateway.script.ScriptMethodResolver;
+import com.scada.gateway.state.CurrentValueTable;
+import com.scada.gateway.tag.CompiledTag;
+import com.scada.gateway.tag.TagDataType;
+import com.scada.gateway.tag.TagTable;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.milo.opcua.stack.core.StatusCodes;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.ParseException;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.standard.SpelExpression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.SimpleEvaluationContext;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Computes calculated tags: tags with a {@code calculation} whose value is a SpEL expression
+ * over other tags, e.g. {@code #current * 0.588} with {@code current} bound to
+ * {@code S7-1200-SIM-001/DB1_MotorControl/Motor Current}. Inputs are variables, numbers as
+ * {@code Double}, booleans as {@code Boolean} and text as {@code String}; the functions of tag
+ * scripts ({@code ScriptContext}) may be called as well, but no methods of the inputs.
+ * Expressions are compiled like scripts.
+ * <p>
+ * The engine is a sink, so it only sees values that passed the deadband filter. Such a value
+ * marks the calculations reading its tag dirty in the {@link CalculationGraph}; nothing else
+ * is computed. Dirty calculations are computed once the polling cycle completes, so a
+ * calculation whose inputs all changed in one cycle runs once, or right away for values that
+ * arrive outside a cycle. They run in topological order on the completing thread and their
+ * results are published through the pipeline like acquired values: with the worst status and
+ * the latest timestamps of their inputs. A calculation reading another one is marked by that
+ * result and computed in the same pass. Calculations run one at a time; their inputs are read
+ * from the current value table, and a calculation waits until every input has a value.
+ */
+@Slf4j
+@Component
+public class CalculationEngine implements SampleSink {
+
+    static final int BAD_CALCULATION_STATUS = (int) StatusCodes.Bad_InternalError;
+
+    private final TagTable tagTable;
+    private final CurrentValueTable currentValues;
+    private final ObjectProvider<AcquisitionPipeline> pipeline;
+    private final SpelExpressionParser parser = new SpelExpressionParser(
+            new SpelParserConfiguration(SpelCompilerMode.MIXED, CalculationEngine.class.getClassLoader()));
+    private final ScriptContext functions = new ScriptContext();
+    private final Sample input = new Sample();
+    private final Sample output = new Sample();
+    private final LongAdder evaluations = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private volatile CalculationGraph graph = CalculationGraph.EMPTY;
+    /** Set while this engine computes, so results published meanwhile do not start another pass. */
+    private boolean computing;
+
+    public CalculationEngine(TagTable tagTable, CurrentValueTable currentValues,
+                             ObjectProvider<AcquisitionPipeline> pipeline) {
+        this.tagTable = tagTable;
+        this.currentValues = currentValues;
+        this.pipeline = pipeline;
+        rebuild();
+        tagTable.addListener(diff -> rebuild());
+    }
+
+    private synchronized void rebuild() {
+        CalculationGraph previous = graph;
+        graph = CalculationGraph.build(tagTable.getTags(), tagTable.capacity(), this::compile);
+        if (graph.size() > 0 || previous.size() > 0) {
+            log.info("{} calculated tags", graph.size());
+        }
+    }
+
+    private CalculationGraph.Node compile(CompiledTag tag, String[] variables, CompiledTag[] inputs) {
+        String source = tag.getCalculation().getExpression();
+        SpelExpression expression;
+        try {
+            if (source.isEmpty()) {
+                throw new IllegalArgumentException("empty expression");
+            }
+            expression = parser.parseRaw(source);
+        } catch (ParseException | IllegalArgumentException e) {
+            log.error("Invalid calculation '{}' of {}: {}", source, tag.getPath(), e.getMessage());
+            return null;
+        }
+
+        EvaluationContext context = SimpleEvaluationContext.forReadOnlyDataBinding()
+                .withMethodResolvers(new ScriptMethodResolver()).build();
+        int[] indices = new int[inputs.length];
+        for (int i = 0; i < inputs.length; i++) {
+            indices[i] = inputs[i].getIndex();
+            context.setVariable(variables[i], trialValue(inputs[i].getDataType()));
+        }
+        // A trial run tells the compiler the operand types, as for scripts.
+        try {
+            expression.getValue(context, functions);
+        } catch (RuntimeException e) {
+            // Only the types matter here.
+        }
+        boolean compiled;
+        try {
+            compiled = expression.compileExpression();
+        } catch (RuntimeException e) {
+            compiled = false;
+        }
+        if (!compiled) {
+            log.warn("Calculation '{}' of {} could not be compiled yet and is interpreted", source, tag.getPath());
+        }
+        return new CalculationGraph.Node(tag, expression, context, variables, indices);
+    }
+
+    private static Object trialValue(TagDataType type) {
+        return switch (type) {
+            case BOOLEAN -> Boolean.FALSE;
+            case STRING -> "";
+            default -> 1.0;
+        };
+    }
+
+    @Override
+    public void accept(Sample sample) {
+        accept(sample, null);
+    }
+
+    @Override
+    public void accept(Sample sample, AcquisitionCycle cycle) {
+        if (graph.markDependents(sample.getTagIndex()) && cycle == null) {
+            compute();
+        }
+    }
+
+    @Override
+    public void cycleCompleted(AcquisitionCycle cycle) {
+        if (graph.isDirty()) {
+            compute();
+        }
+    }
+
+    /**
+     * Computes the dirty calculations, including those marked dirty by results of this pass.
+     */
+    synchronized void compute() {
+        if (computing) {
+            return;
+        }
+        computing = true;
+        try {
+            CalculationGraph current = graph;
+            AcquisitionPipeline target = pipeline.getObject();
+            for (int rank = current.takeDirty(); rank >= 0; rank = current.takeDirty()) {
+                if (evaluate(current.node(rank))) {
+                    target.publish(output);
+                }
+            }
+        } finally {
+            computing = false;
+        }
+    }
+
+    /**
+     * Evaluates {@code node} into {@code output}. Returns {@code false} if there is nothing to
+     * publish: an input has no value yet or the expression returned {@code null}.
+     */
+    private boolean evaluate(CalculationGraph.Node node) {
+        int status = 0;
+        long sourceTime = 0;
+        long serverTime = 0;
+        for (int i = 0; i < node.inputs().length; i++) {
+            if (!currentValues.read(node.inputs()[i], input)) {
+                return false;
+            }
+            node.context().setVariable(node.variables()[i], valueOf(input));
+            if (input.getStatusCode() >>> 30 > status >>> 30) {
+                status = input.getStatusCode();
+            }
+            sourceTime = Math.max(sourceTime, input.getSourceTime());
+            serverTime = Math.max(serverTime, input.getServerTime());
+        }
+
+        CompiledTag tag = node.tag();
+        output.set(tag.getIndex(), status, sourceTime, serverTime, System.currentTimeMillis());
+        Object result;
+        try {
+            result = node.expression().getValue(node.context(), functions);
+        } catch (RuntimeException e) {
+            errors.increment();
+            long count = errors.sum();
+            if (count == 1 || count % 1000 == 0) {
+                log.atWarn()
+                        .addKeyValue("tag", tag.getPath())
+                        .addKeyValue("errors", count)
+                        .log("Calculation '{}' failed: {}", tag.getCalculation().getExpression(), e.getMessage());
+            }
+            output.setStatusCode(BAD_CALCULATION_STATUS);
+            return true;
+        }
+        evaluations.increment();
+        if (result == null) {
+            return false;
+        }
+        tag.getDataType().decode(result, output);
+        return true;
+    }
+
+    private static Object valueOf(Sample sample) {
+        return switch (sample.getValueType()) {
+            case BOOLEAN -> sample.booleanValue();
+            case LONG, DOUBLE -> sample.doubleValue();
+            case STRING -> sample.getText();
+            case NULL -> null;
+        };
+    }
+
+    /** Number of calculated tags being computed. */
+    public int getCalculatedCount() {
+        return graph.size();
+    }
+
+    public long getEvaluationCount() {
+        return evaluations.sum();
+    }
+
+    public long getErrorCount() {
+        return errors.sum();
+    }
+}
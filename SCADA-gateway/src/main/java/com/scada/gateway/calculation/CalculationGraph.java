@@ -0,0 +1,197 @@
+package com.scada.gateway.calculation;
+
+import com.scada.gateway.tag.CompiledTag;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.spel.standard.SpelExpression;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Dependency DAG of the calculated tags. Nodes are numbered by rank, a topological order, so a
+ * node comes after every calculated tag it reads. The tags that feed calculations map to the
+ * ranks that read them, and one dirty bit per rank records which nodes have to be computed
+ * again. Bits are set by any thread without locking.
+ */
+@Slf4j
+final class CalculationGraph {
+
+    private static final VarHandle DIRTY = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final int[] NONE = new int[0];
+
+    static final CalculationGraph EMPTY = new CalculationGraph(new Node[0], new int[0][]);
+
+    record Node(CompiledTag tag, SpelExpression expression, EvaluationContext context,
+                String[] variables, int[] inputs) {
+    }
+
+    @FunctionalInterface
+    interface Compiler {
+        /** Returns the node computing {@code tag}, {@code null} if its expression is invalid. */
+        Node compile(CompiledTag tag, String[] variables, CompiledTag[] inputs);
+    }
+
+    private final Node[] nodes;
+    /** Ranks reading each tag, by tag index; {@code null} for tags no calculation reads. */
+    private final int[][] dependents;
+    private final long[] dirty;
+
+    private CalculationGraph(Node[] nodes, int[][] dependents) {
+        this.nodes = nodes;
+        this.dependents = dependents;
+        this.dirty = new long[(nodes.length + 63) >>> 6];
+        for (int rank = 0; rank < nodes.length; rank++) {
+            dirty[rank >>> 6] |= 1L << rank;
+        }
+    }
+
+    /**
+     * Builds the graph of the calculated tags among {@code tags}. Calculations with unknown
+     * inputs or invalid expressions, those in a dependency cycle and those reading any of them
+     * are left out. All nodes start dirty.
+     */
+    static CalculationGraph build(List<CompiledTag> tags, int capacity, Compiler compiler) {
+        Map<String, CompiledTag> byPath = new HashMap<>(tags.size() * 2);
+        tags.forEach(tag -> byPath.putIfAbsent(tag.getPath(), tag));
+
+        List<Node> candidates = new ArrayList<>();
+        Map<Integer, Integer> candidateOf = new HashMap<>();
+        Set<Integer> calculated = new HashSet<>();
+        for (CompiledTag tag : tags) {
+            if (!tag.isCalculated()) continue;
+
+            calculated.add(tag.getIndex());
+            Map<String, String> configured = tag.getCalculation().getInputs();
+            String[] variables = configured.keySet().toArray(new String[0]);
+            CompiledTag[] inputs = new CompiledTag[variables.length];
+            boolean resolved = true;
+            for (int i = 0; i < variables.length; i++) {
+                String path = configured.get(variables[i]);
+                inputs[i] = byPath.get(path);
+                if (inputs[i] == null) {
+                    inputs[i] = byPath.get(tag.getServerId() + '/' + path);
+                }
+                if (inputs[i] == null) {
+                    log.error("Input {} '{}' of calculated tag {} not found, tag not computed",
+                            variables[i], path, tag.getPath());
+                    resolved = false;
+                }
+            }
+            Node node = resolved ? compiler.compile(tag, variables, inputs) : null;
+            if (node != null) {
+                candidateOf.put(tag.getIndex(), candidates.size());
+                candidates.add(node);
+            }
+        }
+
+        // Kahn's algorithm over the edges between calculated tags.
+        int[] pendingInputs = new int[candidates.size()];
+        List<List<Integer>> readers = new ArrayList<>();
+        candidates.forEach(node -> readers.add(new ArrayList<>()));
+        Deque<Integer> ready = new ArrayDeque<>();
+        for (int c = 0; c < candidates.size(); c++) {
+            for (int input : candidates.get(c).inputs()) {
+                Integer source = candidateOf.get(input);
+                if (source != null) {
+                    readers.get(source).add(c);
+                    pendingInputs[c]++;
+                } else if (calculated.contains(input)) {
+                    // Reads a calculated tag that is not computed; never becomes ready.
+                    pendingInputs[c]++;
+                }
+            }
+            if (pendingInputs[c] == 0) {
+                ready.add(c);
+            }
+        }
+        List<Node> ordered = new ArrayList<>(candidates.size());
+        while (!ready.isEmpty()) {
+            int c = ready.poll();
+            ordered.add(candidates.get(c));
+            for (int reader : readers.get(c)) {
+                if (--pendingInputs[reader] == 0) {
+                    ready.add(reader);
+                }
+            }
+        }
+        for (int c = 0; c < candidates.size(); c++) {
+            if (pendingInputs[c] > 0) {
+                log.error("Calculated tag {} is part of a dependency cycle or reads a calculation that is not "
+                        + "computed, tag not computed", candidates.get(c).tag().getPath());
+            }
+        }
+
+        int[][] dependents = new int[capacity][];
+        for (int rank = 0; rank < ordered.size(); rank++) {
+            for (int input : ordered.get(rank).inputs()) {
+                int[] ranks = dependents[input] != null ? dependents[input] : NONE;
+                if (ranks.length == 0 || ranks[ranks.length - 1] != rank) {
+                    ranks = Arrays.copyOf(ranks, ranks.length + 1);
+                    ranks[ranks.length - 1] = rank;
+                    dependents[input] = ranks;
+                }
+            }
+        }
+        return new CalculationGraph(ordered.toArray(new Node[0]), dependents);
+    }
+
+    int size() {
+        return nodes.length;
+    }
+
+    Node node(int rank) {
+        return nodes[rank];
+    }
+
+    /**
+     * Marks the nodes reading the tag with the given index dirty. Returns {@code false} if no
+     * calculation reads the tag.
+     */
+    boolean markDependents(int tagIndex) {
+        int[] ranks = tagIndex < dependents.length ? dependents[tagIndex] : null;
+        if (ranks == null) {
+            return false;
+        }
+        for (int rank : ranks) {
+            long bit = 1L << rank;
+            if (((long) DIRTY.getVolatile(dirty, rank >>> 6) & bit) == 0) {
+                DIRTY.getAndBitwiseOr(dirty, rank >>> 6, bit);
+            }
+        }
+        return true;
+    }
+
+    boolean isDirty() {
+        for (int word = 0; word < dirty.length; word++) {
+            if ((long) DIRTY.getVolatile(dirty, word) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Clears and returns the lowest dirty rank, {@code -1} if no node is dirty.
+     */
+    int takeDirty() {
+        for (int word = 0; word < dirty.length; word++) {
+            long bits = (long) DIRTY.getVolatile(dirty, word);
+            if (bits != 0) {
+                long bit = Long.lowestOneBit(bits);
+                DIRTY.getAndBitwiseAnd(dirty, word, ~bit);
+                return (word << 6) + Long.numberOfTrailingZeros(bit);
+            }
+        }
+        return -1;
+    }
+}
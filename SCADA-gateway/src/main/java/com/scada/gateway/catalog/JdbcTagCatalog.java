@@ -0,0 +1,195 @@
+package com.scada.gateway.catalog;
+
+import com.scada.gateway.config.ServersConfig;
+import com.scada.gateway.config.TagCatalogConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tag definitions kept in the {@code tag_definition} table (see {@code db/tag-catalog.sql}).
+ * <p>
+ * {@link #load()} streams the whole table with a forward-only cursor and a bounded fetch size,
+ * so 100k+ rows never have to fit into one result set. Afterwards {@link #pollChanges()} reads
+ * only the rows whose {@code version} is above the highest one seen, which covers inserts,
+ * updates and soft deletes. The definitions are kept in memory by primary key, so an update
+ * that moves a row to another node or server replaces its old definition, and are merged into
+ * the server configuration with {@link #apply(ServersConfig)}, from which the tag table is compiled.
+ * <p>
+ * A change committed with a lower version than one already seen, e.g. by a longer-running
+ * transaction, is only picked up by the next full reload. PostgreSQL only streams with
+ * auto-commit disabled on the connection.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "gateway.catalog", name = "source", havingValue = "jdbc")
+public class JdbcTagCatalog {
+
+    private static final String COLUMNS = "server_id, node_id, name, data_type, unit, polling_rate, mode, queue_size,"
+            + " range_min, range_max, deadband, deadband_percent, report_by_exception, heartbeat, writable, enabled,"
+            + " deleted, version, device, data_block, alarm_hihi, alarm_hi, alarm_lo, alarm_lolo, alarm_rate,"
+            + " alarm_setpoint, alarm_deviation, alarm_hysteresis, alarm_on_delay, alarm_off_delay, script, id";
+
+    private final JdbcTemplate jdbcTemplate;
+    /** Definitions by primary key, in the order the rows were first seen. */
+    private final Map<Long, Definition> tags = new LinkedHashMap<>();
+    private final Set<String> unknownServers = new HashSet<>();
+    private long version;
+
+    private record Definition(String serverId, ServersConfig.TagConfig tag) {
+    }
+
+    public JdbcTagCatalog(DataSource dataSource, TagCatalogConfig config) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(config.getFetchSize());
+    }
+
+    /**
+     * Replaces the definitions with the current content of the table and returns their number.
+     */
+    public synchronized int load() {
+        long started = System.nanoTime();
+        // Read the version first: rows changed while the table is streamed are picked up again by the next poll.
+        Long maxVersion = jdbcTemplate.queryForObject("SELECT MAX(version) FROM tag_definition", Long.class);
+
+        tags.clear();
+        int[] count = {0};
+        jdbcTemplate.query("SELECT " + COLUMNS + " FROM tag_definition WHERE deleted = FALSE ORDER BY id", rs -> {
+            put(rs);
+            count[0]++;
+        });
+        version = maxVersion != null ? maxVersion : 0;
+
+        log.info("Loaded {} tag definitions in {} ms (version {})",
+                count[0], (System.nanoTime() - started) / 1_000_000, version);
+        return count[0];
+    }
+
+    /**
+     * Applies the rows changed since the last load or poll and returns their number.
+     */
+    public synchronized int pollChanges() {
+        int[] count = {0};
+        long[] seen = {version};
+        jdbcTemplate.query("SELECT " + COLUMNS + " FROM tag_definition WHERE version > ? ORDER BY version", rs -> {
+            if (rs.getBoolean("deleted")) {
+                tags.remove(rs.getLong("id"));
+            } else {
+                put(rs);
+            }
+            seen[0] = Math.max(seen[0], rs.getLong("version"));
+            count[0]++;
+        }, version);
+        if (count[0] > 0) {
+            log.info("Applied {} tag catalog changes (version {} -> {})", count[0], version, seen[0]);
+        }
+        version = seen[0];
+        return count[0];
+    }
+
+    private void put(ResultSet rs) throws SQLException {
+        tags.put(rs.getLong("id"), new Definition(rs.getString("server_id").intern(), mapTag(rs)));
+    }
+
+    private static ServersConfig.TagConfig mapTag(ResultSet rs) throws SQLException {
+        ServersConfig.TagConfig tag = new ServersConfig.TagConfig();
+        tag.setNodeId(rs.getString("node_id"));
+        tag.setName(rs.getString("name"));
+        tag.setDataType(rs.getString("data_type"));
+        tag.setUnit(rs.getString("unit"));
+        tag.setPollingRate(rs.getLong("polling_rate"));
+        String mode = rs.getString("mode");
+        if (mode != null) {
+            try {
+                tag.setMode(ServersConfig.AcquisitionMode.valueOf(mode.trim().toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                log.warn("Unknown acquisition mode '{}' of tag {}, using the server default", mode, tag.getNodeId());
+            }
+        }
+        tag.setQueueSize(rs.getObject("queue_size", Integer.class));
+        tag.setRangeMin(rs.getObject("range_min", Double.class));
+        tag.setRangeMax(rs.getObject("range_max", Double.class));
+        tag.setDeadband(rs.getObject("deadband", Double.class));
+        tag.setDeadbandPercent(rs.getObject("deadband_percent", Double.class));
+        tag.setReportByException(rs.getBoolean("report_by_exception"));
+        tag.setHeartbeat(rs.getLong("heartbeat"));
+        tag.setWritable(rs.getBoolean("writable"));
+        tag.setEnabled(rs.getBoolean("enabled"));
+        tag.setDevice(rs.getString("device"));
+        tag.setBlock(rs.getString("data_block"));
+        tag.setAlarms(mapAlarms(rs));
+        tag.setScript(rs.getString("script"));
+        return tag;
+    }
+
+    private static ServersConfig.AlarmConfig mapAlarms(ResultSet rs) throws SQLException {
+        ServersConfig.AlarmConfig alarms = new ServersConfig.AlarmConfig();
+        alarms.setHiHi(rs.getObject("alarm_hihi", Double.class));
+        alarms.setHi(rs.getObject("alarm_hi", Double.class));
+        alarms.setLo(rs.getObject("alarm_lo", Double.class));
+        alarms.setLoLo(rs.getObject("alarm_lolo", Double.class));
+        alarms.setRateOfChange(rs.getObject("alarm_rate", Double.class));
+        alarms.setSetpoint(rs.getObject("alarm_setpoint", Double.class));
+        alarms.setDeviation(rs.getObject("alarm_deviation", Double.class));
+        alarms.setHysteresis(rs.getDouble("alarm_hysteresis"));
+        alarms.setOnDelay(rs.getLong("alarm_on_delay"));
+        alarms.setOffDelay(rs.getLong("alarm_off_delay"));
+        return alarms;
+    }
+
+    /**
+     * Returns a copy of {@code base} in which the tags of every server are those of the catalog.
+     */
+    public synchronized ServersConfig apply(ServersConfig base) {
+        Map<String, List<ServersConfig.TagConfig>> byServer = new LinkedHashMap<>();
+        for (Definition definition : tags.values()) {
+            byServer.computeIfAbsent(definition.serverId(), id -> new ArrayList<>()).add(definition.tag());
+        }
+
+        ServersConfig result = new ServersConfig();
+        List<ServersConfig.ServerConfig> servers = new ArrayList<>();
+        Set<String> known = new HashSet<>();
+        if (base.getServers() != null) {
+            for (ServersConfig.ServerConfig server : base.getServers()) {
+                ServersConfig.ServerConfig copy = new ServersConfig.ServerConfig();
+                BeanUtils.copyProperties(server, copy);
+                List<ServersConfig.TagConfig> merged = new ArrayList<>(byServer.getOrDefault(server.getId(), List.of()));
+                // Calculated tags are defined in the configuration only.
+                if (server.getTags() != null) {
+                    server.getTags().stream().filter(tag -> tag.getCalculation() != null).forEach(merged::add);
+                }
+                copy.setTags(List.copyOf(merged));
+                servers.add(copy);
+                known.add(server.getId());
+            }
+        }
+        for (String serverId : byServer.keySet()) {
+            if (!known.contains(serverId) && unknownServers.add(serverId)) {
+                log.warn("Tag catalog references server {} that is not configured in gateway.servers", serverId);
+            }
+        }
+        result.setServers(servers);
+        return result;
+    }
+
+    public synchronized int size() {
+        return tags.size();
+    }
+
+    public synchronized long getVersion() {
+        return version;
+    }
+}
@@ -0,0 +1,77 @@
+package com.scada.gateway.catalog;
+
+import com.scada.gateway.config.ServersConfig;
+import com.scada.gateway.config.TagCatalogConfig;
+import com.scada.gateway.tag.TagTable;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Polls the {@link JdbcTagCatalog} for changes and applies them to the live {@link TagTable},
+ * which reconfigures the affected sessions without reconnecting them. A full reload runs
+ * every {@code gateway.catalog.full-reload-interval} to catch rows that were deleted physically.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "gateway.catalog", name = "source", havingValue = "jdbc")
+public class TagCatalogPoller {
+
+    private final JdbcTagCatalog catalog;
+    private final TagTable tagTable;
+    private final ServersConfig serversConfig;
+    private final TagCatalogConfig config;
+    private volatile boolean running;
+    private Thread worker;
+
+    public TagCatalogPoller(JdbcTagCatalog catalog, TagTable tagTable, ServersConfig serversConfig,
+                            TagCatalogConfig config) {
+        this.catalog = catalog;
+        this.tagTable = tagTable;
+        this.serversConfig = serversConfig;
+        this.config = config;
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        worker = Thread.ofVirtual().name("tag-catalog-poll").start(this::pollLoop);
+    }
+
+    private void pollLoop() {
+        long lastFullReload = System.nanoTime();
+        while (running) {
+            try {
+                Thread.sleep(config.getPollInterval());
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            try {
+                boolean changed;
+                if (System.nanoTime() - lastFullReload >= config.getFullReloadInterval().toNanos()) {
+                    catalog.load();
+                    lastFullReload = System.nanoTime();
+                    changed = true;
+                } else {
+                    changed = catalog.pollChanges() > 0;
+                }
+                if (changed) {
+                    tagTable.update(catalog.apply(serversConfig));
+                }
+            } catch (Exception e) {
+                log.error("Failed to poll tag catalog: {}", e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+}
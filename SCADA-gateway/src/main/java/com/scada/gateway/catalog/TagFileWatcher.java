@@ -0,0 +1,169 @@
+package com.scada.gateway.catalog;
+
+import com.scada.gateway.config.LegacyServersProperties;
+import com.scada.gateway.config.ServersConfig;
+import com.scada.gateway.config.TagCatalogConfig;
+import com.scada.gateway.tag.TagTable;
+import com.scada.gateway.tag.TagTableDiff;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.bind.PropertySourcesPlaceholdersResolver;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.PropertySource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Watches {@code gateway.catalog.file} and applies the tags it defines to the live {@link TagTable}
+ * whenever the file changes, so tags can be added, removed or changed without a restart.
+ * <p>
+ * Only tags are taken from the file. Servers are matched by id; servers that are not running yet
+ * and changes to connection settings need a restart, and the tags of a server missing from the
+ * file are left as they are.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "gateway.catalog", name = "file")
+public class TagFileWatcher {
+
+    private final TagTable tagTable;
+    private final TagCatalogConfig config;
+    private final Environment environment;
+    private final Path file;
+    private ServersConfig current;
+    private final Set<String> ignoredServers = new HashSet<>();
+    private FileTime lastModified;
+    private volatile boolean running;
+    private Thread worker;
+
+    public TagFileWatcher(TagTable tagTable, ServersConfig serversConfig, TagCatalogConfig config,
+                          Environment environment) {
+        this.tagTable = tagTable;
+        this.current = serversConfig;
+        this.config = config;
+        this.environment = environment;
+        this.file = Path.of(config.getFile());
+    }
+
+    @PostConstruct
+    public void start() {
+        if (config.getSource() != TagCatalogConfig.Source.YAML) {
+            log.warn("gateway.catalog.file is ignored with tag catalog source {}", config.getSource());
+            return;
+        }
+        lastModified = lastModified();
+        running = true;
+        worker = Thread.ofVirtual().name("tag-file-watch").start(this::watchLoop);
+        log.info("Watching {} for tag changes", file.toAbsolutePath());
+    }
+
+    private void watchLoop() {
+        while (running) {
+            try {
+                Thread.sleep(config.getPollInterval());
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            FileTime modified = lastModified();
+            if (modified == null || modified.equals(lastModified)) {
+                continue;
+            }
+            lastModified = modified;
+            try {
+                reload();
+            } catch (Exception e) {
+                log.error("Failed to apply tags from {}: {}", file, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Reads the file and applies its tags, returning the changes made to the tag table.
+     */
+    public synchronized TagTableDiff reload() throws IOException {
+        List<PropertySource<?>> sources = new ArrayList<>(new YamlPropertySourceLoader()
+                .load(file.toString(), new FileSystemResource(file)));
+        LegacyServersProperties.of(ConfigurationPropertySources.from(sources)).ifPresent(legacy -> {
+            log.warn("{} lists its servers under the deprecated {}, move them to {}",
+                    file, LegacyServersProperties.LEGACY_PREFIX, LegacyServersProperties.PREFIX);
+            sources.add(legacy);
+        });
+        ServersConfig loaded = new Binder(ConfigurationPropertySources.from(sources),
+                new PropertySourcesPlaceholdersResolver(environment))
+                .bind("gateway", ServersConfig.class)
+                .orElseGet(ServersConfig::new);
+
+        ServersConfig merged = merge(current, loaded);
+        TagTableDiff diff = tagTable.update(merged);
+        current = merged;
+        log.info("Applied tags from {}: {} added, {} removed, {} changed",
+                file, diff.added().size(), diff.removed().size(), diff.changed().size());
+        return diff;
+    }
+
+    /**
+     * Returns a copy of {@code base} in which every server has the tags {@code loaded} defines for it.
+     */
+    private ServersConfig merge(ServersConfig base, ServersConfig loaded) {
+        Map<String, ServersConfig.ServerConfig> loadedServers = new HashMap<>();
+        if (loaded.getServers() != null) {
+            loaded.getServers().forEach(server -> loadedServers.put(server.getId(), server));
+        }
+
+        List<ServersConfig.ServerConfig> servers = new ArrayList<>();
+        if (base.getServers() != null) {
+            for (ServersConfig.ServerConfig server : base.getServers()) {
+                ServersConfig.ServerConfig copy = new ServersConfig.ServerConfig();
+                BeanUtils.copyProperties(server, copy);
+                ServersConfig.ServerConfig update = loadedServers.remove(server.getId());
+                if (update != null) {
+                    copy.setTags(update.getTags() != null ? update.getTags() : List.of());
+                }
+                servers.add(copy);
+            }
+        }
+        for (String serverId : loadedServers.keySet()) {
+            if (ignoredServers.add(serverId)) {
+                log.warn("Server {} in {} is not running, its tags are applied after a restart", serverId, file);
+            }
+        }
+
+        ServersConfig result = new ServersConfig();
+        result.setServers(servers);
+        return result;
+    }
+
+    private FileTime lastModified() {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+}
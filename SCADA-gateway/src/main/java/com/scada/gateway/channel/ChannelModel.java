@@ -0,0 +1,215 @@
+package com.scada.gateway.channel;
+
+import com.scada.gateway.tag.CompiledTag;
+import com.scada.gateway.tag.TagTable;
+import com.scada.gateway.tag.TagTableDiff;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tags arranged like the PLC: server → device → data block → tag, e.g.
+ * {@code plc-simulator-001/S7-1200-SIM-001/DB1_MotorControl/Motor Speed}. Device and block are
+ * optional levels of a tag ({@code device}, {@code block} in the tag configuration). A
+ * {@code /} within the name of a level is escaped as {@code %2F} (see
+ * {@link TagTable#pathSegment(String)}), so the first level of a path is always the server.
+ * <p>
+ * Tags are resolved by numeric id, by server and NodeId or by qualified path through hash
+ * indexes kept per server. Tags are laid out depth first, so the tags below any node are one
+ * contiguous slice and subtree queries return a view without copying; path prefix queries
+ * binary search a sorted copy of the paths of the server. When the tag table changes only the
+ * servers with changed tags are rebuilt; readers keep the snapshot they started with.
+ */
+@Slf4j
+@Component
+public class ChannelModel {
+
+    private static final String[] NO_PATHS = new String[0];
+
+    private final TagTable tagTable;
+    private volatile Snapshot snapshot;
+
+    /** {@code servers} is keyed by the first level of the path, the escaped server id. */
+    private record Snapshot(ChannelNode root, Map<String, ServerChannels> servers) {
+    }
+
+    /** The subtree of one server and its indexes. */
+    private record ServerChannels(ChannelNode node, Map<String, ChannelNode> nodes, Map<String, CompiledTag> byPath,
+                                  Map<NodeId, CompiledTag> byNodeId, String[] sortedPaths, CompiledTag[] sortedTags) {
+    }
+
+    public ChannelModel(TagTable tagTable) {
+        this.tagTable = tagTable;
+        update(tagTable.getServerIds());
+        tagTable.addListener(this::onTagTableChanged);
+    }
+
+    private void onTagTableChanged(TagTableDiff diff) {
+        if (!diff.isEmpty()) {
+            update(diff.affectedServers());
+        }
+    }
+
+    private synchronized void update(Set<String> changedServers) {
+        Map<String, ServerChannels> previous = snapshot != null ? snapshot.servers() : Map.of();
+        Map<String, ServerChannels> servers = new LinkedHashMap<>();
+        for (String serverId : tagTable.getServerIds()) {
+            String segment = TagTable.pathSegment(serverId);
+            ServerChannels channels = changedServers.contains(serverId) ? null : previous.get(segment);
+            if (channels == null) {
+                channels = build(serverId, tagTable.getServerTags(serverId));
+            }
+            if (channels != null) {
+                servers.put(segment, channels);
+            }
+        }
+
+        List<ChannelNode> serverNodes = new ArrayList<>(servers.size());
+        servers.values().forEach(channels -> serverNodes.add(channels.node()));
+        snapshot = new Snapshot(ChannelNode.root(serverNodes), servers);
+        log.debug("Channel model updated: {} of {} servers rebuilt", changedServers.size(), servers.size());
+    }
+
+    /** Builds the subtree of a server, {@code null} if it has no tags. */
+    private static ServerChannels build(String serverId, List<CompiledTag> tags) {
+        if (tags.isEmpty()) {
+            return null;
+        }
+        ChannelNode root = new ChannelNode(ChannelNode.Level.ROOT, "", "");
+        ChannelNode server = root.child(ChannelNode.Level.SERVER, serverId);
+        Map<String, ChannelNode> nodes = new HashMap<>();
+        Map<String, CompiledTag> byPath = new HashMap<>(tags.size() * 2);
+        Map<NodeId, CompiledTag> byNodeId = new HashMap<>(tags.size() * 2);
+
+        for (CompiledTag tag : tags) {
+            ChannelNode node = server;
+            if (tag.getDevice() != null) {
+                node = node.child(ChannelNode.Level.DEVICE, tag.getDevice());
+            }
+            if (tag.getBlock() != null) {
+                node = node.child(ChannelNode.Level.BLOCK, tag.getBlock());
+            }
+            node.addTag(tag);
+
+            if (byPath.putIfAbsent(tag.getPath(), tag) != null) {
+                log.warn("Duplicate channel path {}, tag {} on {} is not resolvable by path",
+                        tag.getPath(), tag.getAddress(), tag.getServerId());
+            }
+            if (tag.getNodeId() != null) {
+                byNodeId.put(tag.getNodeId(), tag);
+            }
+        }
+
+        server.layout(new CompiledTag[tags.size()], 0);
+        index(server, nodes);
+
+        String[] sortedPaths = byPath.keySet().toArray(NO_PATHS);
+        Arrays.sort(sortedPaths);
+        CompiledTag[] sortedTags = new CompiledTag[sortedPaths.length];
+        for (int i = 0; i < sortedPaths.length; i++) {
+            sortedTags[i] = byPath.get(sortedPaths[i]);
+        }
+        return new ServerChannels(server, nodes, byPath, byNodeId, sortedPaths, sortedTags);
+    }
+
+    private static void index(ChannelNode node, Map<String, ChannelNode> nodes) {
+        nodes.put(node.getPath(), node);
+        for (ChannelNode child : node.getChildren()) {
+            index(child, nodes);
+        }
+    }
+
+    public ChannelNode getRoot() {
+        return snapshot.root();
+    }
+
+    /**
+     * Returns the server, device or block with the given path, the root for an empty path,
+     * {@code null} if there is none.
+     */
+    public ChannelNode getNode(String path) {
+        Snapshot current = snapshot;
+        if (path.isEmpty()) {
+            return current.root();
+        }
+        ServerChannels server = current.servers().get(serverOf(path));
+        return server != null ? server.nodes().get(path) : null;
+    }
+
+    /** Returns the tag with the given numeric id (tag index), {@code null} if there is none. */
+    public CompiledTag get(int id) {
+        return tagTable.get(id);
+    }
+
+    public CompiledTag findByPath(String path) {
+        ServerChannels server = snapshot.servers().get(serverOf(path));
+        return server != null ? server.byPath().get(path) : null;
+    }
+
+    public CompiledTag findByNodeId(String serverId, NodeId nodeId) {
+        ServerChannels server = snapshot.servers().get(TagTable.pathSegment(serverId));
+        return server != null ? server.byNodeId().get(nodeId) : null;
+    }
+
+    /**
+     * Returns all tags below the node with the given path, an empty list if there is no such node.
+     */
+    public List<CompiledTag> getSubtree(String path) {
+        ChannelNode node = getNode(path);
+        return node != null ? node.getTags() : List.of();
+    }
+
+    /**
+     * Returns the tags whose path starts with {@code prefix}, ordered by path.
+     */
+    public List<CompiledTag> findByPrefix(String prefix) {
+        Snapshot current = snapshot;
+        int slash = prefix.indexOf('/');
+        if (slash >= 0) {
+            ServerChannels server = current.servers().get(prefix.substring(0, slash));
+            return server != null ? matching(server, prefix) : List.of();
+        }
+
+        // A prefix within the server id: all tags of every server whose path starts with it.
+        List<ServerChannels> servers = new ArrayList<>();
+        current.servers().forEach((segment, server) -> {
+            if (segment.startsWith(prefix)) {
+                servers.add(server);
+            }
+        });
+        if (servers.size() == 1) {
+            return matching(servers.get(0), prefix);
+        }
+        // Ordered like the paths of their tags, which continue with a '/' after the server id.
+        servers.sort(Comparator.comparing(server -> server.node().getPath() + '/'));
+        List<CompiledTag> tags = new ArrayList<>();
+        servers.forEach(server -> tags.addAll(Arrays.asList(server.sortedTags())));
+        return Collections.unmodifiableList(tags);
+    }
+
+    private static List<CompiledTag> matching(ServerChannels server, String prefix) {
+        int from = lowerBound(server.sortedPaths(), prefix);
+        int to = lowerBound(server.sortedPaths(), prefix + Character.MAX_VALUE);
+        return Collections.unmodifiableList(Arrays.asList(server.sortedTags()).subList(from, to));
+    }
+
+    private static String serverOf(String path) {
+        int slash = path.indexOf('/');
+        return slash >= 0 ? path.substring(0, slash) : path;
+    }
+
+    private static int lowerBound(String[] paths, String key) {
+        int index = Arrays.binarySearch(paths, key);
+        return index >= 0 ? index : -index - 1;
+    }
+}
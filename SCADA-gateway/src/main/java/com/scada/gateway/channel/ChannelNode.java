@@ -0,0 +1,103 @@
+package com.scada.gateway.channel;
+
+import com.scada.gateway.tag.CompiledTag;
+import com.scada.gateway.tag.TagTable;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Server, device or data block of the {@link ChannelModel}. A server node and its subtree are
+ * built once per change of the server's tags and not modified afterwards.
+ */
+public final class ChannelNode {
+
+    public enum Level {ROOT, SERVER, DEVICE, BLOCK}
+
+    @Getter
+    private final Level level;
+    @Getter
+    private final String name;
+    /** Qualified path, {@code serverId/device/block} with escaped levels; empty for the root. */
+    @Getter
+    private final String path;
+    /** All tags below this node: its own tags first, then those of the children in order. */
+    @Getter
+    private List<CompiledTag> tags = List.of();
+
+    private final Map<String, ChannelNode> children = new LinkedHashMap<>();
+    private final List<CompiledTag> ownTags = new ArrayList<>();
+    private int ownTagCount;
+
+    ChannelNode(Level level, String name, String path) {
+        this.level = level;
+        this.name = name;
+        this.path = path;
+    }
+
+    ChannelNode child(Level level, String name) {
+        ChannelNode child = children.get(name);
+        if (child == null) {
+            String segment = TagTable.pathSegment(name);
+            child = new ChannelNode(level, name, path.isEmpty() ? segment : path + '/' + segment);
+            children.put(name, child);
+        }
+        return child;
+    }
+
+    void addTag(CompiledTag tag) {
+        ownTags.add(tag);
+    }
+
+    /**
+     * Copies the subtree into {@code ordered} from {@code position} on, depth first, so every
+     * subtree is a contiguous slice, and returns the position after it.
+     */
+    int layout(CompiledTag[] ordered, int position) {
+        int from = position;
+        for (CompiledTag tag : ownTags) {
+            ordered[position++] = tag;
+        }
+        ownTagCount = ownTags.size();
+        ownTags.clear();
+        for (ChannelNode child : children.values()) {
+            position = child.layout(ordered, position);
+        }
+        tags = Collections.unmodifiableList(Arrays.asList(ordered).subList(from, position));
+        return position;
+    }
+
+    /**
+     * Returns a root above the laid out {@code servers}, which are shared, not copied. Only the
+     * list of all tags is built anew.
+     */
+    static ChannelNode root(Collection<ChannelNode> servers) {
+        ChannelNode root = new ChannelNode(Level.ROOT, "", "");
+        List<CompiledTag> tags = new ArrayList<>();
+        for (ChannelNode server : servers) {
+            root.children.put(server.getName(), server);
+            tags.addAll(server.getTags());
+        }
+        root.tags = Collections.unmodifiableList(tags);
+        return root;
+    }
+
+    public Collection<ChannelNode> getChildren() {
+        return Collections.unmodifiableCollection(children.values());
+    }
+
+    public ChannelNode getChild(String name) {
+        return children.get(name);
+    }
+
+    /** Tags directly below this node, not those of its children. */
+    public List<CompiledTag> getOwnTags() {
+        return tags.subList(0, ownTagCount);
+    }
+}
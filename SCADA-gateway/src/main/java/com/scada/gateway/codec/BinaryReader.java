@@ -0,0 +1,70 @@
+package com.scada.gateway.codec;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Cursor over an encoded record. Not thread-safe; can be re-pointed at another record with {@link #wrap}.
+ */
+public final class BinaryReader {
+
+    private byte[] buffer;
+    private int position;
+    private int limit;
+
+    public BinaryReader wrap(byte[] bytes) {
+        return wrap(bytes, 0, bytes.length);
+    }
+
+    public BinaryReader wrap(byte[] bytes, int offset, int length) {
+        this.buffer = bytes;
+        this.position = offset;
+        this.limit = offset + length;
+        return this;
+    }
+
+    public boolean hasRemaining() {
+        return position < limit;
+    }
+
+    public byte readByte() {
+        if (position >= limit) {
+            throw new IllegalArgumentException("Unexpected end of record");
+        }
+        return buffer[position++];
+    }
+
+    public long readVarLong() {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = readByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    public long readZigZag() {
+        long value = readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public double readDouble() {
+        long bits = 0;
+        for (int i = 0; i < 8; i++) {
+            bits = (bits << 8) | (readByte() & 0xFF);
+        }
+        return Double.longBitsToDouble(bits);
+    }
+
+    public String readString() {
+        int length = (int) readVarLong();
+        if (length < 0 || position + length > limit) {
+            throw new IllegalArgumentException("Malformed string length " + length);
+        }
+        String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return value;
+    }
+}
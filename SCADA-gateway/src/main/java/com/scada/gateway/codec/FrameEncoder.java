@@ -0,0 +1,47 @@
+package com.scada.gateway.codec;
+
+import com.scada.gateway.model.Sample;
+
+/**
+ * Builds a {@link WireFormat#KIND_FRAME} record from the samples of one acquisition cycle.
+ * Not thread-safe; an encoder is reused by one producer: {@code begin}, {@code add}..., {@code finish}.
+ */
+public final class FrameEncoder {
+
+    private final BinaryWriter entries = new BinaryWriter(4096);
+    private final BinaryWriter frame = new BinaryWriter(4096);
+    private long cycleTime;
+    private int count;
+    private int previousTagIndex;
+
+    public FrameEncoder begin(long cycleTime) {
+        this.cycleTime = cycleTime;
+        this.count = 0;
+        this.previousTagIndex = 0;
+        entries.reset();
+        return this;
+    }
+
+    public void add(Sample sample) {
+        entries.writeZigZag(sample.getTagIndex() - previousTagIndex);
+        previousTagIndex = sample.getTagIndex();
+        SampleCodec.writeValue(sample, entries);
+        entries.writeVarLong(sample.getStatusCode() & 0xFFFFFFFFL);
+        entries.writeZigZag(sample.getSourceTime() - cycleTime);
+        entries.writeZigZag(sample.getReceiveTime() - cycleTime);
+        count++;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public byte[] finish() {
+        frame.reset();
+        WireFormat.writeHeader(frame, WireFormat.KIND_FRAME);
+        frame.writeVarLong(cycleTime);
+        frame.writeVarLong(count);
+        frame.writeBytes(entries.buffer(), 0, entries.size());
+        return frame.toByteArray();
+    }
+}
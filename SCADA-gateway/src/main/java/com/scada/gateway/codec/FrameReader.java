@@ -0,0 +1,65 @@
+package com.scada.gateway.codec;
+
+import com.scada.gateway.model.Sample;
+
+/**
+ * Streaming decoder for {@link WireFormat#KIND_FRAME} records.
+ * <p>
+ * Entries are decoded one at a time into a caller-supplied {@link Sample}, so walking a
+ * frame of any size allocates nothing per tag:
+ * <pre>
+ * FrameReader frame = new FrameReader().wrap(record.value());
+ * while (frame.next(sample)) {
+ *     ...
+ * }
+ * </pre>
+ */
+public final class FrameReader {
+
+    private final BinaryReader reader = new BinaryReader();
+    private long cycleTime;
+    private int count;
+    private int remaining;
+    private int previousTagIndex;
+
+    public FrameReader wrap(byte[] bytes) {
+        reader.wrap(bytes);
+        byte kind = WireFormat.readHeader(reader);
+        if (kind != WireFormat.KIND_FRAME) {
+            throw new IllegalArgumentException("Expected a frame record, got kind " + kind);
+        }
+        cycleTime = reader.readVarLong();
+        count = (int) reader.readVarLong();
+        remaining = count;
+        previousTagIndex = 0;
+        return this;
+    }
+
+    public long getCycleTime() {
+        return cycleTime;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public boolean next(Sample target) {
+        if (remaining == 0) {
+            return false;
+        }
+        remaining--;
+
+        int tagIndex = previousTagIndex + (int) reader.readZigZag();
+        previousTagIndex = tagIndex;
+        byte type = reader.readByte();
+        long bits = SampleCodec.readValueBits(reader, type);
+        String text = type == WireFormat.TYPE_STRING ? reader.readString() : null;
+        int statusCode = (int) reader.readVarLong();
+        long sourceTime = cycleTime + reader.readZigZag();
+        long receiveTime = cycleTime + reader.readZigZag();
+
+        target.set(tagIndex, statusCode, sourceTime, 0, receiveTime)
+                .setRaw(SampleCodec.valueType(type), bits, text);
+        return true;
+    }
+}
@@ -0,0 +1,94 @@
+package com.scada.gateway.codec;
+
+import com.scada.gateway.model.Sample;
+
+/**
+ * Encodes and decodes single {@link Sample} records in the {@link WireFormat} layout.
+ */
+public final class SampleCodec {
+
+    private SampleCodec() {
+    }
+
+    public static byte[] encode(Sample sample) {
+        BinaryWriter writer = new BinaryWriter(32);
+        encode(sample, writer);
+        return writer.toByteArray();
+    }
+
+    public static void encode(Sample sample, BinaryWriter writer) {
+        WireFormat.writeHeader(writer, WireFormat.KIND_SAMPLE);
+        writer.writeVarLong(sample.getTagIndex());
+        writeValue(sample, writer);
+        writer.writeVarLong(sample.getStatusCode() & 0xFFFFFFFFL);
+        writer.writeVarLong(sample.getSourceTime());
+        writer.writeZigZag(sample.getServerTime() - sample.getSourceTime());
+        writer.writeZigZag(sample.getReceiveTime() - sample.getSourceTime());
+    }
+
+    public static Sample decode(byte[] bytes, Sample target) {
+        return decode(new BinaryReader().wrap(bytes), target);
+    }
+
+    public static Sample decode(BinaryReader reader, Sample target) {
+        byte kind = WireFormat.readHeader(reader);
+        if (kind != WireFormat.KIND_SAMPLE) {
+            throw new IllegalArgumentException("Expected a sample record, got kind " + kind);
+        }
+
+        int tagIndex = (int) reader.readVarLong();
+        byte type = reader.readByte();
+        long bits = readValueBits(reader, type);
+        String text = type == WireFormat.TYPE_STRING ? reader.readString() : null;
+        int statusCode = (int) reader.readVarLong();
+        long sourceTime = reader.readVarLong();
+        long serverTime = sourceTime + reader.readZigZag();
+        long receiveTime = sourceTime + reader.readZigZag();
+
+        return target.set(tagIndex, statusCode, sourceTime, serverTime, receiveTime)
+                .setRaw(valueType(type), bits, text);
+    }
+
+    static void writeValue(Sample sample, BinaryWriter writer) {
+        switch (sample.getValueType()) {
+            case NULL -> writer.writeByte(WireFormat.TYPE_NULL);
+            case BOOLEAN -> {
+                writer.writeByte(WireFormat.TYPE_BOOLEAN);
+                writer.writeByte(sample.getValueBits() != 0 ? 1 : 0);
+            }
+            case LONG -> {
+                writer.writeByte(WireFormat.TYPE_LONG);
+                writer.writeZigZag(sample.getValueBits());
+            }
+            case DOUBLE -> {
+                writer.writeByte(WireFormat.TYPE_DOUBLE);
+                writer.writeDouble(sample.doubleValue());
+            }
+            case STRING -> {
+                writer.writeByte(WireFormat.TYPE_STRING);
+                writer.writeString(sample.getText());
+            }
+        }
+    }
+
+    /** Reads the primitive part of a value; the caller reads the string itself for {@code TYPE_STRING}. */
+    static long readValueBits(BinaryReader reader, byte type) {
+        return switch (type) {
+            case WireFormat.TYPE_NULL, WireFormat.TYPE_STRING -> 0;
+            case WireFormat.TYPE_BOOLEAN -> reader.readByte() != 0 ? 1 : 0;
+            case WireFormat.TYPE_LONG -> reader.readZigZag();
+            case WireFormat.TYPE_DOUBLE -> Double.doubleToRawLongBits(reader.readDouble());
+            default -> throw new IllegalArgumentException("Unknown value type " + type);
+        };
+    }
+
+    static Sample.ValueType valueType(byte type) {
+        return switch (type) {
+            case WireFormat.TYPE_BOOLEAN -> Sample.ValueType.BOOLEAN;
+            case WireFormat.TYPE_LONG -> Sample.ValueType.LONG;
+            case WireFormat.TYPE_DOUBLE -> Sample.ValueType.DOUBLE;
+            case WireFormat.TYPE_STRING -> Sample.ValueType.STRING;
+            default -> Sample.ValueType.NULL;
+        };
+    }
+}
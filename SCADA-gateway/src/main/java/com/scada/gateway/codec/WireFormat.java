@@ -0,0 +1,73 @@
+package com.scada.gateway.codec;
+
+/**
+ * Binary wire format of tag records published by the gateway, version 1.
+ * <p>
+ * Every record starts with a three byte header: {@link #MAGIC}, {@link #VERSION} and the
+ * record kind. Integers are unsigned LEB128 varints, signed deltas are zigzag varints,
+ * doubles are 8 byte big-endian IEEE 754, strings are a varint length followed by UTF-8.
+ * Tags are identified by their numeric tag id (the compiled tag index); names and
+ * addresses travel in the record key and the tag dictionary, never in the value.
+ *
+ * <pre>
+ * SAMPLE (kind 1)
+ *   varint  tagId
+ *   value
+ *   varint  statusCode        (unsigned 32 bit OPC UA status)
+ *   varint  sourceTime        (epoch ms)
+ *   zigzag  serverTime  - sourceTime
+ *   zigzag  receiveTime - sourceTime
+ *
+ * FRAME (kind 2)
+ *   varint  cycleTime         (epoch ms, shared by all entries)
+ *   varint  count
+ *   count x entry:
+ *     zigzag  tagId - previous tagId
+ *     value
+ *     varint  statusCode
+ *     zigzag  sourceTime  - cycleTime
+ *     zigzag  receiveTime - cycleTime
+ *
+ * value
+ *   u8      type              (0 null, 1 boolean, 2 long, 3 double, 4 string)
+ *   type 1: u8 0/1, type 2: zigzag varint, type 3: 8 bytes, type 4: varint length + UTF-8
+ * </pre>
+ *
+ * Frames omit the server timestamp; it is only carried by single sample records.
+ */
+public final class WireFormat {
+
+    public static final byte MAGIC = 0x53;
+    public static final byte VERSION = 1;
+
+    public static final byte KIND_SAMPLE = 1;
+    public static final byte KIND_FRAME = 2;
+
+    public static final byte TYPE_NULL = 0;
+    public static final byte TYPE_BOOLEAN = 1;
+    public static final byte TYPE_LONG = 2;
+    public static final byte TYPE_DOUBLE = 3;
+    public static final byte TYPE_STRING = 4;
+
+    private WireFormat() {
+    }
+
+    /** Reads and validates the header and returns the record kind. */
+    static byte readHeader(BinaryReader reader) {
+        byte magic = reader.readByte();
+        byte version = reader.readByte();
+        if (magic != MAGIC) {
+            throw new IllegalArgumentException("Not a gateway record, magic 0x" + Integer.toHexString(magic & 0xFF));
+        }
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported record version " + version);
+        }
+        return reader.readByte();
+    }
+
+    static void writeHeader(BinaryWriter writer, byte kind) {
+        writer.writeByte(MAGIC);
+        writer.writeByte(VERSION);
+        writer.writeByte(kind);
+    }
+}
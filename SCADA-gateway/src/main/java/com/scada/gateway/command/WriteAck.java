@@ -0,0 +1,44 @@
+package com.scada.gateway.command;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.eclipse.milo.opcua.stack.core.StatusCodes;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+
+import java.time.Instant;
+
+/**
+ * Outcome of a {@link WriteCommand}. {@code coalesced} is set for commands that were superseded
+ * by a later command to the same tag in the same batch; they carry the status of that write.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WriteAck {
+    private String id;
+    private String serverId;
+    private String tagId;
+    private String path;
+    private long statusCode;
+    private String status;
+    private boolean good;
+    private boolean coalesced;
+    private Instant timestamp;
+
+    public static WriteAck of(WriteCommand command, long statusCode, boolean coalesced) {
+        return WriteAck.builder()
+                .id(command.getId())
+                .serverId(command.getServerId())
+                .tagId(command.getTagId())
+                .path(command.getPath())
+                .statusCode(statusCode)
+                .status(StatusCodes.lookup(statusCode).map(names -> names[0]).orElse("0x" + Long.toHexString(statusCode)))
+                .good(new StatusCode(statusCode).isGood())
+                .coalesced(coalesced)
+                .timestamp(Instant.now())
+                .build();
+    }
+}
@@ -0,0 +1,67 @@
+package com.scada.gateway.command;
+
+import com.scada.gateway.tag.CompiledTag;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collapses the commands of one batch to a single write per tag, the last one winning,
+ * and groups the remaining writes by server.
+ */
+final class WriteCoalescer {
+
+    private final Map<Integer, PendingWrite> byTag = new LinkedHashMap<>();
+
+    void add(CompiledTag tag, WriteCommand command) {
+        PendingWrite pending = byTag.get(tag.getIndex());
+        if (pending == null) {
+            byTag.put(tag.getIndex(), new PendingWrite(tag, command));
+        } else {
+            pending.supersede(command);
+        }
+    }
+
+    Map<String, List<PendingWrite>> byServer() {
+        Map<String, List<PendingWrite>> result = new LinkedHashMap<>();
+        for (PendingWrite pending : byTag.values()) {
+            result.computeIfAbsent(pending.getTag().getServerId(), id -> new ArrayList<>()).add(pending);
+        }
+        return result;
+    }
+
+    int size() {
+        return byTag.size();
+    }
+
+    static final class PendingWrite {
+
+        private final CompiledTag tag;
+        private final List<WriteCommand> superseded = new ArrayList<>(0);
+        private WriteCommand command;
+
+        PendingWrite(CompiledTag tag, WriteCommand command) {
+            this.tag = tag;
+            this.command = command;
+        }
+
+        void supersede(WriteCommand next) {
+            superseded.add(command);
+            command = next;
+        }
+
+        CompiledTag getTag() {
+            return tag;
+        }
+
+        WriteCommand getCommand() {
+            return command;
+        }
+
+        List<WriteCommand> getSuperseded() {
+            return superseded;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.scada.gateway.command;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Request to write a value to a tag. {@code tagId} is the configured address of the tag,
+ * as in {@link com.scada.gateway.model.TagValue}. Alternatively the tag can be addressed by
+ * its channel {@code path}, e.g. {@code plc-simulator-001/S7-1200-SIM-001/DB1_MotorControl/Motor Speed}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WriteCommand {
+    private String id;
+    private String serverId;
+    private String tagId;
+    private String path;
+    private Object value;
+    /** Time the command was issued, epoch milliseconds. */
+    private long timestamp;
+}
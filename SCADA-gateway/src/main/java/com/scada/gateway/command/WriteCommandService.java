@@ -0,0 +1,129 @@
+package com.scada.gateway.command;
+
+import com.scada.gateway.channel.ChannelModel;
+import com.scada.gateway.config.WriteCommandConfig;
+import com.scada.gateway.driver.DriverService;
+import com.scada.gateway.driver.DriverSession;
+import com.scada.gateway.event.EventRecorder;
+import com.scada.gateway.model.Status;
+import com.scada.gateway.tag.CompiledTag;
+import com.scada.gateway.tag.TagTable;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Executes batches of write commands against the server sessions.
+ * <p>
+ * Commands to the same tag are coalesced, so only the latest value of a batch is written,
+ * and the writes of each server go to its driver as one batch, which an OPC UA server receives
+ * in as few Write requests as its {@code MaxNodesPerWrite} allows. All servers are written
+ * concurrently. Every command is recorded in the event journal with its outcome.
+ */
+@Slf4j
+@Service
+public class WriteCommandService {
+
+    private final TagTable tagTable;
+    private final ChannelModel channelModel;
+    private final DriverService driverService;
+    private final WriteCommandConfig config;
+    private final EventRecorder events;
+
+    public WriteCommandService(TagTable tagTable, ChannelModel channelModel, DriverService driverService,
+                               WriteCommandConfig config, EventRecorder events) {
+        this.tagTable = tagTable;
+        this.channelModel = channelModel;
+        this.driverService = driverService;
+        this.config = config;
+        this.events = events;
+    }
+
+    /**
+     * Writes the commands and returns one acknowledgement per command.
+     */
+    public List<WriteAck> execute(List<WriteCommand> commands) {
+        List<WriteAck> acks = Collections.synchronizedList(new ArrayList<>(commands.size()));
+        WriteCoalescer coalescer = new WriteCoalescer();
+        long now = System.currentTimeMillis();
+
+        for (WriteCommand command : commands) {
+            CompiledTag tag = command.getPath() != null
+                    ? channelModel.findByPath(command.getPath())
+                    : tagTable.find(command.getServerId(), command.getTagId());
+            if (tag == null) {
+                reject(command, null, Status.BAD_NODE_ID_UNKNOWN, acks);
+            } else if (!tag.isWritable()) {
+                reject(command, tag, Status.BAD_NOT_WRITABLE, acks);
+            } else if (command.getTimestamp() > 0 && now - command.getTimestamp() > config.getMaxAge().toMillis()) {
+                reject(command, tag, Status.BAD_TIMEOUT, acks);
+            } else {
+                coalescer.add(tag, command);
+            }
+        }
+        if (coalescer.size() < commands.size() - acks.size()) {
+            log.debug("Coalesced {} write commands into {} writes", commands.size() - acks.size(), coalescer.size());
+        }
+
+        List<CompletableFuture<Void>> writes = new ArrayList<>();
+        for (Map.Entry<String, List<WriteCoalescer.PendingWrite>> entry : coalescer.byServer().entrySet()) {
+            writes.add(writeServer(entry.getKey(), entry.getValue(), acks));
+        }
+        try {
+            CompletableFuture.allOf(writes.toArray(CompletableFuture[]::new)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("Write batch failed: {}", e.getMessage());
+        }
+        return acks;
+    }
+
+    private void reject(WriteCommand command, CompiledTag tag, int status, List<WriteAck> acks) {
+        long statusCode = Status.unsigned(status);
+        acks.add(WriteAck.of(command, statusCode, false));
+        events.writeCommand(command.getServerId(), tag, statusCode, command.getValue());
+    }
+
+    private CompletableFuture<Void> writeServer(String serverId, List<WriteCoalescer.PendingWrite> pending,
+                                                List<WriteAck> acks) {
+        DriverSession session = driverService.getSession(serverId);
+        if (session == null) {
+            acknowledge(pending, Status.nCopies(pending.size(), Status.BAD_SERVER_NOT_CONNECTED), acks);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        List<CompiledTag> tags = pending.stream().map(WriteCoalescer.PendingWrite::getTag).toList();
+        List<Object> values = pending.stream().map(write -> write.getCommand().getValue()).toList();
+        return session.write(tags, values)
+                .orTimeout(config.getWriteTimeout().toMillis(), TimeUnit.MILLISECONDS)
+                .handle((statuses, error) -> {
+                    if (error != null) {
+                        log.error("Writing {} tags to {} failed: {}", tags.size(), serverId, error.getMessage());
+                        statuses = Status.nCopies(pending.size(),
+                                error instanceof TimeoutException ? Status.BAD_TIMEOUT : Status.BAD_UNEXPECTED_ERROR);
+                    }
+                    acknowledge(pending, statuses, acks);
+                    return null;
+                });
+    }
+
+    private void acknowledge(List<WriteCoalescer.PendingWrite> pending, int[] statuses, List<WriteAck> acks) {
+        for (int i = 0; i < pending.size(); i++) {
+            long code = Status.unsigned(statuses[i]);
+            WriteCoalescer.PendingWrite write = pending.get(i);
+            acks.add(WriteAck.of(write.getCommand(), code, false));
+            events.writeCommand(write.getTag().getServerId(), write.getTag(), code, write.getCommand().getValue());
+            for (WriteCommand superseded : write.getSuperseded()) {
+                acks.add(WriteAck.of(superseded, code, true));
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.scada.gateway.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "gateway.events")
+@Data
+public class EventJournalConfig {
+    private boolean enabled = true;
+    private String directory = "data/events";
+    private DataSize segmentSize = DataSize.ofMegabytes(16);
+    private DataSize maxDiskSize = DataSize.ofGigabytes(1);
+    private Duration retention = Duration.ofDays(30);
+}
@@ -0,0 +1,46 @@
+package com.scada.gateway.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "gateway.kafka")
+@Data
+public class KafkaSinkConfig {
+    private boolean enabled;
+    private String topic = "scada.tag-values";
+    private String dictionaryTopic = "scada.tag-dictionary";
+    /** Topic for alarm transitions; blank to not publish them. */
+    private String alarmTopic = "scada.alarms";
+    private Format format = Format.BINARY;
+    private Mode mode = Mode.RECORD;
+    private Spill spill = new Spill();
+
+    public enum Format {
+        BINARY,
+        JSON
+    }
+
+    public enum Mode {
+        /** One record per sample. */
+        RECORD,
+        /** One binary frame per polling cycle; subscription samples are still sent as records. */
+        FRAME
+    }
+
+    @Data
+    public static class Spill {
+        private boolean enabled = true;
+        private String directory = "data/spill";
+        private DataSize segmentSize = DataSize.ofMegabytes(64);
+        private DataSize maxDiskSize = DataSize.ofGigabytes(2);
+        private Duration retention = Duration.ofDays(7);
+        /** Records per second forwarded from the journal after an outage. */
+        private long drainRate = 5000;
+        private Duration retryDelay = Duration.ofSeconds(5);
+    }
+}
@@ -0,0 +1,74 @@
+package com.scada.gateway.config;
+
+import org.apache.commons.logging.Log;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.properties.source.ConfigurationProperty;
+import org.springframework.boot.context.properties.source.ConfigurationPropertyName;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySource;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.boot.context.properties.source.IterableConfigurationPropertySource;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.boot.logging.DeferredLogFactory;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.PropertySource;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Keeps configurations that still list their servers under {@code opcua.servers}, the name from
+ * before other protocols were supported, working: while {@code gateway.servers} is not set, the
+ * old properties are added to the environment under the new name and a deprecation warning is
+ * logged. Registered in {@code META-INF/spring.factories}.
+ */
+public class LegacyServersProperties implements EnvironmentPostProcessor {
+
+    public static final String LEGACY_PREFIX = "opcua.servers";
+    public static final String PREFIX = "gateway.servers";
+
+    private static final ConfigurationPropertyName LEGACY = ConfigurationPropertyName.of(LEGACY_PREFIX);
+    private static final ConfigurationPropertyName CURRENT = ConfigurationPropertyName.of(PREFIX);
+
+    private final Log log;
+
+    public LegacyServersProperties(DeferredLogFactory logFactory) {
+        this.log = logFactory.getLog(LegacyServersProperties.class);
+    }
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        of(ConfigurationPropertySources.get(environment)).ifPresent(legacy -> {
+            log.warn(LEGACY_PREFIX + " is deprecated, list the servers under " + PREFIX + " instead");
+            environment.getPropertySources().addLast(legacy);
+        });
+    }
+
+    /**
+     * The {@code opcua.servers} properties of {@code sources} renamed to {@code gateway.servers};
+     * empty if there are none or {@code gateway.servers} is set.
+     */
+    public static Optional<PropertySource<?>> of(Iterable<ConfigurationPropertySource> sources) {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        for (ConfigurationPropertySource source : sources) {
+            if (!(source instanceof IterableConfigurationPropertySource names)) {
+                continue;
+            }
+            for (ConfigurationPropertyName name : names) {
+                if (CURRENT.isAncestorOf(name)) {
+                    return Optional.empty();
+                }
+                if (LEGACY.isAncestorOf(name)) {
+                    ConfigurationProperty property = source.getConfigurationProperty(name);
+                    // Earlier sources take precedence, as in the environment.
+                    properties.putIfAbsent(PREFIX + name.toString().substring(LEGACY_PREFIX.length()),
+                            property.getValue());
+                }
+            }
+        }
+        return properties.isEmpty()
+                ? Optional.empty()
+                : Optional.of(new MapPropertySource("legacyServers", properties));
+    }
+}
@@ -0,0 +1,30 @@
+package com.scada.gateway.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Component
+@ConfigurationProperties(prefix = "gateway.scripts")
+@Data
+public class ScriptConfig {
+    private boolean enabled = true;
+    /** Compile scripts to bytecode; off interprets them. */
+    private boolean compile = true;
+    /** Longest time one script invocation may take. */
+    private Duration budget = Duration.ofNanos(200_000);
+    /** Consecutive invocations over budget after which a script is disabled. */
+    private int maxOverruns = 10;
+    /** Scripts for all tags below a server, device or block path, unless a tag has its own. */
+    private List<GroupScript> groups = new ArrayList<>();
+
+    @Data
+    public static class GroupScript {
+        private String path;
+        private String expression;
+    }
+}
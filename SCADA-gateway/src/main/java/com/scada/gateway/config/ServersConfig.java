@@ -0,0 +1,172 @@
+package com.scada.gateway.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The servers under {@code gateway.servers}, whatever their protocol, and their tags. The former
+ * {@code opcua.servers} is still read; see {@link LegacyServersProperties}.
+ */
+@Component
+@ConfigurationProperties(prefix = "gateway")
+@Data
+public class ServersConfig {
+    private List<ServerConfig> servers;
+
+    @Data
+    public static class ServerConfig {
+        public static final String OPC_UA = "opcua";
+        public static final String MODBUS_TCP = "modbus-tcp";
+
+        private String id;
+        private String name;
+        /** Protocol spoken with the server: {@code opcua} or {@code modbus-tcp}. */
+        private String protocol = OPC_UA;
+        /** {@code opc.tcp://host:port} for OPC UA, {@code modbus-tcp://host:port} for Modbus TCP. */
+        private String endpoint;
+        private String security;
+        private String username;
+        private String password;
+        private boolean enabled;
+        private int maxNodesPerRead;
+        private int maxNodesPerWrite;
+        /** Monitored items created, modified or deleted per call; {@code 0} uses the server's limit. */
+        private int maxMonitoredItemsPerCall;
+        private int maxInFlightReads = 4;
+        private AcquisitionMode mode = AcquisitionMode.POLLING;
+        private double publishingInterval = 1000;
+        private int queueSize = 1;
+        private long reconnectDelay = 5000;
+        private ModbusConfig modbus = new ModbusConfig();
+        private List<TagConfig> tags;
+
+        public boolean isProtocol(String name) {
+            return (protocol != null ? protocol : OPC_UA).equalsIgnoreCase(name);
+        }
+        
+        public AcquisitionMode modeOf(TagConfig tag) {
+            if (tag.getCalculation() != null) {
+                return AcquisitionMode.CALCULATED;
+            }
+            return tag.getMode() != null ? tag.getMode() : mode;
+        }
+    }
+
+    /**
+     * Settings of a Modbus TCP server.
+     */
+    @Data
+    public static class ModbusConfig {
+        private int unitId = 1;
+        /** Unused registers a read may span to merge two blocks into one request. */
+        private int gapTolerance = 8;
+        /** Registers per read request; the protocol allows at most 125. */
+        private int maxRegistersPerRead = 125;
+        /** Milliseconds to wait for a response. */
+        private long timeout = 3000;
+        /** Order of the words and bytes of 32 and 64 bit values unless a tag address says otherwise. */
+        private WordOrder wordOrder = WordOrder.ABCD;
+    }
+
+    @Data
+    public static class TagConfig {
+        /**
+         * Address on the server: an OPC UA NodeId or a Modbus register address such as
+         * {@code hr:100:float32}; optional for calculated tags.
+         */
+        private String nodeId;
+        private String name;
+        /** Controller the tag belongs to, e.g. {@code S7-1200-SIM-001}; optional. */
+        private String device;
+        /** Data block within the device, e.g. {@code DB1_MotorControl}; optional. */
+        private String block;
+        private String dataType;
+        private long pollingRate;
+        private boolean enabled;
+        private String unit;
+        private AcquisitionMode mode;
+        private Integer queueSize;
+        private Double rangeMin;
+        private Double rangeMax;
+        private Double deadband;
+        private Double deadbandPercent;
+        private boolean reportByException;
+        private long heartbeat;
+        private boolean writable;
+        private AlarmConfig alarms;
+        /** Expression that computes the published value from the acquired one; see {@code ScriptEngine}. */
+        private String script;
+        /** Makes this a calculated tag whose value is computed from other tags; see {@code CalculationEngine}. */
+        private CalculationConfig calculation;
+    }
+
+    /**
+     * Expression of a calculated tag, e.g. {@code #current * 0.69}, and the tags its variables
+     * refer to.
+     */
+    @Data
+    public static class CalculationConfig {
+        private String expression;
+        /**
+         * Variable name to input tag path. Paths without the server id are relative to the
+         * server of the calculated tag, e.g. {@code S7-1200-SIM-001/DB1_MotorControl/Motor Current}.
+         */
+        private Map<String, String> inputs = new LinkedHashMap<>();
+    }
+
+    /**
+     * Limit and alarm settings of a numeric tag; every alarm is optional.
+     */
+    @Data
+    public static class AlarmConfig {
+        private Double hiHi;
+        private Double hi;
+        private Double lo;
+        private Double loLo;
+        /** Largest change per second, in either direction, before a rate-of-change alarm. */
+        private Double rateOfChange;
+        private Double setpoint;
+        /** Largest distance from {@code setpoint} before a deviation alarm. */
+        private Double deviation;
+        /**
+         * Distance a value, or for rate-of-change alarms the change per second, must move back
+         * past a limit before the alarm clears.
+         */
+        private double hysteresis;
+        /** Milliseconds a condition must persist before the alarm is raised. */
+        private long onDelay;
+        /** Milliseconds a condition must be gone before the alarm is cleared. */
+        private long offDelay;
+    }
+    
+    /**
+     * Byte order of multi-register values, {@code A} being the most significant byte.
+     * {@code ABCD} is the big-endian order of the Modbus specification, {@code CDAB} swaps the
+     * words, {@code BADC} the bytes within each word and {@code DCBA} both.
+     */
+    public enum WordOrder {
+        ABCD,
+        CDAB,
+        BADC,
+        DCBA;
+
+        public boolean isWordSwap() {
+            return this == CDAB || this == DCBA;
+        }
+
+        public boolean isByteSwap() {
+            return this == BADC || this == DCBA;
+        }
+    }
+
+    public enum AcquisitionMode {
+        POLLING,
+        SUBSCRIPTION,
+        /** Computed by the gateway from other tags, never read from the server. */
+        CALCULATED
+    }
+}
\ No newline at end of file
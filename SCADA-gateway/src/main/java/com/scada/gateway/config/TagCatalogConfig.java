@@ -0,0 +1,31 @@
+package com.scada.gateway.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "gateway.catalog")
+@Data
+public class TagCatalogConfig {
+    private Source source = Source.YAML;
+    /** Tag indices reserved for tags added at runtime; {@code 0} sizes the table automatically. */
+    private int capacity;
+    private Duration pollInterval = Duration.ofSeconds(10);
+    /**
+     * YAML file with a {@code gateway.servers} section whose tags are applied whenever the file
+     * changes; import it with {@code spring.config.import} so it is also used at startup.
+     */
+    private String file;
+    private Duration fullReloadInterval = Duration.ofHours(1);
+    private int fetchSize = 1000;
+
+    public enum Source {
+        /** Tags are taken from {@code gateway.servers[].tags}. */
+        YAML,
+        /** Tags are read from the {@code tag_definition} table; servers still come from {@code gateway.servers}. */
+        JDBC
+    }
+}
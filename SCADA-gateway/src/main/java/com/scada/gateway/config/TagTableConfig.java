@@ -0,0 +1,43 @@
+package com.scada.gateway.config;
+
+import com.scada.gateway.catalog.JdbcTagCatalog;
+import com.scada.gateway.tag.TagTable;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class TagTableConfig {
+
+    /** Minimum number of indices reserved when tags can be added at runtime. */
+    private static final int MIN_CATALOG_CAPACITY = 1024;
+
+    @Bean
+    public TagTable tagTable(ServersConfig serversConfig, TagCatalogConfig catalogConfig,
+                             ObjectProvider<JdbcTagCatalog> jdbcCatalog) {
+        JdbcTagCatalog catalog = jdbcCatalog.getIfAvailable();
+        if (catalog == null) {
+            int capacity = catalogConfig.getCapacity();
+            if (capacity == 0 && catalogConfig.getFile() != null) {
+                capacity = Math.max(MIN_CATALOG_CAPACITY, 2 * countTags(serversConfig));
+            }
+            return TagTable.compile(serversConfig, capacity);
+        }
+
+        catalog.load();
+        int capacity = catalogConfig.getCapacity() > 0
+                ? catalogConfig.getCapacity()
+                : Math.max(MIN_CATALOG_CAPACITY, 2 * catalog.size());
+        return TagTable.compile(catalog.apply(serversConfig), capacity);
+    }
+
+    private static int countTags(ServersConfig config) {
+        int count = 0;
+        if (config.getServers() != null) {
+            for (ServersConfig.ServerConfig server : config.getServers()) {
+                count += server.getTags() != null ? server.getTags().size() : 0;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,20 @@
+package com.scada.gateway.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "gateway.trace")
+@Data
+public class TraceConfig {
+    /** How long tracing stays on when the request does not say. */
+    private Duration defaultDuration = Duration.ofMinutes(10);
+    /** Minimum time between two traced values of the same tag when the request does not say. */
+    private Duration defaultInterval = Duration.ofSeconds(1);
+    private Duration maxDuration = Duration.ofHours(4);
+    /** Upper bound on the tags a single request may switch on. */
+    private int maxTags = 1000;
+}
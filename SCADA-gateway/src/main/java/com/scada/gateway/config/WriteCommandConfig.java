@@ -0,0 +1,19 @@
+package com.scada.gateway.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "gateway.commands")
+@Data
+public class WriteCommandConfig {
+    private boolean enabled;
+    private String topic = "scada.write-commands";
+    private String ackTopic = "scada.write-acks";
+    /** Commands older than this are rejected instead of being written late. */
+    private Duration maxAge = Duration.ofSeconds(30);
+    private Duration writeTimeout = Duration.ofSeconds(10);
+}
@@ -0,0 +1,27 @@
+package com.scada.gateway.controller;
+
+import com.scada.gateway.alarm.AlarmEngine;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * Active alarms: {@code GET /api/alarms}. Raised and cleared alarms are in {@code /api/events}.
+ */
+@RestController
+@RequestMapping("/api/alarms")
+public class AlarmsController {
+
+    private final AlarmEngine alarms;
+
+    public AlarmsController(AlarmEngine alarms) {
+        this.alarms = alarms;
+    }
+
+    @GetMapping
+    public List<AlarmEngine.ActiveAlarm> getActiveAlarms() {
+        return alarms.getActive();
+    }
+}
@@ -0,0 +1,90 @@
+package com.scada.gateway.controller;
+
+import com.scada.gateway.channel.ChannelModel;
+import com.scada.gateway.channel.ChannelNode;
+import com.scada.gateway.model.Sample;
+import com.scada.gateway.model.TagValue;
+import com.scada.gateway.state.CurrentValueTable;
+import com.scada.gateway.tag.CompiledTag;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Browses the {@link ChannelModel}: {@code GET /api/channels?path=plc-simulator-001/S7-1200-SIM-001}
+ * describes a node, {@code /api/channels/values?path=...} returns the values of its subtree and
+ * {@code /api/channels/values?prefix=...} those of all tags whose path starts with the prefix.
+ */
+@RestController
+@RequestMapping("/api/channels")
+public class ChannelController {
+
+    private final ChannelModel channelModel;
+    private final CurrentValueTable currentValues;
+
+    public ChannelController(ChannelModel channelModel, CurrentValueTable currentValues) {
+        this.channelModel = channelModel;
+        this.currentValues = currentValues;
+    }
+
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> getNode(@RequestParam(defaultValue = "") String path) {
+        ChannelNode node = channelModel.getNode(path);
+        if (node == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("path", node.getPath());
+        result.put("name", node.getName());
+        result.put("level", node.getLevel());
+        result.put("tagCount", node.getTags().size());
+        List<Map<String, Object>> children = new ArrayList<>();
+        for (ChannelNode child : node.getChildren()) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("path", child.getPath());
+            entry.put("name", child.getName());
+            entry.put("level", child.getLevel());
+            entry.put("tagCount", child.getTags().size());
+            children.add(entry);
+        }
+        result.put("children", children);
+        List<Map<String, Object>> tags = new ArrayList<>();
+        for (CompiledTag tag : node.getOwnTags()) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("id", tag.getIndex());
+            entry.put("path", tag.getPath());
+            entry.put("name", tag.getName());
+            entry.put("address", tag.getAddress());
+            entry.put("dataType", tag.getDataType().name());
+            entry.put("writable", tag.isWritable());
+            tags.add(entry);
+        }
+        result.put("tags", tags);
+        return ResponseEntity.ok(result);
+    }
+
+    @GetMapping("/values")
+    public List<TagValue> getValues(@RequestParam(required = false) String path,
+                                    @RequestParam(required = false) String prefix) {
+        List<CompiledTag> tags = prefix != null
+                ? channelModel.findByPrefix(prefix)
+                : channelModel.getSubtree(path != null ? path : "");
+
+        List<TagValue> values = new ArrayList<>();
+        Sample sample = new Sample();
+        for (CompiledTag tag : tags) {
+            if (currentValues.read(tag.getIndex(), sample)) {
+                values.add(TagValue.of(tag, sample));
+            }
+        }
+        return values;
+    }
+}
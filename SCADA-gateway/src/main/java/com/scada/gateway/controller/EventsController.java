@@ -0,0 +1,40 @@
+package com.scada.gateway.controller;
+
+import com.scada.gateway.event.Event;
+import com.scada.gateway.event.EventRecorder;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Reads the event journal: {@code GET /api/events?from=2024-05-01T00:00:00Z&to=...&limit=500}.
+ * Without {@code from} the last hour is returned.
+ */
+@RestController
+@RequestMapping("/api/events")
+public class EventsController {
+
+    private static final int MAX_LIMIT = 10_000;
+
+    private final EventRecorder events;
+
+    public EventsController(EventRecorder events) {
+        this.events = events;
+    }
+
+    @GetMapping
+    public List<Event> getEvents(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(defaultValue = "1000") int limit) {
+        Instant end = to != null ? to : Instant.now();
+        Instant start = from != null ? from : end.minus(Duration.ofHours(1));
+        return events.query(start.toEpochMilli(), end.toEpochMilli(), Math.max(1, Math.min(limit, MAX_LIMIT)));
+    }
+}
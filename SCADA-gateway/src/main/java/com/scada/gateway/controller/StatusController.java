@@ -1,24 +1,40 @@
 package com.scada.gateway.controller;
 
+import com.scada.gateway.driver.DriverService;
+import com.scada.gateway.driver.DriverSession;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.time.LocalDateTime;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 @RestController
 @RequestMapping("/api/status")
 public class StatusController {
 
+    private final DriverService driverService;
+
+    public StatusController(DriverService driverService) {
+        this.driverService = driverService;
+    }
+
     @GetMapping
     public Map<String, Object> getStatus() {
         Map<String, Object> status = new HashMap<>();
         status.put("server", "SCADA Gateway");
         status.put("status", "RUNNING");
         status.put("time", LocalDateTime.now().toString());
-        status.put("opcua", "CONNECTING");
+
+        // Session states by protocol, e.g. "opcua": {"plc-1": "CONNECTED"}.
+        Map<String, Map<String, String>> protocols = new LinkedHashMap<>();
+        for (DriverSession session : driverService.getSessions()) {
+            protocols.computeIfAbsent(session.getProtocol(), protocol -> new LinkedHashMap<>())
+                    .put(session.getId(), session.getState().name());
+        }
+        status.putAll(protocols);
         return status;
     }
-}
\ No newline at end of file
+}
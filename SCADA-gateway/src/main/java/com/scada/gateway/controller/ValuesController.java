@@ -0,0 +1,51 @@
+package com.scada.gateway.controller;
+
+import com.scada.gateway.model.Sample;
+import com.scada.gateway.model.TagValue;
+import com.scada.gateway.state.CurrentValueTable;
+import com.scada.gateway.tag.CompiledTag;
+import com.scada.gateway.tag.TagTable;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/values")
+public class ValuesController {
+
+    private final TagTable tagTable;
+    private final CurrentValueTable currentValues;
+
+    public ValuesController(TagTable tagTable, CurrentValueTable currentValues) {
+        this.tagTable = tagTable;
+        this.currentValues = currentValues;
+    }
+
+    @GetMapping
+    public List<TagValue> getValues() {
+        List<TagValue> values = new ArrayList<>();
+        Sample sample = new Sample();
+        for (CompiledTag tag : tagTable.getTags()) {
+            if (currentValues.read(tag.getIndex(), sample)) {
+                values.add(TagValue.of(tag, sample));
+            }
+        }
+        return values;
+    }
+
+    @GetMapping("/{serverId}")
+    public List<TagValue> getServerValues(@PathVariable String serverId) {
+        List<TagValue> values = new ArrayList<>();
+        Sample sample = new Sample();
+        for (CompiledTag tag : tagTable.getServerTags(serverId)) {
+            if (currentValues.read(tag.getIndex(), sample)) {
+                values.add(TagValue.of(tag, sample));
+            }
+        }
+        return values;
+    }
+}
@@ -0,0 +1,79 @@
+package com.scada.gateway.driver;
+
+import com.scada.gateway.model.Sample;
+import com.scada.gateway.model.Status;
+import com.scada.gateway.tag.CompiledTag;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Consumer;
+
+/**
+ * Protocol-specific part of the acquisition of one server: everything that talks to the
+ * device. A driver is created per {@code servers[]} entry by the {@link DriverFactory} of its
+ * protocol and driven by a {@link DriverSession}, which owns what all protocols share: the
+ * connect loop, the rate-group scheduler and the acquisition pipeline with its current values,
+ * filters and sinks.
+ * <p>
+ * Values are handed to the session as {@link Sample}s, which may be reused once the consumer
+ * returns. Status codes are raw 32-bit values in the numbering of {@link Status}, the same as
+ * in samples.
+ *
+ * @param <R> a read request as planned by {@link #planReads}
+ */
+public interface Driver<R> {
+
+    /**
+     * Opens the connection. The session retries only this initial connect: it is called until it
+     * succeeds, {@link #disconnect()} and the reconnect delay of the server lying between two
+     * attempts, and never again afterwards. Recovering a connection lost later on is up to the
+     * driver, e.g. by reconnecting on the next request, and {@link #isConnected()} has to report
+     * the connection down meanwhile.
+     */
+    void connect() throws Exception;
+
+    /** Whether the connection to the server is up right now. */
+    boolean isConnected();
+
+    /**
+     * Splits the tags of one rate group into as few read requests as the protocol and server
+     * allow. Called when a group is created or changed, not per cycle.
+     */
+    List<R> planReads(List<CompiledTag> tags);
+
+    /**
+     * Sends one read request and passes the value of each of its tags to {@code values}. The
+     * returned stage completes once all values were passed on, exceptionally if the request
+     * failed. May block to throttle the calling rate group.
+     */
+    CompletionStage<?> read(R request, Consumer<Sample> values) throws InterruptedException;
+
+    /**
+     * Writes one value per tag. The future completes with one status code per tag, in order.
+     */
+    CompletableFuture<int[]> write(List<CompiledTag> tags, List<Object> values);
+
+    /**
+     * Whether the server reports changes by itself. Tags in subscription mode are polled at
+     * their rate on servers that do not.
+     */
+    default boolean supportsSubscriptions() {
+        return false;
+    }
+
+    /**
+     * Brings the subscriptions of the server in line with {@code tags}, all subscribed tags,
+     * and passes reported values to {@code values}. Called after connecting and whenever the
+     * tags changed.
+     */
+    default void subscribe(List<CompiledTag> tags, Consumer<Sample> values) {
+    }
+
+    /** Called with the current tags of the server whenever they changed, connected or not. */
+    default void tagsChanged(List<CompiledTag> tags) {
+    }
+
+    /** Closes the connection; also called after a failed {@link #connect()}. */
+    void disconnect();
+}
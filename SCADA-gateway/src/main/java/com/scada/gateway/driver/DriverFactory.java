@@ -0,0 +1,20 @@
+package com.scada.gateway.driver;
+
+import com.scada.gateway.config.ServersConfig;
+import com.scada.gateway.event.EventRecorder;
+import com.scada.gateway.tag.TagTable;
+
+/**
+ * Creates the {@link Driver}s of one protocol. Factories are beans; the {@link DriverService}
+ * picks the one whose protocol matches {@code servers[].protocol}.
+ */
+public interface DriverFactory {
+
+    /** Value of {@code servers[].protocol} this factory serves, e.g. {@code opcua}. */
+    String getProtocol();
+
+    /**
+     * @throws IllegalArgumentException if the server settings cannot be used with this protocol
+     */
+    Driver<?> create(ServersConfig.ServerConfig serverConfig, TagTable tagTable, EventRecorder events);
+}
@@ -0,0 +1,125 @@
+package com.scada.gateway.driver;
+
+import com.scada.gateway.config.ServersConfig;
+import com.scada.gateway.event.EventRecorder;
+import com.scada.gateway.pipeline.AcquisitionPipeline;
+import com.scada.gateway.tag.TagTable;
+import com.scada.gateway.tag.TagTableDiff;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Starts a {@link DriverSession} for every enabled server, with the driver of the factory
+ * matching its {@code protocol}. All sessions share the tag table and the acquisition pipeline.
+ */
+@Slf4j
+@Service
+public class DriverService {
+
+    private final ServersConfig config;
+    private final List<DriverFactory> factories;
+    private final TagTable tagTable;
+    private final AcquisitionPipeline pipeline;
+    private final EventRecorder events;
+    private final Map<String, DriverSession> sessions = new LinkedHashMap<>();
+    private final ExecutorService connectExecutor;
+
+    public DriverService(ServersConfig config, List<DriverFactory> factories, TagTable tagTable,
+                         AcquisitionPipeline pipeline, EventRecorder events) {
+        this.config = config;
+        this.factories = factories;
+        this.tagTable = tagTable;
+        this.pipeline = pipeline;
+        this.events = events;
+        this.connectExecutor = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("driver-connect-", 0).factory());
+    }
+
+    @PostConstruct
+    public void init() {
+        if (config.getServers() != null) {
+            for (ServersConfig.ServerConfig serverConfig : config.getServers()) {
+                if (!serverConfig.isEnabled()) continue;
+
+                if (sessions.containsKey(serverConfig.getId())) {
+                    log.warn("Duplicate server id {}, skipped", serverConfig.getId());
+                    continue;
+                }
+                DriverFactory factory = factoryOf(serverConfig);
+                if (factory == null) {
+                    log.error("No driver for protocol '{}' of server {}, skipped",
+                            serverConfig.getProtocol(), serverConfig.getId());
+                    continue;
+                }
+                try {
+                    Driver<?> driver = factory.create(serverConfig, tagTable, events);
+                    sessions.put(serverConfig.getId(), new DriverSession(serverConfig, driver, tagTable, pipeline, events));
+                } catch (IllegalArgumentException e) {
+                    log.error("Server {} skipped: {}", serverConfig.getId(), e.getMessage());
+                }
+            }
+        }
+
+        if (sessions.isEmpty()) {
+            log.warn("No enabled server found");
+            return;
+        }
+
+        log.info("Starting {} server sessions", sessions.size());
+        sessions.values().forEach(session -> session.start(connectExecutor));
+        tagTable.addListener(this::onTagTableChanged);
+    }
+
+    private DriverFactory factoryOf(ServersConfig.ServerConfig serverConfig) {
+        for (DriverFactory factory : factories) {
+            if (serverConfig.isProtocol(factory.getProtocol())) {
+                return factory;
+            }
+        }
+        return null;
+    }
+
+    private void onTagTableChanged(TagTableDiff diff) {
+        for (String serverId : diff.affectedServers()) {
+            DriverSession session = sessions.get(serverId);
+            if (session != null) {
+                session.reconfigure();
+            } else {
+                log.warn("Tags changed for unknown or disabled server {}, ignored", serverId);
+            }
+        }
+    }
+
+    public Collection<DriverSession> getSessions() {
+        return Collections.unmodifiableCollection(sessions.values());
+    }
+
+    public DriverSession getSession(String serverId) {
+        return sessions.get(serverId);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        log.info("Shutting down server sessions...");
+
+        sessions.values().parallelStream().forEach(DriverSession::stop);
+
+        connectExecutor.shutdownNow();
+        try {
+            connectExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
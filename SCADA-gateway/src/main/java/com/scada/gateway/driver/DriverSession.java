@@ -0,0 +1,284 @@
+package com.scada.gateway.driver;
+
+import com.scada.gateway.acquisition.RateGroup;
+import com.scada.gateway.acquisition.RateGroupScheduler;
+import com.scada.gateway.config.ServersConfig;
+import com.scada.gateway.event.EventRecorder;
+import com.scada.gateway.model.Sample;
+import com.scada.gateway.model.Status;
+import com.scada.gateway.pipeline.AcquisitionCycle;
+import com.scada.gateway.pipeline.AcquisitionPipeline;
+import com.scada.gateway.tag.CompiledTag;
+import com.scada.gateway.tag.TagTable;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.milo.opcua.stack.core.StatusCodes;
+import org.eclipse.milo.opcua.stack.core.UaException;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Connection, scheduler and subscription state of a single server, whatever its protocol.
+ * The session connects through its {@link Driver}, polls the tags of each rate group with the
+ * read requests the driver planned for the group and publishes all values through the
+ * acquisition pipeline; everything protocol-specific is left to the driver.
+ * <p>
+ * Every session connects and acquires independently of the others, so an unreachable
+ * controller only keeps retrying its own connection. The session retries the initial connect
+ * only; a connection lost afterwards is recovered by the driver.
+ */
+@Slf4j
+public class DriverSession {
+
+    public enum State {
+        CONNECTING,
+        CONNECTED,
+        /** Connected before, but the driver reports the connection down. */
+        DISCONNECTED,
+        STOPPED
+    }
+
+    @Getter
+    private final ServersConfig.ServerConfig serverConfig;
+    private final Driver<Object> driver;
+    private final TagTable tagTable;
+    private final AcquisitionPipeline pipeline;
+    private final EventRecorder events;
+    private volatile List<CompiledTag> tags;
+    private volatile State state = State.CONNECTING;
+    private RateGroupScheduler scheduler;
+    private final Map<RateGroup, List<Object>> readPlans = new ConcurrentHashMap<>();
+    private final AtomicLong readErrors = new AtomicLong();
+    private volatile boolean running = true;
+
+    @SuppressWarnings("unchecked")
+    public DriverSession(ServersConfig.ServerConfig serverConfig, Driver<?> driver, TagTable tagTable,
+                         AcquisitionPipeline pipeline, EventRecorder events) {
+        this.serverConfig = serverConfig;
+        // Requests only ever go back to the driver that planned them.
+        this.driver = (Driver<Object>) driver;
+        this.tagTable = tagTable;
+        this.pipeline = pipeline;
+        this.events = events;
+        this.tags = tagTable.getServerTags(serverConfig.getId());
+    }
+
+    public String getId() {
+        return serverConfig.getId();
+    }
+
+    public String getProtocol() {
+        return serverConfig.getProtocol() != null ? serverConfig.getProtocol() : ServersConfig.ServerConfig.OPC_UA;
+    }
+
+    public State getState() {
+        State current = state;
+        return current == State.CONNECTED && !driver.isConnected() ? State.DISCONNECTED : current;
+    }
+
+    public void start(ExecutorService connectExecutor) {
+        connectExecutor.submit(this::connectLoop);
+    }
+
+    private void connectLoop() {
+        boolean failing = false;
+        while (running) {
+            try {
+                connect();
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                if (!running) {
+                    // Stopped while connecting; stop() closed the connection.
+                    return;
+                }
+                log.error("Failed to connect to {} server {}: {}", getProtocol(), serverConfig.getName(), e.getMessage());
+                if (!failing) {
+                    // Only the first attempt of a series is journaled, not every retry.
+                    events.connectFailed(serverConfig.getId(), statusOf(e));
+                    failing = true;
+                }
+                driver.disconnect();
+            }
+
+            try {
+                Thread.sleep(serverConfig.getReconnectDelay());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private static long statusOf(Exception e) {
+        return UaException.extract(e)
+                .map(ua -> ua.getStatusCode().getValue())
+                .orElse(e instanceof IOException ? StatusCodes.Bad_CommunicationError : StatusCodes.Bad_UnexpectedError);
+    }
+
+    private void connect() throws Exception {
+        log.info("Connecting to {} server {} at {}", getProtocol(), serverConfig.getName(), serverConfig.getEndpoint());
+        driver.connect();
+
+        log.atInfo()
+                .addKeyValue("server", serverConfig.getId())
+                .addKeyValue("endpoint", serverConfig.getEndpoint())
+                .log("Connected to {} server {}", getProtocol(), serverConfig.getName());
+
+        synchronized (this) {
+            if (!running) {
+                driver.disconnect();
+                return;
+            }
+            state = State.CONNECTED;
+            startPolling();
+            driver.subscribe(subscribedTags(), pipeline::publish);
+        }
+    }
+
+    /**
+     * Picks up the current tags of this server from the tag table and applies only the
+     * difference on the open connection: rate groups are regrouped in place and only changed
+     * groups are replanned, while the driver updates its subscriptions.
+     */
+    public synchronized void reconfigure() {
+        tags = tagTable.getServerTags(serverConfig.getId());
+        driver.tagsChanged(tags);
+        if (state != State.CONNECTED) {
+            // The next successful connect starts with the new tags.
+            return;
+        }
+
+        scheduler.update(polledTags());
+        List<RateGroup> groups = scheduler.getGroups();
+        readPlans.keySet().retainAll(groups);
+        groups.forEach(group -> readPlans.computeIfAbsent(group, this::planReads));
+        driver.subscribe(subscribedTags(), pipeline::publish);
+    }
+
+    private void startPolling() {
+        scheduler = new RateGroupScheduler(serverConfig.getId(), polledTags(), this::readGroup);
+
+        readPlans.clear();
+        for (RateGroup group : scheduler.getGroups()) {
+            readPlans.put(group, planReads(group));
+        }
+
+        scheduler.start();
+    }
+
+    private List<CompiledTag> polledTags() {
+        boolean subscriptions = driver.supportsSubscriptions();
+        return tags.stream()
+                .filter(tag -> tag.getMode() == ServersConfig.AcquisitionMode.POLLING
+                        || tag.getMode() == ServersConfig.AcquisitionMode.SUBSCRIPTION && !subscriptions)
+                .toList();
+    }
+
+    private List<CompiledTag> subscribedTags() {
+        if (!driver.supportsSubscriptions()) {
+            return List.of();
+        }
+        return tags.stream()
+                .filter(tag -> tag.getMode() == ServersConfig.AcquisitionMode.SUBSCRIPTION)
+                .toList();
+    }
+
+    private List<Object> planReads(RateGroup group) {
+        List<Object> requests = List.copyOf(driver.planReads(group.getTags()));
+        log.debug("Rate group {} of {}: {} tags in {} requests",
+                group.getName(), serverConfig.getId(), group.getTags().size(), requests.size());
+        return requests;
+    }
+
+    /**
+     * Sends the read requests of one cycle of the group. The returned future completes once the
+     * last response arrived, which is when the scheduler counts the cycle as finished.
+     */
+    private CompletableFuture<?> readGroup(RateGroup group) {
+        List<Object> requests = readPlans.get(group);
+        if (requests == null) {
+            // Group replaced by a reconfiguration that has not planned its reads yet.
+            requests = planReads(group);
+        }
+        if (requests.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        AcquisitionCycle cycle = pipeline.beginCycle(
+                serverConfig.getId(), group.getPeriodMillis(), requests.size(), group.getTagIndices().length);
+        Consumer<Sample> values = sample -> pipeline.publish(sample, cycle);
+
+        for (int i = 0; i < requests.size(); i++) {
+            try {
+                if (!running) {
+                    throw new InterruptedException();
+                }
+                driver.read(requests.get(i), values).whenComplete((ignored, error) -> {
+                    if (error != null) {
+                        logReadError(error instanceof CompletionException && error.getCause() != null
+                                ? error.getCause() : error);
+                    }
+                    pipeline.completeRequests(cycle, 1);
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                pipeline.completeRequests(cycle, requests.size() - i);
+                break;
+            } catch (RuntimeException e) {
+                logReadError(e);
+                pipeline.completeRequests(cycle, 1);
+            }
+        }
+        return cycle.getCompletion();
+    }
+
+    /**
+     * Logs the first failed read request and every 100th after it, so an unreachable server
+     * does not log once per request and cycle.
+     */
+    private void logReadError(Throwable error) {
+        long errors = readErrors.incrementAndGet();
+        if (errors == 1 || errors % 100 == 0) {
+            log.atError()
+                    .addKeyValue("server", serverConfig.getId())
+                    .addKeyValue("readErrors", errors)
+                    .log("Read request failed: {}", error.getMessage());
+        }
+    }
+
+    /**
+     * Writes one value per tag through the driver. The future completes with one status code
+     * per tag, in order; {@code Bad_ServerNotConnected} for all of them before the first connect.
+     */
+    public CompletableFuture<int[]> write(List<CompiledTag> writeTags, List<Object> values) {
+        if (state != State.CONNECTED) {
+            return CompletableFuture.completedFuture(Status.nCopies(writeTags.size(), Status.BAD_SERVER_NOT_CONNECTED));
+        }
+        return driver.write(writeTags, values);
+    }
+
+    public void stop() {
+        running = false;
+        RateGroupScheduler current;
+        synchronized (this) {
+            state = State.STOPPED;
+            current = scheduler;
+        }
+        // Outside the lock, so tag table changes are not held up while the workers finish.
+        if (current != null) {
+            current.stop();
+        }
+        driver.disconnect();
+        log.info("Disconnected from {} server {}", getProtocol(), serverConfig.getName());
+    }
+}
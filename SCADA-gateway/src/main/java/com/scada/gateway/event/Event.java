@@ -0,0 +1,15 @@
+package com.scada.gateway.event;
+
+/**
+ * One record of the {@link EventJournal}. {@code tagIndex} is {@code -1} for events that do not
+ * concern a tag, {@code value} is {@code NaN} when there is none.
+ */
+public record Event(long sequence, long timestamp, EventType type, int severity, int tagIndex,
+                    int code, int previousCode, double value, String source) {
+
+    public static final int NO_TAG = -1;
+
+    public static final int INFO = 0;
+    public static final int WARNING = 1;
+    public static final int ERROR = 2;
+}
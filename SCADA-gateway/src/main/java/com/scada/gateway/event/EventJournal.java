@@ -0,0 +1,197 @@
+package com.scada.gateway.event;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Append-only journal of fixed-size binary event records in rotating memory-mapped segments.
+ * <p>
+ * Appending takes a sequence number and a slot with two atomic increments and writes the record
+ * straight into the mapping, so any number of threads append without a lock; only the thread
+ * that finds the current segment full creates the next one. Time range queries binary search the
+ * sparse index of each segment and scan from there. When a new segment would exceed
+ * {@code maxDiskBytes}, or the newest record of the oldest segment is older than the retention,
+ * the oldest segment is deleted; the segment being rolled over is always kept. Records reach the page cache immediately and the disk when a segment is rolled or
+ * the journal is closed.
+ */
+@Slf4j
+public class EventJournal implements Closeable {
+
+    private static final String SUFFIX = ".events";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final long retentionMillis;
+    /** Oldest first; iterated by readers without locking. */
+    private final ConcurrentLinkedDeque<EventSegment> segments = new ConcurrentLinkedDeque<>();
+    private final Map<String, byte[]> sources = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private volatile EventSegment tail;
+    private long nextSegment;
+
+    public EventJournal(Path directory, int segmentSize, long maxDiskBytes, long retentionMillis) throws IOException {
+        if (segmentSize < EventSegment.HEADER_SIZE + EventSegment.RECORD_SIZE) {
+            throw new IllegalArgumentException("Segment size too small: " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = (int) Math.max(2, maxDiskBytes / segmentSize);
+        this.retentionMillis = retentionMillis;
+
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(f -> f.getFileName().toString().endsWith(SUFFIX)).sorted().toList()) {
+                try {
+                    segments.addLast(EventSegment.open(file));
+                } catch (IOException e) {
+                    log.error("Skipping unreadable event segment {}: {}", file, e.getMessage());
+                }
+            }
+        }
+        EventSegment last = segments.peekLast();
+        if (last != null) {
+            nextSegment = last.getSegment() + 1;
+            sequence.set(last.getLastSequence());
+            tail = last;
+            log.info("Opened event journal {} with {} segments, last event {}",
+                    directory, segments.size(), last.getLastSequence());
+        } else {
+            tail = roll(null);
+        }
+    }
+
+    /**
+     * Records an event stamped with the current time and returns its sequence number, or
+     * {@code 0} if it could not be written.
+     */
+    public long append(EventType type, int severity, String source, int tagIndex,
+                       int code, int previousCode, double value) {
+        long number = sequence.incrementAndGet();
+        long timestamp = System.currentTimeMillis();
+        byte[] encodedSource = source != null ? sources.computeIfAbsent(source, EventJournal::encodeSource) : new byte[0];
+
+        EventSegment segment = tail;
+        while (segment != null
+                && !segment.append(number, timestamp, type, severity, tagIndex, code, previousCode, value, encodedSource)) {
+            segment = roll(segment);
+        }
+        if (segment == null) {
+            dropped.increment();
+            return 0;
+        }
+        return number;
+    }
+
+    /**
+     * Cuts {@code source} to the record's field size at a character boundary.
+     */
+    private static byte[] encodeSource(String source) {
+        byte[] bytes = source.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= EventSegment.SOURCE_SIZE) {
+            return bytes;
+        }
+        int length = EventSegment.SOURCE_SIZE;
+        while (length > 0 && (bytes[length] & 0xC0) == 0x80) {
+            length--;
+        }
+        byte[] truncated = new byte[length];
+        System.arraycopy(bytes, 0, truncated, 0, length);
+        return truncated;
+    }
+
+    /**
+     * Replaces the full segment {@code full} with a new one, unless another thread already did.
+     * Returns the segment to append to, {@code null} if none could be created.
+     */
+    private synchronized EventSegment roll(EventSegment full) {
+        if (full != null && tail != full) {
+            return tail;
+        }
+        try {
+            long now = System.currentTimeMillis();
+            while (!segments.isEmpty()) {
+                EventSegment oldest = segments.getFirst();
+                if (oldest == full || oldest == tail
+                        || segments.size() < maxSegments && now - oldest.getNewest() <= retentionMillis) {
+                    break;
+                }
+                segments.removeFirst();
+                oldest.delete();
+                log.info("Deleted event segment {}", oldest.getFile().getFileName());
+            }
+            long number = nextSegment++;
+            Path file = directory.resolve(String.format("%020d%s", number, SUFFIX));
+            EventSegment segment = EventSegment.create(file, number, segmentSize, now);
+            if (full != null) {
+                full.force();
+            }
+            segments.addLast(segment);
+            tail = segment;
+            return segment;
+        } catch (IOException e) {
+            log.error("Failed to roll event journal {}: {}", directory, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} events stamped between {@code from} and {@code to} inclusive,
+     * epoch milliseconds, oldest first.
+     */
+    public List<Event> query(long from, long to, int limit) {
+        List<Event> result = new ArrayList<>();
+        for (EventSegment segment : segments) {
+            int end = segment.filledSlots();
+            for (int slot = segment.firstSlotFrom(from); slot < end; slot++) {
+                if (segment.isPast(slot, to)) {
+                    break;
+                }
+                Event event = segment.read(slot);
+                if (event != null && event.timestamp() >= from && event.timestamp() <= to) {
+                    result.add(event);
+                    if (result.size() >= limit) {
+                        return result;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    public long getLastSequence() {
+        return sequence.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public long getDiskBytes() {
+        return (long) segments.size() * segmentSize;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (EventSegment segment : segments) {
+            segment.force();
+            segment.close();
+        }
+        segments.clear();
+        tail = null;
+    }
+}
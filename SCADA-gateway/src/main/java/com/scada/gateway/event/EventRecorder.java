@@ -0,0 +1,100 @@
+package com.scada.gateway.event;
+
+import com.scada.gateway.alarm.AlarmCondition;
+import com.scada.gateway.config.EventJournalConfig;
+import com.scada.gateway.tag.CompiledTag;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Records gateway events in the {@link EventJournal} ({@code gateway.events}). All methods are
+ * cheap, never block on other writers and do nothing when the journal is disabled.
+ */
+@Slf4j
+@Component
+public class EventRecorder {
+
+    private final EventJournal journal;
+
+    public EventRecorder(EventJournalConfig config) {
+        this.journal = config.isEnabled() ? openJournal(config) : null;
+    }
+
+    private static EventJournal openJournal(EventJournalConfig config) {
+        try {
+            return new EventJournal(Path.of(config.getDirectory()), Math.toIntExact(config.getSegmentSize().toBytes()),
+                    config.getMaxDiskSize().toBytes(), config.getRetention().toMillis());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open event journal " + config.getDirectory(), e);
+        }
+    }
+
+    public void record(EventType type, int severity, String source, int tagIndex, int code, int previousCode,
+                       double value) {
+        if (journal != null) {
+            journal.append(type, severity, source, tagIndex, code, previousCode, value);
+        }
+    }
+
+    public void connected(String serverId) {
+        record(EventType.CONNECTED, Event.INFO, serverId, Event.NO_TAG, 0, 0, Double.NaN);
+    }
+
+    public void disconnected(String serverId) {
+        record(EventType.DISCONNECTED, Event.WARNING, serverId, Event.NO_TAG, 0, 0, Double.NaN);
+    }
+
+    public void connectFailed(String serverId, long statusCode) {
+        record(EventType.CONNECT_FAILED, Event.ERROR, serverId, Event.NO_TAG, (int) statusCode, 0, Double.NaN);
+    }
+
+    public void qualityChanged(CompiledTag tag, int previousStatus, int status) {
+        int severity = (status >>> 31) != 0 ? Event.WARNING : Event.INFO;
+        record(EventType.QUALITY_CHANGED, severity, tag.getServerId(), tag.getIndex(), status, previousStatus, Double.NaN);
+    }
+
+    public void alarm(CompiledTag tag, AlarmCondition condition, boolean raised, double value) {
+        record(raised ? EventType.ALARM_RAISED : EventType.ALARM_CLEARED, raised ? condition.getSeverity() : Event.INFO,
+                tag.getServerId(), tag.getIndex(), condition.getCode(), 0, value);
+    }
+
+    public void scriptDisabled(CompiledTag tag) {
+        record(EventType.SCRIPT_DISABLED, Event.ERROR, tag.getServerId(), tag.getIndex(), 0, 0, Double.NaN);
+    }
+
+    /**
+     * Records the outcome of a write command; {@code tag} is {@code null} if it could not be resolved.
+     */
+    public void writeCommand(String serverId, CompiledTag tag, long statusCode, Object value) {
+        double number = value instanceof Number n ? n.doubleValue()
+                : value instanceof Boolean b ? (b ? 1 : 0)
+                : Double.NaN;
+        int severity = (statusCode >>> 31) != 0 ? Event.WARNING : Event.INFO;
+        record(EventType.WRITE_COMMAND, severity, tag != null ? tag.getServerId() : serverId,
+                tag != null ? tag.getIndex() : Event.NO_TAG, (int) statusCode, 0, number);
+    }
+
+    /**
+     * Returns up to {@code limit} events between {@code from} and {@code to}, epoch milliseconds, oldest first.
+     */
+    public List<Event> query(long from, long to, int limit) {
+        return journal != null ? journal.query(from, to, limit) : List.of();
+    }
+
+    @PreDestroy
+    public void close() {
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                log.warn("Failed to close event journal: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.scada.gateway.event;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One memory-mapped event file made of fixed-size slots.
+ * <pre>
+ * header  magic:int  version:int  segment:long  created:long  reserved (40 bytes)
+ * record  sequence:long  timestamp:long  type:byte  severity:byte  reserved:short  tagIndex:int
+ *         code:int  previousCode:int  value:double  source:24 bytes UTF-8, zero padded
+ * </pre>
+ * Writers claim a slot with one atomic increment and publish the record by storing its
+ * sequence number last, with release semantics. A slot whose sequence is zero is empty or
+ * still being written and is skipped by readers; after a crash such slots stay holes.
+ * <p>
+ * Every {@link #INDEX_INTERVAL}-th slot contributes its timestamp to a sparse in-memory index,
+ * which is rebuilt from the file when the segment is opened.
+ */
+final class EventSegment implements Closeable {
+
+    static final int MAGIC = 0x53455654;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int RECORD_SIZE = 64;
+    static final int SOURCE_SIZE = 24;
+    static final int INDEX_INTERVAL = 256;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle INDEX = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final Path file;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final long segment;
+    private final long created;
+    private final int slots;
+    private final AtomicInteger nextSlot;
+    private long lastSequence;
+    /** Timestamp of every {@code INDEX_INTERVAL}-th slot, {@code Long.MIN_VALUE} while not yet written. */
+    private final long[] index;
+
+    private EventSegment(Path file, FileChannel channel, MappedByteBuffer buffer) {
+        this.file = file;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.segment = buffer.getLong(8);
+        this.created = buffer.getLong(16);
+        this.slots = (buffer.capacity() - HEADER_SIZE) / RECORD_SIZE;
+        this.index = new long[(slots + INDEX_INTERVAL - 1) / INDEX_INTERVAL];
+        Arrays.fill(index, Long.MIN_VALUE);
+        this.nextSlot = new AtomicInteger(recover());
+    }
+
+    static EventSegment create(Path file, long segment, int size, long created) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putLong(8, segment);
+        buffer.putLong(16, created);
+        return new EventSegment(file, channel, buffer);
+    }
+
+    static EventSegment open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        if (size < HEADER_SIZE + RECORD_SIZE || size > Integer.MAX_VALUE) {
+            channel.close();
+            throw new IOException("Invalid event segment size " + size + ": " + file);
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            channel.close();
+            throw new IOException("Not an event segment: " + file);
+        }
+        return new EventSegment(file, channel, buffer);
+    }
+
+    /**
+     * Rebuilds the index and returns the slot after the last published record.
+     */
+    private int recover() {
+        int end = 0;
+        for (int slot = 0; slot < slots; slot++) {
+            long timestamp = buffer.getLong(offset(slot) + 8);
+            long sequence = buffer.getLong(offset(slot));
+            if (sequence != 0) {
+                end = slot + 1;
+                lastSequence = Math.max(lastSequence, sequence);
+                if (slot % INDEX_INTERVAL == 0) {
+                    index[slot / INDEX_INTERVAL] = timestamp;
+                }
+            }
+        }
+        return end;
+    }
+
+    private static int offset(int slot) {
+        return HEADER_SIZE + slot * RECORD_SIZE;
+    }
+
+    /**
+     * Writes the record into the next free slot, or returns {@code false} if the segment is full.
+     * Safe to call from any number of threads without locking.
+     */
+    boolean append(long sequence, long timestamp, EventType type, int severity, int tagIndex,
+                   int code, int previousCode, double value, byte[] source) {
+        int slot = nextSlot.getAndIncrement();
+        if (slot >= slots) {
+            return false;
+        }
+        int offset = offset(slot);
+        buffer.putLong(offset + 8, timestamp);
+        buffer.put(offset + 16, type.getCode());
+        buffer.put(offset + 17, (byte) severity);
+        buffer.putInt(offset + 20, tagIndex);
+        buffer.putInt(offset + 24, code);
+        buffer.putInt(offset + 28, previousCode);
+        buffer.putDouble(offset + 32, value);
+        buffer.put(offset + 40, source, 0, Math.min(source.length, SOURCE_SIZE));
+        if (slot % INDEX_INTERVAL == 0) {
+            INDEX.setRelease(index, slot / INDEX_INTERVAL, timestamp);
+        }
+        LONGS.setRelease(buffer, offset, sequence);
+        return true;
+    }
+
+    /**
+     * Returns the record in {@code slot}, {@code null} if the slot holds no published record.
+     */
+    Event read(int slot) {
+        int offset = offset(slot);
+        long sequence = (long) LONGS.getAcquire(buffer, offset);
+        if (sequence == 0) {
+            return null;
+        }
+        byte[] source = new byte[SOURCE_SIZE];
+        buffer.get(offset + 40, source);
+        int length = 0;
+        while (length < SOURCE_SIZE && source[length] != 0) {
+            length++;
+        }
+        return new Event(
+                sequence,
+                buffer.getLong(offset + 8),
+                EventType.of(buffer.get(offset + 16)),
+                buffer.get(offset + 17),
+                buffer.getInt(offset + 20),
+                buffer.getInt(offset + 24),
+                buffer.getInt(offset + 28),
+                buffer.getDouble(offset + 32),
+                new String(source, 0, length, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the first slot a scan for records at or after {@code from} has to start at. The
+     * index entry before the first one at or after {@code from} is used, so records stamped
+     * slightly out of slot order by concurrent writers are not missed.
+     */
+    int firstSlotFrom(long from) {
+        int entries = Math.min(index.length, (filledSlots() + INDEX_INTERVAL - 1) / INDEX_INTERVAL);
+        int low = 0;
+        int high = entries - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long timestamp = (long) INDEX.getAcquire(index, mid);
+            // An entry not visible yet could be anything; treating it as late only starts the scan earlier.
+            if (timestamp != Long.MIN_VALUE && timestamp < from) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return Math.max(0, low - 1) * INDEX_INTERVAL;
+    }
+
+    /**
+     * Returns whether a scan for records up to {@code to} can stop at {@code slot}: the index
+     * entry one block before it is already later, which leaves the same one block of slack.
+     */
+    boolean isPast(int slot, long to) {
+        int block = slot / INDEX_INTERVAL;
+        return slot % INDEX_INTERVAL == 0 && block > 0 && (long) INDEX.getAcquire(index, block - 1) > to;
+    }
+
+    /** Number of slots claimed so far; some of them may not be published yet. */
+    int filledSlots() {
+        return Math.min(nextSlot.get(), slots);
+    }
+
+    boolean isFull() {
+        return nextSlot.get() >= slots;
+    }
+
+    /** Highest sequence number found when the segment was opened. */
+    long getLastSequence() {
+        return lastSequence;
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    long getSegment() {
+        return segment;
+    }
+
+    long getCreated() {
+        return created;
+    }
+
+    /**
+     * Returns the latest timestamp of the last published records, the creation time if there
+     * are none. Concurrent writers stamp records only slightly out of slot order, so the last
+     * index block is enough.
+     */
+    long getNewest() {
+        long newest = created;
+        int end = filledSlots();
+        for (int slot = Math.max(0, end - INDEX_INTERVAL); slot < end; slot++) {
+            int offset = offset(slot);
+            if ((long) LONGS.getAcquire(buffer, offset) != 0) {
+                newest = Math.max(newest, buffer.getLong(offset + 8));
+            }
+        }
+        return newest;
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(file);
+    }
+}
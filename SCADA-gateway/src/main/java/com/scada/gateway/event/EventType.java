@@ -0,0 +1,46 @@
+package com.scada.gateway.event;
+
+/**
+ * Kind of a journal {@link Event}. The code is what is stored on disk and must not change.
+ */
+public enum EventType {
+    UNKNOWN(0),
+    /** Session to a server became active; {@code source} is the server id. */
+    CONNECTED(1),
+    /** Session to a server became inactive. */
+    DISCONNECTED(2),
+    /** Connection attempt failed; {@code code} is the OPC UA status code, if any. */
+    CONNECT_FAILED(3),
+    /** Quality class of a tag changed; {@code code} and {@code previousCode} are the status codes. */
+    QUALITY_CHANGED(4),
+    /** Write command executed or rejected; {@code code} is the status code of the write, {@code value} the value written. */
+    WRITE_COMMAND(5),
+    /** Alarm of a tag raised; {@code code} is the {@link com.scada.gateway.alarm.AlarmCondition} code, {@code value} the tag value. */
+    ALARM_RAISED(6),
+    /** Alarm of a tag cleared; same fields as {@link #ALARM_RAISED}. */
+    ALARM_CLEARED(7),
+    /** Script stopped after exceeding its time budget; recorded for every tag that ran it, {@code tagIndex} being the tag. */
+    SCRIPT_DISABLED(8);
+
+    private static final EventType[] BY_CODE = new EventType[9];
+
+    static {
+        for (EventType type : values()) {
+            BY_CODE[type.code] = type;
+        }
+    }
+
+    private final byte code;
+
+    EventType(int code) {
+        this.code = (byte) code;
+    }
+
+    public byte getCode() {
+        return code;
+    }
+
+    public static EventType of(int code) {
+        return code >= 0 && code < BY_CODE.length && BY_CODE[code] != null ? BY_CODE[code] : UNKNOWN;
+    }
+}
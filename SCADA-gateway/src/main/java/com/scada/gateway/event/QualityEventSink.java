@@ -0,0 +1,62 @@
+package com.scada.gateway.event;
+
+import com.scada.gateway.model.Sample;
+import com.scada.gateway.pipeline.SampleSink;
+import com.scada.gateway.tag.CompiledTag;
+import com.scada.gateway.tag.TagTable;
+import org.springframework.stereotype.Component;
+
+/**
+ * Records a {@link EventType#QUALITY_CHANGED} event whenever the quality of a tag moves between
+ * good, uncertain and bad. The first value of a tag is only recorded if it is not good.
+ * Status changes always pass the deadband filter, so no transition is missed.
+ */
+@Component
+public class QualityEventSink implements SampleSink {
+
+    private static final byte UNKNOWN = 0;
+
+    private final TagTable tagTable;
+    private final EventRecorder recorder;
+    /** Quality class of the last value per tag: unknown, good, uncertain or bad. */
+    private final byte[] qualities;
+    private final int[] statusCodes;
+
+    public QualityEventSink(TagTable tagTable, EventRecorder recorder) {
+        this.tagTable = tagTable;
+        this.recorder = recorder;
+        this.qualities = new byte[tagTable.capacity()];
+        this.statusCodes = new int[tagTable.capacity()];
+    }
+
+    @Override
+    public void resetTag(int tagIndex, boolean removed) {
+        if (removed) {
+            qualities[tagIndex] = UNKNOWN;
+        }
+    }
+
+    @Override
+    public void accept(Sample sample) {
+        int index = sample.getTagIndex();
+        int status = sample.getStatusCode();
+        byte quality = quality(status);
+        byte previous = qualities[index];
+        int previousStatus = statusCodes[index];
+        statusCodes[index] = status;
+        if (quality == previous) {
+            return;
+        }
+        qualities[index] = quality;
+
+        CompiledTag tag = tagTable.get(index);
+        if (tag != null && (previous != UNKNOWN || quality != quality(0))) {
+            recorder.qualityChanged(tag, previousStatus, status);
+        }
+    }
+
+    /** 1 good, 2 uncertain, 3 bad, from the severity bits of the status code. */
+    private static byte quality(int statusCode) {
+        return (byte) (Math.min(statusCode >>> 30, 2) + 1);
+    }
+}
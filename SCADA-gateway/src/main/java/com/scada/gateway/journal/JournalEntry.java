@@ -0,0 +1,8 @@
+package com.scada.gateway.journal;
+
+/**
+ * A journal record together with its segment and the position right after it,
+ * which is committed once the record was processed.
+ */
+public record JournalEntry(byte[] key, byte[] value, long segment, int nextPosition) {
+}
@@ -0,0 +1,175 @@
+package com.scada.gateway.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * One fixed-size, memory-mapped, append-only journal file.
+ * <pre>
+ * header   magic:int  version:int  sequence:long  created:long  readPosition:int  reserved:int
+ * record   length:int  keyLength:int  key  value
+ * </pre>
+ * The length of a record is written after its body, so a record that was cut off by a crash
+ * reads as the end of the segment. A zero length marks the end; the file is zero-filled on creation.
+ * {@code readPosition} is the offset up to which records were consumed and survives restarts.
+ */
+final class JournalSegment implements Closeable {
+
+    static final int MAGIC = 0x534A4E4C;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int RECORD_OVERHEAD = 8;
+
+    private static final int READ_POSITION_OFFSET = 24;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final long sequence;
+    private final long created;
+    private int writePosition;
+    private int readPosition;
+
+    private JournalSegment(Path file, FileChannel channel, MappedByteBuffer buffer) {
+        this.file = file;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.sequence = buffer.getLong(8);
+        this.created = buffer.getLong(16);
+        this.readPosition = Math.max(buffer.getInt(READ_POSITION_OFFSET), HEADER_SIZE);
+        this.writePosition = recover();
+        this.readPosition = Math.min(readPosition, writePosition);
+    }
+
+    static JournalSegment create(Path file, long sequence, int capacity, long created) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putLong(8, sequence);
+        buffer.putLong(16, created);
+        buffer.putInt(READ_POSITION_OFFSET, HEADER_SIZE);
+        return new JournalSegment(file, channel, buffer);
+    }
+
+    static JournalSegment open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+            channel.close();
+            throw new IOException("Invalid journal segment size " + size + ": " + file);
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            channel.close();
+            throw new IOException("Not a journal segment: " + file);
+        }
+        return new JournalSegment(file, channel, buffer);
+    }
+
+    private int recover() {
+        int position = HEADER_SIZE;
+        while (position + RECORD_OVERHEAD <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length < 4 || position + 4 + length > buffer.capacity()) {
+                break;
+            }
+            position += 4 + length;
+        }
+        return position;
+    }
+
+    /**
+     * Appends a record, or returns {@code false} if it does not fit into the remaining space.
+     */
+    boolean append(byte[] key, byte[] value) {
+        int length = 4 + key.length + value.length;
+        if (writePosition + 4 + length > buffer.capacity()) {
+            return false;
+        }
+        buffer.putInt(writePosition + 4, key.length);
+        buffer.put(writePosition + 8, key);
+        buffer.put(writePosition + 8 + key.length, value);
+        buffer.putInt(writePosition, length);
+        writePosition += 4 + length;
+        return true;
+    }
+
+    /**
+     * Reads the record at {@code position}, which must be a record boundary below the write position.
+     */
+    JournalEntry read(int position) {
+        int length = buffer.getInt(position);
+        int keyLength = buffer.getInt(position + 4);
+        byte[] key = new byte[keyLength];
+        byte[] value = new byte[length - 4 - keyLength];
+        buffer.get(position + 8, key);
+        buffer.get(position + 8 + keyLength, value);
+        return new JournalEntry(key, value, sequence, position + 4 + length);
+    }
+
+    void commit(int position) {
+        readPosition = position;
+        buffer.putInt(READ_POSITION_OFFSET, position);
+    }
+
+    boolean hasUnread() {
+        return readPosition < writePosition;
+    }
+
+    int countUnread() {
+        int count = 0;
+        for (int position = readPosition; position < writePosition; position += 4 + buffer.getInt(position)) {
+            count++;
+        }
+        return count;
+    }
+
+    static boolean fits(int capacity, byte[] key, byte[] value) {
+        return HEADER_SIZE + RECORD_OVERHEAD + (long) key.length + value.length <= capacity;
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    long getSequence() {
+        return sequence;
+    }
+
+    long getCreated() {
+        return created;
+    }
+
+    int getReadPosition() {
+        return readPosition;
+    }
+
+    int getWritePosition() {
+        return writePosition;
+    }
+
+    int getCapacity() {
+        return buffer.capacity();
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(file);
+    }
+}
@@ -0,0 +1,201 @@
+package com.scada.gateway.journal;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Store-and-forward queue of key/value records on local disk.
+ * <p>
+ * Records are appended to memory-mapped segments of a fixed size and consumed in append order
+ * with {@link #peek(int)} and {@link #commit(JournalEntry)}; consumed positions are kept in the
+ * segment headers, so a restart continues where draining stopped. The journal never grows beyond
+ * {@code maxDiskBytes}: when the budget is used up, or a segment is older than the retention,
+ * the oldest segment is deleted together with its unsent records, which are counted as dropped.
+ */
+@Slf4j
+public class SpillJournal implements Closeable {
+
+    private static final String SUFFIX = ".spill";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final long retentionMillis;
+    private final Deque<JournalSegment> segments = new ArrayDeque<>();
+    private long nextSequence;
+    private long appended;
+    private long dropped;
+
+    public SpillJournal(Path directory, int segmentSize, long maxDiskBytes, long retentionMillis) throws IOException {
+        if (segmentSize <= JournalSegment.HEADER_SIZE + JournalSegment.RECORD_OVERHEAD) {
+            throw new IllegalArgumentException("Segment size too small: " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = (int) Math.max(2, maxDiskBytes / segmentSize);
+        this.retentionMillis = retentionMillis;
+
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(f -> f.getFileName().toString().endsWith(SUFFIX)).sorted().toList()) {
+                try {
+                    segments.addLast(JournalSegment.open(file));
+                } catch (IOException e) {
+                    log.error("Skipping unreadable spill segment {}: {}", file, e.getMessage());
+                }
+            }
+        }
+        nextSequence = segments.isEmpty() ? 0 : segments.getLast().getSequence() + 1;
+        dropConsumedHeads(1);
+        if (!segments.isEmpty()) {
+            log.info("Opened spill journal {} with {} segments", directory, segments.size());
+        }
+    }
+
+    /**
+     * Appends a record. Returns {@code false} if it is larger than a segment or could not be written.
+     */
+    public synchronized boolean append(byte[] key, byte[] value) {
+        if (!JournalSegment.fits(segmentSize, key, value)) {
+            return false;
+        }
+        try {
+            JournalSegment tail = segments.peekLast();
+            if (tail == null || !tail.append(key, value)) {
+                tail = roll();
+                tail.append(key, value);
+            }
+            appended++;
+            return true;
+        } catch (IOException e) {
+            log.error("Failed to write spill journal {}: {}", directory, e.getMessage());
+            return false;
+        }
+    }
+
+    private JournalSegment roll() throws IOException {
+        // The full tail may have been consumed already; it is not needed any longer.
+        dropConsumedHeads(0);
+        while (segments.size() >= maxSegments) {
+            dropOldest("disk budget exhausted");
+        }
+        long sequence = nextSequence++;
+        Path file = directory.resolve(String.format("%020d%s", sequence, SUFFIX));
+        JournalSegment segment = JournalSegment.create(file, sequence, segmentSize, System.currentTimeMillis());
+        JournalSegment previous = segments.peekLast();
+        if (previous != null) {
+            previous.force();
+        }
+        segments.addLast(segment);
+        return segment;
+    }
+
+    private void dropOldest(String reason) throws IOException {
+        JournalSegment oldest = segments.removeFirst();
+        int lost = oldest.countUnread();
+        dropped += lost;
+        oldest.delete();
+        if (lost > 0) {
+            log.warn("Dropped {} unsent records from spill segment {}: {}", lost, oldest.getFile().getFileName(), reason);
+        }
+    }
+
+    /**
+     * Returns up to {@code max} of the oldest unconsumed records. They stay in the journal until committed.
+     */
+    public synchronized List<JournalEntry> peek(int max) {
+        dropConsumedHeads(1);
+        JournalSegment head = segments.peekFirst();
+        if (head == null || !head.hasUnread()) {
+            return List.of();
+        }
+        List<JournalEntry> entries = new ArrayList<>(Math.min(max, 1024));
+        int position = head.getReadPosition();
+        while (entries.size() < max && position < head.getWritePosition()) {
+            JournalEntry entry = head.read(position);
+            entries.add(entry);
+            position = entry.nextPosition();
+        }
+        return entries;
+    }
+
+    /**
+     * Marks all records up to and including {@code last} as consumed. Entries of a segment that
+     * was dropped in the meantime are ignored.
+     */
+    public synchronized void commit(JournalEntry last) {
+        JournalSegment head = segments.peekFirst();
+        if (head == null || head.getSequence() != last.segment()) {
+            return;
+        }
+        head.commit(last.nextPosition());
+        dropConsumedHeads(1);
+    }
+
+    /**
+     * Deletes fully consumed segments from the head of the journal, keeping at least
+     * {@code keep} segments so the one being written stays open.
+     */
+    private void dropConsumedHeads(int keep) {
+        while (segments.size() > keep && !segments.getFirst().hasUnread()) {
+            JournalSegment head = segments.removeFirst();
+            try {
+                head.delete();
+            } catch (IOException e) {
+                log.warn("Failed to delete spill segment {}: {}", head.getFile(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Deletes segments, except the one being written, that are older than the retention.
+     */
+    public synchronized void expire(long now) {
+        while (segments.size() > 1 && now - segments.getFirst().getCreated() > retentionMillis) {
+            try {
+                dropOldest("retention expired");
+            } catch (IOException e) {
+                log.warn("Failed to delete expired spill segment: {}", e.getMessage());
+            }
+        }
+    }
+
+    public synchronized boolean isEmpty() {
+        for (JournalSegment segment : segments) {
+            if (segment.hasUnread()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public synchronized long getDiskBytes() {
+        return (long) segments.size() * segmentSize;
+    }
+
+    public synchronized long getAppendedCount() {
+        return appended;
+    }
+
+    public synchronized long getDroppedCount() {
+        return dropped;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (JournalSegment segment : segments) {
+            segment.force();
+            segment.close();
+        }
+        segments.clear();
+    }
+}
@@ -0,0 +1,164 @@
+package com.scada.gateway.kafka;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.scada.gateway.alarm.AlarmListener;
+import com.scada.gateway.alarm.AlarmTransition;
+import com.scada.gateway.config.KafkaSinkConfig;
+import com.scada.gateway.journal.SpillJournal;
+import com.scada.gateway.tag.CompiledTag;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes alarm transitions as JSON to {@code gateway.kafka.alarm-topic}, keyed like the
+ * sample records of the tag. While the broker is unavailable, records are spilled to their own
+ * journal in the {@code alarms} directory below {@code gateway.kafka.spill.directory} and
+ * forwarded in order once it is back; with spilling disabled they are counted as failed.
+ * <p>
+ * Transitions are queued on the acquisition thread and serialized and sent by a publisher
+ * thread. Without a journal that thread first waits for the metadata of the topic: the
+ * producer's {@code max.block.ms} is 0, so sends before that would fail. Transitions beyond
+ * {@link #QUEUE_CAPACITY} while the publisher falls behind are dropped and counted.
+ */
+@Slf4j
+@Component
+@ConditionalOnExpression("${gateway.kafka.enabled:false} and '${gateway.kafka.alarm-topic:scada.alarms}' != ''")
+public class KafkaAlarmPublisher implements AlarmListener {
+
+    static final int QUEUE_CAPACITY = 10_000;
+    private static final Duration METADATA_TIMEOUT = Duration.ofSeconds(30);
+
+    private final KafkaTemplate<byte[], byte[]> kafkaTemplate;
+    private final String topic;
+    private final ObjectMapper objectMapper;
+    private final SpillJournal journal;
+    private final SpillingKafkaSender sender;
+    private final BlockingQueue<AlarmTransition> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile boolean running;
+    private Thread publisher;
+
+    public KafkaAlarmPublisher(KafkaTemplate<byte[], byte[]> kafkaTemplate, KafkaSinkConfig config,
+                               ObjectMapper objectMapper) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.topic = config.getAlarmTopic();
+        this.objectMapper = objectMapper;
+        this.journal = KafkaSampleSink.openJournal(config.getSpill(),
+                Path.of(config.getSpill().getDirectory()).resolve("alarms"));
+        this.sender = new SpillingKafkaSender(kafkaTemplate, topic, journal,
+                config.getSpill().getDrainRate(), config.getSpill().getRetryDelay());
+        log.info("Publishing alarms to Kafka topic {}", topic);
+    }
+
+    @PostConstruct
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        sender.start();
+        publisher = Thread.ofVirtual().name("kafka-alarms").start(this::publishLoop);
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        running = false;
+        if (publisher != null) {
+            publisher.interrupt();
+            try {
+                publisher.join(Duration.ofSeconds(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            publisher = null;
+        }
+        sender.stop();
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                log.warn("Failed to close alarm spill journal: {}", e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void alarmChanged(AlarmTransition transition) {
+        if (!queue.offer(transition)) {
+            long drops = dropped.incrementAndGet();
+            if (drops == 1 || drops % 1000 == 0) {
+                log.error("Alarm queue for {} is full, {} transitions dropped", topic, drops);
+            }
+        }
+    }
+
+    private void publishLoop() {
+        // Without a journal, records sent before the topic metadata is known would be lost.
+        while (journal == null && running
+                && !SpillingKafkaSender.awaitMetadata(kafkaTemplate, topic, METADATA_TIMEOUT)) {
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+        }
+        while (running) {
+            AlarmTransition transition;
+            try {
+                transition = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            publish(transition);
+        }
+    }
+
+    private void publish(AlarmTransition transition) {
+        CompiledTag tag = transition.tag();
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("id", tag.getIndex());
+        record.put("serverId", tag.getServerId());
+        record.put("path", tag.getPath());
+        record.put("condition", transition.condition().name());
+        record.put("state", transition.raised() ? "RAISED" : "CLEARED");
+        record.put("severity", transition.condition().getSeverity());
+        record.put("value", transition.value());
+        record.put("limit", transition.limit());
+        record.put("unit", tag.getUnit());
+        record.put("timestamp", Instant.ofEpochMilli(transition.timestamp()));
+        try {
+            sender.send(KafkaSampleSink.recordKey(tag), objectMapper.writeValueAsBytes(record));
+        } catch (JsonProcessingException e) {
+            log.error("Failed to serialize alarm of {}: {}", tag.getPath(), e.getMessage());
+        }
+    }
+
+    public long getSentCount() {
+        return sender.getSentCount();
+    }
+
+    public long getFailedCount() {
+        return sender.getFailedCount();
+    }
+
+    public boolean isSpilling() {
+        return sender.isSpilling();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+}
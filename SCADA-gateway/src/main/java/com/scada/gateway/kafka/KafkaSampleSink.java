@@ -0,0 +1,244 @@
+package com.scada.gateway.kafka;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.scada.gateway.codec.BinaryWriter;
+import com.scada.gateway.codec.FrameEncoder;
+import com.scada.gateway.codec.SampleCodec;
+import com.scada.gateway.config.KafkaSinkConfig;
+import com.scada.gateway.journal.SpillJournal;
+import com.scada.gateway.model.Sample;
+import com.scada.gateway.model.TagValue;
+import com.scada.gateway.pipeline.AcquisitionCycle;
+import com.scada.gateway.pipeline.SampleBuffer;
+import com.scada.gateway.pipeline.SampleSink;
+import com.scada.gateway.tag.CompiledTag;
+import com.scada.gateway.tag.TagTable;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Publishes samples to Kafka, one record per sample or, with {@code gateway.kafka.mode: frame},
+ * one binary frame per polling cycle.
+ * <p>
+ * Sample records are keyed by {@code serverId/address}, so all values of a tag land in the
+ * same partition and keep their order. Values use the binary {@link com.scada.gateway.codec.WireFormat}
+ * unless {@code gateway.kafka.format} is {@code json}. Batching, linger and compression are
+ * producer settings under {@code spring.kafka.producer}. While the broker is unreachable,
+ * records are spilled to a local journal and forwarded once it is back ({@code gateway.kafka.spill}).
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "gateway.kafka", name = "enabled", havingValue = "true")
+public class KafkaSampleSink implements SampleSink {
+
+    private static final ThreadLocal<BinaryWriter> WRITER = ThreadLocal.withInitial(() -> new BinaryWriter(64));
+    private static final ThreadLocal<FrameEncoder> FRAME_ENCODER = ThreadLocal.withInitial(FrameEncoder::new);
+
+    private final KafkaTemplate<byte[], byte[]> kafkaTemplate;
+    private final KafkaSinkConfig config;
+    private final TagTable tagTable;
+    private final ObjectMapper objectMapper;
+    private final byte[][] keys;
+    private final SpillJournal journal;
+    private final SpillingKafkaSender sender;
+
+    public KafkaSampleSink(KafkaTemplate<byte[], byte[]> kafkaTemplate, KafkaSinkConfig config,
+                           TagTable tagTable, ObjectMapper objectMapper) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.config = config;
+        this.tagTable = tagTable;
+        this.objectMapper = objectMapper;
+        this.keys = new byte[tagTable.capacity()][];
+        tagTable.addListener(diff -> {
+            List<CompiledTag> updated = new ArrayList<>(diff.added());
+            diff.changed().forEach(change -> updated.add(change.current()));
+            publishDictionary(updated, diff.removed());
+        });
+        this.journal = openJournal(config.getSpill(), Path.of(config.getSpill().getDirectory()));
+        this.sender = new SpillingKafkaSender(kafkaTemplate, config.getTopic(), journal,
+                config.getSpill().getDrainRate(), config.getSpill().getRetryDelay());
+        log.info("Publishing tag values to Kafka topic {}", config.getTopic());
+    }
+
+    /**
+     * Opens the spill journal in {@code directory}, or returns {@code null} if spilling is disabled.
+     */
+    static SpillJournal openJournal(KafkaSinkConfig.Spill spill, Path directory) {
+        if (!spill.isEnabled()) {
+            return null;
+        }
+        try {
+            return new SpillJournal(directory, Math.toIntExact(spill.getSegmentSize().toBytes()),
+                    spill.getMaxDiskSize().toBytes(), spill.getRetention().toMillis());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open spill journal " + directory, e);
+        }
+    }
+
+    static byte[] recordKey(CompiledTag tag) {
+        return (tag.getServerId() + "/" + tag.getAddress()).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void accept(Sample sample) {
+        byte[] value;
+        try {
+            value = encode(sample);
+        } catch (JsonProcessingException e) {
+            log.error("Failed to serialize sample {}: {}", sample, e.getMessage());
+            return;
+        }
+        send(key(sample.getTagIndex()), value);
+    }
+
+    private byte[] key(int tagIndex) {
+        byte[] key = keys[tagIndex];
+        if (key == null) {
+            key = recordKey(tagTable.get(tagIndex));
+            keys[tagIndex] = key;
+        }
+        return key;
+    }
+
+    @Override
+    public void accept(Sample sample, AcquisitionCycle cycle) {
+        if (cycle == null || config.getMode() != KafkaSinkConfig.Mode.FRAME) {
+            accept(sample);
+        }
+        // In frame mode the pipeline collects the cycle and cycleCompleted() publishes it.
+    }
+
+    @Override
+    public boolean collectsCycles() {
+        return config.getMode() == KafkaSinkConfig.Mode.FRAME;
+    }
+
+    @Override
+    public void resetTag(int tagIndex, boolean removed) {
+        keys[tagIndex] = null;
+    }
+
+    /**
+     * Publishes all values of the cycle that passed the filters as one frame record keyed by
+     * the server id, so frames of a server, and therefore every tag, stay in order.
+     */
+    @Override
+    public void cycleCompleted(AcquisitionCycle cycle) {
+        SampleBuffer samples = cycle.getSamples();
+        if (samples == null || samples.size() == 0) {
+            return;
+        }
+
+        FrameEncoder encoder = FRAME_ENCODER.get().begin(cycle.getCycleTime());
+        Sample sample = new Sample();
+        for (int i = 0; i < samples.size(); i++) {
+            encoder.add(samples.get(i, sample));
+        }
+        send(cycle.getServerId().getBytes(StandardCharsets.UTF_8), encoder.finish());
+    }
+
+    /**
+     * Publishes id, address, name, unit and data type of every tag to the dictionary topic,
+     * so that consumers of frames can resolve the numeric tag ids.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void publishDictionary() {
+        publishDictionary(tagTable.getTags(), List.of());
+    }
+
+    /**
+     * Publishes entries for {@code tags} and tombstones for {@code removed}, keyed by tag id,
+     * so the dictionary topic can be compacted.
+     */
+    private void publishDictionary(List<CompiledTag> tags, List<CompiledTag> removed) {
+        if (config.getDictionaryTopic() == null || config.getDictionaryTopic().isBlank()
+                || (tags.isEmpty() && removed.isEmpty())) {
+            return;
+        }
+        Thread.ofVirtual().name("kafka-dictionary").start(() -> {
+            SpillingKafkaSender.awaitMetadata(kafkaTemplate, config.getDictionaryTopic(), Duration.ofSeconds(30));
+            try {
+                for (CompiledTag tag : removed) {
+                    kafkaTemplate.send(config.getDictionaryTopic(), dictionaryKey(tag), null);
+                }
+                for (CompiledTag tag : tags) {
+                    Map<String, Object> entry = new LinkedHashMap<>();
+                    entry.put("id", tag.getIndex());
+                    entry.put("serverId", tag.getServerId());
+                    entry.put("address", tag.getAddress());
+                    entry.put("name", tag.getName());
+                    entry.put("unit", tag.getUnit());
+                    entry.put("dataType", tag.getDataType().name());
+                    kafkaTemplate.send(config.getDictionaryTopic(), dictionaryKey(tag), objectMapper.writeValueAsBytes(entry));
+                }
+            } catch (Exception e) {
+                log.error("Failed to publish tag dictionary to {}: {}", config.getDictionaryTopic(), e.getMessage());
+                return;
+            }
+            log.info("Published {} tag dictionary entries to {}", tags.size() + removed.size(), config.getDictionaryTopic());
+        });
+    }
+
+    private static byte[] dictionaryKey(CompiledTag tag) {
+        return Integer.toString(tag.getIndex()).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void send(byte[] key, byte[] value) {
+        sender.send(key, value);
+    }
+
+    private byte[] encode(Sample sample) throws JsonProcessingException {
+        if (config.getFormat() == KafkaSinkConfig.Format.JSON) {
+            return objectMapper.writeValueAsBytes(TagValue.of(tagTable.get(sample.getTagIndex()), sample));
+        }
+        BinaryWriter writer = WRITER.get().reset();
+        SampleCodec.encode(sample, writer);
+        return writer.toByteArray();
+    }
+
+    @PostConstruct
+    public void start() {
+        sender.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sender.stop();
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                log.warn("Failed to close spill journal: {}", e.getMessage());
+            }
+        }
+    }
+
+    public boolean isSpilling() {
+        return sender.isSpilling();
+    }
+
+    public long getSentCount() {
+        return sender.getSentCount();
+    }
+
+    public long getFailedCount() {
+        return sender.getFailedCount();
+    }
+}
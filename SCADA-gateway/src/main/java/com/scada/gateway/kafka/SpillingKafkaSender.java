@@ -0,0 +1,477 @@
+package com.scada.gateway.kafka;
+
+import com.scada.gateway.journal.JournalEntry;
+import com.scada.gateway.journal.SpillJournal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.core.KafkaProducerException;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+/**
+ * Sends records to one topic and falls back to a {@link SpillJournal} while the broker is unavailable.
+ * <p>
+ * The first failed send switches the sender into spilling mode: from then on every record is
+ * appended to the journal instead of being handed to the producer, so acquisition never waits
+ * for the broker. Records sent before the failure whose outcome is still open are journaled at
+ * that moment too, in send order and ahead of everything spilled later; their own failures are
+ * then ignored. A drain thread forwards the journal at no more than {@code drainRate} records
+ * per second and switches back to direct sends once it is empty. Journal records are committed
+ * only after the broker acknowledged them, so an outage may repeat, but never lose or reorder,
+ * records. The producer's {@code max.block.ms} should be 0, so a full buffer or missing
+ * metadata fails the send at once instead of blocking the acquisition thread.
+ * <p>
+ * Direct sends take neither a lock nor allocate bookkeeping of their own. Every record draws a
+ * sequence number and is kept, with its future, in a ring slot until a later record needs the
+ * slot; the spilling flag is the top bit of the same counter, so a record is either sent
+ * directly with a number below the one at which spilling began, or spilled. The lock is only
+ * taken on a failure, to journal the records from the oldest not yet accounted for up to that
+ * number, or when a slot is still held by a record the broker has not acknowledged: more than
+ * {@link #IN_FLIGHT_CAPACITY} records in flight count as an outage, too.
+ */
+@Slf4j
+class SpillingKafkaSender {
+
+    static final int IN_FLIGHT_CAPACITY = 1 << 16;
+
+    private static final int MAX_DRAIN_BATCH = 1000;
+    private static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(30);
+    private static final Duration METADATA_TIMEOUT = Duration.ofSeconds(5);
+    private static final long SPILLING = Long.MIN_VALUE;
+    private static final VarHandle STATE;
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle FUTURES = MethodHandles.arrayElementVarHandle(CompletableFuture[].class);
+    /** Future of a record the producer refused at once. */
+    private static final CompletableFuture<?> REFUSED = CompletableFuture.failedFuture(
+            new IllegalStateException("Record refused by the producer"));
+
+    private enum SlotState { FREE, PENDING, TAKEN }
+
+    static {
+        try {
+            STATE = MethodHandles.lookup().findVarHandle(SpillingKafkaSender.class, "state", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final KafkaTemplate<byte[], byte[]> kafkaTemplate;
+    private final String topic;
+    private final SpillJournal journal;
+    private final long drainRate;
+    private final Duration retryDelay;
+    private final LongAdder sent = new LongAdder();
+    private final AtomicLong failed = new AtomicLong();
+    /** Completion callbacks, shared by all records so that sending allocates none. */
+    private final BiConsumer<SendResult<byte[], byte[]>, Throwable> completion = this::complete;
+    private final BiConsumer<SendResult<byte[], byte[]>, Throwable> countingCompletion = this::countOutcome;
+    /** Taken on failures only; orders journaled in-flight records ahead of those spilled later. */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Next sequence number, with {@link #SPILLING} set while records go to the journal. */
+    private volatile long state;
+    /** Records below this sequence number were journaled or never sent directly. */
+    private volatile long accounted;
+    /**
+     * Sequence number + 1 of the record in each slot, negated while the slot is written,
+     * 0 for a slot never used.
+     */
+    private final long[] slots;
+    private final byte[][] keys;
+    private final byte[][] values;
+    private final CompletableFuture<?>[] futures;
+    private final int mask;
+    private volatile boolean running;
+    private Thread drainer;
+
+    /**
+     * @param journal spill journal, or {@code null} to count failed records as lost
+     */
+    SpillingKafkaSender(KafkaTemplate<byte[], byte[]> kafkaTemplate, String topic, SpillJournal journal,
+                        long drainRate, Duration retryDelay) {
+        this(kafkaTemplate, topic, journal, drainRate, retryDelay, IN_FLIGHT_CAPACITY);
+    }
+
+    SpillingKafkaSender(KafkaTemplate<byte[], byte[]> kafkaTemplate, String topic, SpillJournal journal,
+                        long drainRate, Duration retryDelay, int inFlightCapacity) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.topic = topic;
+        this.journal = journal;
+        this.drainRate = Math.max(drainRate, 1);
+        this.retryDelay = retryDelay;
+        int capacity = Integer.highestOneBit(Math.max(inFlightCapacity, 2) * 2 - 1);
+        this.mask = capacity - 1;
+        this.slots = new long[journal != null ? capacity : 0];
+        this.keys = new byte[slots.length][];
+        this.values = new byte[slots.length][];
+        this.futures = new CompletableFuture<?>[slots.length];
+        // Records left over from the previous run go out before new ones.
+        this.state = journal != null && !journal.isEmpty() ? SPILLING : 0;
+    }
+
+    synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        if (!isSpilling()) {
+            // Otherwise the first records would start spilling right away.
+            awaitMetadata(kafkaTemplate, topic, METADATA_TIMEOUT);
+        }
+        if (journal != null) {
+            drainer = Thread.ofVirtual().name("kafka-spill-drain").start(this::drainLoop);
+        }
+    }
+
+    synchronized void stop() {
+        running = false;
+        if (drainer != null) {
+            drainer.interrupt();
+            try {
+                drainer.join(Duration.ofSeconds(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            drainer = null;
+        }
+    }
+
+    /**
+     * Waits up to {@code timeout} for the partitions of {@code topic}. With {@code max.block.ms}
+     * at 0 the producer fails every send to a topic until it has them. Returns {@code false}
+     * if they are still unknown.
+     */
+    static boolean awaitMetadata(KafkaTemplate<?, ?> kafkaTemplate, String topic, Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (true) {
+            try {
+                kafkaTemplate.partitionsFor(topic);
+                return true;
+            } catch (Exception e) {
+                if (System.nanoTime() > deadline) {
+                    log.warn("No metadata for Kafka topic {} yet: {}", topic, e.getMessage());
+                    return false;
+                }
+            }
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    void send(byte[] key, byte[] value) {
+        if (journal == null) {
+            sendWithoutJournal(key, value);
+            return;
+        }
+        while (true) {
+            long sequence = (long) STATE.getAndAdd(this, 1L);
+            if ((sequence & SPILLING) == 0) {
+                sendDirectly(sequence, key, value);
+                return;
+            }
+            lock.lock();
+            try {
+                if (isSpilling()) {
+                    spill(key, value);
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+            // The journal drained in the meantime; the record goes out directly under a new number.
+        }
+    }
+
+    private void sendDirectly(long sequence, byte[] key, byte[] value) {
+        int slot = (int) sequence & mask;
+        if (!awaitSlot(sequence, slot, key, value)) {
+            return;
+        }
+        SLOTS.setOpaque(slots, slot, -(sequence + 1));
+        VarHandle.storeStoreFence();
+        keys[slot] = key;
+        values[slot] = value;
+        futures[slot] = null;
+        SLOTS.setRelease(slots, slot, sequence + 1);
+
+        CompletableFuture<SendResult<byte[], byte[]>> future;
+        try {
+            future = kafkaTemplate.send(topic, key, value);
+        } catch (Exception e) {
+            FUTURES.setRelease(futures, slot, REFUSED);
+            onFailure(e);
+            return;
+        }
+        FUTURES.setRelease(futures, slot, future);
+        future.whenComplete(completion);
+    }
+
+    /**
+     * Waits until the slot of {@code sequence} may be reused. Returns {@code false} if the record
+     * was journaled instead, because the slot still holds a record the broker has not acknowledged.
+     */
+    private boolean awaitSlot(long sequence, int slot, byte[] key, byte[] value) {
+        for (int attempt = 0; ; attempt++) {
+            SlotState slotState = slotState(sequence, slot);
+            if (slotState == SlotState.FREE) {
+                return true;
+            }
+            if (slotState == SlotState.TAKEN && lock.tryLock()) {
+                try {
+                    if (slotState(sequence, slot) == SlotState.TAKEN) {
+                        journalInFlight(sequence, key, value, mask + 1 + " records unacknowledged");
+                        return false;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+            backOff(attempt);
+        }
+    }
+
+    private SlotState slotState(long sequence, int slot) {
+        long previous = sequence - (mask + 1);
+        if (previous < 0) {
+            return SlotState.FREE;
+        }
+        long occupied = (long) SLOTS.getAcquire(slots, slot);
+        if (Math.abs(occupied) - 1 < previous) {
+            // The previous record was spilled, or its sender has not written the slot yet.
+            return previous < accounted ? SlotState.FREE : SlotState.PENDING;
+        }
+        CompletableFuture<?> future = (CompletableFuture<?>) FUTURES.getAcquire(futures, slot);
+        if (occupied < 0 || future == null) {
+            return SlotState.PENDING;
+        }
+        return previous < accounted || future.isDone() && !future.isCompletedExceptionally()
+                ? SlotState.FREE
+                : SlotState.TAKEN;
+    }
+
+    private void complete(SendResult<byte[], byte[]> result, Throwable error) {
+        if (error == null) {
+            sent.increment();
+        } else {
+            onFailure(error);
+        }
+    }
+
+    private void sendWithoutJournal(byte[] key, byte[] value) {
+        try {
+            kafkaTemplate.send(topic, key, value).whenComplete(countingCompletion);
+        } catch (Exception e) {
+            countFailure(e);
+        }
+    }
+
+    private void countOutcome(SendResult<byte[], byte[]> result, Throwable error) {
+        if (error == null) {
+            sent.increment();
+        } else {
+            countFailure(error);
+        }
+    }
+
+    /** Appends a record to the journal; the caller holds the lock. */
+    private void spill(byte[] key, byte[] value) {
+        if (!journal.append(key, value)) {
+            countFailure(null);
+        }
+    }
+
+    /**
+     * Switches to spilling on the first failure. Failures of records already journaled, or
+     * sent before the journal last drained, are ignored.
+     */
+    private void onFailure(Throwable error) {
+        lock.lock();
+        try {
+            if (!isSpilling() && !isEarlier(error)) {
+                journalInFlight(-1, null, null, error.getMessage());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Whether the failed record is no longer in flight; the caller holds the lock. */
+    private boolean isEarlier(Throwable error) {
+        if (!(error instanceof KafkaProducerException producerError)) {
+            return false;
+        }
+        Object value = producerError.getFailedProducerRecord().value();
+        long next = state;
+        for (long sequence = Math.max(accounted, next - (mask + 1)); sequence < next; sequence++) {
+            int slot = (int) sequence & mask;
+            if (values[slot] == value && (long) SLOTS.getAcquire(slots, slot) == sequence + 1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sets the spilling flag and journals, in send order, every record sent directly before it
+     * whose outcome is still open, {@code own} included with the given key and value; those
+     * that reach the broker after all are sent twice. The caller holds the lock.
+     */
+    private void journalInFlight(long own, byte[] ownKey, byte[] ownValue, String reason) {
+        long end = (long) STATE.getAndBitwiseOr(this, SPILLING) & ~SPILLING;
+        log.warn("Kafka topic {} unavailable ({}), spilling records to disk", topic, reason);
+        for (long sequence = accounted; sequence < end; sequence++) {
+            if (sequence == own) {
+                spill(ownKey, ownValue);
+            } else {
+                journalIfOpen(sequence);
+            }
+            accounted = sequence + 1;
+        }
+    }
+
+    private void journalIfOpen(long sequence) {
+        int slot = (int) sequence & mask;
+        for (int attempt = 0; ; attempt++) {
+            long occupied = (long) SLOTS.getAcquire(slots, slot);
+            long occupant = Math.abs(occupied) - 1;
+            if (occupant > sequence) {
+                // The slot was reused, which it only is once the record was acknowledged.
+                return;
+            }
+            if (occupied == sequence + 1) {
+                byte[] key = keys[slot];
+                byte[] value = values[slot];
+                CompletableFuture<?> future = (CompletableFuture<?>) FUTURES.getAcquire(futures, slot);
+                VarHandle.loadLoadFence();
+                if ((long) SLOTS.getAcquire(slots, slot) != occupied) {
+                    return;
+                }
+                if (future == null || !future.isDone() || future.isCompletedExceptionally()) {
+                    spill(key, value);
+                }
+                return;
+            }
+            // Its sender drew the number but has not written the slot yet.
+            backOff(attempt);
+        }
+    }
+
+    /** Spins briefly, then yields, in case the thread waited for is not running. */
+    private static void backOff(int attempt) {
+        if (attempt < 100) {
+            Thread.onSpinWait();
+        } else {
+            Thread.yield();
+        }
+    }
+
+    private void countFailure(Throwable error) {
+        long failures = failed.incrementAndGet();
+        if (failures == 1 || failures % 1000 == 0) {
+            log.error("Failed to publish to {} ({} failures): {}", topic, failures,
+                    error != null ? error.getMessage() : "record could not be spilled");
+        }
+    }
+
+    private void drainLoop() {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / drainRate;
+        int batchSize = (int) Math.min(Math.max(drainRate / 10, 1), MAX_DRAIN_BATCH);
+        long nextBatch = System.nanoTime();
+        long lastExpiry = 0;
+
+        while (running) {
+            try {
+                if (!isSpilling()) {
+                    Thread.sleep(100);
+                    continue;
+                }
+                long now = System.currentTimeMillis();
+                if (now - lastExpiry > 60_000) {
+                    journal.expire(now);
+                    lastExpiry = now;
+                }
+
+                List<JournalEntry> batch = journal.peek(batchSize);
+                if (batch.isEmpty()) {
+                    boolean drained;
+                    lock.lock();
+                    try {
+                        drained = journal.isEmpty();
+                        if (drained) {
+                            accounted = (long) STATE.getAndBitwiseAnd(this, ~SPILLING) & ~SPILLING;
+                            log.info("Spill journal drained, publishing to {} directly", topic);
+                        }
+                    } finally {
+                        lock.unlock();
+                    }
+                    if (!drained) {
+                        // Nothing readable although records are pending; wait instead of spinning.
+                        Thread.sleep(100);
+                    }
+                    continue;
+                }
+
+                long delay = nextBatch - System.nanoTime();
+                if (delay > 0) {
+                    Thread.sleep(Duration.ofNanos(delay));
+                }
+                if (forward(batch)) {
+                    journal.commit(batch.get(batch.size() - 1));
+                    nextBatch = Math.max(nextBatch, System.nanoTime() - intervalNanos * batchSize)
+                            + intervalNanos * batch.size();
+                } else {
+                    Thread.sleep(retryDelay);
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                log.error("Spill journal drain failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    private boolean forward(List<JournalEntry> batch) throws InterruptedException {
+        List<CompletableFuture<SendResult<byte[], byte[]>>> futures = new ArrayList<>(batch.size());
+        try {
+            for (JournalEntry entry : batch) {
+                futures.add(kafkaTemplate.send(topic, entry.key(), entry.value()));
+            }
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+                    .get(DRAIN_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+            sent.add(batch.size());
+            return true;
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            log.debug("Kafka still unavailable, {} spilled records pending: {}", batch.size(), e.getMessage());
+            return false;
+        }
+    }
+
+    boolean isSpilling() {
+        return (state & SPILLING) != 0;
+    }
+
+    long getSentCount() {
+        return sent.sum();
+    }
+
+    long getFailedCount() {
+        return failed.get();
+    }
+}
@@ -0,0 +1,83 @@
+package com.scada.gateway.kafka;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.scada.gateway.command.WriteAck;
+import com.scada.gateway.command.WriteCommand;
+import com.scada.gateway.command.WriteCommandService;
+import com.scada.gateway.config.WriteCommandConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Consumes JSON {@link WriteCommand}s in batches and publishes a {@link WriteAck} per command.
+ * <p>
+ * Each poll is executed as one batch, so a burst of setpoints turns into one Write request per
+ * server. Producers should key commands by {@code serverId/tagId}, so commands to a tag arrive
+ * in order and the last one of a batch wins. Offsets are committed after the batch was written.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "gateway.commands", name = "enabled", havingValue = "true")
+public class WriteCommandListener {
+
+    private final WriteCommandService commandService;
+    private final KafkaTemplate<byte[], byte[]> kafkaTemplate;
+    private final WriteCommandConfig config;
+    private final ObjectMapper objectMapper;
+    private volatile boolean ackTopicReady;
+
+    public WriteCommandListener(WriteCommandService commandService, KafkaTemplate<byte[], byte[]> kafkaTemplate,
+                                WriteCommandConfig config, ObjectMapper objectMapper) {
+        this.commandService = commandService;
+        this.kafkaTemplate = kafkaTemplate;
+        this.config = config;
+        this.objectMapper = objectMapper;
+        log.info("Accepting write commands from Kafka topic {}", config.getTopic());
+    }
+
+    @KafkaListener(id = "write-commands", topics = "${gateway.commands.topic}", batch = "true")
+    public void onCommands(List<ConsumerRecord<byte[], byte[]>> records) {
+        List<WriteCommand> commands = new ArrayList<>(records.size());
+        for (ConsumerRecord<byte[], byte[]> record : records) {
+            try {
+                WriteCommand command = objectMapper.readValue(record.value(), WriteCommand.class);
+                if (command.getTimestamp() <= 0) {
+                    command.setTimestamp(record.timestamp());
+                }
+                commands.add(command);
+            } catch (Exception e) {
+                log.warn("Ignoring malformed write command at {}-{}@{}: {}",
+                        record.topic(), record.partition(), record.offset(), e.getMessage());
+            }
+        }
+        if (commands.isEmpty()) {
+            return;
+        }
+
+        for (WriteAck ack : commandService.execute(commands)) {
+            publish(ack);
+        }
+    }
+
+    private void publish(WriteAck ack) {
+        try {
+            if (!ackTopicReady) {
+                // The producer does not block for metadata; fetch it before the first acknowledgement.
+                ackTopicReady = SpillingKafkaSender.awaitMetadata(kafkaTemplate, config.getAckTopic(), Duration.ofSeconds(10));
+            }
+            byte[] key = ack.getId() != null ? ack.getId().getBytes(StandardCharsets.UTF_8) : null;
+            kafkaTemplate.send(config.getAckTopic(), key, objectMapper.writeValueAsBytes(ack));
+        } catch (Exception e) {
+            log.error("Failed to publish write acknowledgement {}: {}", ack.getId(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.scada.gateway.modbus;
+
+import com.scada.gateway.config.ServersConfig;
+import com.scada.gateway.tag.TagDataType;
+import lombok.Value;
+
+import java.util.Locale;
+
+/**
+ * Register address of a Modbus tag, written {@code <area>:<offset>[:<type>[:<order>]]}, e.g.
+ * {@code hr:100}, {@code ir:12:float32} or {@code hr:40:int32:cdab}. The area is {@code hr}
+ * (holding registers) or {@code ir} (input registers), the offset the zero-based register
+ * number of the protocol. Without a type the encoding follows the data type of the tag, without
+ * an order the word order of the server applies.
+ */
+@Value
+public class ModbusAddress {
+
+    public enum Area {
+        HOLDING_REGISTERS(3),
+        INPUT_REGISTERS(4);
+
+        private final int functionCode;
+
+        Area(int functionCode) {
+            this.functionCode = functionCode;
+        }
+
+        public int functionCode() {
+            return functionCode;
+        }
+    }
+
+    Area area;
+    int offset;
+    ModbusDataType type;
+    ServersConfig.WordOrder order;
+
+    /** Register after the last one of the value. */
+    public int end() {
+        return offset + type.registers();
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code address} is not a valid register address
+     */
+    public static ModbusAddress parse(String address, TagDataType dataType, ServersConfig.WordOrder defaultOrder) {
+        String[] parts = address.trim().toLowerCase(Locale.ROOT).split(":");
+        if (parts.length < 2 || parts.length > 4) {
+            throw new IllegalArgumentException("Expected <area>:<offset>[:<type>[:<order>]], got '" + address + "'");
+        }
+        Area area = switch (parts[0]) {
+            case "hr", "holding" -> Area.HOLDING_REGISTERS;
+            case "ir", "input" -> Area.INPUT_REGISTERS;
+            default -> throw new IllegalArgumentException("Unknown register area '" + parts[0] + "'");
+        };
+        int offset;
+        try {
+            offset = Integer.parseInt(parts[1]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid register offset '" + parts[1] + "'");
+        }
+        ModbusDataType type = parts.length > 2
+                ? ModbusDataType.valueOf(parts[2].toUpperCase(Locale.ROOT))
+                : ModbusDataType.defaultFor(dataType);
+        ServersConfig.WordOrder order = parts.length > 3
+                ? ServersConfig.WordOrder.valueOf(parts[3].toUpperCase(Locale.ROOT))
+                : defaultOrder;
+        if (offset < 0 || offset + type.registers() > 65536) {
+            throw new IllegalArgumentException("Register offset " + offset + " out of range");
+        }
+        return new ModbusAddress(area, offset, type, order);
+    }
+}
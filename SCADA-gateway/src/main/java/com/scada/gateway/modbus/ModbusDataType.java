@@ -0,0 +1,114 @@
+package com.scada.gateway.modbus;
+
+import com.scada.gateway.config.ServersConfig;
+import com.scada.gateway.model.Sample;
+import com.scada.gateway.tag.TagDataType;
+
+import java.math.BigDecimal;
+
+/**
+ * Encoding of a value in consecutive registers. Values spanning several registers are
+ * assembled in the configured {@link ServersConfig.WordOrder}.
+ */
+public enum ModbusDataType {
+    INT16(1),
+    UINT16(1),
+    INT32(2),
+    UINT32(2),
+    FLOAT32(2),
+    FLOAT64(4);
+
+    private final int registers;
+
+    ModbusDataType(int registers) {
+        this.registers = registers;
+    }
+
+    public int registers() {
+        return registers;
+    }
+
+    /**
+     * Decodes the value starting at byte {@code offset} of {@code data}, register contents as
+     * sent on the wire, into {@code target}.
+     */
+    public void decode(byte[] data, int offset, ServersConfig.WordOrder order, Sample target) {
+        long bits = 0;
+        for (int i = 0; i < registers; i++) {
+            int position = offset + 2 * (order.isWordSwap() ? registers - 1 - i : i);
+            int high = data[position] & 0xFF;
+            int low = data[position + 1] & 0xFF;
+            bits = bits << 16 | (order.isByteSwap() ? low << 8 | high : high << 8 | low);
+        }
+        switch (this) {
+            case INT16 -> target.setLong((short) bits);
+            case UINT16, UINT32 -> target.setLong(bits);
+            case INT32 -> target.setLong((int) bits);
+            case FLOAT32 -> target.setDouble(Float.intBitsToFloat((int) bits));
+            case FLOAT64 -> target.setDouble(Double.longBitsToDouble(bits));
+        }
+    }
+
+    /**
+     * Encodes {@code value}, a number or boolean as received from outside, into register
+     * contents as sent on the wire; the inverse of {@link #decode}.
+     *
+     * @throws IllegalArgumentException if the value cannot be represented in this type
+     */
+    public byte[] encode(Object value, ServersConfig.WordOrder order) {
+        long bits = switch (this) {
+            case INT16 -> checkRange(toLong(value), Short.MIN_VALUE, Short.MAX_VALUE) & 0xFFFF;
+            case UINT16 -> checkRange(toLong(value), 0, 0xFFFF);
+            case INT32 -> checkRange(toLong(value), Integer.MIN_VALUE, Integer.MAX_VALUE) & 0xFFFFFFFFL;
+            case UINT32 -> checkRange(toLong(value), 0, 0xFFFFFFFFL);
+            case FLOAT32 -> Float.floatToIntBits(toDecimal(value).floatValue()) & 0xFFFFFFFFL;
+            case FLOAT64 -> Double.doubleToLongBits(toDecimal(value).doubleValue());
+        };
+        byte[] data = new byte[2 * registers];
+        for (int i = 0; i < registers; i++) {
+            int word = (int) (bits >>> 16 * (registers - 1 - i)) & 0xFFFF;
+            int position = 2 * (order.isWordSwap() ? registers - 1 - i : i);
+            data[position] = (byte) (order.isByteSwap() ? word : word >>> 8);
+            data[position + 1] = (byte) (order.isByteSwap() ? word >>> 8 : word);
+        }
+        return data;
+    }
+
+    private static BigDecimal toDecimal(Object value) {
+        if (value instanceof Boolean bool) {
+            return bool ? BigDecimal.ONE : BigDecimal.ZERO;
+        }
+        if (value == null) {
+            throw new IllegalArgumentException("Value is null");
+        }
+        try {
+            return new BigDecimal(value.toString().trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number: " + value);
+        }
+    }
+
+    private static long toLong(Object value) {
+        try {
+            return toDecimal(value).stripTrailingZeros().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Not an integer in range: " + value);
+        }
+    }
+
+    private static long checkRange(long value, long min, long max) {
+        if (value < min || value > max) {
+            throw new IllegalArgumentException(value + " is out of range [" + min + ", " + max + "]");
+        }
+        return value;
+    }
+
+    /** Encoding assumed for a tag whose address names none. */
+    static ModbusDataType defaultFor(TagDataType dataType) {
+        return switch (dataType) {
+            case FLOAT -> FLOAT32;
+            case DOUBLE -> FLOAT64;
+            default -> INT16;
+        };
+    }
+}
@@ -0,0 +1,264 @@
+package com.scada.gateway.modbus;
+
+import com.scada.gateway.config.ServersConfig;
+import com.scada.gateway.driver.Driver;
+import com.scada.gateway.event.EventRecorder;
+import com.scada.gateway.model.Sample;
+import com.scada.gateway.model.Status;
+import com.scada.gateway.tag.CompiledTag;
+import com.scada.gateway.tag.TagDataType;
+import com.scada.gateway.tag.TagTable;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Modbus TCP driver of a single server. Modbus has no subscriptions, so every tag is polled;
+ * the reads of a rate group are planned by the {@link ModbusReadPlanner}. Writes go to holding
+ * registers with function code 16, one request per tag. A server with a tag whose value spans
+ * more registers than {@code maxRegistersPerRead} is rejected.
+ * <p>
+ * Values carry the receive time as source and server timestamp, as Modbus has none. A read
+ * refused by the server yields bad values for its tags; a read that failed on the connection
+ * yields nothing, like a failed OPC UA Read request. The client reconnects on the next read
+ * once the reconnect delay has passed.
+ */
+@Slf4j
+public class ModbusDriver implements Driver<ModbusReadPlanner.Read> {
+
+    private static final int DEFAULT_PORT = 502;
+
+    private final ServersConfig.ServerConfig serverConfig;
+    private final TagTable tagTable;
+    private final EventRecorder events;
+    private final ModbusTcpClient client;
+    /** Runs the writes; started by {@link #connect()} and shut down by {@link #disconnect()}. */
+    private volatile ExecutorService writes;
+    private volatile boolean connected;
+    /** Set while a connection that was up is lost. */
+    private boolean lost;
+
+    public ModbusDriver(ServersConfig.ServerConfig serverConfig, TagTable tagTable, EventRecorder events) {
+        this.serverConfig = serverConfig;
+        this.tagTable = tagTable;
+        this.events = events;
+        URI endpoint = URI.create(serverConfig.getEndpoint());
+        if (endpoint.getHost() == null) {
+            throw new IllegalArgumentException("Invalid Modbus endpoint " + serverConfig.getEndpoint()
+                    + ", expected modbus-tcp://host:port");
+        }
+        ServersConfig.ModbusConfig modbus = serverConfig.getModbus();
+        for (CompiledTag tag : tagTable.getServerTags(serverConfig.getId())) {
+            ModbusAddress address = addressOf(tag);
+            if (address != null) {
+                try {
+                    ModbusReadPlanner.check(address, modbus.getMaxRegistersPerRead());
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Tag " + tag.getPath() + " does not fit maxRegistersPerRead "
+                            + modbus.getMaxRegistersPerRead() + ": " + e.getMessage());
+                }
+            }
+        }
+        this.client = new ModbusTcpClient(endpoint.getHost(), endpoint.getPort() > 0 ? endpoint.getPort() : DEFAULT_PORT,
+                modbus.getUnitId(), modbus.getTimeout(), serverConfig.getReconnectDelay());
+    }
+
+    @Override
+    public void connect() throws IOException {
+        synchronized (this) {
+            if (writes == null) {
+                writes = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("modbus-write-", 0).factory());
+            }
+        }
+        client.connect();
+        connectionUp();
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    public List<ModbusReadPlanner.Read> planReads(List<CompiledTag> tags) {
+        ServersConfig.ModbusConfig modbus = serverConfig.getModbus();
+        List<ModbusReadPlanner.Point> points = new ArrayList<>(tags.size());
+        for (CompiledTag tag : tags) {
+            ModbusAddress address = addressOf(tag);
+            if (address == null) {
+                continue;
+            }
+            try {
+                // Tags added at runtime are checked here; the configured ones were by the constructor.
+                ModbusReadPlanner.check(address, modbus.getMaxRegistersPerRead());
+            } catch (IllegalArgumentException e) {
+                log.warn("Tag {} skipped: {}", tag.getPath(), e.getMessage());
+                continue;
+            }
+            points.add(new ModbusReadPlanner.Point(tag.getIndex(), address));
+        }
+        return ModbusReadPlanner.plan(points, modbus.getGapTolerance(), modbus.getMaxRegistersPerRead());
+    }
+
+    private ModbusAddress addressOf(CompiledTag tag) {
+        try {
+            return ModbusAddress.parse(tag.getAddress(), tag.getDataType(), serverConfig.getModbus().getWordOrder());
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid Modbus address '{}' of tag {}, skipped: {}", tag.getAddress(), tag.getPath(),
+                    e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public CompletionStage<?> read(ModbusReadPlanner.Read read, Consumer<Sample> values) {
+        Sample sample = new Sample();
+        try {
+            byte[] data = client.readRegisters(read.area(), read.start(), read.count());
+            connectionUp();
+            publish(read, data, sample, values);
+            return CompletableFuture.completedFuture(null);
+        } catch (ModbusException e) {
+            connectionUp();
+            long now = System.currentTimeMillis();
+            for (int tagIndex : read.tagIndices()) {
+                values.accept(sample.set(tagIndex, statusOf(e), now, now, now));
+            }
+            return CompletableFuture.failedFuture(e);
+        } catch (IOException e) {
+            connectionDown(e);
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private void publish(ModbusReadPlanner.Read read, byte[] data, Sample sample, Consumer<Sample> values) {
+        long now = System.currentTimeMillis();
+        int[] tagIndices = read.tagIndices();
+        for (int i = 0; i < tagIndices.length; i++) {
+            ModbusAddress address = read.addresses()[i];
+            sample.set(tagIndices[i], 0, now, now, now);
+            address.getType().decode(data, 2 * (address.getOffset() - read.start()), address.getOrder(), sample);
+            CompiledTag tag = tagTable.get(tagIndices[i]);
+            if (tag != null && tag.getDataType() == TagDataType.BOOLEAN) {
+                sample.setBoolean(sample.booleanValue());
+            }
+            values.accept(sample);
+        }
+    }
+
+    /**
+     * Writes the tags one after another on a virtual thread. Input registers are answered with
+     * {@code Bad_NotWritable} and values out of the range of the register type with
+     * {@code Bad_TypeMismatch}, both without being sent. After {@link #disconnect()} all tags
+     * are answered with {@code Bad_ServerNotConnected}.
+     */
+    @Override
+    public CompletableFuture<int[]> write(List<CompiledTag> tags, List<Object> values) {
+        ExecutorService executor = writes;
+        try {
+            if (executor != null) {
+                return CompletableFuture.supplyAsync(() -> {
+                    int[] results = new int[tags.size()];
+                    for (int i = 0; i < results.length; i++) {
+                        results[i] = write(tags.get(i), values.get(i));
+                    }
+                    return results;
+                }, executor);
+            }
+        } catch (RejectedExecutionException e) {
+            // Disconnected meanwhile.
+        }
+        return CompletableFuture.completedFuture(Status.nCopies(tags.size(), Status.BAD_SERVER_NOT_CONNECTED));
+    }
+
+    private int write(CompiledTag tag, Object value) {
+        ModbusAddress address = addressOf(tag);
+        if (address == null) {
+            return Status.BAD_NODE_ID_INVALID;
+        }
+        if (address.getArea() != ModbusAddress.Area.HOLDING_REGISTERS) {
+            return Status.BAD_NOT_WRITABLE;
+        }
+        byte[] data;
+        try {
+            data = address.getType().encode(value, address.getOrder());
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejected write to {} on {}: {}", tag.getAddress(), serverConfig.getId(), e.getMessage());
+            return Status.BAD_TYPE_MISMATCH;
+        }
+        try {
+            client.writeRegisters(address.getOffset(), data);
+            connectionUp();
+            return Status.GOOD;
+        } catch (ModbusException e) {
+            connectionUp();
+            return statusOf(e);
+        } catch (IOException e) {
+            connectionDown(e);
+            return Status.BAD_COMMUNICATION_ERROR;
+        }
+    }
+
+    private static int statusOf(ModbusException e) {
+        return switch (e.getExceptionCode()) {
+            case ModbusException.ILLEGAL_FUNCTION -> Status.BAD_NOT_SUPPORTED;
+            case ModbusException.ILLEGAL_DATA_ADDRESS -> Status.BAD_NODE_ID_UNKNOWN;
+            case ModbusException.ILLEGAL_DATA_VALUE -> Status.BAD_OUT_OF_RANGE;
+            default -> Status.BAD_DEVICE_FAILURE;
+        };
+    }
+
+    private void connectionUp() {
+        if (connected) {
+            return;
+        }
+        boolean reconnected;
+        synchronized (this) {
+            if (connected) {
+                return;
+            }
+            reconnected = lost;
+            connected = true;
+            lost = false;
+        }
+        if (reconnected) {
+            log.info("Reconnected to Modbus server {}", serverConfig.getName());
+        }
+        events.connected(serverConfig.getId());
+    }
+
+    private void connectionDown(IOException error) {
+        synchronized (this) {
+            if (connected) {
+                connected = false;
+                lost = true;
+                log.warn("Lost connection to Modbus server {}: {}", serverConfig.getName(), error.getMessage());
+                events.disconnected(serverConfig.getId());
+            }
+        }
+    }
+
+    @Override
+    public void disconnect() {
+        ExecutorService running;
+        synchronized (this) {
+            running = writes;
+            writes = null;
+        }
+        if (running != null) {
+            // Writes already submitted still finish; no new ones are accepted.
+            running.shutdown();
+        }
+        client.close();
+        connected = false;
+    }
+}
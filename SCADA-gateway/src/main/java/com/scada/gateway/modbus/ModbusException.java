@@ -0,0 +1,27 @@
+package com.scada.gateway.modbus;
+
+import lombok.Getter;
+
+import java.io.IOException;
+
+/**
+ * Exception response of a Modbus server: the request was received but refused. The connection
+ * stays usable.
+ */
+@Getter
+public class ModbusException extends IOException {
+
+    public static final int ILLEGAL_FUNCTION = 1;
+    public static final int ILLEGAL_DATA_ADDRESS = 2;
+    public static final int ILLEGAL_DATA_VALUE = 3;
+    public static final int SERVER_DEVICE_FAILURE = 4;
+
+    private final int functionCode;
+    private final int exceptionCode;
+
+    public ModbusException(int functionCode, int exceptionCode) {
+        super("Modbus exception " + exceptionCode + " on function " + functionCode);
+        this.functionCode = functionCode;
+        this.exceptionCode = exceptionCode;
+    }
+}
@@ -0,0 +1,96 @@
+package com.scada.gateway.modbus;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Plans the read requests of a rate group. Registers of one area are sorted by offset and
+ * merged into blocks from left to right: the next value joins the current block if at most
+ * {@code gapTolerance} unused registers lie in between and the block stays within
+ * {@code maxRegisters}. Reading a few unused registers is much cheaper than another round trip,
+ * and the greedy merge yields the fewest requests those two limits allow.
+ * <p>
+ * A value is never split across requests, so no value may span more registers than one
+ * request reads; {@link #check} tells whether it fits.
+ */
+final class ModbusReadPlanner {
+
+    /** Absolute limit of registers per read request in the Modbus specification. */
+    static final int MAX_REGISTERS = 125;
+
+    record Point(int tagIndex, ModbusAddress address) {
+    }
+
+    /** One read request and the values it returns, as tag index and address pairs. */
+    record Read(ModbusAddress.Area area, int start, int count, int[] tagIndices, ModbusAddress[] addresses) {
+    }
+
+    private ModbusReadPlanner() {
+    }
+
+    /** Registers one request reads at most with {@code maxRegisters} configured. */
+    static int limit(int maxRegisters) {
+        return Math.max(1, Math.min(maxRegisters, MAX_REGISTERS));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the value at {@code address} spans more registers
+     *                                  than one request reads
+     */
+    static void check(ModbusAddress address, int maxRegisters) {
+        if (address.getType().registers() > limit(maxRegisters)) {
+            throw new IllegalArgumentException("Value spans " + address.getType().registers()
+                    + " registers, more than the " + limit(maxRegisters) + " read per request");
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if a value does not fit into one request
+     */
+    static List<Read> plan(List<Point> points, int gapTolerance, int maxRegisters) {
+        int limit = limit(maxRegisters);
+        points.forEach(point -> check(point.address(), maxRegisters));
+        int gap = Math.max(0, gapTolerance);
+        List<Point> sorted = new ArrayList<>(points);
+        sorted.sort(Comparator.comparing((Point point) -> point.address().getArea())
+                .thenComparingInt(point -> point.address().getOffset())
+                .thenComparingInt(point -> point.address().end()));
+
+        List<Read> reads = new ArrayList<>();
+        List<Point> block = new ArrayList<>();
+        int start = 0;
+        int end = 0;
+        for (Point point : sorted) {
+            ModbusAddress address = point.address();
+            boolean joins = !block.isEmpty()
+                    && address.getArea() == block.get(0).address().getArea()
+                    && address.getOffset() - end <= gap
+                    && Math.max(end, address.end()) - start <= limit;
+            if (!joins) {
+                flush(block, start, end, reads);
+                start = address.getOffset();
+                end = address.end();
+            } else {
+                end = Math.max(end, address.end());
+            }
+            block.add(point);
+        }
+        flush(block, start, end, reads);
+        return List.copyOf(reads);
+    }
+
+    private static void flush(List<Point> block, int start, int end, List<Read> reads) {
+        if (block.isEmpty()) {
+            return;
+        }
+        int[] tagIndices = new int[block.size()];
+        ModbusAddress[] addresses = new ModbusAddress[block.size()];
+        for (int i = 0; i < block.size(); i++) {
+            tagIndices[i] = block.get(i).tagIndex();
+            addresses[i] = block.get(i).address();
+        }
+        reads.add(new Read(addresses[0].getArea(), start, end - start, tagIndices, addresses));
+        block.clear();
+    }
+}
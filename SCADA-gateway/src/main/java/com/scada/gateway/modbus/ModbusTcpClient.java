@@ -0,0 +1,222 @@
+package com.scada.gateway.modbus;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Modbus TCP client of one server and unit. Requests are sent one at a time over a single
+ * connection, which every device supports; callers wait for the lock in turn, so a rate group
+ * that sends one read after another cannot starve a write. A lock rather than
+ * {@code synchronized} keeps the virtual threads of the rate groups unpinned while they block
+ * on the socket.
+ * <p>
+ * The connection is opened by {@link #connect()} or the first request and closed by any I/O
+ * error or timeout, so a late response can never be taken for the answer to a later request.
+ * After a failed connection attempt or a request that timed out, requests fail fast until the
+ * reconnect delay has passed, so an unresponsive device is not flooded with connections.
+ * Exception responses leave the connection open.
+ */
+public class ModbusTcpClient implements Closeable {
+
+    private static final int HEADER_SIZE = 7;
+    /** Largest PDU of the specification: function code and 252 data bytes. */
+    private static final int MAX_PDU_SIZE = 253;
+    private static final byte WRITE_MULTIPLE_REGISTERS = 16;
+
+    private final String host;
+    private final int port;
+    private final int unitId;
+    private final int timeoutMillis;
+    private final long reconnectDelayNanos;
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private volatile Socket socket;
+    private DataInputStream in;
+    private OutputStream out;
+    private int transactionId;
+    private long retryAt;
+
+    public ModbusTcpClient(String host, int port, int unitId, long timeoutMillis, long reconnectDelayMillis) {
+        this.host = host;
+        this.port = port;
+        this.unitId = unitId;
+        this.timeoutMillis = (int) timeoutMillis;
+        this.reconnectDelayNanos = TimeUnit.MILLISECONDS.toNanos(reconnectDelayMillis);
+    }
+
+    /**
+     * Reads {@code count} registers from {@code start} on and returns their contents as sent,
+     * two bytes per register, high byte first.
+     *
+     * @throws ModbusException if the server refused the request
+     * @throws IOException     if the server could not be reached or did not answer in time
+     */
+    public byte[] readRegisters(ModbusAddress.Area area, int start, int count) throws IOException {
+        byte[] pdu = {
+                (byte) area.functionCode(),
+                (byte) (start >>> 8), (byte) start,
+                (byte) (count >>> 8), (byte) count
+        };
+        byte[] response = exchange(pdu);
+        int byteCount = response.length > 1 ? response[1] & 0xFF : -1;
+        if (byteCount != 2 * count || response.length != 2 + byteCount) {
+            close();
+            throw new IOException("Malformed response to read of " + count + " registers from " + host);
+        }
+        return Arrays.copyOfRange(response, 2, response.length);
+    }
+
+    /**
+     * Writes {@code data}, register contents as sent on the wire, to the holding registers
+     * from {@code start} on with function code 16.
+     *
+     * @throws ModbusException if the server refused the request
+     * @throws IOException     if the server could not be reached or did not answer in time
+     */
+    public void writeRegisters(int start, byte[] data) throws IOException {
+        int count = data.length / 2;
+        byte[] pdu = new byte[6 + data.length];
+        pdu[0] = WRITE_MULTIPLE_REGISTERS;
+        pdu[1] = (byte) (start >>> 8);
+        pdu[2] = (byte) start;
+        pdu[3] = (byte) (count >>> 8);
+        pdu[4] = (byte) count;
+        pdu[5] = (byte) data.length;
+        System.arraycopy(data, 0, pdu, 6, data.length);
+        byte[] response = exchange(pdu);
+        // The response echoes the start address and the register count.
+        if (response.length != 5 || !Arrays.equals(response, 1, 5, pdu, 1, 5)) {
+            close();
+            throw new IOException("Malformed response to write of " + count + " registers to " + host);
+        }
+    }
+
+    /**
+     * Sends {@code pdu} and returns the PDU of the response.
+     */
+    private byte[] exchange(byte[] pdu) throws IOException {
+        lock.lock();
+        try {
+            ensureConnected();
+            int id = transactionId = (transactionId + 1) & 0xFFFF;
+            try {
+                byte[] frame = new byte[HEADER_SIZE + pdu.length];
+                frame[0] = (byte) (id >>> 8);
+                frame[1] = (byte) id;
+                // Bytes 2 and 3: protocol identifier 0.
+                frame[4] = (byte) ((pdu.length + 1) >>> 8);
+                frame[5] = (byte) (pdu.length + 1);
+                frame[6] = (byte) unitId;
+                System.arraycopy(pdu, 0, frame, HEADER_SIZE, pdu.length);
+                out.write(frame);
+                out.flush();
+
+                int responseId = in.readUnsignedShort();
+                int protocol = in.readUnsignedShort();
+                int length = in.readUnsignedShort();
+                in.readUnsignedByte();
+                if (responseId != id || protocol != 0 || length < 2 || length > MAX_PDU_SIZE + 1) {
+                    throw new IOException("Invalid response header from " + host + ":" + port);
+                }
+                byte[] response = new byte[length - 1];
+                in.readFully(response);
+                if ((response[0] & 0xFF) == (pdu[0] | 0x80)) {
+                    throw new ModbusException(pdu[0], response.length > 1 ? response[1] & 0xFF : 0);
+                }
+                if (response[0] != pdu[0]) {
+                    throw new IOException("Unexpected function code " + (response[0] & 0xFF) + " from " + host);
+                }
+                return response;
+            } catch (ModbusException e) {
+                throw e;
+            } catch (IOException e) {
+                closeConnection();
+                if (e instanceof SocketTimeoutException) {
+                    retryAt = System.nanoTime() + reconnectDelayNanos;
+                }
+                throw e;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Opens the connection unless it is open, regardless of the reconnect delay.
+     *
+     * @throws IOException if the server could not be reached
+     */
+    public void connect() throws IOException {
+        lock.lock();
+        try {
+            if (socket == null) {
+                open();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void ensureConnected() throws IOException {
+        if (socket != null) {
+            return;
+        }
+        if (System.nanoTime() - retryAt < 0) {
+            throw new IOException("Not connected to " + host + ":" + port + ", waiting to reconnect");
+        }
+        open();
+    }
+
+    private void open() throws IOException {
+        Socket connection = new Socket();
+        try {
+            connection.connect(new InetSocketAddress(host, port), timeoutMillis);
+            connection.setSoTimeout(timeoutMillis);
+            connection.setTcpNoDelay(true);
+            in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+            out = new BufferedOutputStream(connection.getOutputStream());
+            socket = connection;
+        } catch (IOException e) {
+            retryAt = System.nanoTime() + reconnectDelayNanos;
+            connection.close();
+            throw e;
+        }
+    }
+
+    public boolean isConnected() {
+        return socket != null;
+    }
+
+    private void closeConnection() {
+        if (socket == null) {
+            return;
+        }
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Nothing left to release.
+        }
+        socket = null;
+        in = null;
+        out = null;
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closeConnection();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.scada.gateway.model;
+
+import lombok.Getter;
+
+/**
+ * Compact, mutable representation of one acquired value.
+ * <p>
+ * The value is kept in a primitive slot ({@code long} bits or {@code double} bits, selected
+ * by {@link ValueType}), the status is the raw 32-bit OPC UA status code and all timestamps
+ * are epoch milliseconds. Tag metadata is not copied into the sample; it is looked up
+ * through {@link #getTagIndex()}. Producers may reuse an instance for several values,
+ * so consumers that keep a sample beyond the call must {@link #copy()} it.
+ */
+@Getter
+public final class Sample {
+
+    public enum ValueType {
+        NULL,
+        BOOLEAN,
+        LONG,
+        DOUBLE,
+        STRING
+    }
+
+    private int tagIndex;
+    private ValueType valueType = ValueType.NULL;
+    private long valueBits;
+    private String text;
+    private int statusCode;
+    private long sourceTime;
+    private long serverTime;
+    private long receiveTime;
+
+    public Sample set(int tagIndex, int statusCode, long sourceTime, long serverTime, long receiveTime) {
+        this.tagIndex = tagIndex;
+        this.statusCode = statusCode;
+        this.sourceTime = sourceTime;
+        this.serverTime = serverTime;
+        this.receiveTime = receiveTime;
+        return setNull();
+    }
+
+    public Sample setStatusCode(int statusCode) {
+        this.statusCode = statusCode;
+        return this;
+    }
+
+    public Sample setNull() {
+        valueType = ValueType.NULL;
+        valueBits = 0;
+        text = null;
+        return this;
+    }
+
+    public Sample setBoolean(boolean value) {
+        valueType = ValueType.BOOLEAN;
+        valueBits = value ? 1 : 0;
+        text = null;
+        return this;
+    }
+
+    public Sample setLong(long value) {
+        valueType = ValueType.LONG;
+        valueBits = value;
+        text = null;
+        return this;
+    }
+
+    public Sample setDouble(double value) {
+        valueType = ValueType.DOUBLE;
+        valueBits = Double.doubleToRawLongBits(value);
+        text = null;
+        return this;
+    }
+
+    public Sample setText(String value) {
+        if (value == null) {
+            return setNull();
+        }
+        valueType = ValueType.STRING;
+        valueBits = 0;
+        text = value;
+        return this;
+    }
+
+    /** Sets the value from raw type and bits, as stored in a value table or a binary record. */
+    public Sample setRaw(ValueType type, long bits, String text) {
+        this.valueType = type;
+        this.valueBits = bits;
+        this.text = type == ValueType.STRING ? text : null;
+        return this;
+    }
+
+    public boolean isGood() {
+        return (statusCode & 0xC0000000) == 0;
+    }
+
+    public boolean isNumeric() {
+        return valueType == ValueType.LONG || valueType == ValueType.DOUBLE || valueType == ValueType.BOOLEAN;
+    }
+
+    public boolean booleanValue() {
+        return switch (valueType) {
+            case BOOLEAN, LONG -> valueBits != 0;
+            case DOUBLE -> doubleValue() != 0;
+            case STRING -> Boolean.parseBoolean(text);
+            case NULL -> false;
+        };
+    }
+
+    public long longValue() {
+        return switch (valueType) {
+            case BOOLEAN, LONG -> valueBits;
+            case DOUBLE -> (long) Double.longBitsToDouble(valueBits);
+            case STRING, NULL -> 0;
+        };
+    }
+
+    public double doubleValue() {
+        return switch (valueType) {
+            case BOOLEAN, LONG -> valueBits;
+            case DOUBLE -> Double.longBitsToDouble(valueBits);
+            case STRING, NULL -> Double.NaN;
+        };
+    }
+
+    /** Boxes the value; meant for edge conversions, not for the acquisition path. */
+    public Object toObject() {
+        return switch (valueType) {
+            case BOOLEAN -> valueBits != 0;
+            case LONG -> valueBits;
+            case DOUBLE -> Double.longBitsToDouble(valueBits);
+            case STRING -> text;
+            case NULL -> null;
+        };
+    }
+
+    public Sample copy() {
+        return copyTo(new Sample());
+    }
+
+    public Sample copyTo(Sample target) {
+        target.tagIndex = tagIndex;
+        target.valueType = valueType;
+        target.valueBits = valueBits;
+        target.text = text;
+        target.statusCode = statusCode;
+        target.sourceTime = sourceTime;
+        target.serverTime = serverTime;
+        target.receiveTime = receiveTime;
+        return target;
+    }
+
+    @Override
+    public String toString() {
+        return "Sample{tag=" + tagIndex + ", value=" + toObject() + ", status=0x"
+                + Integer.toHexString(statusCode) + ", sourceTime=" + sourceTime + "}";
+    }
+}
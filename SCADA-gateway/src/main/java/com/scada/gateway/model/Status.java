@@ -0,0 +1,39 @@
+package com.scada.gateway.model;
+
+import java.util.Arrays;
+
+/**
+ * The status codes drivers report, as raw 32-bit values like {@link Sample#getStatusCode()}.
+ * The numbering is OPC UA's, the gateway's quality vocabulary for every protocol, so drivers
+ * other than the OPC UA one need no OPC UA stack to answer reads and writes.
+ */
+public final class Status {
+
+    public static final int GOOD = 0;
+    public static final int BAD_UNEXPECTED_ERROR = 0x80010000;
+    public static final int BAD_COMMUNICATION_ERROR = 0x80050000;
+    public static final int BAD_TIMEOUT = 0x800A0000;
+    public static final int BAD_SERVER_NOT_CONNECTED = 0x800D0000;
+    public static final int BAD_NODE_ID_INVALID = 0x80330000;
+    public static final int BAD_NODE_ID_UNKNOWN = 0x80340000;
+    public static final int BAD_NOT_WRITABLE = 0x803B0000;
+    public static final int BAD_OUT_OF_RANGE = 0x803C0000;
+    public static final int BAD_NOT_SUPPORTED = 0x803D0000;
+    public static final int BAD_TYPE_MISMATCH = 0x80740000;
+    public static final int BAD_DEVICE_FAILURE = 0x808B0000;
+
+    private Status() {
+    }
+
+    /** {@code count} times the same status, e.g. to answer a whole write that was not sent. */
+    public static int[] nCopies(int count, int status) {
+        int[] statuses = new int[count];
+        Arrays.fill(statuses, status);
+        return statuses;
+    }
+
+    /** The status as the unsigned value OPC UA APIs and the event journal take. */
+    public static long unsigned(int status) {
+        return Integer.toUnsignedLong(status);
+    }
+}
@@ -1,5 +1,6 @@
 package com.scada.gateway.model;
 
+import com.scada.gateway.tag.CompiledTag;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -14,9 +15,25 @@ public class TagValue {
     private String serverId;
     private String tagId;
     private String tagName;
+    private String path;
     private Object value;
     private String dataType;
     private String quality;
     private Instant timestamp;
     private String unit;
+
+    /** Builds the DTO for a sample at the edge of the gateway (REST, JSON). */
+    public static TagValue of(CompiledTag tag, Sample sample) {
+        return TagValue.builder()
+                .serverId(tag.getServerId())
+                .tagId(tag.getAddress())
+                .tagName(tag.getName())
+                .path(tag.getPath())
+                .value(tag.getDataType().toObject(sample))
+                .dataType(tag.getDataType().name())
+                .quality(sample.isGood() ? "GOOD" : "BAD")
+                .timestamp(Instant.ofEpochMilli(sample.getReceiveTime()))
+                .unit(tag.getUnit())
+                .build();
+    }
 }
\ No newline at end of file
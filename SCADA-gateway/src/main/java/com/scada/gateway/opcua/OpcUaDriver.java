@@ -0,0 +1,512 @@
+package com.scada.gateway.opcua;
+
+import com.scada.gateway.config.ServersConfig;
+import com.scada.gateway.driver.Driver;
+import com.scada.gateway.event.EventRecorder;
+import com.scada.gateway.model.Sample;
+import com.scada.gateway.model.Status;
+import com.scada.gateway.tag.CompiledTag;
+import com.scada.gateway.tag.TagTable;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.sdk.client.SessionActivityListener;
+import org.eclipse.milo.opcua.sdk.client.api.UaSession;
+import org.eclipse.milo.opcua.sdk.client.api.config.OpcUaClientConfig;
+import org.eclipse.milo.opcua.sdk.client.api.subscriptions.UaMonitoredItem;
+import org.eclipse.milo.opcua.sdk.client.api.subscriptions.UaSubscription;
+import org.eclipse.milo.opcua.sdk.client.api.subscriptions.UaSubscriptionManager;
+import org.eclipse.milo.opcua.stack.client.DiscoveryClient;
+import org.eclipse.milo.opcua.stack.core.AttributeId;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.types.builtin.*;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.UInteger;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.MonitoringMode;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.TimestampsToReturn;
+import org.eclipse.milo.opcua.stack.core.types.structured.EndpointDescription;
+import org.eclipse.milo.opcua.stack.core.types.structured.MonitoredItemCreateRequest;
+import org.eclipse.milo.opcua.stack.core.types.structured.MonitoredItemModifyRequest;
+import org.eclipse.milo.opcua.stack.core.types.structured.MonitoringParameters;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReadValueId;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+import static org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.Unsigned.uint;
+
+/**
+ * OPC UA driver of a single server, built on the Milo client. Polled tags are read with
+ * pre-built Read requests of up to {@code MaxNodesPerRead} nodes, subscribed tags are
+ * monitored items of one subscription. Milo re-activates a lost session by itself and tries to
+ * transfer the subscription to it; if the transfer fails, the driver creates the subscription
+ * with all its monitored items anew.
+ */
+@Slf4j
+public class OpcUaDriver implements Driver<OpcUaDriver.ReadBatch> {
+
+    private static final int DEFAULT_MAX_NODES_PER_READ = 1000;
+    private static final int DEFAULT_MAX_NODES_PER_WRITE = 100;
+    private static final int DEFAULT_MAX_MONITORED_ITEMS_PER_CALL = 1000;
+
+    private final ServersConfig.ServerConfig serverConfig;
+    private final TagTable tagTable;
+    private final EventRecorder events;
+    /** Guards assigning and clearing {@link #client}, so a disconnect never misses a client being connected. */
+    private final Object clientLock = new Object();
+    private volatile OpcUaClient client;
+    private volatile boolean sessionActive;
+    private UaSubscription subscription;
+    /** Monitored item of each subscribed tag and the tag definition it was created for, by tag index. */
+    private final Map<Integer, MonitoredTag> monitoredTags = new HashMap<>();
+    private List<CompiledTag> subscribedTags = List.of();
+    private Consumer<Sample> subscriptionValues;
+    private volatile int maxNodesPerRead;
+    private volatile int maxNodesPerWrite;
+    private volatile int maxMonitoredItemsPerCall;
+    /** Java type of the value of each written node, by tag index; resolved on the first write. */
+    private final Map<Integer, Class<?>> writeTypes = new ConcurrentHashMap<>();
+    private final Semaphore inFlightReads;
+
+    /** Pre-built node id list of one Read request and the tag indices its results map to. */
+    record ReadBatch(int[] tagIndices, List<NodeId> nodeIds) {
+    }
+
+    private record MonitoredTag(CompiledTag tag, UaMonitoredItem item) {
+    }
+
+    public OpcUaDriver(ServersConfig.ServerConfig serverConfig, TagTable tagTable, EventRecorder events) {
+        this.serverConfig = serverConfig;
+        this.tagTable = tagTable;
+        this.events = events;
+        this.inFlightReads = new Semaphore(Math.max(1, serverConfig.getMaxInFlightReads()));
+        // Narrowed to the server's operation limits on connect.
+        this.maxNodesPerRead = serverConfig.getMaxNodesPerRead() > 0
+                ? serverConfig.getMaxNodesPerRead() : DEFAULT_MAX_NODES_PER_READ;
+        this.maxNodesPerWrite = serverConfig.getMaxNodesPerWrite() > 0
+                ? serverConfig.getMaxNodesPerWrite() : DEFAULT_MAX_NODES_PER_WRITE;
+        this.maxMonitoredItemsPerCall = serverConfig.getMaxMonitoredItemsPerCall() > 0
+                ? serverConfig.getMaxMonitoredItemsPerCall() : DEFAULT_MAX_MONITORED_ITEMS_PER_CALL;
+    }
+
+    @Override
+    public void connect() throws Exception {
+        List<EndpointDescription> endpoints = DiscoveryClient.getEndpoints(
+                serverConfig.getEndpoint()).get();
+
+        EndpointDescription endpoint = endpoints.stream()
+                .findFirst()
+                .orElseThrow(() -> new RuntimeException("No endpoints found"));
+
+        OpcUaClientConfig config = OpcUaClientConfig.builder()
+                .setApplicationName(LocalizedText.english("SCADA Gateway"))
+                .setApplicationUri("urn:scada:gateway")
+                .setEndpoint(endpoint)
+                .build();
+
+        connect(OpcUaClient.create(config));
+    }
+
+    /** Connects {@code created} and makes it the client of this driver. */
+    void connect(OpcUaClient created) throws Exception {
+        synchronized (clientLock) {
+            client = created;
+        }
+        created.addSessionActivityListener(new SessionActivityListener() {
+            @Override
+            public void onSessionActive(UaSession session) {
+                sessionActive = true;
+                events.connected(serverConfig.getId());
+            }
+
+            @Override
+            public void onSessionInactive(UaSession session) {
+                sessionActive = false;
+                events.disconnected(serverConfig.getId());
+            }
+        });
+        created.getSubscriptionManager().addSubscriptionListener(new UaSubscriptionManager.SubscriptionListener() {
+            @Override
+            public void onSubscriptionTransferFailed(UaSubscription failed, StatusCode statusCode) {
+                // Not on Milo's thread: re-creating the items waits for the server.
+                Thread.ofVirtual()
+                        .name("opcua-resubscribe-" + serverConfig.getId())
+                        .start(() -> recreateSubscription(failed, statusCode));
+            }
+        });
+        created.connect().get();
+        synchronized (clientLock) {
+            if (client != created) {
+                // disconnect() ran while connecting, e.g. because the session was stopped.
+                close(created);
+                throw new IllegalStateException("Disconnected from " + serverConfig.getName() + " while connecting");
+            }
+        }
+
+        synchronized (this) {
+            subscription = null;
+            monitoredTags.clear();
+        }
+        resolveOperationLimits();
+    }
+
+    @Override
+    public boolean isConnected() {
+        return client != null && sessionActive;
+    }
+
+    @Override
+    public void tagsChanged(List<CompiledTag> tags) {
+        Set<Integer> live = new HashSet<>(tags.size() * 2);
+        tags.forEach(tag -> live.add(tag.getIndex()));
+        writeTypes.keySet().retainAll(live);
+    }
+
+    private void resolveOperationLimits() {
+        maxNodesPerRead = resolveOperationLimit(serverConfig.getMaxNodesPerRead(),
+                Identifiers.Server_ServerCapabilities_OperationLimits_MaxNodesPerRead, DEFAULT_MAX_NODES_PER_READ);
+        maxNodesPerWrite = resolveOperationLimit(serverConfig.getMaxNodesPerWrite(),
+                Identifiers.Server_ServerCapabilities_OperationLimits_MaxNodesPerWrite, DEFAULT_MAX_NODES_PER_WRITE);
+        maxMonitoredItemsPerCall = resolveOperationLimit(serverConfig.getMaxMonitoredItemsPerCall(),
+                Identifiers.Server_ServerCapabilities_OperationLimits_MaxMonitoredItemsPerCall,
+                DEFAULT_MAX_MONITORED_ITEMS_PER_CALL);
+        log.info("Reading up to {} and writing up to {} nodes and changing up to {} monitored items per request on {}",
+                maxNodesPerRead, maxNodesPerWrite, maxMonitoredItemsPerCall, serverConfig.getName());
+    }
+
+    @Override
+    public List<ReadBatch> planReads(List<CompiledTag> tags) {
+        int limit = maxNodesPerRead;
+        List<ReadBatch> batches = new ArrayList<>();
+        for (int from = 0; from < tags.size(); from += limit) {
+            List<CompiledTag> chunk = tags.subList(from, Math.min(from + limit, tags.size()));
+            int[] tagIndices = new int[chunk.size()];
+            List<NodeId> nodeIds = new ArrayList<>(chunk.size());
+            for (int i = 0; i < chunk.size(); i++) {
+                tagIndices[i] = chunk.get(i).getIndex();
+                nodeIds.add(chunk.get(i).getNodeId());
+            }
+            batches.add(new ReadBatch(tagIndices, List.copyOf(nodeIds)));
+        }
+        return List.copyOf(batches);
+    }
+
+    @Override
+    public boolean supportsSubscriptions() {
+        return true;
+    }
+
+    /**
+     * Brings the monitored items in line with the subscribed tags: items are created for new
+     * tags, modified when the sampling interval or queue size of their tag changed and deleted
+     * for tags that were removed or switched to polling. The subscription is created with the
+     * first item. Items that failed are retried by the next call. Each service call carries at
+     * most {@code maxMonitoredItemsPerCall} items, the smaller of the configured limit and the
+     * server's MaxMonitoredItemsPerCall.
+     */
+    @Override
+    public synchronized void subscribe(List<CompiledTag> tags, Consumer<Sample> values) {
+        subscribedTags = tags;
+        subscriptionValues = values;
+        List<CompiledTag> create = new ArrayList<>();
+        List<CompiledTag> modify = new ArrayList<>();
+        Set<Integer> subscribed = new HashSet<>();
+        for (CompiledTag tag : tags) {
+            subscribed.add(tag.getIndex());
+            MonitoredTag monitored = monitoredTags.get(tag.getIndex());
+            if (monitored == null) {
+                create.add(tag);
+            } else if (monitored.tag().getPollingRate() != tag.getPollingRate()
+                    || monitored.tag().getQueueSize() != tag.getQueueSize()) {
+                modify.add(tag);
+            }
+        }
+        List<UaMonitoredItem> delete = new ArrayList<>();
+        for (Iterator<Map.Entry<Integer, MonitoredTag>> it = monitoredTags.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Integer, MonitoredTag> entry = it.next();
+            if (!subscribed.contains(entry.getKey())) {
+                delete.add(entry.getValue().item());
+                it.remove();
+            }
+        }
+        if (create.isEmpty() && modify.isEmpty() && delete.isEmpty()) {
+            return;
+        }
+
+        try {
+            if (subscription == null) {
+                subscription = client.getSubscriptionManager()
+                        .createSubscription(serverConfig.getPublishingInterval())
+                        .get();
+                log.info("Created subscription on {} (publishing interval {} ms)",
+                        serverConfig.getName(), serverConfig.getPublishingInterval());
+            }
+            int limit = maxMonitoredItemsPerCall;
+            for (int from = 0; from < delete.size(); from += limit) {
+                subscription.deleteMonitoredItems(delete.subList(from, Math.min(from + limit, delete.size()))).get();
+            }
+            for (int from = 0; from < create.size(); from += limit) {
+                createMonitoredItems(create.subList(from, Math.min(from + limit, create.size())));
+            }
+            for (int from = 0; from < modify.size(); from += limit) {
+                modifyMonitoredItems(modify.subList(from, Math.min(from + limit, modify.size())));
+            }
+
+            log.info("Subscription on {}: {} items created, {} modified, {} deleted, {} monitored",
+                    serverConfig.getName(), create.size(), modify.size(), delete.size(), monitoredTags.size());
+        } catch (Exception e) {
+            log.error("Failed to update subscription on {}: {}", serverConfig.getName(), e.getMessage());
+        }
+    }
+
+    /**
+     * Milo re-activates a lost session and transfers its subscription to the new one. When the
+     * server no longer has the subscription, e.g. because it restarted, the transfer fails and
+     * the subscription with all its items is created anew.
+     */
+    private synchronized void recreateSubscription(UaSubscription failed, StatusCode statusCode) {
+        if (failed != subscription) {
+            return;
+        }
+        log.warn("Subscription on {} could not be transferred to the new session ({}), re-creating {} items",
+                serverConfig.getName(), statusCode, monitoredTags.size());
+        subscription = null;
+        monitoredTags.clear();
+        subscribe(subscribedTags, subscriptionValues);
+    }
+
+    private void createMonitoredItems(List<CompiledTag> batch) throws Exception {
+        List<MonitoredItemCreateRequest> requests = new ArrayList<>(batch.size());
+        for (CompiledTag tag : batch) {
+            ReadValueId readValueId = new ReadValueId(
+                    tag.getNodeId(), AttributeId.Value.uid(), null, QualifiedName.NULL_VALUE);
+            MonitoringParameters parameters = monitoringParameters(subscription.nextClientHandle(), tag);
+            requests.add(new MonitoredItemCreateRequest(readValueId, MonitoringMode.Reporting, parameters));
+        }
+
+        Consumer<Sample> values = subscriptionValues;
+        UaSubscription.ItemCreationCallback onItemCreated = (item, index) -> {
+            int tagIndex = batch.get(index).getIndex();
+            // Milo delivers the values of an item one after another, so the item can reuse one sample.
+            Sample sample = new Sample();
+            item.setValueConsumer(dataValue -> values.accept(toSample(tagIndex, dataValue, sample)));
+        };
+
+        List<UaMonitoredItem> items = subscription
+                .createMonitoredItems(TimestampsToReturn.Both, requests, onItemCreated)
+                .get();
+
+        for (int i = 0; i < items.size(); i++) {
+            if (items.get(i).getStatusCode().isGood()) {
+                monitoredTags.put(batch.get(i).getIndex(), new MonitoredTag(batch.get(i), items.get(i)));
+            } else {
+                log.warn("Failed to monitor tag {}: {}", batch.get(i).getAddress(), items.get(i).getStatusCode());
+            }
+        }
+    }
+
+    private void modifyMonitoredItems(List<CompiledTag> batch) throws Exception {
+        List<MonitoredItemModifyRequest> requests = new ArrayList<>(batch.size());
+        List<UaMonitoredItem> items = new ArrayList<>(batch.size());
+        for (CompiledTag tag : batch) {
+            UaMonitoredItem item = monitoredTags.get(tag.getIndex()).item();
+            items.add(item);
+            requests.add(new MonitoredItemModifyRequest(item.getMonitoredItemId(),
+                    monitoringParameters(item.getClientHandle(), tag)));
+        }
+
+        List<StatusCode> results = subscription.modifyMonitoredItems(TimestampsToReturn.Both, requests).get();
+        for (int i = 0; i < results.size(); i++) {
+            if (results.get(i).isGood()) {
+                monitoredTags.put(batch.get(i).getIndex(), new MonitoredTag(batch.get(i), items.get(i)));
+            } else {
+                log.warn("Failed to modify monitored item of tag {}: {}", batch.get(i).getAddress(), results.get(i));
+            }
+        }
+    }
+
+    private static MonitoringParameters monitoringParameters(UInteger clientHandle, CompiledTag tag) {
+        return new MonitoringParameters(clientHandle, (double) tag.getPollingRate(), null, uint(tag.getQueueSize()), true);
+    }
+
+    /**
+     * Returns the smaller of the configured limit and the one the server reports in its
+     * OperationLimits, or {@code defaultLimit} if neither is set.
+     */
+    private int resolveOperationLimit(int configured, NodeId limitNode, int defaultLimit) {
+        int limit = configured > 0 ? configured : Integer.MAX_VALUE;
+        try {
+            DataValue dataValue = client.readValue(0, TimestampsToReturn.Neither, limitNode).get();
+            Object value = dataValue.getValue().getValue();
+            if (value instanceof UInteger serverLimit && serverLimit.longValue() > 0) {
+                limit = (int) Math.min(limit, serverLimit.longValue());
+            }
+        } catch (Exception e) {
+            log.warn("Could not read {} from {}: {}", limitNode, serverConfig.getName(), e.getMessage());
+        }
+        return limit == Integer.MAX_VALUE ? defaultLimit : limit;
+    }
+
+    /**
+     * Sends one Read request without waiting for its response. At most
+     * {@code maxInFlightReads} requests are outstanding per server; when the window is full
+     * the calling group worker waits for a slot, which throttles acquisition to what the
+     * link and the server can sustain.
+     */
+    @Override
+    public CompletionStage<?> read(ReadBatch batch, Consumer<Sample> values) throws InterruptedException {
+        OpcUaClient current = client;
+        if (current == null) {
+            throw new IllegalStateException("Not connected to " + serverConfig.getName());
+        }
+        inFlightReads.acquire();
+
+        CompletableFuture<List<DataValue>> response;
+        try {
+            response = current.readValues(0, TimestampsToReturn.Both, batch.nodeIds());
+        } catch (RuntimeException e) {
+            inFlightReads.release();
+            throw e;
+        }
+
+        return response
+                .whenComplete((dataValues, error) -> inFlightReads.release())
+                .thenAccept(dataValues -> {
+                    Sample sample = new Sample();
+                    int[] tagIndices = batch.tagIndices();
+                    for (int i = 0; i < tagIndices.length; i++) {
+                        values.accept(toSample(tagIndices[i], dataValues.get(i), sample));
+                    }
+                });
+    }
+
+    /**
+     * Writes one value per tag, sending at most {@code maxNodesPerWrite} nodes per Write request.
+     * The future completes with one status code per tag, in order; values that cannot be converted
+     * to the node's type are answered with {@code Bad_TypeMismatch} without being sent, as are
+     * values for {@code VARIANT} tags whose node type could not be read.
+     */
+    @Override
+    public CompletableFuture<int[]> write(List<CompiledTag> writeTags, List<Object> values) {
+        OpcUaClient current = client;
+        if (current == null) {
+            return CompletableFuture.completedFuture(Status.nCopies(writeTags.size(), Status.BAD_SERVER_NOT_CONNECTED));
+        }
+
+        return resolveWriteTypes(current, writeTags).thenCompose(ignored -> {
+            int[] results = new int[writeTags.size()];
+            List<Integer> positions = new ArrayList<>(writeTags.size());
+            List<NodeId> nodeIds = new ArrayList<>(writeTags.size());
+            List<DataValue> dataValues = new ArrayList<>(writeTags.size());
+            for (int i = 0; i < writeTags.size(); i++) {
+                CompiledTag tag = writeTags.get(i);
+                try {
+                    Class<?> type = writeTypes.getOrDefault(tag.getIndex(),
+                            VariantCoercion.defaultType(tag.getDataType()));
+                    Object value = VariantCoercion.coerce(values.get(i), type);
+                    dataValues.add(DataValue.valueOnly(new Variant(value)));
+                    nodeIds.add(tag.getNodeId());
+                    positions.add(i);
+                } catch (IllegalArgumentException e) {
+                    log.warn("Rejected write to {} on {}: {}", tag.getAddress(), serverConfig.getId(), e.getMessage());
+                    results[i] = Status.BAD_TYPE_MISMATCH;
+                }
+            }
+
+            int limit = maxNodesPerWrite;
+            List<CompletableFuture<Void>> requests = new ArrayList<>();
+            for (int from = 0; from < nodeIds.size(); from += limit) {
+                int start = from;
+                int end = Math.min(from + limit, nodeIds.size());
+                requests.add(current.writeValues(nodeIds.subList(start, end), dataValues.subList(start, end))
+                        .handle((statusCodes, error) -> {
+                            for (int i = start; i < end; i++) {
+                                results[positions.get(i)] = error == null
+                                        ? (int) statusCodes.get(i - start).getValue()
+                                        : Status.BAD_COMMUNICATION_ERROR;
+                            }
+                            return null;
+                        }));
+            }
+            return CompletableFuture.allOf(requests.toArray(CompletableFuture[]::new))
+                    .thenApply(done -> results);
+        });
+    }
+
+    /**
+     * Reads the current value of nodes written for the first time to learn their built-in type.
+     * Nodes without a readable value are written with the configured data type of the tag.
+     */
+    private CompletableFuture<Void> resolveWriteTypes(OpcUaClient current, List<CompiledTag> writeTags) {
+        List<CompiledTag> unresolved = writeTags.stream()
+                .filter(tag -> !writeTypes.containsKey(tag.getIndex()))
+                .distinct()
+                .toList();
+        if (unresolved.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        List<NodeId> nodeIds = unresolved.stream().map(CompiledTag::getNodeId).toList();
+        return current.readValues(0, TimestampsToReturn.Neither, nodeIds).handle((dataValues, error) -> {
+            if (error != null) {
+                return null;
+            }
+            for (int i = 0; i < unresolved.size(); i++) {
+                Object value = dataValues.get(i).getValue().getValue();
+                if (value != null) {
+                    writeTypes.put(unresolved.get(i).getIndex(), value.getClass());
+                }
+            }
+            return null;
+        });
+    }
+
+    private Sample toSample(int tagIndex, DataValue dataValue, Sample target) {
+        target.set(tagIndex,
+                (int) dataValue.getStatusCode().getValue(),
+                javaTime(dataValue.getSourceTime()),
+                javaTime(dataValue.getServerTime()),
+                System.currentTimeMillis());
+        CompiledTag tag = tagTable.get(tagIndex);
+        if (tag != null) {
+            tag.getDataType().decode(dataValue.getValue().getValue(), target);
+        } else {
+            // Removed while the request was in flight; the pipeline drops the sample.
+            target.setNull();
+        }
+        return target;
+    }
+
+    private static long javaTime(DateTime dateTime) {
+        return dateTime != null ? dateTime.getJavaTime() : 0;
+    }
+
+    @Override
+    public void disconnect() {
+        OpcUaClient current;
+        synchronized (clientLock) {
+            current = client;
+            client = null;
+            sessionActive = false;
+        }
+        if (current != null) {
+            close(current);
+        }
+    }
+
+    private void close(OpcUaClient current) {
+        try {
+            current.disconnect().get();
+        } catch (Exception e) {
+            log.error("Error disconnecting from {}: {}", serverConfig.getName(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.scada.gateway.opcua;
+
+import com.scada.gateway.config.ServersConfig;
+import com.scada.gateway.driver.Driver;
+import com.scada.gateway.driver.DriverFactory;
+import com.scada.gateway.event.EventRecorder;
+import com.scada.gateway.tag.TagTable;
+import org.springframework.stereotype.Component;
+
+@Component
+public class OpcUaDriverFactory implements DriverFactory {
+
+    @Override
+    public String getProtocol() {
+        return ServersConfig.ServerConfig.OPC_UA;
+    }
+
+    @Override
+    public Driver<?> create(ServersConfig.ServerConfig serverConfig, TagTable tagTable, EventRecorder events) {
+        return new OpcUaDriver(serverConfig, tagTable, events);
+    }
+}
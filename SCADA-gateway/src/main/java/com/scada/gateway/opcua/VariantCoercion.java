@@ -0,0 +1,135 @@
+package com.scada.gateway.opcua;
+
+import com.scada.gateway.tag.TagDataType;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.UByte;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.UInteger;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.ULong;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.UShort;
+
+import java.math.BigDecimal;
+
+/**
+ * Converts values received from outside (JSON numbers, booleans and strings) to the Java type
+ * Milo encodes as the built-in type of the target node. A Write whose Variant type differs from
+ * the node's data type is rejected by most servers with {@code Bad_TypeMismatch}.
+ */
+final class VariantCoercion {
+
+    private VariantCoercion() {
+    }
+
+    /**
+     * Returns {@code value} converted to {@code type}.
+     *
+     * @param type Java type of the node's value, or {@code null} if it is unknown
+     * @throws IllegalArgumentException if the value cannot be represented in that type, or the
+     *                                  type is unknown
+     */
+    static Object coerce(Object value, Class<?> type) {
+        if (value == null) {
+            throw new IllegalArgumentException("Value is null");
+        }
+        if (type == null) {
+            // Whatever the JSON parser produced would be sent as is, e.g. an Int32 to a Double node.
+            throw new IllegalArgumentException("Data type of the node is unknown");
+        }
+        if (type.isInstance(value)) {
+            return value;
+        }
+        if (type == Boolean.class) {
+            return toBoolean(value);
+        }
+        if (type == String.class) {
+            return value.toString();
+        }
+        if (type == Float.class) {
+            return toDecimal(value).floatValue();
+        }
+        if (type == Double.class) {
+            return toDecimal(value).doubleValue();
+        }
+
+        long integral = toLong(value);
+        if (type == Byte.class) {
+            return (byte) checkRange(integral, Byte.MIN_VALUE, Byte.MAX_VALUE);
+        }
+        if (type == Short.class) {
+            return (short) checkRange(integral, Short.MIN_VALUE, Short.MAX_VALUE);
+        }
+        if (type == Integer.class) {
+            return (int) checkRange(integral, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        }
+        if (type == Long.class) {
+            return integral;
+        }
+        if (type == UByte.class) {
+            return UByte.valueOf(checkRange(integral, 0, UByte.MAX_VALUE));
+        }
+        if (type == UShort.class) {
+            return UShort.valueOf((int) checkRange(integral, 0, UShort.MAX_VALUE));
+        }
+        if (type == UInteger.class) {
+            return UInteger.valueOf(checkRange(integral, 0, UInteger.MAX_VALUE));
+        }
+        if (type == ULong.class) {
+            return ULong.valueOf(checkRange(integral, 0, Long.MAX_VALUE));
+        }
+        throw new IllegalArgumentException("Unsupported target type " + type.getSimpleName());
+    }
+
+    /**
+     * The type to write to a tag whose node type could not be read, derived from the configured
+     * data type; {@code null} for {@code VARIANT} tags, whose writes are then rejected.
+     */
+    static Class<?> defaultType(TagDataType dataType) {
+        return switch (dataType) {
+            case BOOLEAN -> Boolean.class;
+            case BYTE -> UByte.class;
+            case INT -> Integer.class;
+            case FLOAT -> Float.class;
+            case DOUBLE -> Double.class;
+            case STRING -> String.class;
+            case VARIANT -> null;
+        };
+    }
+
+    private static Boolean toBoolean(Object value) {
+        if (value instanceof Number number) {
+            return number.doubleValue() != 0;
+        }
+        String text = value.toString().trim();
+        if (text.equalsIgnoreCase("true") || text.equals("1")) {
+            return true;
+        }
+        if (text.equalsIgnoreCase("false") || text.equals("0")) {
+            return false;
+        }
+        throw new IllegalArgumentException("Not a boolean: " + text);
+    }
+
+    private static BigDecimal toDecimal(Object value) {
+        if (value instanceof Boolean bool) {
+            return bool ? BigDecimal.ONE : BigDecimal.ZERO;
+        }
+        try {
+            return new BigDecimal(value.toString().trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number: " + value);
+        }
+    }
+
+    private static long toLong(Object value) {
+        try {
+            return toDecimal(value).stripTrailingZeros().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Not an integer in range: " + value);
+        }
+    }
+
+    private static long checkRange(long value, long min, long max) {
+        if (value < min || value > max) {
+            throw new IllegalArgumentException(value + " is out of range [" + min + ", " + max + "]");
+        }
+        return value;
+    }
+}
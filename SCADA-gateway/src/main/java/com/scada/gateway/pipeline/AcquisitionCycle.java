@@ -0,0 +1,39 @@
+package com.scada.gateway.pipeline;
+
+import lombok.Getter;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One execution of a rate group: the Read requests it sent and, if a sink asked for it,
+ * the samples that passed the filters. The cycle completes when the last request finished.
+ */
+@Getter
+public class AcquisitionCycle {
+
+    private final String serverId;
+    private final long periodMillis;
+    private final long cycleTime;
+    private final SampleBuffer samples;
+    private final AtomicInteger pendingRequests;
+    /** Completes once the last request finished and the sinks were notified. */
+    private final CompletableFuture<AcquisitionCycle> completion = new CompletableFuture<>();
+
+    AcquisitionCycle(String serverId, long periodMillis, long cycleTime, int requests, SampleBuffer samples) {
+        this.serverId = serverId;
+        this.periodMillis = periodMillis;
+        this.cycleTime = cycleTime;
+        this.samples = samples;
+        this.pendingRequests = new AtomicInteger(requests);
+    }
+
+    public boolean isCollecting() {
+        return samples != null;
+    }
+
+    /** Returns {@code true} for the call that finished the last outstanding request. */
+    boolean completeRequests(int count) {
+        return pendingRequests.addAndGet(-count) == 0;
+    }
+}
@@ -0,0 +1,167 @@
+package com.scada.gateway.pipeline;
+
+import com.scada.gateway.alarm.AlarmEngine;
+import com.scada.gateway.model.Sample;
+import com.scada.gateway.script.ScriptEngine;
+import com.scada.gateway.state.CurrentValueTable;
+import com.scada.gateway.tag.CompiledTag;
+import com.scada.gateway.tag.TagTable;
+import com.scada.gateway.trace.ValueTracer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Entry point for every acquired value, whether it was polled or pushed by a subscription.
+ * Every value first runs through its tag script, if any, then updates the current value table
+ * and is checked by the alarm engine; values then pass the deadband filter before anything is
+ * built or published downstream.
+ * <p>
+ * Tag table updates run on the thread that polls the configuration. They only mark the
+ * indices of changed and removed tags; the per-tag state of the alarm engine, the deadband
+ * filter and the sinks is reset by the acquisition thread before the next sample of the index.
+ * Active alarms of removed tags are cleared right away, as those tags get no more samples.
+ */
+@Slf4j
+@Component
+public class AcquisitionPipeline {
+
+    private final TagTable tagTable;
+    private final CurrentValueTable currentValues;
+    private final ScriptEngine scripts;
+    private final AlarmEngine alarms;
+    private final DeadbandFilter deadbandFilter;
+    private final ValueTracer tracer;
+    private final List<SampleSink> sinks;
+    private final boolean collectCycles;
+    private final LongAdder published = new LongAdder();
+    private final LongAdder suppressed = new LongAdder();
+    /** {@link #CHANGED} or {@link #REMOVED} for indices whose state the next sample resets. */
+    private final AtomicIntegerArray resets;
+
+    private static final int CHANGED = 1;
+    private static final int REMOVED = 2;
+
+    public AcquisitionPipeline(TagTable tagTable, CurrentValueTable currentValues, ScriptEngine scripts,
+                               AlarmEngine alarms, ValueTracer tracer, ObjectProvider<SampleSink> sinks) {
+        this.tagTable = tagTable;
+        this.currentValues = currentValues;
+        this.scripts = scripts;
+        this.alarms = alarms;
+        this.tracer = tracer;
+        this.deadbandFilter = new DeadbandFilter(tagTable);
+        this.resets = new AtomicIntegerArray(tagTable.capacity());
+        tagTable.addListener(diff -> {
+            diff.removed().forEach(tag -> {
+                alarms.reset(tag, true);
+                resets.set(tag.getIndex(), REMOVED);
+            });
+            // A removal not yet handled also resets the alarms.
+            diff.changed().forEach(change -> resets.compareAndSet(change.current().getIndex(), 0, CHANGED));
+        });
+        this.sinks = sinks.orderedStream().toList();
+        this.collectCycles = this.sinks.stream().anyMatch(SampleSink::collectsCycles);
+    }
+
+    /**
+     * Starts a polling cycle that will send {@code requests} Read requests.
+     */
+    public AcquisitionCycle beginCycle(String serverId, long periodMillis, int requests, int expectedSamples) {
+        return new AcquisitionCycle(serverId, periodMillis, System.currentTimeMillis(), requests,
+                collectCycles ? new SampleBuffer(expectedSamples) : null);
+    }
+
+    /**
+     * Marks {@code requests} Read requests of the cycle as finished, successful or not.
+     * Once none is outstanding, the sinks are notified and the cycle's completion completes.
+     */
+    public void completeRequests(AcquisitionCycle cycle, int requests) {
+        if (!cycle.completeRequests(requests)) {
+            return;
+        }
+        for (SampleSink sink : sinks) {
+            try {
+                sink.cycleCompleted(cycle);
+            } catch (Exception e) {
+                log.error("Sink {} failed to complete cycle: {}", sink.getClass().getSimpleName(), e.getMessage());
+            }
+        }
+        cycle.getCompletion().complete(cycle);
+    }
+
+    public void publish(Sample sample) {
+        publish(sample, null);
+    }
+
+    /**
+     * Processes one sample on the calling thread. The sample may be reused by the caller
+     * once this method returns.
+     */
+    public void publish(Sample sample, AcquisitionCycle cycle) {
+        CompiledTag tag = tagTable.get(sample.getTagIndex());
+        if (tag == null) {
+            // Late sample of a tag that was removed from the table.
+            return;
+        }
+        if (resets.get(tag.getIndex()) != 0) {
+            reset(tag, resets.getAndSet(tag.getIndex(), 0));
+        }
+        if (!scripts.apply(tag, sample)) {
+            suppressed.increment();
+            return;
+        }
+        currentValues.update(sample);
+        long now = System.nanoTime();
+        alarms.evaluate(tag, sample, now);
+
+        if (!deadbandFilter.accept(sample, now)) {
+            suppressed.increment();
+            tracer.trace(tag, sample, false);
+            return;
+        }
+        published.increment();
+        tracer.trace(tag, sample, true);
+
+        if (cycle != null && cycle.isCollecting()) {
+            cycle.getSamples().add(sample);
+        }
+        for (SampleSink sink : sinks) {
+            try {
+                sink.accept(sample, cycle);
+            } catch (Exception e) {
+                log.error("Sink {} failed: {}", sink.getClass().getSimpleName(), e.getMessage());
+            }
+        }
+    }
+
+    private void reset(CompiledTag tag, int reset) {
+        if (reset == 0) {
+            return;
+        }
+        int index = tag.getIndex();
+        boolean removed = reset == REMOVED;
+        deadbandFilter.reset(index);
+        // Active alarms of a changed tag stay until the sample is evaluated against the new limits.
+        alarms.reset(tag, removed || tag.getAlarms() == null);
+        for (SampleSink sink : sinks) {
+            try {
+                sink.resetTag(index, removed);
+            } catch (Exception e) {
+                log.error("Sink {} failed to reset tag {}: {}", sink.getClass().getSimpleName(), tag.getPath(),
+                        e.getMessage());
+            }
+        }
+    }
+
+    public long getPublishedCount() {
+        return published.sum();
+    }
+
+    public long getSuppressedCount() {
+        return suppressed.sum();
+    }
+}
@@ -0,0 +1,113 @@
+package com.scada.gateway.pipeline;
+
+import com.scada.gateway.model.Sample;
+import com.scada.gateway.tag.CompiledTag;
+import com.scada.gateway.tag.TagTable;
+
+import java.util.Objects;
+
+/**
+ * Report-by-exception filter with absolute and percent deadbands.
+ * <p>
+ * A sample passes if it is the first one of its tag, if its status changed, if the
+ * heartbeat interval elapsed since the last reported sample, or if its value moved by more
+ * than the deadband. Percent deadbands refer to the configured range
+ * ({@code rangeMin}..{@code rangeMax}) and, without a range, to the last reported value.
+ * State is kept per tag index in plain arrays.
+ * <p>
+ * Samples of a tag arrive on whichever thread completed its request, so the state of a tag is
+ * only touched under one of a few striped locks.
+ */
+public class DeadbandFilter {
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final TagTable tagTable;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final boolean[] reported;
+    private final byte[] lastType;
+    private final long[] lastBits;
+    private final String[] lastText;
+    private final int[] lastStatus;
+    private final long[] lastReportNanos;
+
+    public DeadbandFilter(TagTable tagTable) {
+        int size = tagTable.capacity();
+        this.tagTable = tagTable;
+        this.reported = new boolean[size];
+        this.lastType = new byte[size];
+        this.lastBits = new long[size];
+        this.lastText = new String[size];
+        this.lastStatus = new int[size];
+        this.lastReportNanos = new long[size];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Returns {@code true} if the sample has to be reported and remembers it as the last reported one.
+     */
+    public boolean accept(Sample sample, long nowNanos) {
+        int tagIndex = sample.getTagIndex();
+        CompiledTag tag = tagTable.get(tagIndex);
+        if (tag == null || !tag.isFiltered()) {
+            return true;
+        }
+        synchronized (locks[tagIndex & (LOCK_STRIPES - 1)]) {
+            return accept(tag, sample, tagIndex, nowNanos);
+        }
+    }
+
+    private boolean accept(CompiledTag tag, Sample sample, int tagIndex, long nowNanos) {
+        boolean report = !reported[tagIndex]
+                || sample.getStatusCode() != lastStatus[tagIndex]
+                || (tag.getHeartbeatNanos() > 0 && nowNanos - lastReportNanos[tagIndex] >= tag.getHeartbeatNanos())
+                || changed(tag, sample);
+
+        if (report) {
+            reported[tagIndex] = true;
+            lastStatus[tagIndex] = sample.getStatusCode();
+            lastReportNanos[tagIndex] = nowNanos;
+            lastType[tagIndex] = (byte) sample.getValueType().ordinal();
+            lastBits[tagIndex] = sample.getValueBits();
+            lastText[tagIndex] = sample.getText();
+        }
+        return report;
+    }
+
+    /**
+     * Forgets the last reported sample of a tag, so its next sample passes.
+     */
+    public void reset(int tagIndex) {
+        synchronized (locks[tagIndex & (LOCK_STRIPES - 1)]) {
+            reported[tagIndex] = false;
+            lastText[tagIndex] = null;
+        }
+    }
+
+    private boolean changed(CompiledTag tag, Sample sample) {
+        int tagIndex = sample.getTagIndex();
+        Sample.ValueType type = sample.getValueType();
+        if (type.ordinal() != lastType[tagIndex]) {
+            return true;
+        }
+        if (type == Sample.ValueType.STRING) {
+            return !Objects.equals(sample.getText(), lastText[tagIndex]);
+        }
+        if (type != Sample.ValueType.LONG && type != Sample.ValueType.DOUBLE) {
+            return sample.getValueBits() != lastBits[tagIndex];
+        }
+
+        double current = sample.doubleValue();
+        double last = type == Sample.ValueType.DOUBLE
+                ? Double.longBitsToDouble(lastBits[tagIndex])
+                : lastBits[tagIndex];
+        double threshold = tag.getDeadband();
+        if (tag.getDeadbandFraction() > 0) {
+            double base = Double.isNaN(tag.getRangeSpan()) ? Math.abs(last) : tag.getRangeSpan();
+            threshold = Math.max(threshold, tag.getDeadbandFraction() * base);
+        }
+        return threshold > 0 ? Math.abs(current - last) > threshold : sample.getValueBits() != lastBits[tagIndex];
+    }
+}
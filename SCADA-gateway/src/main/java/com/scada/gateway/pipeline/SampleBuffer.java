@@ -0,0 +1,73 @@
+package com.scada.gateway.pipeline;
+
+import com.scada.gateway.model.Sample;
+
+import java.util.Arrays;
+
+/**
+ * Growable column store of samples. Appends are synchronized because the Read responses of
+ * one cycle may complete on different threads; reads happen after the cycle completed.
+ */
+public final class SampleBuffer {
+
+    private static final Sample.ValueType[] VALUE_TYPES = Sample.ValueType.values();
+
+    private int size;
+    private int[] tagIndices;
+    private byte[] types;
+    private long[] bits;
+    private String[] texts;
+    private int[] statusCodes;
+    private long[] sourceTimes;
+    private long[] serverTimes;
+    private long[] receiveTimes;
+
+    public SampleBuffer(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 1);
+        tagIndices = new int[capacity];
+        types = new byte[capacity];
+        bits = new long[capacity];
+        texts = new String[capacity];
+        statusCodes = new int[capacity];
+        sourceTimes = new long[capacity];
+        serverTimes = new long[capacity];
+        receiveTimes = new long[capacity];
+    }
+
+    public synchronized void add(Sample sample) {
+        if (size == tagIndices.length) {
+            grow();
+        }
+        tagIndices[size] = sample.getTagIndex();
+        types[size] = (byte) sample.getValueType().ordinal();
+        bits[size] = sample.getValueBits();
+        texts[size] = sample.getText();
+        statusCodes[size] = sample.getStatusCode();
+        sourceTimes[size] = sample.getSourceTime();
+        serverTimes[size] = sample.getServerTime();
+        receiveTimes[size] = sample.getReceiveTime();
+        size++;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized Sample get(int index, Sample target) {
+        return target.set(tagIndices[index], statusCodes[index], sourceTimes[index], serverTimes[index],
+                        receiveTimes[index])
+                .setRaw(VALUE_TYPES[types[index]], bits[index], texts[index]);
+    }
+
+    private void grow() {
+        int capacity = tagIndices.length * 2;
+        tagIndices = Arrays.copyOf(tagIndices, capacity);
+        types = Arrays.copyOf(types, capacity);
+        bits = Arrays.copyOf(bits, capacity);
+        texts = Arrays.copyOf(texts, capacity);
+        statusCodes = Arrays.copyOf(statusCodes, capacity);
+        sourceTimes = Arrays.copyOf(sourceTimes, capacity);
+        serverTimes = Arrays.copyOf(serverTimes, capacity);
+        receiveTimes = Arrays.copyOf(receiveTimes, capacity);
+    }
+}
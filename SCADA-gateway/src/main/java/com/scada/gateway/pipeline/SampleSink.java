@@ -0,0 +1,38 @@
+package com.scada.gateway.pipeline;
+
+import com.scada.gateway.model.Sample;
+
+/**
+ * Downstream consumer of samples that passed the pipeline filters.
+ * <p>
+ * Sinks are called on the acquisition thread and must not block it. The sample is only
+ * valid during the call; a sink that needs it later has to copy or encode it.
+ */
+public interface SampleSink {
+
+    void accept(Sample sample);
+
+    /**
+     * Called for samples that belong to a polling cycle. {@code cycle} is {@code null} for
+     * samples that arrive outside a cycle, e.g. subscription notifications.
+     */
+    default void accept(Sample sample, AcquisitionCycle cycle) {
+        accept(sample);
+    }
+
+    /** Whether the pipeline has to collect the samples of each cycle for {@link #cycleCompleted}. */
+    default boolean collectsCycles() {
+        return false;
+    }
+
+    /** Called once after all Read requests of the cycle finished. */
+    default void cycleCompleted(AcquisitionCycle cycle) {
+    }
+
+    /**
+     * Called on the acquisition thread before the next sample of a tag that was changed, or of
+     * the next tag given the index of a removed one, to drop per-tag state of the old definition.
+     */
+    default void resetTag(int tagIndex, boolean removed) {
+    }
+}
@@ -0,0 +1,96 @@
+package com.scada.gateway.script;
+
+import com.scada.gateway.model.Sample;
+
+/**
+ * Root object of a tag script: {@code value}, {@code previous}, {@code text}, {@code status},
+ * {@code good} and {@code sourceTime} are the properties a script reads, the methods are the
+ * functions it may call. One instance per thread is reused for every sample.
+ * <p>
+ * Function arguments should be written as decimals, {@code clamp(value, 0.0, 100.0)}; an
+ * integer literal needs a conversion, which keeps the call from being compiled.
+ */
+public final class ScriptContext {
+
+    private double value;
+    private double previous;
+    private String text;
+    private int status;
+    private long sourceTime;
+
+    ScriptContext reset(Sample sample, double previous) {
+        this.value = sample.isNumeric() ? sample.doubleValue() : Double.NaN;
+        this.previous = previous;
+        this.text = sample.getText();
+        this.status = sample.getStatusCode();
+        this.sourceTime = sample.getSourceTime();
+        return this;
+    }
+
+    /** Acquired value as a number, {@code NaN} for text and empty values. */
+    public double getValue() {
+        return value;
+    }
+
+    /** Value acquired before this one, {@code NaN} for the first value. */
+    public double getPrevious() {
+        return previous;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    /** Raw OPC UA status code. */
+    public int getStatus() {
+        return status;
+    }
+
+    public boolean isGood() {
+        return (status & 0xC0000000) == 0;
+    }
+
+    /** Source timestamp, epoch milliseconds. */
+    public long getSourceTime() {
+        return sourceTime;
+    }
+
+    public double abs(double x) {
+        return Math.abs(x);
+    }
+
+    public double min(double a, double b) {
+        return Math.min(a, b);
+    }
+
+    public double max(double a, double b) {
+        return Math.max(a, b);
+    }
+
+    public double sqrt(double x) {
+        return Math.sqrt(x);
+    }
+
+    public double pow(double x, double exponent) {
+        return Math.pow(x, exponent);
+    }
+
+    public double log10(double x) {
+        return Math.log10(x);
+    }
+
+    /** Rounds {@code x} to {@code digits} decimal places. */
+    public double round(double x, double digits) {
+        double factor = Math.pow(10, digits);
+        return Math.round(x * factor) / factor;
+    }
+
+    public double clamp(double x, double low, double high) {
+        return Math.max(low, Math.min(high, x));
+    }
+
+    /** Maps {@code x} linearly from {@code [inLow, inHigh]} to {@code [outLow, outHigh]}. */
+    public double scale(double x, double inLow, double inHigh, double outLow, double outHigh) {
+        return outLow + (x - inLow) * (outHigh - outLow) / (inHigh - inLow);
+    }
+}
@@ -0,0 +1,323 @@
+package com.scada.gateway.script;
+
+import com.scada.gateway.config.ScriptConfig;
+import com.scada.gateway.event.EventRecorder;
+import com.scada.gateway.model.Sample;
+import com.scada.gateway.tag.CompiledTag;
+import com.scada.gateway.tag.TagTable;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.milo.opcua.stack.core.StatusCodes;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.ParseException;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.standard.SpelExpression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.SimpleEvaluationContext;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Runs tag scripts: SpEL expressions over a {@link ScriptContext} whose result replaces the
+ * acquired value, e.g. {@code scale(value, 0.0, 27648.0, 0.0, 150.0)}; a {@code null} result
+ * drops the value. Expressions are compiled to bytecode by the SpEL compiler when they are
+ * installed, after a trial run that tells the compiler the operand types; parts the trial run
+ * did not reach are compiled once they have run. With {@code gateway.scripts.compile} off they
+ * are interpreted. They are evaluated in a read-only context without type references,
+ * constructors or bean access, and the only methods they may call are the functions of
+ * {@link ScriptContext}.
+ * <p>
+ * Scripts installed at runtime win over configured ones; among either, the one for the most
+ * specific path applies: the tag itself, then its block, device and server. Configured scripts
+ * are the tag's {@code script} and the {@code gateway.scripts.groups} entries. Scripts are
+ * replaced atomically per tag, without pausing acquisition.
+ * <p>
+ * Each invocation is timed. A script that takes longer than {@code gateway.scripts.budget} on
+ * {@code maxOverruns} consecutive invocations is disabled, and a {@code SCRIPT_DISABLED} event
+ * is recorded for every tag that runs it. The budget is checked after the invocation returned,
+ * as a running invocation cannot be interrupted. That bounds the damage only because a script
+ * cannot run unbounded: SpEL has no loops, calls are restricted to the context functions, and
+ * SpEL itself caps string repetition, regular expressions and array sizes. Values of a tag
+ * whose script failed, is disabled or could not be parsed are passed on unchanged with bad
+ * quality, so consumers never mistake them for computed values. A failing script stays
+ * enabled, since it may fail for some values only.
+ */
+@Slf4j
+@Component
+public class ScriptEngine {
+
+    static final int BAD_SCRIPT_STATUS = (int) StatusCodes.Bad_InternalError;
+
+    private static final ThreadLocal<ScriptContext> CONTEXT = ThreadLocal.withInitial(ScriptContext::new);
+    private static final double[] TRIAL_VALUES = {0.0, 1.0, -1.0, 1e6, -1e6};
+
+    public record ScriptInfo(String source, boolean compiled, boolean disabled, String problem, int tags,
+                             long invocations, long errors) {
+    }
+
+    private final TagTable tagTable;
+    private final ScriptConfig config;
+    private final EventRecorder events;
+    private final SpelExpressionParser parser;
+    private final EvaluationContext evaluationContext =
+            SimpleEvaluationContext.forReadOnlyDataBinding().withMethodResolvers(new ScriptMethodResolver()).build();
+    private final long budgetNanos;
+    private final Map<String, String> groups = new LinkedHashMap<>();
+    /** Scripts installed at runtime by path; an empty expression switches scripts off below the path. */
+    private final Map<String, String> overrides = new ConcurrentHashMap<>();
+    private final Map<String, TagScript> cache = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<TagScript> scripts;
+    private final double[] previous;
+    private volatile int scriptCount;
+
+    public ScriptEngine(TagTable tagTable, ScriptConfig config, EventRecorder events) {
+        this.tagTable = tagTable;
+        this.config = config;
+        this.events = events;
+        this.budgetNanos = config.getBudget().toNanos();
+        this.parser = new SpelExpressionParser(new SpelParserConfiguration(
+                config.isCompile() ? SpelCompilerMode.MIXED : SpelCompilerMode.OFF, ScriptEngine.class.getClassLoader()));
+        config.getGroups().forEach(group -> groups.put(trimPath(group.getPath()), group.getExpression()));
+        this.scripts = new AtomicReferenceArray<>(tagTable.capacity());
+        this.previous = new double[tagTable.capacity()];
+        assign(tagTable.getTags());
+        tagTable.addListener(diff -> {
+            List<CompiledTag> updated = new ArrayList<>(diff.added());
+            diff.changed().forEach(change -> updated.add(change.current()));
+            synchronized (this) {
+                diff.removed().forEach(tag -> scripts.set(tag.getIndex(), null));
+                assign(updated);
+            }
+        });
+    }
+
+    /**
+     * Runs the script of {@code tag} on {@code sample}, replacing its value with the result.
+     * Returns {@code false} if the script dropped the value.
+     */
+    public boolean apply(CompiledTag tag, Sample sample) {
+        if (scriptCount == 0) {
+            return true;
+        }
+        int index = tag.getIndex();
+        TagScript script = scripts.get(index);
+        if (script == null) {
+            return true;
+        }
+        if (script.isDisabled()) {
+            sample.setStatusCode(BAD_SCRIPT_STATUS);
+            return true;
+        }
+
+        ScriptContext context = CONTEXT.get().reset(sample, previous[index]);
+        previous[index] = context.getValue();
+        long started = System.nanoTime();
+        Object result;
+        try {
+            result = script.getExpression().getValue(evaluationContext, context);
+        } catch (RuntimeException e) {
+            failed(tag, script, e);
+            sample.setStatusCode(BAD_SCRIPT_STATUS);
+            return true;
+        }
+        long elapsed = System.nanoTime() - started;
+        script.getInvocations().increment();
+        if (elapsed >= budgetNanos) {
+            overrun(tag, script, elapsed);
+        } else if (script.getOverruns().get() != 0) {
+            script.getOverruns().set(0);
+        }
+
+        if (result == null) {
+            return false;
+        }
+        tag.getDataType().decode(result, sample);
+        return true;
+    }
+
+    private void failed(CompiledTag tag, TagScript script, RuntimeException e) {
+        long errors = script.getErrors().incrementAndGet();
+        if (errors == 1 || errors % 1000 == 0) {
+            log.atWarn()
+                    .addKeyValue("tag", tag.getPath())
+                    .addKeyValue("errors", errors)
+                    .log("Script '{}' failed: {}", script.getSource(), e.getMessage());
+        }
+    }
+
+    private void overrun(CompiledTag tag, TagScript script, long elapsed) {
+        if (script.getOverruns().incrementAndGet() < config.getMaxOverruns() || script.isDisabled()) {
+            return;
+        }
+        script.disable("Exceeded the time budget of " + budgetNanos / 1000 + " µs "
+                + config.getMaxOverruns() + " times in a row");
+        // The script is shared by every tag with the same source, so all of them lose it.
+        int tags = 0;
+        for (int index = 0; index < scripts.length(); index++) {
+            CompiledTag user = scripts.get(index) == script ? tagTable.get(index) : null;
+            if (user != null) {
+                events.scriptDisabled(user);
+                tags++;
+            }
+        }
+        log.atError()
+                .addKeyValue("tag", tag.getPath())
+                .addKeyValue("tags", tags)
+                .addKeyValue("elapsedMicros", elapsed / 1000)
+                .log("Script '{}' disabled: {}", script.getSource(), script.getProblem());
+    }
+
+    /**
+     * Installs {@code expression} for the tag or subtree at {@code path}, replacing any script
+     * installed there before; an empty expression switches scripts off below the path. Returns
+     * the number of tags below the path.
+     *
+     * @throws IllegalArgumentException if the expression cannot be parsed
+     */
+    public synchronized int install(String path, String expression) {
+        String key = trimPath(path);
+        String source = expression != null ? expression.trim() : "";
+        if (!source.isEmpty()) {
+            // A fresh instance, so a script disabled before gets another chance.
+            TagScript script = compile(source);
+            if (script.getExpression() == null) {
+                throw new IllegalArgumentException(script.getProblem());
+            }
+            cache.put(source, script);
+        }
+        overrides.put(key, source);
+        log.info("Script for {} set to '{}'", key, source);
+        return reassign(key);
+    }
+
+    /**
+     * Removes the script installed at runtime for {@code path}; its tags go back to their configured scripts.
+     */
+    public synchronized int remove(String path) {
+        String key = trimPath(path);
+        if (overrides.remove(key) == null) {
+            return 0;
+        }
+        log.info("Runtime script for {} removed", key);
+        return reassign(key);
+    }
+
+    private int reassign(String path) {
+        List<CompiledTag> affected = tagTable.getTags().stream()
+                .filter(tag -> isBelow(tag.getPath(), path))
+                .toList();
+        assign(affected);
+        return affected.size();
+    }
+
+    private synchronized void assign(Collection<CompiledTag> tags) {
+        for (CompiledTag tag : tags) {
+            String source = config.isEnabled() ? resolve(tag) : null;
+            TagScript script = source == null || source.isEmpty() ? null : cache.computeIfAbsent(source, this::compile);
+            if (scripts.getAndSet(tag.getIndex(), script) != script) {
+                previous[tag.getIndex()] = Double.NaN;
+            }
+        }
+
+        int count = 0;
+        Map<TagScript, Boolean> used = new IdentityHashMap<>();
+        for (int index = 0; index < scripts.length(); index++) {
+            TagScript script = scripts.get(index);
+            if (script != null) {
+                count++;
+                used.put(script, Boolean.TRUE);
+            }
+        }
+        cache.values().removeIf(script -> !used.containsKey(script));
+        scriptCount = count;
+    }
+
+    private String resolve(CompiledTag tag) {
+        String path = tag.getPath();
+        for (String level = path; level != null; level = parent(level)) {
+            String override = overrides.get(level);
+            if (override != null) {
+                return override;
+            }
+        }
+        for (String level = path; level != null; level = parent(level)) {
+            String configured = level.equals(path) ? tag.getScript() : groups.get(level);
+            if (configured != null) {
+                return configured.trim();
+            }
+        }
+        return null;
+    }
+
+    private TagScript compile(String source) {
+        SpelExpression expression;
+        try {
+            expression = parser.parseRaw(source);
+        } catch (ParseException e) {
+            log.error("Invalid script '{}': {}", source, e.getMessage());
+            return TagScript.broken(source, e.getMessage());
+        }
+        if (!config.isCompile()) {
+            return TagScript.of(source, expression, false);
+        }
+        ScriptContext trial = new ScriptContext();
+        for (double value : TRIAL_VALUES) {
+            try {
+                expression.getValue(evaluationContext, trial.reset(new Sample().setDouble(value), value));
+            } catch (RuntimeException e) {
+                // Only the operand types matter here; the value may well be out of the script's domain.
+            }
+        }
+        boolean compiled;
+        try {
+            compiled = expression.compileExpression();
+        } catch (RuntimeException e) {
+            compiled = false;
+        }
+        if (!compiled) {
+            log.warn("Script '{}' could not be compiled yet and is interpreted", source);
+        }
+        return TagScript.of(source, expression, compiled);
+    }
+
+    public List<ScriptInfo> getScripts() {
+        Map<TagScript, Integer> tags = new IdentityHashMap<>();
+        for (int index = 0; index < scripts.length(); index++) {
+            TagScript script = scripts.get(index);
+            if (script != null) {
+                tags.merge(script, 1, Integer::sum);
+            }
+        }
+        List<ScriptInfo> result = new ArrayList<>();
+        tags.forEach((script, count) -> result.add(new ScriptInfo(script.getSource(), script.isCompiled(),
+                script.isDisabled(), script.getProblem(), count, script.getInvocations().sum(),
+                script.getErrors().get())));
+        return result;
+    }
+
+    public Map<String, String> getOverrides() {
+        return Map.copyOf(overrides);
+    }
+
+    private static boolean isBelow(String tagPath, String path) {
+        return tagPath.equals(path) || tagPath.startsWith(path + "/");
+    }
+
+    private static String parent(String path) {
+        int slash = path.lastIndexOf('/');
+        return slash > 0 ? path.substring(0, slash) : null;
+    }
+
+    private static String trimPath(String path) {
+        String trimmed = path.trim();
+        return trimmed.endsWith("/") ? trimmed.substring(0, trimmed.length() - 1) : trimmed;
+    }
+}
@@ -0,0 +1,38 @@
+package com.scada.gateway.script;
+
+import org.springframework.core.convert.TypeDescriptor;
+import org.springframework.expression.AccessException;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.MethodExecutor;
+import org.springframework.expression.spel.support.ReflectiveMethodResolver;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Resolves only the functions of {@link ScriptContext}. Methods of other objects a script can
+ * reach, such as {@code text.repeat(...)}, are not callable, so the work of an invocation is
+ * bounded by the expression itself.
+ */
+public final class ScriptMethodResolver extends ReflectiveMethodResolver {
+
+    private static final Method[] FUNCTIONS = Arrays.stream(ScriptContext.class.getDeclaredMethods())
+            .filter(method -> Modifier.isPublic(method.getModifiers()) && !Modifier.isStatic(method.getModifiers()))
+            .toArray(Method[]::new);
+    private static final Method[] NONE = new Method[0];
+
+    @Override
+    public MethodExecutor resolve(EvaluationContext context, Object targetObject, String name,
+                                  List<TypeDescriptor> argumentTypes) throws AccessException {
+        return targetObject instanceof ScriptContext
+                ? super.resolve(context, targetObject, name, argumentTypes)
+                : null;
+    }
+
+    @Override
+    protected Method[] getMethods(Class<?> type) {
+        return type == ScriptContext.class ? FUNCTIONS : NONE;
+    }
+}
@@ -0,0 +1,51 @@
+package com.scada.gateway.script;
+
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Actuator endpoint {@code /actuator/scripts} that replaces tag scripts at runtime.
+ * <pre>
+ * GET    /actuator/scripts                                               scripts in use
+ * POST   /actuator/scripts  {"path": "plc/S7/DB1", "expression": "value * 0.1"}
+ * DELETE /actuator/scripts?path=plc/S7/DB1                               back to the configured scripts
+ * </pre>
+ * Left out of the default web exposure: whoever reaches it changes what the gateway publishes.
+ */
+@Component
+@Endpoint(id = "scripts")
+public class ScriptsEndpoint {
+
+    private final ScriptEngine engine;
+
+    public ScriptsEndpoint(ScriptEngine engine) {
+        this.engine = engine;
+    }
+
+    @ReadOperation
+    public Map<String, Object> scripts() {
+        return Map.of("scripts", engine.getScripts(), "overrides", engine.getOverrides());
+    }
+
+    @WriteOperation
+    public Map<String, Object> install(String path, @Nullable String expression) {
+        try {
+            int tags = engine.install(path, expression);
+            return Map.of("path", path, "tags", tags);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidEndpointRequestException("Invalid script: " + e.getMessage(), "Invalid script");
+        }
+    }
+
+    @DeleteOperation
+    public Map<String, Object> remove(String path) {
+        return Map.of("path", path, "tags", engine.remove(path));
+    }
+}
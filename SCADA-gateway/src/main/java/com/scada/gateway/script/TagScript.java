@@ -0,0 +1,77 @@
+package com.scada.gateway.script;
+
+import org.springframework.expression.Expression;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One parsed script expression, shared by all tags that use the same source.
+ */
+final class TagScript {
+
+    private final String source;
+    private final Expression expression;
+    private final boolean compiled;
+    private volatile String problem;
+    private final LongAdder invocations = new LongAdder();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicInteger overruns = new AtomicInteger();
+    private volatile boolean disabled;
+
+    private TagScript(String source, Expression expression, boolean compiled, String problem) {
+        this.source = source;
+        this.expression = expression;
+        this.compiled = compiled;
+        this.problem = problem;
+        this.disabled = expression == null;
+    }
+
+    static TagScript of(String source, Expression expression, boolean compiled) {
+        return new TagScript(source, expression, compiled, null);
+    }
+
+    /** A script that could not be parsed; its tags get bad quality until it is replaced. */
+    static TagScript broken(String source, String problem) {
+        return new TagScript(source, null, false, problem);
+    }
+
+    String getSource() {
+        return source;
+    }
+
+    Expression getExpression() {
+        return expression;
+    }
+
+    boolean isCompiled() {
+        return compiled;
+    }
+
+    /** Why the script does not run, {@code null} while it does. */
+    String getProblem() {
+        return problem;
+    }
+
+    boolean isDisabled() {
+        return disabled;
+    }
+
+    void disable(String reason) {
+        problem = reason;
+        disabled = true;
+    }
+
+    LongAdder getInvocations() {
+        return invocations;
+    }
+
+    AtomicLong getErrors() {
+        return errors;
+    }
+
+    AtomicInteger getOverruns() {
+        return overruns;
+    }
+}
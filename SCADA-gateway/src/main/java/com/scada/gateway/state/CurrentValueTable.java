@@ -0,0 +1,138 @@
+package com.scada.gateway.state;
+
+import com.scada.gateway.model.Sample;
+import com.scada.gateway.tag.TagTable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Latest value of every tag, indexed by the compiled tag index.
+ * <p>
+ * Values live in parallel primitive arrays, one slot per tag, so memory is fixed and
+ * predictable regardless of the update rate. Each slot is guarded by a sequence counter
+ * (seqlock): a writer makes the counter odd, writes the fields and makes it even again;
+ * a reader retries when it saw an odd counter or the counter changed while it was reading.
+ * Readers never block writers, and acquisition never waits for REST or other consumers.
+ */
+@Component
+public class CurrentValueTable {
+
+    private static final VarHandle SEQUENCE = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final Sample.ValueType[] VALUE_TYPES = Sample.ValueType.values();
+    /** Type marker of a slot whose value was cleared. */
+    private static final byte EMPTY = -1;
+
+    private final long[] sequences;
+    private final byte[] types;
+    private final long[] bits;
+    private final String[] texts;
+    private final int[] statusCodes;
+    private final long[] sourceTimes;
+    private final long[] serverTimes;
+    private final long[] receiveTimes;
+
+    @Autowired
+    public CurrentValueTable(TagTable tagTable) {
+        this(tagTable.capacity());
+        // The value of a changed tag may have been scaled, scripted or typed by the old definition.
+        tagTable.addListener(diff -> {
+            diff.removed().forEach(tag -> clear(tag.getIndex()));
+            diff.changed().forEach(change -> clear(change.current().getIndex()));
+        });
+    }
+
+    CurrentValueTable(int capacity) {
+        this.sequences = new long[capacity];
+        this.types = new byte[capacity];
+        this.bits = new long[capacity];
+        this.texts = new String[capacity];
+        this.statusCodes = new int[capacity];
+        this.sourceTimes = new long[capacity];
+        this.serverTimes = new long[capacity];
+        this.receiveTimes = new long[capacity];
+    }
+
+    public int capacity() {
+        return sequences.length;
+    }
+
+    public void update(Sample sample) {
+        int index = sample.getTagIndex();
+        long sequence = lock(index);
+
+        types[index] = (byte) sample.getValueType().ordinal();
+        bits[index] = sample.getValueBits();
+        texts[index] = sample.getText();
+        statusCodes[index] = sample.getStatusCode();
+        sourceTimes[index] = sample.getSourceTime();
+        serverTimes[index] = sample.getServerTime();
+        receiveTimes[index] = sample.getReceiveTime();
+
+        SEQUENCE.setRelease(sequences, index, sequence + 2);
+    }
+
+    /**
+     * Removes the value of a slot, e.g. because its tag was removed. The sequence keeps
+     * counting up, so concurrent readers detect the change.
+     */
+    public void clear(int index) {
+        long sequence = lock(index);
+        types[index] = EMPTY;
+        texts[index] = null;
+        SEQUENCE.setRelease(sequences, index, sequence + 2);
+    }
+
+    private long lock(int index) {
+        while (true) {
+            long sequence = (long) SEQUENCE.getVolatile(sequences, index);
+            if ((sequence & 1) == 0 && SEQUENCE.compareAndSet(sequences, index, sequence, sequence + 1)) {
+                return sequence;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Copies a consistent snapshot of the slot into {@code target}.
+     *
+     * @return {@code false} if the tag has not received a value yet or it was cleared
+     */
+    public boolean read(int index, Sample target) {
+        while (true) {
+            long before = (long) SEQUENCE.getAcquire(sequences, index);
+            if ((before & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            if (before == 0) {
+                return false;
+            }
+
+            byte type = types[index];
+            long valueBits = bits[index];
+            String text = texts[index];
+            int statusCode = statusCodes[index];
+            long sourceTime = sourceTimes[index];
+            long serverTime = serverTimes[index];
+            long receiveTime = receiveTimes[index];
+
+            VarHandle.loadLoadFence();
+            if ((long) SEQUENCE.getOpaque(sequences, index) == before) {
+                if (type == EMPTY) {
+                    return false;
+                }
+                target.set(index, statusCode, sourceTime, serverTime, receiveTime)
+                        .setRaw(VALUE_TYPES[type], valueBits, text);
+                return true;
+            }
+        }
+    }
+
+    /** Number of updates the slot has seen; changes whenever a new value is written. */
+    public long version(int index) {
+        return (long) SEQUENCE.getAcquire(sequences, index) >>> 1;
+    }
+}
@@ -0,0 +1,52 @@
+package com.scada.gateway.tag;
+
+import com.scada.gateway.config.ServersConfig;
+import lombok.Value;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compiled form of an {@link ServersConfig.AlarmConfig}. Limits that are not configured are
+ * {@code NaN}, which no comparison satisfies.
+ */
+@Value
+public class AlarmLimits {
+    double hiHi;
+    double hi;
+    double lo;
+    double loLo;
+    /** Engineering units per second. */
+    double rateOfChange;
+    double setpoint;
+    double deviation;
+    double hysteresis;
+    long onDelayNanos;
+    long offDelayNanos;
+
+    /**
+     * Returns the limits configured by {@code config}, {@code null} if it configures no alarm.
+     */
+    static AlarmLimits of(ServersConfig.AlarmConfig config) {
+        if (config == null || (config.getHiHi() == null && config.getHi() == null && config.getLo() == null
+                && config.getLoLo() == null && config.getRateOfChange() == null
+                && (config.getSetpoint() == null || config.getDeviation() == null))) {
+            return null;
+        }
+        boolean deviation = config.getSetpoint() != null && config.getDeviation() != null;
+        return new AlarmLimits(
+                orNaN(config.getHiHi()),
+                orNaN(config.getHi()),
+                orNaN(config.getLo()),
+                orNaN(config.getLoLo()),
+                orNaN(config.getRateOfChange()),
+                deviation ? config.getSetpoint() : Double.NaN,
+                deviation ? config.getDeviation() : Double.NaN,
+                Math.max(0, config.getHysteresis()),
+                TimeUnit.MILLISECONDS.toNanos(Math.max(0, config.getOnDelay())),
+                TimeUnit.MILLISECONDS.toNanos(Math.max(0, config.getOffDelay())));
+    }
+
+    private static double orNaN(Double value) {
+        return value != null ? value : Double.NaN;
+    }
+}
@@ -0,0 +1,34 @@
+package com.scada.gateway.tag;
+
+import com.scada.gateway.config.ServersConfig;
+import lombok.Value;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compiled form of an {@link ServersConfig.CalculationConfig}: the expression and the input path
+ * of each of its variables, as configured.
+ */
+@Value
+public class Calculation {
+    String expression;
+    /** Variable name to input tag path, in configuration order. */
+    Map<String, String> inputs;
+
+    /**
+     * Returns the calculation configured by {@code config}, {@code null} if there is none.
+     */
+    static Calculation of(ServersConfig.CalculationConfig config) {
+        if (config == null) {
+            return null;
+        }
+        String expression = config.getExpression() != null ? config.getExpression().trim() : "";
+        Map<String, String> inputs = new LinkedHashMap<>();
+        if (config.getInputs() != null) {
+            config.getInputs().forEach((name, path) -> inputs.put(name.trim().intern(), path.trim().intern()));
+        }
+        return new Calculation(expression.intern(), Collections.unmodifiableMap(inputs));
+    }
+}
@@ -0,0 +1,57 @@
+package com.scada.gateway.tag;
+
+import com.scada.gateway.config.ServersConfig;
+import lombok.Value;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+
+/**
+ * Immutable, pre-resolved form of a {@link ServersConfig.TagConfig}. The {@code index} is
+ * unique across the whole {@link TagTable}, stays the same when the table is updated and
+ * is what the acquisition path passes around.
+ */
+@Value
+public class CompiledTag {
+    int index;
+    String serverId;
+    /** Parsed address of OPC UA tags, {@code null} for calculated tags and other protocols. */
+    NodeId nodeId;
+    String address;
+    String name;
+    String device;
+    String block;
+    /**
+     * Qualified path {@code serverId/device/block/name}; absent levels are left out and each
+     * level is escaped with {@link TagTable#pathSegment(String)}.
+     */
+    String path;
+    String unit;
+    TagDataType dataType;
+    long pollingRate;
+    ServersConfig.AcquisitionMode mode;
+    Integer queueSize;
+    /** Absolute deadband in engineering units, {@code 0} if none. */
+    double deadband;
+    /** Deadband as a fraction (not percent) of the range or of the last reported value, {@code 0} if none. */
+    double deadbandFraction;
+    /** Span of the configured range, {@code NaN} if no range is configured. */
+    double rangeSpan;
+    boolean reportByException;
+    long heartbeatNanos;
+    /** {@code true} if write commands may change the value of this tag. */
+    boolean writable;
+    /** Limit and alarm settings, {@code null} if the tag has none. */
+    AlarmLimits alarms;
+    /** Script expression configured for this tag, {@code null} if none. */
+    String script;
+    /** How the value of a calculated tag is computed, {@code null} for tags read from the server. */
+    Calculation calculation;
+
+    public boolean isCalculated() {
+        return calculation != null;
+    }
+
+    /** {@code true} if unchanged or insignificant values of this tag may be suppressed. */
+    public boolean isFiltered() {
+        return reportByException || deadband > 0 || deadbandFraction > 0;
+    }
+}
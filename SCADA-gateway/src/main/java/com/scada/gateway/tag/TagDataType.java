@@ -0,0 +1,94 @@
+package com.scada.gateway.tag;
+
+import com.scada.gateway.model.Sample;
+
+import java.util.Locale;
+
+/**
+ * Data type of a tag, resolved once from the configured {@code dataType} string.
+ * Each constant knows how to store a raw value received from the controller in the
+ * primitive slot of a {@link Sample} and how to box it again at the edges.
+ */
+public enum TagDataType {
+    BOOLEAN {
+        @Override
+        public void decode(Object raw, Sample target) {
+            if (raw instanceof Boolean value) target.setBoolean(value);
+            else if (raw instanceof Number number) target.setBoolean(number.longValue() != 0);
+            else if (raw != null) target.setBoolean(Boolean.parseBoolean(raw.toString()));
+            else target.setNull();
+        }
+    },
+    BYTE {
+        @Override
+        public void decode(Object raw, Sample target) {
+            if (raw instanceof Number number) target.setLong(number.longValue() & 0xFF);
+            else VARIANT.decode(raw, target);
+        }
+    },
+    INT {
+        @Override
+        public void decode(Object raw, Sample target) {
+            if (raw instanceof Number number) target.setLong(number.longValue());
+            else VARIANT.decode(raw, target);
+        }
+    },
+    FLOAT {
+        @Override
+        public void decode(Object raw, Sample target) {
+            if (raw instanceof Number number) target.setDouble(number.floatValue());
+            else VARIANT.decode(raw, target);
+        }
+
+        @Override
+        public Object toObject(Sample sample) {
+            return sample.getValueType() == Sample.ValueType.DOUBLE ? (Object) (float) sample.doubleValue() : sample.toObject();
+        }
+    },
+    DOUBLE {
+        @Override
+        public void decode(Object raw, Sample target) {
+            if (raw instanceof Number number) target.setDouble(number.doubleValue());
+            else VARIANT.decode(raw, target);
+        }
+    },
+    STRING {
+        @Override
+        public void decode(Object raw, Sample target) {
+            target.setText(raw == null ? null : raw.toString());
+        }
+    },
+    /** Unknown type: the value slot is chosen from the runtime type of the raw value. */
+    VARIANT {
+        @Override
+        public void decode(Object raw, Sample target) {
+            if (raw == null) target.setNull();
+            else if (raw instanceof Boolean value) target.setBoolean(value);
+            else if (raw instanceof Double || raw instanceof Float) target.setDouble(((Number) raw).doubleValue());
+            else if (raw instanceof Number number) target.setLong(number.longValue());
+            else target.setText(raw.toString());
+        }
+    };
+
+    public abstract void decode(Object raw, Sample target);
+
+    /** Boxes the value of a sample of this type; used at the edges only. */
+    public Object toObject(Sample sample) {
+        return sample.toObject();
+    }
+
+    public static TagDataType of(String name) {
+        if (name == null) {
+            return VARIANT;
+        }
+        return switch (name.trim().toUpperCase(Locale.ROOT)) {
+            case "BOOL", "BOOLEAN" -> BOOLEAN;
+            case "BYTE", "USINT", "SINT" -> BYTE;
+            case "INT", "INTEGER", "SHORT", "DINT", "UINT", "UDINT", "WORD", "DWORD", "LONG", "LINT" -> INT;
+            case "FLOAT", "REAL" -> FLOAT;
+            case "DOUBLE", "LREAL" -> DOUBLE;
+            case "STRING" -> STRING;
+            default -> VARIANT;
+        };
+    }
+}
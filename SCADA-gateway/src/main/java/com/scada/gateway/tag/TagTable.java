@@ -0,0 +1,319 @@
+package com.scada.gateway.tag;
+
+import com.scada.gateway.config.ServersConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Compiled table of all enabled tags of all enabled servers.
+ * <p>
+ * Node ids are parsed, data types resolved and strings interned once when the table is
+ * built, so the acquisition path only deals with tag indices. Readers always see an immutable
+ * snapshot. {@link #update(ServersConfig)} swaps in a new one: a tag keeps its index for as long
+ * as its server id and address stay the same, new tags get unused indices below the fixed
+ * {@link #capacity()}, and listeners receive the {@link TagTableDiff}. Per-tag state sized by
+ * the capacity therefore survives reconfiguration.
+ */
+@Slf4j
+public class TagTable {
+
+    private final int capacity;
+    private final List<Consumer<TagTableDiff>> listeners = new CopyOnWriteArrayList<>();
+    private final Deque<Integer> freeIndices = new ArrayDeque<>();
+    private volatile Snapshot snapshot;
+    private int nextIndex;
+
+    private record Snapshot(CompiledTag[] tags, List<CompiledTag> live, Map<String, List<CompiledTag>> byServer,
+                            Map<String, CompiledTag> byAddress) {
+    }
+
+    private TagTable(int capacity) {
+        this.capacity = capacity;
+        this.snapshot = new Snapshot(new CompiledTag[0], List.of(), Map.of(), Map.of());
+    }
+
+    public static TagTable compile(ServersConfig config) {
+        return compile(config, 0);
+    }
+
+    /**
+     * Compiles the table with room for {@code capacity} tag indices, or for exactly the configured
+     * tags if {@code capacity} is smaller.
+     */
+    public static TagTable compile(ServersConfig config, int capacity) {
+        TagTable table = new TagTable(Math.max(capacity, countTags(config)));
+        table.update(config);
+        log.info("Compiled tag table: {} tags on {} servers, capacity {}",
+                table.snapshot.live().size(), table.snapshot.byServer().size(), table.capacity);
+        return table;
+    }
+
+    /**
+     * Replaces the tags with those of {@code config} and notifies the listeners of the difference.
+     */
+    public synchronized TagTableDiff update(ServersConfig config) {
+        Snapshot previous = snapshot;
+        CompiledTag[] tags = Arrays.copyOf(previous.tags(), capacity);
+        List<CompiledTag> live = new ArrayList<>();
+        Map<String, List<CompiledTag>> byServer = new LinkedHashMap<>();
+        Map<String, CompiledTag> byAddress = new HashMap<>(previous.byAddress().size() * 2);
+        List<CompiledTag> added = new ArrayList<>();
+        List<TagTableDiff.Change> changed = new ArrayList<>();
+
+        if (config.getServers() != null) {
+            for (ServersConfig.ServerConfig server : config.getServers()) {
+                if (!server.isEnabled() || byServer.containsKey(server.getId())) continue;
+
+                String serverId = server.getId().intern();
+                List<CompiledTag> serverTags = new ArrayList<>();
+                if (server.getTags() != null) {
+                    for (ServersConfig.TagConfig tag : server.getTags()) {
+                        if (!tag.isEnabled()) continue;
+
+                        String address = addressOf(tag);
+                        if (address == null) {
+                            log.warn("Tag '{}' on {} has neither a nodeId nor a calculation, skipped",
+                                    tag.getName(), serverId);
+                            continue;
+                        }
+                        String key = addressKey(serverId, address);
+                        if (byAddress.containsKey(key)) {
+                            log.warn("Duplicate tag {} on {}, skipped", address, serverId);
+                            continue;
+                        }
+                        NodeId nodeId = null;
+                        // Other protocols interpret the address in their driver.
+                        if (tag.getNodeId() != null && server.isProtocol(ServersConfig.ServerConfig.OPC_UA)) {
+                            nodeId = parseNodeId(serverId, tag.getNodeId());
+                            if (nodeId == null) continue;
+                        }
+
+                        CompiledTag existing = previous.byAddress().get(key);
+                        int index = existing != null ? existing.getIndex() : allocateIndex();
+                        if (index < 0) {
+                            log.error("Tag table capacity {} exhausted, tag {} on {} skipped",
+                                    capacity, address, serverId);
+                            continue;
+                        }
+
+                        CompiledTag compiled = compileTag(index, serverId, nodeId, address, server, tag);
+                        if (existing == null) {
+                            added.add(compiled);
+                        } else if (!existing.equals(compiled)) {
+                            changed.add(new TagTableDiff.Change(existing, compiled));
+                        } else {
+                            compiled = existing;
+                        }
+                        tags[index] = compiled;
+                        live.add(compiled);
+                        serverTags.add(compiled);
+                        byAddress.put(key, compiled);
+                    }
+                }
+                byServer.put(serverId, Collections.unmodifiableList(serverTags));
+            }
+        }
+
+        List<CompiledTag> removed = new ArrayList<>();
+        for (CompiledTag tag : previous.live()) {
+            if (!byAddress.containsKey(addressKey(tag.getServerId(), tag.getAddress()))) {
+                removed.add(tag);
+                tags[tag.getIndex()] = null;
+                freeIndices.addLast(tag.getIndex());
+            }
+        }
+
+        snapshot = new Snapshot(Arrays.copyOf(tags, nextIndex), Collections.unmodifiableList(live),
+                Collections.unmodifiableMap(byServer), byAddress);
+
+        TagTableDiff diff = new TagTableDiff(added, removed, changed);
+        if (!diff.isEmpty() && !previous.live().isEmpty()) {
+            log.info("Tag table updated: {} added, {} removed, {} changed",
+                    added.size(), removed.size(), changed.size());
+        }
+        for (Consumer<TagTableDiff> listener : listeners) {
+            try {
+                listener.accept(diff);
+            } catch (Exception e) {
+                log.error("Tag table listener failed: {}", e.getMessage(), e);
+            }
+        }
+        return diff;
+    }
+
+    /**
+     * Hands out never used indices first. Indices of removed tags are only reused once those
+     * run out, so late samples of a removed tag are not mistaken for values of a new one.
+     */
+    private int allocateIndex() {
+        if (nextIndex < capacity) {
+            return nextIndex++;
+        }
+        Integer free = freeIndices.pollFirst();
+        return free != null ? free : -1;
+    }
+
+    /**
+     * Returns the configured nodeId, {@code calc:<name>} for a calculated tag without one,
+     * {@code null} if the tag has no address at all.
+     */
+    private static String addressOf(ServersConfig.TagConfig tag) {
+        if (tag.getNodeId() != null) {
+            return tag.getNodeId();
+        }
+        return tag.getCalculation() != null && tag.getName() != null ? "calc:" + tag.getName() : null;
+    }
+
+    private static CompiledTag compileTag(int index, String serverId, NodeId nodeId, String address,
+                                          ServersConfig.ServerConfig server, ServersConfig.TagConfig tag) {
+        Calculation calculation = Calculation.of(tag.getCalculation());
+        String name = intern(tag.getName() != null ? tag.getName() : address);
+        String device = intern(blankToNull(tag.getDevice()));
+        String block = intern(blankToNull(tag.getBlock()));
+        return new CompiledTag(
+                index,
+                serverId,
+                nodeId,
+                address.intern(),
+                name,
+                device,
+                block,
+                path(serverId, device, block, name),
+                intern(tag.getUnit()),
+                TagDataType.of(tag.getDataType()),
+                tag.getPollingRate(),
+                server.modeOf(tag),
+                tag.getQueueSize() != null ? tag.getQueueSize() : server.getQueueSize(),
+                tag.getDeadband() != null ? tag.getDeadband() : 0,
+                tag.getDeadbandPercent() != null ? tag.getDeadbandPercent() / 100.0 : 0,
+                rangeSpan(tag),
+                tag.isReportByException(),
+                TimeUnit.SECONDS.toNanos(tag.getHeartbeat()),
+                tag.isWritable() && calculation == null,
+                AlarmLimits.of(tag.getAlarms()),
+                intern(blankToNull(tag.getScript())),
+                calculation);
+    }
+
+    private static String path(String serverId, String device, String block, String name) {
+        StringBuilder path = new StringBuilder(pathSegment(serverId));
+        if (device != null) {
+            path.append('/').append(pathSegment(device));
+        }
+        if (block != null) {
+            path.append('/').append(pathSegment(block));
+        }
+        return path.append('/').append(pathSegment(name)).toString();
+    }
+
+    /**
+     * Returns {@code name} as one level of a tag path: {@code %} and {@code /} are escaped as
+     * {@code %25} and {@code %2F}, so a name like {@code Line 1/Motor} cannot be mistaken for two
+     * levels.
+     */
+    public static String pathSegment(String name) {
+        if (name.indexOf('/') < 0 && name.indexOf('%') < 0) {
+            return name;
+        }
+        return name.replace("%", "%25").replace("/", "%2F");
+    }
+
+    private static int countTags(ServersConfig config) {
+        int count = 0;
+        Set<String> servers = new HashSet<>();
+        if (config.getServers() != null) {
+            for (ServersConfig.ServerConfig server : config.getServers()) {
+                if (server.isEnabled() && server.getTags() != null && servers.add(server.getId())) {
+                    count += server.getTags().size();
+                }
+            }
+        }
+        return count;
+    }
+
+    private static double rangeSpan(ServersConfig.TagConfig tag) {
+        if (tag.getRangeMin() == null || tag.getRangeMax() == null) {
+            return Double.NaN;
+        }
+        return Math.abs(tag.getRangeMax() - tag.getRangeMin());
+    }
+
+    private static NodeId parseNodeId(String serverId, String nodeId) {
+        try {
+            return NodeId.parse(nodeId);
+        } catch (Exception e) {
+            log.warn("Invalid nodeId '{}' on {}, tag skipped", nodeId, serverId);
+            return null;
+        }
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+
+    private static String intern(String value) {
+        return value != null ? value.intern() : null;
+    }
+
+    public void addListener(Consumer<TagTableDiff> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Returns the tag with the given index, {@code null} if the index is not in use.
+     */
+    public CompiledTag get(int index) {
+        CompiledTag[] tags = snapshot.tags();
+        return index < tags.length ? tags[index] : null;
+    }
+
+    /** Upper bound of the indices in use. */
+    public int size() {
+        return snapshot.tags().length;
+    }
+
+    /** Number of indices per-tag state has to provide for; fixed for the lifetime of the table. */
+    public int capacity() {
+        return capacity;
+    }
+
+    /** All tags, in configuration order. */
+    public List<CompiledTag> getTags() {
+        return snapshot.live();
+    }
+
+    /** Ids of the enabled servers, in configuration order. */
+    public Set<String> getServerIds() {
+        return snapshot.byServer().keySet();
+    }
+
+    public List<CompiledTag> getServerTags(String serverId) {
+        return snapshot.byServer().getOrDefault(serverId, List.of());
+    }
+
+    /**
+     * Looks up a tag by server id and configured address, {@code null} if there is none.
+     */
+    public CompiledTag find(String serverId, String address) {
+        return snapshot.byAddress().get(addressKey(serverId, address));
+    }
+
+    private static String addressKey(String serverId, String address) {
+        return serverId + '/' + address;
+    }
+}
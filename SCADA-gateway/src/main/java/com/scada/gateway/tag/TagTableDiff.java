@@ -0,0 +1,27 @@
+package com.scada.gateway.tag;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Difference between two versions of the {@link TagTable}. Changed tags keep their index.
+ */
+public record TagTableDiff(List<CompiledTag> added, List<CompiledTag> removed, List<Change> changed) {
+
+    public record Change(CompiledTag previous, CompiledTag current) {
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty() && changed.isEmpty();
+    }
+
+    /** Ids of the servers that have added, removed or changed tags. */
+    public Set<String> affectedServers() {
+        Set<String> servers = new LinkedHashSet<>();
+        added.forEach(tag -> servers.add(tag.getServerId()));
+        removed.forEach(tag -> servers.add(tag.getServerId()));
+        changed.forEach(change -> servers.add(change.current().getServerId()));
+        return servers;
+    }
+}
@@ -0,0 +1,76 @@
+package com.scada.gateway.trace;
+
+import com.scada.gateway.channel.ChannelModel;
+import com.scada.gateway.tag.CompiledTag;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Actuator endpoint {@code /actuator/tagtrace} that switches value tracing on and off at runtime.
+ * <pre>
+ * GET    /actuator/tagtrace                                      traced tags
+ * POST   /actuator/tagtrace  {"path": "plc/S7/DB1", "durationSeconds": 300, "intervalMillis": 500}
+ * DELETE /actuator/tagtrace?path=plc/S7/DB1                      stop, all tags without a path
+ * </pre>
+ * A path names a single tag or a server, device or block, which traces every tag below it.
+ * Only reachable over HTTP once exposed behind authentication, see {@code application.yml}.
+ */
+@Slf4j
+@Component
+@Endpoint(id = "tagtrace")
+public class TagTraceEndpoint {
+
+    private final ValueTracer tracer;
+    private final ChannelModel channelModel;
+
+    public TagTraceEndpoint(ValueTracer tracer, ChannelModel channelModel) {
+        this.tracer = tracer;
+        this.channelModel = channelModel;
+    }
+
+    @ReadOperation
+    public Map<String, Object> traced() {
+        List<ValueTracer.TracedTag> traced = tracer.getTraced();
+        return Map.of("count", traced.size(), "tags", traced);
+    }
+
+    @WriteOperation
+    public Map<String, Object> enable(String path, @Nullable Long durationSeconds, @Nullable Long intervalMillis) {
+        List<CompiledTag> tags = resolve(path);
+        if (tags.isEmpty()) {
+            return null;
+        }
+        int count = tracer.enable(tags,
+                durationSeconds != null ? Duration.ofSeconds(durationSeconds) : null,
+                intervalMillis != null ? Duration.ofMillis(intervalMillis) : null);
+        log.atInfo().addKeyValue("path", path).addKeyValue("tags", count).log("Value tracing enabled");
+        return Map.of("path", path, "enabled", count);
+    }
+
+    @DeleteOperation
+    public Map<String, Object> disable(@Nullable String path) {
+        if (path == null) {
+            tracer.disableAll();
+            log.info("Value tracing disabled for all tags");
+            return Map.of("disabled", "all");
+        }
+        List<CompiledTag> tags = resolve(path);
+        tracer.disable(tags);
+        log.atInfo().addKeyValue("path", path).addKeyValue("tags", tags.size()).log("Value tracing disabled");
+        return Map.of("path", path, "disabled", tags.size());
+    }
+
+    private List<CompiledTag> resolve(String path) {
+        CompiledTag tag = channelModel.findByPath(path);
+        return tag != null ? List.of(tag) : channelModel.getSubtree(path);
+    }
+}
@@ -0,0 +1,169 @@
+package com.scada.gateway.trace;
+
+import com.scada.gateway.config.TraceConfig;
+import com.scada.gateway.model.Sample;
+import com.scada.gateway.tag.CompiledTag;
+import com.scada.gateway.tag.TagTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Opt-in, rate-limited value tracing for individual tags.
+ * <p>
+ * Tracing is switched on per tag for a limited time and logs at most one value per tag and
+ * interval, as key-value pairs on the {@code com.scada.gateway.trace} logger; values skipped
+ * in between are counted and reported with the next traced one. While no tag is traced the
+ * pipeline pays a single volatile read per sample.
+ * <p>
+ * State lives in arrays indexed by tag index. They are written under the lock and published by
+ * the volatile write of {@code tracedCount}, which the hot path reads first. Samples of one tag
+ * may be traced from several threads at once, so the next trace time and the skip counter are
+ * atomic: only the thread that advances the next trace time logs.
+ */
+@Component
+public class ValueTracer {
+
+    private static final Logger trace = LoggerFactory.getLogger("com.scada.gateway.trace");
+
+    public record TracedTag(int id, String path, long remainingSeconds, long intervalMillis, long skipped) {
+    }
+
+    private final TagTable tagTable;
+    private final TraceConfig config;
+    /** {@code System.nanoTime()} at which tracing of the tag ends, {@code 0} while not traced. */
+    private final long[] tracedUntil;
+    private final long[] intervalNanos;
+    private final AtomicLongArray nextTrace;
+    private final AtomicLongArray skipped;
+    private volatile int tracedCount;
+
+    public ValueTracer(TagTable tagTable, TraceConfig config) {
+        this.tagTable = tagTable;
+        this.config = config;
+        int capacity = tagTable.capacity();
+        this.tracedUntil = new long[capacity];
+        this.intervalNanos = new long[capacity];
+        this.nextTrace = new AtomicLongArray(capacity);
+        this.skipped = new AtomicLongArray(capacity);
+        tagTable.addListener(diff -> {
+            diff.removed().forEach(tag -> disable(tag.getIndex()));
+            diff.changed().forEach(change -> disable(change.current().getIndex()));
+        });
+    }
+
+    /**
+     * Logs {@code sample} if its tag is traced and its interval has elapsed.
+     */
+    public void trace(CompiledTag tag, Sample sample, boolean published) {
+        if (tracedCount == 0) {
+            return;
+        }
+        int index = tag.getIndex();
+        long until = tracedUntil[index];
+        if (until == 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (now - until > 0) {
+            disable(index);
+            return;
+        }
+        long next = nextTrace.get(index);
+        if (now - next < 0 || !nextTrace.compareAndSet(index, next, now + intervalNanos[index])) {
+            skipped.incrementAndGet(index);
+            return;
+        }
+        long skippedSince = skipped.getAndSet(index, 0);
+
+        trace.atInfo()
+                .addKeyValue("tag", tag.getPath())
+                .addKeyValue("id", index)
+                .addKeyValue("value", tag.getDataType().toObject(sample))
+                .addKeyValue("unit", tag.getUnit())
+                .addKeyValue("status", String.format("0x%08X", sample.getStatusCode()))
+                .addKeyValue("sourceTime", sample.getSourceTime())
+                .addKeyValue("published", published)
+                .addKeyValue("skipped", skippedSince)
+                .log("value");
+    }
+
+    /**
+     * Traces {@code tags} for {@code duration}, at most one value per tag and {@code interval};
+     * {@code null} arguments take the configured defaults. Returns the number of tags traced.
+     */
+    public synchronized int enable(List<CompiledTag> tags, Duration duration, Duration interval) {
+        if (tags.size() > config.getMaxTags()) {
+            throw new IllegalArgumentException("Cannot trace " + tags.size() + " tags at once, the limit is "
+                    + config.getMaxTags());
+        }
+        Duration effectiveDuration = duration != null ? duration : config.getDefaultDuration();
+        if (effectiveDuration.compareTo(config.getMaxDuration()) > 0) {
+            effectiveDuration = config.getMaxDuration();
+        }
+        long until = System.nanoTime() + effectiveDuration.toNanos();
+        long step = (interval != null ? interval : config.getDefaultInterval()).toNanos();
+        for (CompiledTag tag : tags) {
+            int index = tag.getIndex();
+            // 0 marks an untraced tag, so an end time that happens to be 0 is moved by a nanosecond.
+            tracedUntil[index] = until != 0 ? until : 1;
+            intervalNanos[index] = step;
+            nextTrace.set(index, 0);
+            skipped.set(index, 0);
+        }
+        recount();
+        return tags.size();
+    }
+
+    public synchronized void disable(List<CompiledTag> tags) {
+        tags.forEach(tag -> tracedUntil[tag.getIndex()] = 0);
+        recount();
+    }
+
+    public synchronized void disableAll() {
+        Arrays.fill(tracedUntil, 0);
+        recount();
+    }
+
+    private synchronized void disable(int index) {
+        if (tracedUntil[index] != 0) {
+            tracedUntil[index] = 0;
+            recount();
+        }
+    }
+
+    private void recount() {
+        int count = 0;
+        for (long until : tracedUntil) {
+            if (until != 0) {
+                count++;
+            }
+        }
+        tracedCount = count;
+    }
+
+    public synchronized List<TracedTag> getTraced() {
+        long now = System.nanoTime();
+        List<TracedTag> result = new ArrayList<>();
+        for (int index = 0; index < tracedUntil.length; index++) {
+            CompiledTag tag = tracedUntil[index] != 0 ? tagTable.get(index) : null;
+            if (tag != null && tracedUntil[index] - now > 0) {
+                result.add(new TracedTag(index, tag.getPath(),
+                        Duration.ofNanos(tracedUntil[index] - now).toSeconds(),
+                        Duration.ofNanos(intervalNanos[index]).toMillis(),
+                        skipped.get(index)));
+            }
+        }
+        return result;
+    }
+
+    public int getTracedCount() {
+        return tracedCount;
+    }
+}
@@ -0,0 +1,44 @@
+-- Tag catalog read by JdbcTagCatalog (gateway.catalog.source: jdbc).
+-- Every insert and update must assign a new version from tag_version_seq, and tags are
+-- removed by setting deleted = TRUE, so that the gateway picks up changes incrementally.
+-- Rows deleted physically are only noticed by the periodic full reload.
+
+CREATE SEQUENCE IF NOT EXISTS tag_version_seq;
+
+CREATE TABLE IF NOT EXISTS tag_definition (
+    id                  BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    server_id           VARCHAR(64)      NOT NULL,
+    node_id             VARCHAR(512)     NOT NULL,
+    name                VARCHAR(256),
+    device              VARCHAR(128),
+    data_block          VARCHAR(128),
+    data_type           VARCHAR(32),
+    unit                VARCHAR(32),
+    polling_rate        BIGINT           NOT NULL DEFAULT 1000,
+    mode                VARCHAR(16),
+    queue_size          INT,
+    range_min           DOUBLE PRECISION,
+    range_max           DOUBLE PRECISION,
+    deadband            DOUBLE PRECISION,
+    deadband_percent    DOUBLE PRECISION,
+    report_by_exception BOOLEAN          NOT NULL DEFAULT FALSE,
+    heartbeat           BIGINT           NOT NULL DEFAULT 0,
+    writable            BOOLEAN          NOT NULL DEFAULT FALSE,
+    enabled             BOOLEAN          NOT NULL DEFAULT TRUE,
+    alarm_hihi          DOUBLE PRECISION,
+    alarm_hi            DOUBLE PRECISION,
+    alarm_lo            DOUBLE PRECISION,
+    alarm_lolo          DOUBLE PRECISION,
+    alarm_rate          DOUBLE PRECISION,
+    alarm_setpoint      DOUBLE PRECISION,
+    alarm_deviation     DOUBLE PRECISION,
+    alarm_hysteresis    DOUBLE PRECISION NOT NULL DEFAULT 0,
+    alarm_on_delay      BIGINT           NOT NULL DEFAULT 0,
+    alarm_off_delay     BIGINT           NOT NULL DEFAULT 0,
+    script              VARCHAR(1024),
+    deleted             BOOLEAN          NOT NULL DEFAULT FALSE,
+    version             BIGINT           NOT NULL DEFAULT NEXT VALUE FOR tag_version_seq,
+    CONSTRAINT uq_tag_definition UNIQUE (server_id, node_id)
+);
+
+CREATE INDEX IF NOT EXISTS ix_tag_definition_version ON tag_definition (version);
@@ -1,9 +1,9 @@
-package org.example.scadagateway;
+package com.scada.gateway;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = "gateway.events.directory=target/events")
 class ScadaGatewayApplicationTests {
 
     @Test
@@ -0,0 +1,153 @@
+package com.scada.gateway.acquisition;
+
+import com.scada.gateway.config.ServersConfig;
+import com.scada.gateway.tag.CompiledTag;
+import com.scada.gateway.tag.TagTable;
+import com.scada.gateway.tag.TestTags;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateGroupSchedulerTests {
+
+    @Test
+    void groupsEnabledTagsByPollingRate() {
+        List<CompiledTag> tags = compile(
+                tag("ns=2;i=3", 1000, true),
+                tag("ns=2;i=4", 1000, true),
+                tag("ns=2;i=5", 2000, true),
+                tag("ns=2;i=6", 1000, false),
+                tag("ns=2;i=7", 0, true));
+
+        List<RateGroup> groups = RateGroupScheduler.buildGroups("plc", tags);
+
+        assertThat(groups).extracting(RateGroup::getPeriodMillis).containsExactly(1000L, 2000L);
+        assertThat(groups.get(0).getTags()).extracting(CompiledTag::getAddress)
+                .containsExactly("ns=2;i=3", "ns=2;i=4");
+        assertThat(groups.get(0).getTagIndices()).containsExactly(0, 1);
+        assertThat(groups.get(1).getTags()).hasSize(1);
+    }
+
+    @Test
+    void reportsOverrunWhenCycleExceedsPeriod() throws InterruptedException {
+        CountDownLatch cycles = new CountDownLatch(2);
+        RateGroupScheduler scheduler = new RateGroupScheduler("plc", compile(tag("ns=2;i=3", 20, true)), group -> {
+            try {
+                Thread.sleep(40);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            cycles.countDown();
+            return CompletableFuture.completedFuture(null);
+        });
+
+        scheduler.start();
+        try {
+            assertThat(cycles.await(2, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            scheduler.stop();
+        }
+
+        assertThat(scheduler.getGroups().get(0).getOverruns().get()).isGreaterThanOrEqualTo(1);
+    }
+
+    @Test
+    void skipsCyclesWhileTheLastOneWaitsForResponses() throws InterruptedException {
+        CountDownLatch responses = new CountDownLatch(3);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        // A slow driver: the task returns at once, the response arrives three periods later.
+        RateGroupScheduler scheduler = new RateGroupScheduler("plc", compile(tag("ns=2;i=3", 20, true)), group -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            return CompletableFuture.runAsync(() -> {
+                inFlight.decrementAndGet();
+                responses.countDown();
+            }, CompletableFuture.delayedExecutor(60, TimeUnit.MILLISECONDS));
+        });
+
+        scheduler.start();
+        try {
+            assertThat(responses.await(2, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            scheduler.stop();
+        }
+
+        RateGroup group = scheduler.getGroups().get(0);
+        assertThat(maxInFlight.get()).isEqualTo(1);
+        assertThat(group.getOverruns().get()).isGreaterThanOrEqualTo(2);
+        // Cycle time runs until the response, not until the request was sent.
+        assertThat(group.getMaxCycleNanos()).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(60));
+    }
+
+    @Test
+    void updatesGroupsInPlaceWithoutRestartingUnchangedRates() throws InterruptedException {
+        Map<Long, Thread> threads = new ConcurrentHashMap<>();
+        CountDownLatch initialGroupsStarted = new CountDownLatch(2);
+        CountDownLatch addedGroupStarted = new CountDownLatch(1);
+        AtomicReference<RateGroup> updated = new AtomicReference<>();
+        CountDownLatch updatedGroupRan = new CountDownLatch(1);
+        List<ServersConfig.TagConfig> configs = new ArrayList<>(List.of(
+                tag("ns=2;i=3", 20, true),
+                tag("ns=2;i=4", 20, true),
+                tag("ns=2;i=5", 30, true)));
+        TagTable tagTable = TagTable.compile(TestTags.config(configs), 10);
+        RateGroupScheduler scheduler = new RateGroupScheduler("plc", tagTable.getServerTags("plc"), group -> {
+            if (threads.putIfAbsent(group.getPeriodMillis(), Thread.currentThread()) == null) {
+                (group.getPeriodMillis() == 40 ? addedGroupStarted : initialGroupsStarted).countDown();
+            }
+            if (group == updated.get()) {
+                updatedGroupRan.countDown();
+            }
+            return CompletableFuture.completedFuture(null);
+        });
+
+        scheduler.start();
+        try {
+            assertThat(initialGroupsStarted.await(2, TimeUnit.SECONDS)).isTrue();
+            RateGroup before = scheduler.getGroups().get(0);
+            // Moves i=4 to a new 40 ms group and removes the 30 ms group.
+            configs.get(1).setPollingRate(40);
+            configs.remove(2);
+            tagTable.update(TestTags.config(configs));
+            scheduler.update(tagTable.getServerTags("plc"));
+            assertThat(addedGroupStarted.await(2, TimeUnit.SECONDS)).isTrue();
+
+            assertThat(scheduler.getGroups()).extracting(RateGroup::getPeriodMillis).containsExactly(20L, 40L);
+            RateGroup after = scheduler.getGroups().get(0);
+            assertThat(after.getTags()).extracting(CompiledTag::getAddress).containsExactly("ns=2;i=3");
+            assertThat(after.getCycles()).isSameAs(before.getCycles());
+            assertThat(scheduler.getGroups().get(1).getTags()).extracting(CompiledTag::getAddress)
+                    .containsExactly("ns=2;i=4");
+
+            // The 20 ms worker keeps running and picks up the updated group.
+            updated.set(after);
+            assertThat(updatedGroupRan.await(2, TimeUnit.SECONDS)).isTrue();
+            assertThat(threads.get(20L).isAlive()).isTrue();
+            threads.get(30L).join(2000);
+            assertThat(threads.get(30L).isAlive()).isFalse();
+        } finally {
+            scheduler.stop();
+        }
+    }
+
+    private static List<CompiledTag> compile(ServersConfig.TagConfig... tags) {
+        return TestTags.table(tags).getServerTags("plc");
+    }
+
+    private static ServersConfig.TagConfig tag(String nodeId, long pollingRate, boolean enabled) {
+        return TestTags.tag(nodeId, "DOUBLE", tag -> {
+            tag.setPollingRate(pollingRate);
+            tag.setEnabled(enabled);
+        });
+    }
+}
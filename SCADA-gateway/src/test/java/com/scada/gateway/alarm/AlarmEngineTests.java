@@ -0,0 +1,186 @@
+package com.scada.gateway.alarm;
+
+import com.scada.gateway.config.ServersConfig;
+import com.scada.gateway.event.EventRecorder;
+import com.scada.gateway.model.Sample;
+import com.scada.gateway.tag.CompiledTag;
+import com.scada.gateway.tag.TagTable;
+import com.scada.gateway.tag.TestTags;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class AlarmEngineTests {
+
+    private static final long MS = 1_000_000;
+
+    private final EventRecorder events = mock(EventRecorder.class);
+    private final List<String> transitions = Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    void raisesAndClearsLimitAlarmsWithHysteresis() {
+        ServersConfig.AlarmConfig alarms = new ServersConfig.AlarmConfig();
+        alarms.setHiHi(120.0);
+        alarms.setHi(90.0);
+        alarms.setLo(10.0);
+        alarms.setHysteresis(2);
+        TagTable tagTable = table(alarms);
+        AlarmEngine engine = engine(tagTable);
+        CompiledTag tag = tagTable.get(0);
+
+        long now = 1;
+        for (double value : new double[]{50, 90, 89, 125, 100, 87.9, 10, 11, 12.5}) {
+            engine.evaluate(tag, sample(value), now += 100 * MS);
+        }
+
+        assertThat(transitions).containsExactly(
+                "HI+ 90.0", "HIHI+ 125.0", "HIHI- 100.0", "HI- 87.9", "LO+ 10.0", "LO- 12.5");
+        assertThat(engine.getActive()).isEmpty();
+        verify(events).alarm(tag, AlarmCondition.HI, true, 90.0);
+        verify(events).alarm(tag, AlarmCondition.LO, false, 12.5);
+    }
+
+    @Test
+    void appliesOnAndOffDelays() {
+        ServersConfig.AlarmConfig alarms = new ServersConfig.AlarmConfig();
+        alarms.setHi(90.0);
+        alarms.setOnDelay(500);
+        alarms.setOffDelay(300);
+        TagTable tagTable = table(alarms);
+        AlarmEngine engine = engine(tagTable);
+        CompiledTag tag = tagTable.get(0);
+
+        engine.evaluate(tag, sample(95), 1000 * MS);
+        engine.evaluate(tag, sample(80), 1200 * MS);   // gone before the on-delay ended
+        engine.evaluate(tag, sample(95), 1400 * MS);
+        engine.evaluate(tag, sample(96), 1800 * MS);
+        assertThat(transitions).isEmpty();
+        engine.evaluate(tag, sample(97), 1900 * MS);
+        assertThat(transitions).containsExactly("HI+ 97.0");
+        assertThat(engine.getActive()).singleElement()
+                .satisfies(active -> assertThat(active.conditions()).containsExactly(AlarmCondition.HI));
+
+        engine.evaluate(tag, sample(80), 2000 * MS);
+        engine.evaluate(tag, sample(80), 2200 * MS);
+        engine.evaluate(tag, sample(80), 2300 * MS);
+        assertThat(transitions).containsExactly("HI+ 97.0", "HI- 80.0");
+    }
+
+    @Test
+    void endsDelaysOfAConstantValueWithoutFurtherSamples() {
+        ServersConfig.AlarmConfig alarms = new ServersConfig.AlarmConfig();
+        alarms.setHi(90.0);
+        alarms.setOnDelay(200);
+        alarms.setOffDelay(200);
+        TagTable tagTable = table(alarms);
+        AlarmEngine engine = engine(tagTable);
+        CompiledTag tag = tagTable.get(0);
+        engine.start();
+        try {
+            engine.evaluate(tag, sample(95), System.nanoTime());
+            assertThat(transitions).isEmpty();
+            await().atMost(Duration.ofSeconds(5)).until(() -> transitions.equals(List.of("HI+ 95.0")));
+
+            engine.evaluate(tag, sample(80), System.nanoTime());
+            await().atMost(Duration.ofSeconds(5)).until(() -> transitions.equals(List.of("HI+ 95.0", "HI- 80.0")));
+        } finally {
+            engine.shutdown();
+        }
+        assertThat(engine.getActive()).isEmpty();
+    }
+
+    @Test
+    void reportsActiveAlarmsAsClearedWhenResetWithThem() {
+        ServersConfig.AlarmConfig alarms = new ServersConfig.AlarmConfig();
+        alarms.setHiHi(120.0);
+        alarms.setHi(90.0);
+        TagTable tagTable = table(alarms);
+        AlarmEngine engine = engine(tagTable);
+        CompiledTag tag = tagTable.get(0);
+        engine.evaluate(tag, sample(125), 1000 * MS);
+
+        engine.reset(tag, false);
+        assertThat(transitions).containsExactly("HIHI+ 125.0", "HI+ 125.0");
+        engine.reset(tag, true);
+
+        assertThat(transitions).containsExactly("HIHI+ 125.0", "HI+ 125.0", "HIHI- 125.0", "HI- 125.0");
+        assertThat(engine.getActive()).isEmpty();
+        verify(events).alarm(tag, AlarmCondition.HI, false, 125.0);
+    }
+
+    @Test
+    void raisesRateOfChangeAndDeviationAlarms() {
+        ServersConfig.AlarmConfig alarms = new ServersConfig.AlarmConfig();
+        alarms.setRateOfChange(2.0);
+        alarms.setSetpoint(50.0);
+        alarms.setDeviation(10.0);
+        TagTable tagTable = table(alarms);
+        AlarmEngine engine = engine(tagTable);
+        CompiledTag tag = tagTable.get(0);
+
+        engine.evaluate(tag, sample(50), 1000 * MS);
+        engine.evaluate(tag, sample(51), 2000 * MS);   // 1 per second
+        engine.evaluate(tag, sample(54), 2500 * MS);   // 6 per second
+        engine.evaluate(tag, sample(54.5), 3500 * MS);
+        engine.evaluate(tag, sample(39), 20_000 * MS);
+
+        assertThat(transitions).containsExactly("RATE_OF_CHANGE+ 54.0", "RATE_OF_CHANGE- 54.5", "DEVIATION+ 39.0");
+    }
+
+    @Test
+    void clearsRateOfChangeAlarmsOnlyBelowTheLimitMinusHysteresis() {
+        ServersConfig.AlarmConfig alarms = new ServersConfig.AlarmConfig();
+        alarms.setRateOfChange(2.0);
+        alarms.setHysteresis(0.5);
+        TagTable tagTable = table(alarms);
+        AlarmEngine engine = engine(tagTable);
+        CompiledTag tag = tagTable.get(0);
+
+        engine.evaluate(tag, sample(50), 1000 * MS);
+        engine.evaluate(tag, sample(52.5), 2000 * MS);   // 2.5 per second
+        engine.evaluate(tag, sample(54.3), 3000 * MS);   // 1.8 per second, within the hysteresis
+        engine.evaluate(tag, sample(56.3), 4000 * MS);   // 2.0 per second
+        engine.evaluate(tag, sample(57.7), 5000 * MS);   // 1.4 per second
+
+        assertThat(transitions).containsExactly("RATE_OF_CHANGE+ 52.5", "RATE_OF_CHANGE- 57.7");
+    }
+
+    @Test
+    void ignoresValuesWithBadQuality() {
+        ServersConfig.AlarmConfig alarms = new ServersConfig.AlarmConfig();
+        alarms.setHi(90.0);
+        TagTable tagTable = table(alarms);
+        AlarmEngine engine = engine(tagTable);
+
+        engine.evaluate(tagTable.get(0), new Sample().set(0, 0x80000000, 10, 10, 11).setDouble(100), 1);
+
+        assertThat(transitions).isEmpty();
+    }
+
+    private AlarmEngine engine(TagTable tagTable) {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("listener", (AlarmListener) transition -> transitions.add(
+                transition.condition() + (transition.raised() ? "+ " : "- ") + transition.value()));
+        return new AlarmEngine(tagTable, events, beanFactory.getBeanProvider(AlarmListener.class));
+    }
+
+    private static Sample sample(double value) {
+        return new Sample().set(0, 0, 10, 10, 11).setDouble(value);
+    }
+
+    private static TagTable table(ServersConfig.AlarmConfig alarms) {
+        return TestTags.table(TestTags.tag("ns=2;i=5", "DOUBLE", tag -> {
+            tag.setName("Temperature");
+            tag.setAlarms(alarms);
+        }));
+    }
+}
@@ -0,0 +1,84 @@
+package com.scada.gateway.bench;
+
+import com.scada.gateway.alarm.AlarmEngine;
+import com.scada.gateway.alarm.AlarmListener;
+import com.scada.gateway.config.EventJournalConfig;
+import com.scada.gateway.config.ServersConfig;
+import com.scada.gateway.event.EventRecorder;
+import com.scada.gateway.model.Sample;
+import com.scada.gateway.tag.CompiledTag;
+import com.scada.gateway.tag.TagTable;
+import com.scada.gateway.tag.TestTags;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link AlarmEngine#evaluate} per sample for a tag with all alarm kinds configured:
+ * values inside the limits, and values that raise or clear an alarm with every sample (event
+ * journal disabled, no listeners).
+ * Run from the test classpath: {@code java -cp ... com.scada.gateway.bench.AlarmBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AlarmBenchmark {
+
+    private AlarmEngine engine;
+    private CompiledTag tag;
+    private final Sample sample = new Sample();
+    private long now;
+
+    @Setup
+    public void setup() {
+        ServersConfig.AlarmConfig alarms = new ServersConfig.AlarmConfig();
+        alarms.setHiHi(120.0);
+        alarms.setHi(90.0);
+        alarms.setLo(10.0);
+        alarms.setLoLo(5.0);
+        alarms.setRateOfChange(1e9);
+        alarms.setSetpoint(50.0);
+        alarms.setDeviation(60.0);
+        alarms.setHysteresis(1);
+
+        TagTable tagTable = TestTags.table(TestTags.tag("ns=2;i=5", "DOUBLE", tag -> tag.setAlarms(alarms)));
+
+        EventJournalConfig events = new EventJournalConfig();
+        events.setEnabled(false);
+        engine = new AlarmEngine(tagTable, new EventRecorder(events),
+                new DefaultListableBeanFactory().getBeanProvider(AlarmListener.class));
+        tag = tagTable.get(0);
+    }
+
+    @Benchmark
+    public void withinLimits() {
+        long time = ++now;
+        engine.evaluate(tag, sample.set(0, 0, time, time, time).setDouble(50 + (time & 7)), time * 1_000_000);
+    }
+
+    @Benchmark
+    public void raiseAndClear() {
+        long time = ++now;
+        engine.evaluate(tag, sample.set(0, 0, time, time, time).setDouble((time & 1) == 0 ? 50 : 95), time * 1_000_000);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(AlarmBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,87 @@
+package com.scada.gateway.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.scada.gateway.codec.BinaryWriter;
+import com.scada.gateway.codec.SampleCodec;
+import com.scada.gateway.model.Sample;
+import com.scada.gateway.model.TagValue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Binary sample encoding versus JSON encoding of the {@link TagValue} DTO.
+ * Run from the test classpath: {@code java -cp ... com.scada.gateway.bench.CodecBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final BinaryWriter writer = new BinaryWriter();
+    private final Sample decoded = new Sample();
+    private Sample sample;
+    private TagValue tagValue;
+    private byte[] binary;
+    private byte[] json;
+
+    @Setup
+    public void setup() throws Exception {
+        long now = System.currentTimeMillis();
+        sample = new Sample().set(1234, 0, now, now, now + 2).setDouble(45.3);
+        tagValue = TagValue.builder()
+                .serverId("plc-simulator-001")
+                .tagId("ns=2;i=5")
+                .tagName("Motor Temperature")
+                .value(45.3f)
+                .dataType("FLOAT")
+                .quality("GOOD")
+                .timestamp(Instant.ofEpochMilli(now))
+                .unit("°C")
+                .build();
+        binary = SampleCodec.encode(sample);
+        json = objectMapper.writeValueAsBytes(tagValue);
+    }
+
+    @Benchmark
+    public int encodeBinary() {
+        SampleCodec.encode(sample, writer.reset());
+        return writer.size();
+    }
+
+    @Benchmark
+    public byte[] encodeJson() throws Exception {
+        return objectMapper.writeValueAsBytes(tagValue);
+    }
+
+    @Benchmark
+    public Sample decodeBinary() {
+        return SampleCodec.decode(binary, decoded);
+    }
+
+    @Benchmark
+    public TagValue decodeJson() throws Exception {
+        return objectMapper.readValue(json, TagValue.class);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CodecBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,132 @@
+package com.scada.gateway.bench;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.OutputStreamAppender;
+import com.scada.gateway.alarm.AlarmEngine;
+import com.scada.gateway.alarm.AlarmListener;
+import com.scada.gateway.config.EventJournalConfig;
+import com.scada.gateway.config.ScriptConfig;
+import com.scada.gateway.config.TraceConfig;
+import com.scada.gateway.event.EventRecorder;
+import com.scada.gateway.model.Sample;
+import com.scada.gateway.pipeline.AcquisitionPipeline;
+import com.scada.gateway.pipeline.SampleSink;
+import com.scada.gateway.script.ScriptEngine;
+import com.scada.gateway.state.CurrentValueTable;
+import com.scada.gateway.tag.TagTable;
+import com.scada.gateway.tag.TestTags;
+import com.scada.gateway.trace.ValueTracer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Acquisition throughput through {@link AcquisitionPipeline} with value tracing off, on for
+ * every tag at the default one second interval, and on for every tag and every sample.
+ * Traces are formatted but written to a null stream, so only the gateway's own cost is measured.
+ * Run from the test classpath: {@code java -cp ... com.scada.gateway.bench.PipelineBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PipelineBenchmark {
+
+    private static final int TAGS = 10_000;
+
+    @Param({"off", "sampled", "every"})
+    public String tracing;
+
+    private AcquisitionPipeline pipeline;
+    private final Sample sample = new Sample();
+    private long counter;
+
+    @Setup
+    public void setup() {
+        discardTraces();
+        TagTable tagTable = table();
+        TraceConfig traceConfig = new TraceConfig();
+        // Traces every tag with one request, beyond the limit an operator gets by default.
+        traceConfig.setMaxTags(TAGS);
+        ValueTracer tracer = new ValueTracer(tagTable, traceConfig);
+        switch (tracing) {
+            case "sampled" -> tracer.enable(tagTable.getTags(), Duration.ofHours(1), null);
+            case "every" -> tracer.enable(tagTable.getTags(), Duration.ofHours(1), Duration.ZERO);
+            default -> {
+            }
+        }
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        EventJournalConfig events = new EventJournalConfig();
+        events.setEnabled(false);
+        EventRecorder recorder = new EventRecorder(events);
+        AlarmEngine alarms = new AlarmEngine(tagTable, recorder, beanFactory.getBeanProvider(AlarmListener.class));
+        pipeline = new AcquisitionPipeline(tagTable, new CurrentValueTable(tagTable),
+                new ScriptEngine(tagTable, new ScriptConfig(), recorder), alarms, tracer,
+                beanFactory.getBeanProvider(SampleSink.class));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TAGS)
+    public long publish() {
+        long now = System.currentTimeMillis();
+        double value = counter++;
+        for (int tag = 0; tag < TAGS; tag++) {
+            pipeline.publish(sample.set(tag, 0, now, now, now).setDouble(value + tag));
+        }
+        return pipeline.getPublishedCount();
+    }
+
+    private static void discardTraces() {
+        LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern("%d %level %logger : %msg %kvp%n");
+        encoder.start();
+        OutputStreamAppender<ILoggingEvent> appender = new OutputStreamAppender<>();
+        appender.setContext(context);
+        appender.setEncoder(encoder);
+        appender.setOutputStream(OutputStream.nullOutputStream());
+        appender.start();
+
+        Logger logger = context.getLogger("com.scada.gateway.trace");
+        logger.detachAndStopAllAppenders();
+        logger.setAdditive(false);
+        logger.setLevel(Level.INFO);
+        logger.addAppender(appender);
+    }
+
+    private static TagTable table() {
+        return TagTable.compile(TestTags.config(IntStream.range(0, TAGS)
+                .mapToObj(i -> TestTags.tag("ns=2;i=" + i, "DOUBLE", tag -> tag.setName("Tag " + i)))
+                .toList()));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(PipelineBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,103 @@
+package com.scada.gateway.bench;
+
+import com.scada.gateway.config.EventJournalConfig;
+import com.scada.gateway.config.ScriptConfig;
+import com.scada.gateway.event.EventRecorder;
+import com.scada.gateway.model.Sample;
+import com.scada.gateway.script.ScriptEngine;
+import com.scada.gateway.tag.CompiledTag;
+import com.scada.gateway.tag.TagTable;
+import com.scada.gateway.tag.TestTags;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One tag script run by the {@link ScriptEngine}, compiled to bytecode versus interpreted by
+ * SpEL ({@code gateway.scripts.compile} off), both including the context reset, budget check and
+ * decoding of the result, versus the same computation in plain Java on the same sample.
+ * Run from the test classpath: {@code java -cp ... com.scada.gateway.bench.ScriptBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScriptBenchmark {
+
+    private static final String EXPRESSION = "clamp(scale(value, 0.0, 27648.0, 0.0, 150.0) * 1.8 + 32.0, 32.0, 302.0)";
+
+    private ScriptEngine compiledEngine;
+    private ScriptEngine interpretedEngine;
+    private CompiledTag tag;
+    private final Sample sample = new Sample();
+    private long counter;
+
+    @Setup
+    public void setup() {
+        TagTable tagTable = TestTags.table(TestTags.tag("ns=2;i=5", "DOUBLE", tag -> tag.setScript(EXPRESSION)));
+        tag = tagTable.get(0);
+
+        EventJournalConfig events = new EventJournalConfig();
+        events.setEnabled(false);
+        // A single descheduled invocation must not count towards disabling the script, or the
+        // rest of the run would time the pass-through of a disabled script.
+        ScriptConfig compiling = new ScriptConfig();
+        compiling.setBudget(Duration.ofSeconds(1));
+        compiledEngine = new ScriptEngine(tagTable, compiling, new EventRecorder(events));
+        ScriptConfig interpreting = new ScriptConfig();
+        interpreting.setBudget(Duration.ofSeconds(1));
+        interpreting.setCompile(false);
+        interpretedEngine = new ScriptEngine(tagTable, interpreting, new EventRecorder(events));
+        if (!compiledEngine.getScripts().get(0).compiled() || interpretedEngine.getScripts().get(0).compiled()) {
+            throw new IllegalStateException("Script is not compiled in one engine and interpreted in the other");
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void checkEnabled() {
+        if (compiledEngine.getScripts().get(0).disabled() || interpretedEngine.getScripts().get(0).disabled()) {
+            throw new IllegalStateException("Script was disabled during the iteration");
+        }
+    }
+
+    @Benchmark
+    public double compiled() {
+        compiledEngine.apply(tag, sample.set(0, 0, 0, 0, 0).setDouble(counter++ & 0x7FFF));
+        return sample.doubleValue();
+    }
+
+    @Benchmark
+    public double interpreted() {
+        interpretedEngine.apply(tag, sample.set(0, 0, 0, 0, 0).setDouble(counter++ & 0x7FFF));
+        return sample.doubleValue();
+    }
+
+    @Benchmark
+    public double java() {
+        sample.set(0, 0, 0, 0, 0).setDouble(counter++ & 0x7FFF);
+        double celsius = sample.doubleValue() * 150.0 / 27648.0;
+        sample.setDouble(Math.max(32.0, Math.min(302.0, celsius * 1.8 + 32.0)));
+        return sample.doubleValue();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ScriptBenchmark.class.getSimpleName()).build()).run();
+    }
+}
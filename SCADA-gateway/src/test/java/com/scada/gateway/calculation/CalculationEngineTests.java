@@ -0,0 +1,171 @@
+package com.scada.gateway.calculation;
+
+import com.scada.gateway.alarm.AlarmEngine;
+import com.scada.gateway.alarm.AlarmListener;
+import com.scada.gateway.config.ScriptConfig;
+import com.scada.gateway.config.ServersConfig;
+import com.scada.gateway.config.TraceConfig;
+import com.scada.gateway.event.EventRecorder;
+import com.scada.gateway.model.Sample;
+import com.scada.gateway.pipeline.AcquisitionCycle;
+import com.scada.gateway.pipeline.AcquisitionPipeline;
+import com.scada.gateway.pipeline.SampleSink;
+import com.scada.gateway.script.ScriptEngine;
+import com.scada.gateway.state.CurrentValueTable;
+import com.scada.gateway.tag.CompiledTag;
+import com.scada.gateway.tag.TagTable;
+import com.scada.gateway.tag.TestTags;
+import com.scada.gateway.trace.ValueTracer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class CalculationEngineTests {
+
+    private final DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+    private final List<Sample> published = new ArrayList<>();
+
+    @Test
+    void computesOnlyAffectedCalculationsOncePerCycle() {
+        TagTable tagTable = TestTags.table(
+                tag("Current", "DOUBLE"), tag("Level", "DOUBLE"), tag("Flow", "DOUBLE"),
+                tag("Inlet", "BOOLEAN"), tag("Outlet", "BOOLEAN"),
+                calculated("Power", "DOUBLE", "#current * 0.5", "current", "Current"),
+                calculated("Mass", "DOUBLE", "#level * 50.0", "level", "Level"),
+                // Reads Mass, so it is computed after it.
+                calculated("Fill Time", "DOUBLE", "#flow > 0.0 ? (5000.0 - #mass) / #flow : null",
+                        "flow", "Flow", "mass", "plc/Mass"),
+                calculated("Open", "BOOLEAN", "#inlet or #outlet", "inlet", "Inlet", "outlet", "Outlet"));
+        CalculationEngine engine = engine(tagTable);
+        AcquisitionPipeline pipeline = beanFactory.getBean(AcquisitionPipeline.class);
+        assertThat(engine.getCalculatedCount()).isEqualTo(4);
+
+        AcquisitionCycle cycle = pipeline.beginCycle("plc", 1000, 1, 5);
+        pipeline.publish(new Sample().set(0, 0, 10, 10, 11).setDouble(10), cycle);
+        pipeline.publish(new Sample().set(1, 0, 12, 12, 13).setDouble(20), cycle);
+        pipeline.publish(new Sample().set(2, 0, 10, 10, 11).setDouble(100), cycle);
+        pipeline.publish(new Sample().set(3, 0, 10, 10, 11).setBoolean(true), cycle);
+        pipeline.publish(new Sample().set(4, 0, 10, 10, 11).setBoolean(false), cycle);
+        assertThat(calculated(tagTable)).isEmpty();
+
+        pipeline.completeRequests(cycle, 1);
+        assertThat(calculated(tagTable)).containsExactly(
+                Map.entry("Power", 5.0), Map.entry("Mass", 1000.0), Map.entry("Open", 1.0), Map.entry("Fill Time", 40.0));
+        assertThat(published.get(published.size() - 1).getSourceTime()).isEqualTo(12);
+        assertThat(engine.getEvaluationCount()).isEqualTo(4);
+
+        published.clear();
+        pipeline.publish(new Sample().set(0, 0, 20, 20, 21).setDouble(12));
+        assertThat(calculated(tagTable)).containsExactly(Map.entry("Power", 6.0));
+
+        published.clear();
+        cycle = pipeline.beginCycle("plc", 1000, 1, 2);
+        pipeline.publish(new Sample().set(1, 0, 30, 30, 31).setDouble(30), cycle);
+        pipeline.publish(new Sample().set(2, 0, 30, 30, 31).setDouble(200), cycle);
+        pipeline.completeRequests(cycle, 1);
+        assertThat(calculated(tagTable)).containsExactly(Map.entry("Mass", 1500.0), Map.entry("Fill Time", 17.5));
+        assertThat(engine.getEvaluationCount()).isEqualTo(7);
+    }
+
+    @Test
+    void leavesOutCyclesAndBrokenCalculationsAndPropagatesWorstStatus() {
+        ServersConfig.TagConfig power = calculated("Power", "DOUBLE", "#current * #voltage", "current", "Current",
+                "voltage", "Voltage");
+        power.setWritable(true);
+        TagTable tagTable = TestTags.table(
+                tag("Current", "DOUBLE"), tag("Voltage", "DOUBLE"), power,
+                calculated("A", "DOUBLE", "#b + 1.0", "b", "B"),
+                calculated("B", "DOUBLE", "#a + 1.0", "a", "A"),
+                calculated("After Loop", "DOUBLE", "#a * 2.0", "a", "A"),
+                calculated("Orphan", "DOUBLE", "#x", "x", "Missing"),
+                calculated("Broken", "DOUBLE", "#current *", "current", "Current"));
+        CalculationEngine engine = engine(tagTable);
+        AcquisitionPipeline pipeline = beanFactory.getBean(AcquisitionPipeline.class);
+        assertThat(engine.getCalculatedCount()).isEqualTo(1);
+
+        CompiledTag compiled = tagTable.get(2);
+        assertThat(compiled.getNodeId()).isNull();
+        assertThat(compiled.getAddress()).isEqualTo("calc:Power");
+        assertThat(compiled.getMode()).isEqualTo(ServersConfig.AcquisitionMode.CALCULATED);
+        assertThat(compiled.isWritable()).isFalse();
+
+        // Waits for the second input.
+        pipeline.publish(new Sample().set(0, 0x40000000, 10, 10, 11).setDouble(2));
+        assertThat(published).hasSize(1);
+
+        pipeline.publish(new Sample().set(1, 0, 10, 10, 11).setDouble(230));
+        // The result is computed while the voltage passes the sinks, so the recorder may see it first.
+        assertThat(published).hasSize(3);
+        Sample result = published.stream().filter(sample -> sample.getTagIndex() == 2).findFirst().orElseThrow();
+        assertThat(result.doubleValue()).isEqualTo(460.0);
+        assertThat(result.getStatusCode()).isEqualTo(0x40000000);
+
+        pipeline.publish(new Sample().set(1, 0x80000000, 20, 20, 21).setDouble(0));
+        assertThat(published.get(published.size() - 1).getStatusCode()).isEqualTo(0x80000000);
+    }
+
+    @Test
+    void callsNoMethodsButTheScriptFunctions() {
+        TagTable tagTable = TestTags.table(tag("Label", "STRING"), tag("Level", "DOUBLE"),
+                calculated("Label Length", "DOUBLE", "#label.repeat(1000000000).length() * 1.0", "label", "Label"),
+                calculated("Clamped", "DOUBLE", "max(#level, 0.0)", "level", "Level"));
+        CalculationEngine engine = engine(tagTable);
+        AcquisitionPipeline pipeline = beanFactory.getBean(AcquisitionPipeline.class);
+
+        pipeline.publish(new Sample().set(0, 0, 10, 10, 11).setText("abc"));
+        pipeline.publish(new Sample().set(1, 0, 10, 10, 11).setDouble(-4));
+
+        assertThat(published).filteredOn(sample -> sample.getTagIndex() == 2).singleElement()
+                .satisfies(sample -> assertThat(sample.getStatusCode())
+                        .isEqualTo(CalculationEngine.BAD_CALCULATION_STATUS));
+        assertThat(calculated(tagTable)).contains(Map.entry("Clamped", 0.0));
+        assertThat(engine.getErrorCount()).isEqualTo(1);
+    }
+
+    private List<Map.Entry<String, Double>> calculated(TagTable tagTable) {
+        return published.stream()
+                .filter(sample -> tagTable.get(sample.getTagIndex()).isCalculated())
+                .map(sample -> Map.entry(tagTable.get(sample.getTagIndex()).getName(), sample.doubleValue()))
+                .toList();
+    }
+
+    private CalculationEngine engine(TagTable tagTable) {
+        CurrentValueTable currentValues = new CurrentValueTable(tagTable);
+        CalculationEngine engine = new CalculationEngine(tagTable, currentValues,
+                beanFactory.getBeanProvider(AcquisitionPipeline.class));
+        beanFactory.registerSingleton("calculations", engine);
+        beanFactory.registerSingleton("recorder", (SampleSink) sample -> published.add(sample.copy()));
+        AcquisitionPipeline pipeline = new AcquisitionPipeline(tagTable, currentValues,
+                new ScriptEngine(tagTable, new ScriptConfig(), mock(EventRecorder.class)),
+                new AlarmEngine(tagTable, mock(EventRecorder.class), beanFactory.getBeanProvider(AlarmListener.class)),
+                new ValueTracer(tagTable, new TraceConfig()), beanFactory.getBeanProvider(SampleSink.class));
+        beanFactory.registerSingleton("pipeline", pipeline);
+        return engine;
+    }
+
+    private static ServersConfig.TagConfig tag(String name, String dataType) {
+        return TestTags.tag("ns=2;s=" + name, dataType, tag -> tag.setName(name));
+    }
+
+    private static ServersConfig.TagConfig calculated(String name, String dataType, String expression,
+                                                    String... inputs) {
+        ServersConfig.TagConfig tag = tag(name, dataType);
+        tag.setNodeId(null);
+        ServersConfig.CalculationConfig calculation = new ServersConfig.CalculationConfig();
+        calculation.setExpression(expression);
+        Map<String, String> variables = new LinkedHashMap<>();
+        for (int i = 0; i < inputs.length; i += 2) {
+            variables.put(inputs[i], inputs[i + 1]);
+        }
+        calculation.setInputs(variables);
+        tag.setCalculation(calculation);
+        return tag;
+    }
+}
@@ -0,0 +1,116 @@
+package com.scada.gateway.catalog;
+
+import com.scada.gateway.config.TagCatalogConfig;
+import com.scada.gateway.tag.CompiledTag;
+import com.scada.gateway.tag.TagTable;
+import com.scada.gateway.tag.TagTableDiff;
+import com.scada.gateway.tag.TestTags;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.sql.init.SqlInitializationAutoConfiguration;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+class JdbcTagCatalogTests {
+
+    private static final int TAGS = 100_000;
+
+    private final EmbeddedDatabase database = new EmbeddedDatabaseBuilder()
+            .setType(EmbeddedDatabaseType.H2)
+            .generateUniqueName(true)
+            .addScript("db/tag-catalog.sql")
+            .build();
+    private final JdbcTemplate jdbc = new JdbcTemplate(database);
+
+    @AfterEach
+    void shutdown() {
+        database.shutdown();
+    }
+
+    @Test
+    void loadsLargeCatalogAndAppliesVersionedChanges() {
+        insertTags(TAGS);
+        JdbcTagCatalog catalog = new JdbcTagCatalog(database, new TagCatalogConfig());
+
+        long started = System.nanoTime();
+        assertThat(catalog.load()).isEqualTo(TAGS);
+        TagTable tagTable = TagTable.compile(catalog.apply(TestTags.config(List.of())), TAGS + 10);
+        log.info("Loaded and compiled {} tags in {} ms", TAGS, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        assertThat(tagTable.getServerTags("plc")).hasSize(TAGS);
+
+        CompiledTag changedBefore = tagTable.find("plc", "ns=2;i=5");
+        jdbc.update("UPDATE tag_definition SET polling_rate = 250, version = NEXT VALUE FOR tag_version_seq"
+                + " WHERE node_id = 'ns=2;i=5'");
+        jdbc.update("UPDATE tag_definition SET deleted = TRUE, version = NEXT VALUE FOR tag_version_seq"
+                + " WHERE node_id = 'ns=2;i=6'");
+        jdbc.update("INSERT INTO tag_definition (server_id, node_id, name, data_type) VALUES ('plc', 'ns=2;s=New', 'New', 'DOUBLE')");
+
+        assertThat(catalog.pollChanges()).isEqualTo(3);
+        assertThat(catalog.pollChanges()).isZero();
+
+        TagTableDiff diff = tagTable.update(catalog.apply(TestTags.config(List.of())));
+        assertThat(diff.added()).extracting(CompiledTag::getAddress).containsExactly("ns=2;s=New");
+        assertThat(diff.removed()).extracting(CompiledTag::getAddress).containsExactly("ns=2;i=6");
+        assertThat(diff.changed()).hasSize(1);
+        CompiledTag changedAfter = diff.changed().get(0).current();
+        assertThat(changedAfter.getPollingRate()).isEqualTo(250);
+        assertThat(changedAfter.getIndex()).isEqualTo(changedBefore.getIndex());
+        assertThat(tagTable.get(changedBefore.getIndex())).isSameAs(changedAfter);
+        assertThat(tagTable.find("plc", "ns=2;i=6")).isNull();
+    }
+
+    @Test
+    void replacesTheDefinitionOfARowWhoseNodeOrServerChanged() {
+        insertTags(3);
+        JdbcTagCatalog catalog = new JdbcTagCatalog(database, new TagCatalogConfig());
+        catalog.load();
+        TagTable tagTable = TagTable.compile(catalog.apply(TestTags.config(List.of())), 10);
+
+        jdbc.update("UPDATE tag_definition SET node_id = 'ns=2;s=Renamed', version = NEXT VALUE FOR tag_version_seq"
+                + " WHERE node_id = 'ns=2;i=0'");
+        jdbc.update("UPDATE tag_definition SET server_id = 'other', version = NEXT VALUE FOR tag_version_seq"
+                + " WHERE node_id = 'ns=2;i=1'");
+        assertThat(catalog.pollChanges()).isEqualTo(2);
+
+        TagTableDiff diff = tagTable.update(catalog.apply(TestTags.config(List.of())));
+        assertThat(diff.added()).extracting(CompiledTag::getAddress).containsExactly("ns=2;s=Renamed");
+        assertThat(diff.removed()).extracting(CompiledTag::getAddress).containsExactlyInAnyOrder("ns=2;i=0", "ns=2;i=1");
+        assertThat(tagTable.getServerTags("plc")).extracting(CompiledTag::getAddress)
+                .containsExactly("ns=2;s=Renamed", "ns=2;i=2");
+        assertThat(catalog.size()).isEqualTo(3);
+    }
+
+    @Test
+    void createsItsDataSourceOnlyForTheJdbcSource() {
+        ApplicationContextRunner runner = new ApplicationContextRunner()
+                .withConfiguration(AutoConfigurations.of(SqlInitializationAutoConfiguration.class))
+                .withUserConfiguration(JdbcCatalogConfiguration.class, JdbcTagCatalog.class, TagCatalogConfig.class);
+
+        runner.run(context -> assertThat(context).doesNotHaveBean(DataSource.class).doesNotHaveBean(JdbcTagCatalog.class));
+        runner.withPropertyValues("gateway.catalog.source=jdbc", "spring.datasource.url=jdbc:h2:mem:catalog",
+                        "spring.sql.init.schema-locations=classpath:db/tag-catalog.sql")
+                .run(context -> assertThat(context.getBean(JdbcTagCatalog.class).load()).isZero());
+    }
+
+    private void insertTags(int count) {
+        List<Object[]> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            rows.add(new Object[]{"ns=2;i=" + i, "Tag " + i, i % 2 == 0 ? "FLOAT" : "INT", 1000L * (1 + i % 3)});
+        }
+        jdbc.batchUpdate("INSERT INTO tag_definition (server_id, node_id, name, data_type, polling_rate)"
+                + " VALUES ('plc', ?, ?, ?, ?)", rows);
+    }
+}
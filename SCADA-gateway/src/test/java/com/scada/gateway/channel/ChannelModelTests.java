@@ -0,0 +1,128 @@
+package com.scada.gateway.channel;
+
+import com.scada.gateway.config.ServersConfig;
+import com.scada.gateway.tag.CompiledTag;
+import com.scada.gateway.tag.TagTable;
+import com.scada.gateway.tag.TestTags;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChannelModelTests {
+
+    private static final String DEVICE = "plc/S7-1200-SIM-001";
+
+    @Test
+    void resolvesTagsByPathNodeIdAndId() {
+        TagTable tagTable = TagTable.compile(TestTags.config(tags()));
+        ChannelModel model = new ChannelModel(tagTable);
+
+        CompiledTag speed = model.findByPath(DEVICE + "/DB1_MotorControl/Speed");
+        assertThat(speed).isNotNull();
+        assertThat(speed.getAddress()).isEqualTo("ns=2;i=3");
+        assertThat(model.findByNodeId("plc", NodeId.parse("ns=2;i=3"))).isSameAs(speed);
+        assertThat(model.get(speed.getIndex())).isSameAs(speed);
+        assertThat(model.findByPath("plc/Heartbeat").getAddress()).isEqualTo("ns=2;i=1");
+        assertThat(model.findByPath(DEVICE + "/DB1_MotorControl/Missing")).isNull();
+        assertThat(model.findByNodeId("other", NodeId.parse("ns=2;i=3"))).isNull();
+    }
+
+    @Test
+    void returnsSubtreesAndPrefixMatches() {
+        ChannelModel model = new ChannelModel(TagTable.compile(TestTags.config(tags())));
+
+        ChannelNode device = model.getNode(DEVICE);
+        assertThat(device.getLevel()).isEqualTo(ChannelNode.Level.DEVICE);
+        assertThat(device.getChildren()).extracting(ChannelNode::getName)
+                .containsExactly("DB1_MotorControl", "DB2_PumpControl");
+        assertThat(device.getTags()).extracting(CompiledTag::getName)
+                .containsExactly("Speed", "Running", "Pressure", "Mode");
+        assertThat(model.getSubtree(DEVICE + "/DB2_PumpControl")).extracting(CompiledTag::getName)
+                .containsExactly("Pressure", "Mode");
+        assertThat(model.getNode("plc").getOwnTags()).extracting(CompiledTag::getName).containsExactly("Heartbeat");
+        assertThat(model.getSubtree("")).hasSize(5);
+        assertThat(model.getSubtree("plc/unknown")).isEmpty();
+
+        assertThat(model.findByPrefix(DEVICE + "/DB1_MotorControl/")).extracting(CompiledTag::getName)
+                .containsExactly("Running", "Speed");
+        assertThat(model.findByPrefix(DEVICE + "/DB")).hasSize(4);
+        assertThat(model.findByPrefix("none")).isEmpty();
+    }
+
+    @Test
+    void followsTagTableUpdates() {
+        List<ServersConfig.TagConfig> tags = tags();
+        TagTable tagTable = TagTable.compile(TestTags.config(tags), 10);
+        ChannelModel model = new ChannelModel(tagTable);
+        CompiledTag speed = model.findByPath(DEVICE + "/DB1_MotorControl/Speed");
+
+        tags.get(1).setBlock("DB3_Drive");
+        tags.remove(2);
+        tagTable.update(TestTags.config(tags));
+
+        assertThat(model.findByPath(DEVICE + "/DB1_MotorControl/Speed")).isNull();
+        CompiledTag moved = model.findByPath(DEVICE + "/DB3_Drive/Speed");
+        assertThat(moved.getIndex()).isEqualTo(speed.getIndex());
+        assertThat(model.findByPath(DEVICE + "/DB1_MotorControl/Running")).isNull();
+        assertThat(model.getNode(DEVICE + "/DB1_MotorControl")).isNull();
+    }
+
+    @Test
+    void escapesSlashesInNamesSoEveryLevelIsOnePathSegment() {
+        List<ServersConfig.TagConfig> tags = tags();
+        tags.add(tag("ns=2;i=12", "Flow/Return", "S7-1200-SIM-001", "DB4/Cooling"));
+        ChannelModel model = new ChannelModel(TagTable.compile(TestTags.config(tags)));
+
+        CompiledTag flow = model.findByPath(DEVICE + "/DB4%2FCooling/Flow%2FReturn");
+        assertThat(flow).isNotNull();
+        assertThat(flow.getName()).isEqualTo("Flow/Return");
+        assertThat(model.getNode(DEVICE + "/DB4%2FCooling").getName()).isEqualTo("DB4/Cooling");
+        assertThat(model.findByPath(DEVICE + "/DB4/Cooling/Flow/Return")).isNull();
+        assertThat(model.getNode(DEVICE + "/DB4")).isNull();
+        assertThat(TagTable.pathSegment("50%/Load")).isEqualTo("50%25%2FLoad");
+    }
+
+    @Test
+    void rebuildsOnlyTheServersWhoseTagsChanged() {
+        List<ServersConfig.TagConfig> tags = tags();
+        List<ServersConfig.TagConfig> otherTags = List.of(tag("ns=2;i=1", "Level", null, null));
+        ServersConfig config = TestTags.config(TestTags.server("plc", tags), TestTags.server("other", otherTags));
+        TagTable tagTable = TagTable.compile(config, 10);
+        ChannelModel model = new ChannelModel(tagTable);
+        ChannelNode other = model.getNode("other");
+        ChannelNode device = model.getNode(DEVICE);
+
+        tags.remove(0);
+        tagTable.update(config);
+
+        assertThat(model.getNode("other")).isSameAs(other);
+        assertThat(model.getNode(DEVICE)).isNotSameAs(device);
+        assertThat(model.findByPath("plc/Heartbeat")).isNull();
+        assertThat(model.findByNodeId("other", NodeId.parse("ns=2;i=1")).getName()).isEqualTo("Level");
+        assertThat(model.getSubtree("")).extracting(CompiledTag::getName)
+                .containsExactly("Speed", "Running", "Pressure", "Mode", "Level");
+        assertThat(model.findByPrefix("")).extracting(CompiledTag::getPath).isSorted().hasSize(5);
+    }
+
+    private static List<ServersConfig.TagConfig> tags() {
+        List<ServersConfig.TagConfig> tags = new ArrayList<>();
+        tags.add(tag("ns=2;i=1", "Heartbeat", null, null));
+        tags.add(tag("ns=2;i=3", "Speed", "S7-1200-SIM-001", "DB1_MotorControl"));
+        tags.add(tag("ns=2;i=6", "Running", "S7-1200-SIM-001", "DB1_MotorControl"));
+        tags.add(tag("ns=2;i=8", "Pressure", "S7-1200-SIM-001", "DB2_PumpControl"));
+        tags.add(tag("ns=2;i=10", "Mode", "S7-1200-SIM-001", "DB2_PumpControl"));
+        return tags;
+    }
+
+    private static ServersConfig.TagConfig tag(String nodeId, String name, String device, String block) {
+        return TestTags.tag(nodeId, "FLOAT", tag -> {
+            tag.setName(name);
+            tag.setDevice(device);
+            tag.setBlock(block);
+        });
+    }
+}
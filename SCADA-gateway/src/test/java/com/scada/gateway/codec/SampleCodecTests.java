@@ -0,0 +1,71 @@
+package com.scada.gateway.codec;
+
+import com.scada.gateway.model.Sample;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SampleCodecTests {
+
+    private static final long NOW = 1_760_000_000_000L;
+
+    @Test
+    void roundTripsEveryValueType() {
+        Sample[] samples = {
+                new Sample().set(0, 0, NOW, NOW + 1, NOW + 3).setNull(),
+                new Sample().set(1, 0, NOW, NOW, NOW).setBoolean(true),
+                new Sample().set(2, 0x80330000, NOW, NOW, NOW + 2).setLong(-1500),
+                new Sample().set(300, 0, NOW, NOW, NOW).setDouble(12.5),
+                new Sample().set(70_000, 0, NOW, NOW - 5, NOW).setText("Auto"),
+        };
+
+        for (Sample sample : samples) {
+            Sample decoded = SampleCodec.decode(SampleCodec.encode(sample), new Sample());
+            assertThat(decoded).usingRecursiveComparison().isEqualTo(sample);
+        }
+    }
+
+    @Test
+    void encodesGoodSampleCompactly() {
+        byte[] encoded = SampleCodec.encode(new Sample().set(5, 0, NOW, NOW, NOW + 1).setLong(1500));
+
+        assertThat(encoded.length).isLessThanOrEqualTo(16);
+    }
+
+    @Test
+    void rejectsUnknownVersion() {
+        byte[] encoded = SampleCodec.encode(new Sample().set(5, 0, NOW, NOW, NOW).setLong(1));
+        encoded[1] = 99;
+
+        assertThatThrownBy(() -> SampleCodec.decode(encoded, new Sample()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("version");
+    }
+
+    @Test
+    void streamsFrameEntries() {
+        FrameEncoder encoder = new FrameEncoder().begin(NOW);
+        encoder.add(new Sample().set(10, 0, NOW - 20, 0, NOW + 4).setDouble(2.5));
+        encoder.add(new Sample().set(3, 0, NOW - 20, 0, NOW + 4).setBoolean(false));
+        encoder.add(new Sample().set(11, 0x80000000, 0, 0, NOW + 5).setNull());
+
+        FrameReader reader = new FrameReader().wrap(encoder.finish());
+        Sample sample = new Sample();
+
+        assertThat(reader.getCycleTime()).isEqualTo(NOW);
+        assertThat(reader.getCount()).isEqualTo(3);
+        assertThat(reader.next(sample)).isTrue();
+        assertThat(sample.getTagIndex()).isEqualTo(10);
+        assertThat(sample.doubleValue()).isEqualTo(2.5);
+        assertThat(sample.getSourceTime()).isEqualTo(NOW - 20);
+        assertThat(reader.next(sample)).isTrue();
+        assertThat(sample.getTagIndex()).isEqualTo(3);
+        assertThat(sample.booleanValue()).isFalse();
+        assertThat(reader.next(sample)).isTrue();
+        assertThat(sample.getTagIndex()).isEqualTo(11);
+        assertThat(sample.isGood()).isFalse();
+        assertThat(sample.getReceiveTime()).isEqualTo(NOW + 5);
+        assertThat(reader.next(sample)).isFalse();
+    }
+}
@@ -0,0 +1,103 @@
+package com.scada.gateway.command;
+
+import com.scada.gateway.channel.ChannelModel;
+import com.scada.gateway.config.WriteCommandConfig;
+import com.scada.gateway.driver.DriverService;
+import com.scada.gateway.driver.DriverSession;
+import com.scada.gateway.event.EventRecorder;
+import com.scada.gateway.tag.CompiledTag;
+import com.scada.gateway.tag.TagTable;
+import com.scada.gateway.tag.TestTags;
+import org.eclipse.milo.opcua.stack.core.StatusCodes;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WriteCommandServiceTests {
+
+    private final TagTable tagTable = TestTags.table(
+            TestTags.tag("ns=2;i=3", "INT", tag -> tag.setWritable(true)),
+            TestTags.tag("ns=2;i=4", "FLOAT"),
+            TestTags.tag("ns=2;i=6", "BOOLEAN", tag -> tag.setWritable(true)));
+    private final DriverSession session = mock(DriverSession.class);
+    private final WriteCommandService service = service();
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void coalescesCommandsPerTagIntoOneWrite() {
+        when(session.write(any(), any())).thenAnswer(invocation -> CompletableFuture.completedFuture(
+                new int[invocation.<List<?>>getArgument(0).size()]));
+
+        List<WriteAck> acks = service.execute(List.of(
+                command("1", "ns=2;i=3", 100),
+                command("2", "ns=2;i=6", true),
+                command("3", "ns=2;i=3", 200)));
+
+        ArgumentCaptor<List<CompiledTag>> tags = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<List<Object>> values = ArgumentCaptor.forClass(List.class);
+        verify(session, times(1)).write(tags.capture(), values.capture());
+        assertThat(tags.getValue()).extracting(CompiledTag::getAddress).containsExactly("ns=2;i=3", "ns=2;i=6");
+        assertThat(values.getValue()).containsExactly(200, true);
+
+        assertThat(acks).hasSize(3).allMatch(WriteAck::isGood);
+        assertThat(acks).filteredOn(WriteAck::isCoalesced).extracting(WriteAck::getId).containsExactly("1");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void resolvesCommandsAddressedByPathToTheSameTagAsById() {
+        when(session.write(any(), any())).thenAnswer(invocation -> CompletableFuture.completedFuture(
+                new int[invocation.<List<?>>getArgument(0).size()]));
+
+        List<WriteAck> acks = service.execute(List.of(
+                command("1", "ns=2;i=3", 100),
+                WriteCommand.builder().id("2").path("plc/ns=2;i=3").value(200).build(),
+                WriteCommand.builder().id("3").path("plc/ns=2;i=99").value(1).build()));
+
+        ArgumentCaptor<List<CompiledTag>> tags = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<List<Object>> values = ArgumentCaptor.forClass(List.class);
+        verify(session, times(1)).write(tags.capture(), values.capture());
+        assertThat(tags.getValue()).extracting(CompiledTag::getAddress).containsExactly("ns=2;i=3");
+        assertThat(values.getValue()).containsExactly(200);
+
+        assertThat(acks).filteredOn(WriteAck::isGood).extracting(WriteAck::getId).containsExactlyInAnyOrder("1", "2");
+        assertThat(acks).filteredOn(WriteAck::isCoalesced).extracting(WriteAck::getId).containsExactly("1");
+        assertThat(acks).filteredOn(ack -> ack.getId().equals("3")).singleElement()
+                .extracting(WriteAck::getStatusCode).isEqualTo(StatusCodes.Bad_NodeIdUnknown);
+    }
+
+    @Test
+    void rejectsUnknownReadOnlyAndStaleCommandsWithoutWriting() {
+        WriteCommand stale = command("3", "ns=2;i=3", 1);
+        stale.setTimestamp(System.currentTimeMillis() - 60_000);
+
+        List<WriteAck> acks = service.execute(List.of(
+                command("1", "ns=2;i=99", 1),
+                command("2", "ns=2;i=4", 1.5),
+                stale));
+
+        verify(session, times(0)).write(any(), any());
+        assertThat(acks).extracting(WriteAck::getStatusCode).containsExactly(
+                StatusCodes.Bad_NodeIdUnknown, StatusCodes.Bad_NotWritable, StatusCodes.Bad_Timeout);
+    }
+
+    private WriteCommandService service() {
+        DriverService driverService = mock(DriverService.class);
+        when(driverService.getSession("plc")).thenReturn(session);
+        return new WriteCommandService(tagTable, new ChannelModel(tagTable), driverService, new WriteCommandConfig(),
+                mock(EventRecorder.class));
+    }
+
+    private static WriteCommand command(String id, String tagId, Object value) {
+        return WriteCommand.builder().id(id).serverId("plc").tagId(tagId).value(value).build();
+    }
+}
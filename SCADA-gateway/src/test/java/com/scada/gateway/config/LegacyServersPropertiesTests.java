@@ -0,0 +1,81 @@
+package com.scada.gateway.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.PropertySource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LegacyServersPropertiesTests {
+
+    @Test
+    void bindsServersListedUnderTheDeprecatedName() {
+        ServersConfig config = bind(new MapPropertySource("application", Map.of(
+                "opcua.servers[0].id", "plc",
+                "opcua.servers[0].protocol", "modbus-tcp",
+                "opcua.servers[0].tags[0].nodeId", "hr:0",
+                "opcua.servers[0].modbus.word-order", "CDAB")));
+
+        assertThat(config.getServers()).singleElement().satisfies(server -> {
+            assertThat(server.getId()).isEqualTo("plc");
+            assertThat(server.isProtocol(ServersConfig.ServerConfig.MODBUS_TCP)).isTrue();
+            assertThat(server.getModbus().getWordOrder()).isEqualTo(ServersConfig.WordOrder.CDAB);
+            assertThat(server.getTags()).extracting(ServersConfig.TagConfig::getNodeId).containsExactly("hr:0");
+        });
+    }
+
+    @Test
+    void ignoresTheDeprecatedNameOnceServersAreListedUnderTheNewOne() {
+        ServersConfig config = bind(
+                new MapPropertySource("legacy", Map.of("opcua.servers[0].id", "old")),
+                new MapPropertySource("current", Map.of("gateway.servers[0].id", "new")));
+
+        assertThat(config.getServers()).extracting(ServersConfig.ServerConfig::getId).containsExactly("new");
+    }
+
+    @Test
+    void takesEachDeprecatedPropertyFromTheFirstSourceDefiningIt() {
+        ServersConfig config = bind(
+                new MapPropertySource("override", Map.of("opcua.servers[0].name", "Line 1")),
+                new MapPropertySource("application", Map.of(
+                        "opcua.servers[0].id", "plc",
+                        "opcua.servers[0].name", "Simulator")));
+
+        assertThat(config.getServers()).singleElement().satisfies(server -> {
+            assertThat(server.getId()).isEqualTo("plc");
+            assertThat(server.getName()).isEqualTo("Line 1");
+        });
+    }
+
+    @Test
+    void addsTheDeprecatedServersToTheApplicationEnvironment() {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(Empty.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.config.name=legacy-servers", "opcua.servers[0].id=plc")
+                .run()) {
+            assertThat(context.getEnvironment().getProperty("gateway.servers[0].id")).isEqualTo("plc");
+        }
+    }
+
+    private static ServersConfig bind(PropertySource<?>... sources) {
+        List<PropertySource<?>> all = new ArrayList<>(List.of(sources));
+        LegacyServersProperties.of(ConfigurationPropertySources.from(all)).ifPresent(all::add);
+        return new Binder(ConfigurationPropertySources.from(all))
+                .bind("gateway", ServersConfig.class)
+                .orElseGet(ServersConfig::new);
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    static class Empty {
+    }
+}
@@ -0,0 +1,221 @@
+package com.scada.gateway.driver;
+
+import com.scada.gateway.alarm.AlarmEngine;
+import com.scada.gateway.alarm.AlarmListener;
+import com.scada.gateway.config.ScriptConfig;
+import com.scada.gateway.config.ServersConfig;
+import com.scada.gateway.config.TraceConfig;
+import com.scada.gateway.event.EventRecorder;
+import com.scada.gateway.model.Sample;
+import com.scada.gateway.model.Status;
+import com.scada.gateway.pipeline.AcquisitionCycle;
+import com.scada.gateway.pipeline.AcquisitionPipeline;
+import com.scada.gateway.pipeline.SampleSink;
+import com.scada.gateway.script.ScriptEngine;
+import com.scada.gateway.state.CurrentValueTable;
+import com.scada.gateway.tag.CompiledTag;
+import com.scada.gateway.tag.TagTable;
+import com.scada.gateway.tag.TestTags;
+import com.scada.gateway.trace.ValueTracer;
+import org.eclipse.milo.opcua.stack.core.StatusCodes;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class DriverSessionTests {
+
+    private final EventRecorder events = mock(EventRecorder.class);
+    private final List<Sample> samples = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch cycles = new CountDownLatch(2);
+    private final ExecutorService connectExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private ServersConfig.ServerConfig server;
+
+    @AfterEach
+    void shutdown() {
+        connectExecutor.shutdownNow();
+    }
+
+    @Test
+    void retriesConnectAndPollsSubscribedTagsOfDriversWithoutSubscriptions() throws Exception {
+        ServersConfig.TagConfig subscribed = tag("10", ServersConfig.AcquisitionMode.SUBSCRIPTION);
+        TagTable tagTable = tagTable(tag("20", ServersConfig.AcquisitionMode.POLLING), subscribed);
+        FakeDriver driver = new FakeDriver(2);
+        DriverSession session = new DriverSession(server, driver, tagTable, pipeline(tagTable), events);
+
+        assertThat(session.write(tagTable.getServerTags("plc"), List.of(1, 2)).get())
+                .containsOnly(Status.BAD_SERVER_NOT_CONNECTED);
+
+        session.start(connectExecutor);
+        try {
+            assertThat(cycles.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(session.getState()).isEqualTo(DriverSession.State.CONNECTED);
+        } finally {
+            session.stop();
+        }
+        assertThat(session.getState()).isEqualTo(DriverSession.State.STOPPED);
+
+        assertThat(driver.connects.get()).isEqualTo(3);
+        verify(events, times(1)).connectFailed("plc", StatusCodes.Bad_CommunicationError);
+        assertThat(driver.planned).containsExactlyInAnyOrder("20", "10");
+        synchronized (samples) {
+            assertThat(samples).extracting(Sample::doubleValue).contains(20.0, 10.0);
+        }
+    }
+
+    @Test
+    void completesCyclesWhoseRequestsFailAndReportsTheDriverHealth() throws Exception {
+        TagTable tagTable = tagTable(tag("fail", ServersConfig.AcquisitionMode.POLLING),
+                tag("30", ServersConfig.AcquisitionMode.POLLING));
+        FakeDriver driver = new FakeDriver(0);
+        DriverSession session = new DriverSession(server, driver, tagTable, pipeline(tagTable), events);
+
+        session.start(connectExecutor);
+        try {
+            assertThat(cycles.await(5, TimeUnit.SECONDS)).isTrue();
+            driver.connected = false;
+            assertThat(session.getState()).isEqualTo(DriverSession.State.DISCONNECTED);
+        } finally {
+            session.stop();
+        }
+        synchronized (samples) {
+            assertThat(samples).extracting(Sample::doubleValue).containsOnly(30.0);
+        }
+    }
+
+    @Test
+    void startsNoCycleWhileTheResponsesOfTheLastOneAreOutstanding() throws Exception {
+        TagTable tagTable = tagTable(tag("40", ServersConfig.AcquisitionMode.POLLING));
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        FakeDriver driver = new FakeDriver(0) {
+            @Override
+            public CompletionStage<?> read(CompiledTag tag, Consumer<Sample> values) {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                // Responds after three periods of the 20 ms group.
+                return CompletableFuture.runAsync(() -> {
+                    inFlight.decrementAndGet();
+                    super.read(tag, values);
+                }, CompletableFuture.delayedExecutor(60, TimeUnit.MILLISECONDS));
+            }
+        };
+        DriverSession session = new DriverSession(server, driver, tagTable, pipeline(tagTable), events);
+
+        session.start(connectExecutor);
+        try {
+            assertThat(cycles.await(5, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            session.stop();
+        }
+        assertThat(maxInFlight.get()).isEqualTo(1);
+    }
+
+    private TagTable tagTable(ServersConfig.TagConfig... tags) {
+        server = TestTags.server(TestTags.SERVER, List.of(tags));
+        server.setName("Fake");
+        server.setProtocol("fake");
+        server.setReconnectDelay(10);
+        return TagTable.compile(TestTags.config(server));
+    }
+
+    private static ServersConfig.TagConfig tag(String address, ServersConfig.AcquisitionMode mode) {
+        return TestTags.tag(address, "DOUBLE", tag -> {
+            tag.setPollingRate(20);
+            tag.setMode(mode);
+        });
+    }
+
+    private AcquisitionPipeline pipeline(TagTable tagTable) {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("sink", new SampleSink() {
+            @Override
+            public void accept(Sample sample) {
+                samples.add(sample.copy());
+            }
+
+            @Override
+            public void cycleCompleted(AcquisitionCycle cycle) {
+                cycles.countDown();
+            }
+        });
+        return new AcquisitionPipeline(tagTable, new CurrentValueTable(tagTable),
+                new ScriptEngine(tagTable, new ScriptConfig(), events),
+                new AlarmEngine(tagTable, events, beanFactory.getBeanProvider(AlarmListener.class)),
+                new ValueTracer(tagTable, new TraceConfig()), beanFactory.getBeanProvider(SampleSink.class));
+    }
+
+    /**
+     * Reads one tag per request; the value is the tag's address, read as a number. Addresses
+     * that are no number fail.
+     */
+    private static class FakeDriver implements Driver<CompiledTag> {
+
+        final AtomicInteger connects = new AtomicInteger();
+        final List<String> planned = Collections.synchronizedList(new ArrayList<>());
+        final int failedConnects;
+        volatile boolean connected;
+
+        FakeDriver(int failedConnects) {
+            this.failedConnects = failedConnects;
+        }
+
+        @Override
+        public void connect() throws IOException {
+            if (connects.incrementAndGet() <= failedConnects) {
+                throw new IOException("Connection refused");
+            }
+            connected = true;
+        }
+
+        @Override
+        public boolean isConnected() {
+            return connected;
+        }
+
+        @Override
+        public List<CompiledTag> planReads(List<CompiledTag> tags) {
+            tags.forEach(tag -> planned.add(tag.getAddress()));
+            return tags;
+        }
+
+        @Override
+        public CompletionStage<?> read(CompiledTag tag, Consumer<Sample> values) {
+            double value;
+            try {
+                value = Double.parseDouble(tag.getAddress());
+            } catch (NumberFormatException e) {
+                return CompletableFuture.failedFuture(new IOException("Read of " + tag.getAddress() + " failed"));
+            }
+            long now = System.currentTimeMillis();
+            values.accept(new Sample().set(tag.getIndex(), 0, now, now, now).setDouble(value));
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public CompletableFuture<int[]> write(List<CompiledTag> tags, List<Object> values) {
+            return CompletableFuture.completedFuture(new int[tags.size()]);
+        }
+
+        @Override
+        public void disconnect() {
+            connected = false;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.scada.gateway.event;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class EventJournalTests {
+
+    /** 256 records per segment. */
+    private static final int SEGMENT_SIZE = EventSegment.HEADER_SIZE + 256 * EventSegment.RECORD_SIZE;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void appendsConcurrentlyWithoutLosingRecords() throws Exception {
+        int threads = 8;
+        int perThread = 5_000;
+        try (EventJournal journal = new EventJournal(directory, SEGMENT_SIZE, 1L << 30, Long.MAX_VALUE)) {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Thread> writers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int writer = t;
+                writers.add(Thread.ofPlatform().start(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < perThread; i++) {
+                        journal.append(EventType.QUALITY_CHANGED, Event.INFO, "plc-" + writer, i, 0, 0, i);
+                    }
+                }));
+            }
+            start.countDown();
+            for (Thread writer : writers) {
+                writer.join();
+            }
+
+            List<Event> events = journal.query(0, Long.MAX_VALUE, Integer.MAX_VALUE);
+            assertThat(events).hasSize(threads * perThread);
+            Set<Long> sequences = new HashSet<>();
+            events.forEach(event -> sequences.add(event.sequence()));
+            assertThat(sequences).hasSize(threads * perThread);
+            assertThat(events).filteredOn(event -> event.source().equals("plc-3")).hasSize(perThread);
+            assertThat(journal.getDroppedCount()).isZero();
+        }
+    }
+
+    @Test
+    void queriesTimeRangesAndSurvivesReopen() throws Exception {
+        long before;
+        long middle;
+        try (EventJournal journal = new EventJournal(directory, SEGMENT_SIZE, 1L << 30, Long.MAX_VALUE)) {
+            for (int i = 0; i < 600; i++) {
+                journal.append(EventType.CONNECTED, Event.INFO, "plc", Event.NO_TAG, 0, 0, Double.NaN);
+            }
+            long appended = System.currentTimeMillis();
+            before = appended;
+            // The next event has to carry a later time than all previous ones.
+            await().atMost(Duration.ofSeconds(1)).pollInterval(Duration.ofMillis(1))
+                    .until(() -> System.currentTimeMillis() > appended);
+            middle = System.currentTimeMillis();
+            journal.append(EventType.WRITE_COMMAND, Event.WARNING, "a-rather-long-server-identifier-ü", 7,
+                    0x80340000, 0, 42.5);
+        }
+
+        try (EventJournal journal = new EventJournal(directory, SEGMENT_SIZE, 1L << 30, Long.MAX_VALUE)) {
+            List<Event> recent = journal.query(middle, Long.MAX_VALUE, 100);
+            assertThat(recent).hasSize(1);
+            Event write = recent.get(0);
+            assertThat(write.sequence()).isEqualTo(601);
+            assertThat(write.type()).isEqualTo(EventType.WRITE_COMMAND);
+            assertThat(write.tagIndex()).isEqualTo(7);
+            assertThat(write.code()).isEqualTo(0x80340000);
+            assertThat(write.value()).isEqualTo(42.5);
+            assertThat(write.source()).isEqualTo("a-rather-long-server-ide");
+
+            assertThat(journal.query(0, before, 10_000)).hasSize(600);
+            assertThat(journal.query(0, before, 10)).hasSize(10);
+
+            long next = journal.append(EventType.DISCONNECTED, Event.WARNING, "plc", Event.NO_TAG, 0, 0, Double.NaN);
+            assertThat(next).isEqualTo(602);
+        }
+    }
+
+    @Test
+    void deletesOldestSegmentsBeyondDiskBudget() throws Exception {
+        try (EventJournal journal = new EventJournal(directory, SEGMENT_SIZE, 3L * SEGMENT_SIZE, Long.MAX_VALUE)) {
+            for (int i = 0; i < 10 * 256; i++) {
+                journal.append(EventType.QUALITY_CHANGED, Event.INFO, "plc", i, 0, 0, i);
+            }
+
+            assertThat(journal.getDiskBytes()).isEqualTo(3L * SEGMENT_SIZE);
+            List<Event> events = journal.query(0, Long.MAX_VALUE, Integer.MAX_VALUE);
+            assertThat(events.get(0).tagIndex()).isEqualTo(7 * 256);
+            assertThat(events.get(events.size() - 1).tagIndex()).isEqualTo(10 * 256 - 1);
+        }
+    }
+
+    @Test
+    void expiresSegmentsByTheirNewestRecordAndKeepsTheOneJustFilled() throws Exception {
+        int segmentSize = EventSegment.HEADER_SIZE + 4 * EventSegment.RECORD_SIZE;
+        long retention = 50;
+        try (EventJournal journal = new EventJournal(directory, segmentSize, 1L << 30, retention)) {
+            for (int i = 0; i < 5; i++) {
+                journal.append(EventType.QUALITY_CHANGED, Event.INFO, "plc", i, 0, 0, i);
+            }
+            // The second segment, created by the fifth record, fills only after the retention.
+            long created = System.currentTimeMillis();
+            await().atMost(Duration.ofSeconds(2)).pollInterval(Duration.ofMillis(5))
+                    .until(() -> System.currentTimeMillis() - created > retention);
+            for (int i = 5; i < 9; i++) {
+                journal.append(EventType.QUALITY_CHANGED, Event.INFO, "plc", i, 0, 0, i);
+            }
+
+            assertThat(journal.getDiskBytes()).isEqualTo(2L * segmentSize);
+            assertThat(journal.query(0, Long.MAX_VALUE, Integer.MAX_VALUE))
+                    .extracting(Event::tagIndex)
+                    .containsExactly(4, 5, 6, 7, 8);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.scada.gateway.journal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SpillJournalTests {
+
+    private static final int SEGMENT_SIZE = 4096;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void drainsRecordsInAppendOrderAcrossSegments() throws Exception {
+        try (SpillJournal journal = new SpillJournal(directory, SEGMENT_SIZE, 1 << 20, Long.MAX_VALUE)) {
+            for (int i = 0; i < 1000; i++) {
+                assertThat(journal.append(bytes("tag-" + (i % 7)), bytes("value-" + i))).isTrue();
+            }
+
+            assertThat(drain(journal, 64)).containsExactlyElementsOf(values(0, 1000));
+            assertThat(journal.isEmpty()).isTrue();
+            assertThat(journal.getDiskBytes()).isEqualTo(SEGMENT_SIZE);
+        }
+    }
+
+    @Test
+    void drainsRecordsSpilledAfterEveryDrainAcrossSegmentRolls() throws Exception {
+        try (SpillJournal journal = new SpillJournal(directory, SEGMENT_SIZE, 1 << 20, Long.MAX_VALUE)) {
+            // Spill, drain, spill again, drain again, until several segments filled up while drained.
+            for (int i = 0; i < 1000; i++) {
+                journal.append(bytes("tag"), bytes("value-" + i));
+                assertThat(drain(journal, 64)).containsExactly("value-" + i);
+                assertThat(journal.isEmpty()).isTrue();
+            }
+            assertThat(journal.getDiskBytes()).isEqualTo(SEGMENT_SIZE);
+        }
+    }
+
+    @Test
+    void resumesAfterReopenFromCommittedPosition() throws Exception {
+        try (SpillJournal journal = new SpillJournal(directory, SEGMENT_SIZE, 1 << 20, Long.MAX_VALUE)) {
+            for (int i = 0; i < 300; i++) {
+                journal.append(bytes("tag"), bytes("value-" + i));
+            }
+            List<JournalEntry> batch = journal.peek(100);
+            journal.commit(batch.get(batch.size() - 1));
+        }
+
+        try (SpillJournal journal = new SpillJournal(directory, SEGMENT_SIZE, 1 << 20, Long.MAX_VALUE)) {
+            journal.append(bytes("tag"), bytes("value-300"));
+            assertThat(drain(journal, 50)).containsExactlyElementsOf(values(100, 301));
+        }
+    }
+
+    @Test
+    void dropsOldestSegmentWhenDiskBudgetIsExhausted() throws Exception {
+        try (SpillJournal journal = new SpillJournal(directory, SEGMENT_SIZE, 3 * SEGMENT_SIZE, Long.MAX_VALUE)) {
+            for (int i = 0; i < 2000; i++) {
+                journal.append(bytes("tag"), bytes("value-" + i));
+            }
+
+            assertThat(journal.getDiskBytes()).isLessThanOrEqualTo(3L * SEGMENT_SIZE);
+            assertThat(journal.getDroppedCount()).isPositive();
+            List<String> remaining = drain(journal, 100);
+            assertThat(remaining).hasSize((int) (2000 - journal.getDroppedCount()));
+            assertThat(remaining.get(remaining.size() - 1)).isEqualTo("value-1999");
+        }
+    }
+
+    @Test
+    void rejectsRecordLargerThanSegment() throws Exception {
+        try (SpillJournal journal = new SpillJournal(directory, SEGMENT_SIZE, 1 << 20, Long.MAX_VALUE)) {
+            assertThat(journal.append(bytes("tag"), new byte[SEGMENT_SIZE])).isFalse();
+            assertThat(journal.isEmpty()).isTrue();
+        }
+    }
+
+    private static List<String> drain(SpillJournal journal, int batchSize) {
+        List<String> values = new ArrayList<>();
+        List<JournalEntry> batch;
+        while (!(batch = journal.peek(batchSize)).isEmpty()) {
+            batch.forEach(entry -> values.add(new String(entry.value(), StandardCharsets.UTF_8)));
+            journal.commit(batch.get(batch.size() - 1));
+        }
+        return values;
+    }
+
+    private static List<String> values(int from, int to) {
+        List<String> values = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            values.add("value-" + i);
+        }
+        return values;
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
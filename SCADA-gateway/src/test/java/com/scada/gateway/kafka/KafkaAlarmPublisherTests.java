@@ -0,0 +1,121 @@
+package com.scada.gateway.kafka;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.scada.gateway.alarm.AlarmCondition;
+import com.scada.gateway.alarm.AlarmTransition;
+import com.scada.gateway.config.KafkaSinkConfig;
+import com.scada.gateway.tag.CompiledTag;
+import com.scada.gateway.tag.TestTags;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class KafkaAlarmPublisherTests {
+
+    private static final String TOPIC = "alarms";
+
+    @TempDir
+    Path directory;
+
+    private final CompiledTag tag = TestTags.table(TestTags.tag("ns=2;i=0", "DOUBLE", tag -> tag.setName("Level"))).get(0);
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void publishesFromItsOwnThreadOnceTheTopicMetadataIsKnown() {
+        KafkaTemplate<byte[], byte[]> template = mock(KafkaTemplate.class);
+        when(template.partitionsFor(TOPIC)).thenThrow(new TimeoutException("No metadata")).thenReturn(List.of());
+        CompletableFuture<SendResult<byte[], byte[]>> result = CompletableFuture.completedFuture(null);
+        when(template.send(eq(TOPIC), any(byte[].class), any(byte[].class))).thenReturn(result);
+        KafkaAlarmPublisher publisher = publisher(template);
+
+        publisher.alarmChanged(transition(true));
+        publisher.alarmChanged(transition(false));
+        verify(template, never()).send(eq(TOPIC), any(byte[].class), any(byte[].class));
+
+        publisher.start();
+        try {
+            verify(template, timeout(5000).times(2)).send(eq(TOPIC),
+                    eq("plc/ns=2;i=0".getBytes(StandardCharsets.UTF_8)), any(byte[].class));
+            verify(template, timeout(5000).times(2)).partitionsFor(TOPIC);
+            await().atMost(Duration.ofSeconds(5)).until(() -> publisher.getSentCount() == 2);
+        } finally {
+            publisher.shutdown();
+        }
+        assertThat(publisher.getDroppedCount()).isZero();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void spillsTransitionsWhileTheBrokerIsDownAndForwardsThemInOrder() {
+        KafkaTemplate<byte[], byte[]> template = mock(KafkaTemplate.class);
+        when(template.partitionsFor(TOPIC)).thenReturn(List.of());
+        CompletableFuture<SendResult<byte[], byte[]>> failed = CompletableFuture.failedFuture(
+                new TimeoutException("Broker down"));
+        CompletableFuture<SendResult<byte[], byte[]>> acknowledged = CompletableFuture.completedFuture(null);
+        when(template.send(eq(TOPIC), any(byte[].class), any(byte[].class))).thenReturn(failed, acknowledged);
+        KafkaAlarmPublisher publisher = publisher(template);
+
+        publisher.start();
+        try {
+            publisher.alarmChanged(transition(true));
+            publisher.alarmChanged(transition(false));
+            await().atMost(Duration.ofSeconds(5)).until(() -> publisher.getSentCount() == 2);
+        } finally {
+            publisher.shutdown();
+        }
+
+        ArgumentCaptor<byte[]> values = ArgumentCaptor.forClass(byte[].class);
+        verify(template, times(3)).send(eq(TOPIC), any(byte[].class), values.capture());
+        // The first send failed; both transitions then went through the journal.
+        assertThat(values.getAllValues().subList(1, 3)).extracting(value -> new String(value, StandardCharsets.UTF_8))
+                .satisfiesExactly(
+                        raised -> assertThat(raised).contains("\"state\":\"RAISED\""),
+                        cleared -> assertThat(cleared).contains("\"state\":\"CLEARED\""));
+        assertThat(publisher.isSpilling()).isFalse();
+        assertThat(publisher.getFailedCount()).isZero();
+        assertThat(Path.of(directory.toString(), "alarms")).isDirectory();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void dropsTransitionsBeyondTheQueueCapacityWithoutBlocking() {
+        KafkaAlarmPublisher publisher = publisher(mock(KafkaTemplate.class));
+
+        for (int i = 0; i < KafkaAlarmPublisher.QUEUE_CAPACITY + 5; i++) {
+            publisher.alarmChanged(transition(i % 2 == 0));
+        }
+
+        assertThat(publisher.getDroppedCount()).isEqualTo(5);
+    }
+
+    private KafkaAlarmPublisher publisher(KafkaTemplate<byte[], byte[]> template) {
+        KafkaSinkConfig config = new KafkaSinkConfig();
+        config.setAlarmTopic(TOPIC);
+        config.getSpill().setDirectory(directory.toString());
+        return new KafkaAlarmPublisher(template, config, new ObjectMapper().findAndRegisterModules());
+    }
+
+    private AlarmTransition transition(boolean raised) {
+        return new AlarmTransition(tag, AlarmCondition.HI, raised, 95.0, 90.0, System.currentTimeMillis());
+    }
+}
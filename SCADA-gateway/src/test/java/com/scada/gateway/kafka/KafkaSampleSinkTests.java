@@ -0,0 +1,109 @@
+package com.scada.gateway.kafka;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.scada.gateway.codec.SampleCodec;
+import com.scada.gateway.config.KafkaSinkConfig;
+import com.scada.gateway.model.Sample;
+import com.scada.gateway.tag.TagTable;
+import com.scada.gateway.tag.TestTags;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+@EmbeddedKafka(partitions = 3, topics = KafkaSampleSinkTests.TOPIC)
+class KafkaSampleSinkTests {
+
+    static final String TOPIC = "scada.tag-values.test";
+    private static final int SAMPLES = 50_000;
+
+    @Test
+    void publishesRecordsKeyedByServerAndTagInOrder(EmbeddedKafkaBroker broker, @TempDir Path spillDir) throws Exception {
+        TagTable tagTable = TestTags.table(TestTags.tag("ns=2;i=3", "INT"), TestTags.tag("ns=2;i=4", "INT"));
+        KafkaTemplate<byte[], byte[]> template = template(broker);
+        KafkaSinkConfig config = new KafkaSinkConfig();
+        config.setTopic(TOPIC);
+        config.getSpill().setDirectory(spillDir.toString());
+        KafkaSampleSink sink = new KafkaSampleSink(template, config, tagTable, new ObjectMapper().findAndRegisterModules());
+
+        sink.start();
+        long started = System.nanoTime();
+        Sample sample = new Sample();
+        try {
+            for (int i = 0; i < SAMPLES; i++) {
+                sink.accept(sample.set(i % tagTable.size(), 0, i, i, i).setLong(i));
+            }
+            template.flush();
+        } finally {
+            sink.shutdown();
+        }
+        long elapsed = System.nanoTime() - started;
+        log.info("Published {} samples in {} ms ({} samples/s)", SAMPLES,
+                TimeUnit.NANOSECONDS.toMillis(elapsed), SAMPLES * 1_000_000_000L / Math.max(elapsed, 1));
+
+        // Sample i belongs to tag i % 2, so each key must see every other value, none lost or repeated.
+        Map<String, Long> lastValueByKey = new HashMap<>();
+        int received = 0;
+        try (Consumer<byte[], byte[]> consumer = consumer(broker)) {
+            broker.consumeFromAnEmbeddedTopic(consumer, TOPIC);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+            Sample decoded = new Sample();
+            while (received < SAMPLES && System.nanoTime() < deadline) {
+                for (ConsumerRecord<byte[], byte[]> record : consumer.poll(Duration.ofMillis(500))) {
+                    String key = new String(record.key(), StandardCharsets.UTF_8);
+                    SampleCodec.decode(record.value(), decoded);
+                    long value = decoded.longValue();
+                    int tagIndex = (int) (value % tagTable.size());
+
+                    assertThat(key).isEqualTo("plc/" + tagTable.get(tagIndex).getAddress());
+                    assertThat(decoded.getTagIndex()).isEqualTo(tagIndex);
+                    assertThat(decoded.getStatusCode()).isZero();
+                    assertThat(decoded.getSourceTime()).isEqualTo(value);
+                    Long previous = lastValueByKey.put(key, value);
+                    assertThat(value).as("next value of %s", key)
+                            .isEqualTo(previous == null ? tagIndex : previous + tagTable.size());
+                    received++;
+                }
+            }
+        }
+
+        assertThat(received).isEqualTo(SAMPLES);
+        assertThat(lastValueByKey).containsOnly(
+                Map.entry("plc/ns=2;i=3", (long) SAMPLES - 2),
+                Map.entry("plc/ns=2;i=4", (long) SAMPLES - 1));
+        assertThat(sink.getFailedCount()).isZero();
+    }
+
+    private static KafkaTemplate<byte[], byte[]> template(EmbeddedKafkaBroker broker) {
+        Map<String, Object> props = KafkaTestUtils.producerProps(broker);
+        props.put("linger.ms", 20);
+        props.put("compression.type", "lz4");
+        return new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(
+                props, new ByteArraySerializer(), new ByteArraySerializer()));
+    }
+
+    private static Consumer<byte[], byte[]> consumer(EmbeddedKafkaBroker broker) {
+        Map<String, Object> props = KafkaTestUtils.consumerProps("kafka-sink-test", "false", broker);
+        return new DefaultKafkaConsumerFactory<>(props, new ByteArrayDeserializer(), new ByteArrayDeserializer())
+                .createConsumer();
+    }
+}
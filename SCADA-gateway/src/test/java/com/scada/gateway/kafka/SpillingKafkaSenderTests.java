@@ -0,0 +1,146 @@
+package com.scada.gateway.kafka;
+
+import com.scada.gateway.journal.JournalEntry;
+import com.scada.gateway.journal.SpillJournal;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SpillingKafkaSenderTests {
+
+    private static final String TOPIC = "values";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void journalsRecordsStillInFlightAheadOfLaterOnesWhenASendFails() throws Exception {
+        KafkaTemplate<byte[], byte[]> template = mock(KafkaTemplate.class);
+        CompletableFuture<SendResult<byte[], byte[]>> first = new CompletableFuture<>();
+        CompletableFuture<SendResult<byte[], byte[]>> second = new CompletableFuture<>();
+        CompletableFuture<SendResult<byte[], byte[]>> acknowledged = new CompletableFuture<>();
+        when(template.send(eq(TOPIC), any(byte[].class), any(byte[].class))).thenReturn(acknowledged, first, second);
+
+        try (SpillJournal journal = new SpillJournal(directory, 4096, 1 << 20, Long.MAX_VALUE)) {
+            SpillingKafkaSender sender = new SpillingKafkaSender(template, TOPIC, journal, 1000, Duration.ofSeconds(1));
+            sender.send(bytes("tag"), bytes("value-0"));
+            acknowledged.complete(null);
+            sender.send(bytes("tag"), bytes("value-1"));
+            sender.send(bytes("tag"), bytes("value-2"));
+
+            // The first send fails after the second one was handed to the producer.
+            first.completeExceptionally(new IllegalStateException("Broker down"));
+            sender.send(bytes("tag"), bytes("value-3"));
+            second.completeExceptionally(new IllegalStateException("Broker down"));
+
+            assertThat(sender.isSpilling()).isTrue();
+            verify(template, times(3)).send(eq(TOPIC), any(byte[].class), any(byte[].class));
+            assertThat(journalValues(journal)).containsExactly("value-1", "value-2", "value-3");
+            assertThat(sender.getSentCount()).isEqualTo(1);
+            assertThat(sender.getFailedCount()).isZero();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void spillsOnceMoreRecordsAreUnacknowledgedThanItKeepsInFlight() throws Exception {
+        KafkaTemplate<byte[], byte[]> template = mock(KafkaTemplate.class);
+        CompletableFuture<SendResult<byte[], byte[]>> acknowledged = CompletableFuture.completedFuture(null);
+        when(template.send(eq(TOPIC), any(byte[].class), any(byte[].class)))
+                .thenReturn(acknowledged, new CompletableFuture<>(), new CompletableFuture<>());
+
+        try (SpillJournal journal = new SpillJournal(directory, 4096, 1 << 20, Long.MAX_VALUE)) {
+            SpillingKafkaSender sender = new SpillingKafkaSender(template, TOPIC, journal, 1000, Duration.ofSeconds(1), 2);
+            // The acknowledged record frees its slot, the two open ones take both.
+            for (int i = 0; i < 4; i++) {
+                sender.send(bytes("tag"), bytes("value-" + i));
+            }
+
+            assertThat(sender.isSpilling()).isTrue();
+            verify(template, times(3)).send(eq(TOPIC), any(byte[].class), any(byte[].class));
+            assertThat(journalValues(journal)).containsExactly("value-1", "value-2", "value-3");
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void losesNoRecordSentFromSeveralThreadsWhenTheBrokerFails() throws Exception {
+        int threads = 4;
+        int perThread = 5_000;
+        Set<String> acknowledged = ConcurrentHashMap.newKeySet();
+        AtomicInteger sends = new AtomicInteger();
+        KafkaTemplate<byte[], byte[]> template = mock(KafkaTemplate.class);
+        when(template.send(eq(TOPIC), any(byte[].class), any(byte[].class))).thenAnswer(invocation -> {
+            if (sends.incrementAndGet() > threads * perThread / 2) {
+                return CompletableFuture.failedFuture(new IllegalStateException("Broker down"));
+            }
+            acknowledged.add(new String(invocation.<byte[]>getArgument(2), StandardCharsets.UTF_8));
+            return CompletableFuture.completedFuture(null);
+        });
+
+        try (SpillJournal journal = new SpillJournal(directory, 1 << 20, 1 << 26, Long.MAX_VALUE)) {
+            SpillingKafkaSender sender = new SpillingKafkaSender(template, TOPIC, journal, 1000, Duration.ofSeconds(1), 64);
+            List<Thread> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                String thread = "t" + t + "-";
+                workers.add(Thread.ofPlatform().start(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        sender.send(bytes("tag"), bytes(thread + i));
+                    }
+                }));
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+
+            List<String> journaled = new ArrayList<>();
+            for (List<JournalEntry> batch = journal.peek(1000); !batch.isEmpty(); batch = journal.peek(1000)) {
+                batch.forEach(entry -> journaled.add(new String(entry.value(), StandardCharsets.UTF_8)));
+                journal.commit(batch.get(batch.size() - 1));
+            }
+            Set<String> delivered = new HashSet<>(acknowledged);
+            delivered.addAll(journaled);
+            assertThat(delivered).hasSize(threads * perThread);
+            // The journal keeps the order in which each thread sent.
+            for (int t = 0; t < threads; t++) {
+                String thread = "t" + t + "-";
+                assertThat(journaled.stream().filter(value -> value.startsWith(thread))
+                        .map(value -> Integer.parseInt(value.substring(thread.length()))).toList()).isSorted();
+            }
+            assertThat(sender.getFailedCount()).isZero();
+        }
+    }
+
+    private static List<String> journalValues(SpillJournal journal) {
+        List<String> values = new ArrayList<>();
+        for (JournalEntry entry : journal.peek(100)) {
+            values.add(new String(entry.value(), StandardCharsets.UTF_8));
+        }
+        return values;
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
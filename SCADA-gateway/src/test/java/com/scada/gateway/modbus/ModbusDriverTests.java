@@ -0,0 +1,252 @@
+package com.scada.gateway.modbus;
+
+import com.scada.gateway.alarm.AlarmEngine;
+import com.scada.gateway.alarm.AlarmListener;
+import com.scada.gateway.config.ScriptConfig;
+import com.scada.gateway.config.ServersConfig;
+import com.scada.gateway.config.TraceConfig;
+import com.scada.gateway.driver.DriverSession;
+import com.scada.gateway.event.EventRecorder;
+import com.scada.gateway.model.Sample;
+import com.scada.gateway.model.Status;
+import com.scada.gateway.pipeline.AcquisitionCycle;
+import com.scada.gateway.pipeline.AcquisitionPipeline;
+import com.scada.gateway.pipeline.SampleSink;
+import com.scada.gateway.script.ScriptEngine;
+import com.scada.gateway.state.CurrentValueTable;
+import com.scada.gateway.tag.TagTable;
+import com.scada.gateway.tag.TestTags;
+import com.scada.gateway.trace.ValueTracer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class ModbusDriverTests {
+
+    private final ModbusTestSlave slave = new ModbusTestSlave();
+    private final EventRecorder events = mock(EventRecorder.class);
+    private final RecordingSink sink = new RecordingSink();
+    private final ExecutorService connectExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private TagTable tagTable;
+
+    ModbusDriverTests() throws IOException {
+    }
+
+    @AfterEach
+    void closeSlave() throws IOException {
+        connectExecutor.shutdownNow();
+        slave.close();
+    }
+
+    @Test
+    void readsCoalescedBlocksAndDecodesEveryType() throws InterruptedException {
+        slave.holding[0] = -2;
+        // 12.5f, big-endian.
+        slave.holding[1] = 0x4148;
+        slave.holding[2] = 0x0000;
+        // 100000 with the low word first.
+        slave.holding[5] = (short) 0x86A0;
+        slave.holding[6] = 0x0001;
+        slave.holding[10] = 1;
+        slave.holding[200] = (short) 0xFFFF;
+        // -1.5f in the server's CDAB order.
+        slave.input[3] = 0x0000;
+        slave.input[4] = (short) 0xBFC0;
+
+        List<Sample> samples = readOneCycle(
+                tag("hr:0", "INT"),
+                tag("hr:1:float32:abcd", "FLOAT"),
+                tag("hr:5:int32", "INT"),
+                tag("hr:10", "BOOLEAN"),
+                tag("hr:200:uint16", "INT"),
+                tag("ir:3", "FLOAT"));
+
+        assertThat(slave.requests.subList(0, 3)).containsExactly(
+                new ModbusTestSlave.Request(3, 0, 11),
+                new ModbusTestSlave.Request(3, 200, 1),
+                new ModbusTestSlave.Request(4, 3, 2));
+        assertThat(samples).extracting(Sample::getTagIndex).containsExactly(0, 1, 2, 3, 4, 5);
+        assertThat(samples).allSatisfy(sample -> assertThat(sample.isGood()).isTrue());
+        assertThat(samples.get(0).longValue()).isEqualTo(-2);
+        assertThat(samples.get(1).doubleValue()).isEqualTo(12.5);
+        assertThat(samples.get(2).longValue()).isEqualTo(100_000);
+        assertThat(samples.get(3).getValueType()).isEqualTo(Sample.ValueType.BOOLEAN);
+        assertThat(samples.get(3).booleanValue()).isTrue();
+        assertThat(samples.get(4).longValue()).isEqualTo(65_535);
+        assertThat(samples.get(5).doubleValue()).isEqualTo(-1.5);
+        verify(events).connected("plc");
+    }
+
+    @Test
+    void publishesBadValuesForReadsTheServerRefuses() throws InterruptedException {
+        List<Sample> samples = readOneCycle(
+                tag("hr:0", "INT"),
+                tag("hr:990:int32", "INT"),
+                // Ends past the last register, so the whole merged read is refused.
+                tag("hr:999:int32", "INT"));
+
+        assertThat(slave.requests.subList(0, 2)).containsExactly(
+                new ModbusTestSlave.Request(3, 0, 1),
+                new ModbusTestSlave.Request(3, 990, 11));
+        assertThat(samples.get(0).isGood()).isTrue();
+        assertThat(samples.subList(1, 3)).allSatisfy(sample -> {
+            assertThat(sample.getStatusCode()).isEqualTo(Status.BAD_NODE_ID_UNKNOWN);
+            assertThat(sample.getValueType()).isEqualTo(Sample.ValueType.NULL);
+        });
+    }
+
+    @Test
+    void writesHoldingRegistersInTheirWordOrder() throws Exception {
+        DriverSession session = start(
+                tag("hr:20:int32", "INT"),
+                tag("hr:30:float32:abcd", "FLOAT"),
+                tag("hr:40:uint16", "INT"),
+                tag("ir:3", "FLOAT"));
+        int[] results;
+        try {
+            results = session.write(tagTable.getServerTags("plc"), List.of(100_000, "12.5", 70_000, 1.0))
+                    .get(5, TimeUnit.SECONDS);
+        } finally {
+            session.stop();
+        }
+
+        assertThat(results).containsExactly(
+                Status.GOOD, Status.GOOD, Status.BAD_TYPE_MISMATCH, Status.BAD_NOT_WRITABLE);
+        assertThat(slave.requests).contains(
+                new ModbusTestSlave.Request(16, 20, 2),
+                new ModbusTestSlave.Request(16, 30, 2));
+        // The server's CDAB order puts the low word first.
+        assertThat(slave.holding[20]).isEqualTo((short) 0x86A0);
+        assertThat(slave.holding[21]).isEqualTo((short) 0x0001);
+        assertThat(slave.holding[30]).isEqualTo((short) 0x4148);
+        assertThat(slave.holding[31]).isZero();
+        assertThat(slave.holding[40]).isZero();
+    }
+
+    @Test
+    void waitsForTheReconnectDelayAfterATimeout() throws IOException {
+        try (ModbusTcpClient client = new ModbusTcpClient("127.0.0.1", slave.port(), 1, 200, 60_000)) {
+            slave.silent = true;
+            assertThatThrownBy(() -> client.readRegisters(ModbusAddress.Area.HOLDING_REGISTERS, 0, 1))
+                    .isInstanceOf(SocketTimeoutException.class);
+            assertThat(client.isConnected()).isFalse();
+
+            slave.silent = false;
+            assertThatThrownBy(() -> client.readRegisters(ModbusAddress.Area.HOLDING_REGISTERS, 0, 1))
+                    .isInstanceOf(IOException.class)
+                    .hasMessageContaining("waiting to reconnect");
+            assertThat(slave.requests).hasSize(1);
+
+            // An explicit connect ignores the delay.
+            client.connect();
+            assertThat(client.readRegisters(ModbusAddress.Area.HOLDING_REGISTERS, 0, 1)).hasSize(2);
+        }
+    }
+
+    @Test
+    void answersWritesAfterDisconnectWithoutSendingThem() throws Exception {
+        ServersConfig.ServerConfig server = server(tag("hr:40", "INT"));
+        TagTable tagTable = TagTable.compile(TestTags.config(server));
+        ModbusDriver driver = new ModbusDriver(server, tagTable, events);
+
+        driver.connect();
+        assertThat(driver.write(tagTable.getServerTags("plc"), List.of(7)).get(5, TimeUnit.SECONDS))
+                .containsExactly(Status.GOOD);
+        driver.disconnect();
+        assertThat(driver.write(tagTable.getServerTags("plc"), List.of(8)).get(5, TimeUnit.SECONDS))
+                .containsExactly(Status.BAD_SERVER_NOT_CONNECTED);
+
+        assertThat(slave.holding[40]).isEqualTo((short) 7);
+        assertThat(slave.requests).containsExactly(new ModbusTestSlave.Request(16, 40, 1));
+    }
+
+    @Test
+    void rejectsServersWithValuesLargerThanOneRead() {
+        ServersConfig.ServerConfig server = server(tag("hr:0", "INT"), tag("hr:2:float64", "DOUBLE"));
+        server.getModbus().setMaxRegistersPerRead(2);
+        TagTable tagTable = TagTable.compile(TestTags.config(server));
+
+        assertThatThrownBy(() -> new ModbusDriver(server, tagTable, events))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("maxRegistersPerRead 2");
+    }
+
+    private List<Sample> readOneCycle(ServersConfig.TagConfig... tags) throws InterruptedException {
+        DriverSession session = start(tags);
+        session.stop();
+        synchronized (sink.samples) {
+            return List.copyOf(sink.samples.subList(0, tags.length));
+        }
+    }
+
+    /**
+     * Starts a session and waits for its first completed polling cycle.
+     */
+    private DriverSession start(ServersConfig.TagConfig... tags) throws InterruptedException {
+        ServersConfig.ServerConfig server = server(tags);
+        tagTable = TagTable.compile(TestTags.config(server));
+
+        DriverSession session = new DriverSession(server, new ModbusDriver(server, tagTable, events), tagTable,
+                pipeline(tagTable), events);
+        session.start(connectExecutor);
+        if (!sink.cycles.await(5, TimeUnit.SECONDS)) {
+            session.stop();
+            throw new AssertionError("No polling cycle completed");
+        }
+        assertThat(session.getState()).isEqualTo(DriverSession.State.CONNECTED);
+        return session;
+    }
+
+    private ServersConfig.ServerConfig server(ServersConfig.TagConfig... tags) {
+        ServersConfig.ServerConfig server = TestTags.server(TestTags.SERVER, List.of(tags));
+        server.setName("Modbus test slave");
+        server.setProtocol(ServersConfig.ServerConfig.MODBUS_TCP);
+        server.setEndpoint("modbus-tcp://127.0.0.1:" + slave.port());
+        server.getModbus().setWordOrder(ServersConfig.WordOrder.CDAB);
+        return server;
+    }
+
+    private AcquisitionPipeline pipeline(TagTable tagTable) {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("sink", sink);
+        return new AcquisitionPipeline(tagTable, new CurrentValueTable(tagTable),
+                new ScriptEngine(tagTable, new ScriptConfig(), events),
+                new AlarmEngine(tagTable, events, beanFactory.getBeanProvider(AlarmListener.class)),
+                new ValueTracer(tagTable, new TraceConfig()), beanFactory.getBeanProvider(SampleSink.class));
+    }
+
+    private static ServersConfig.TagConfig tag(String address, String dataType) {
+        return TestTags.tag(address, dataType, tag -> tag.setPollingRate(50));
+    }
+
+    private static class RecordingSink implements SampleSink {
+
+        final List<Sample> samples = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch cycles = new CountDownLatch(1);
+
+        @Override
+        public void accept(Sample sample) {
+            samples.add(sample.copy());
+        }
+
+        @Override
+        public void cycleCompleted(AcquisitionCycle cycle) {
+            cycles.countDown();
+        }
+    }
+}
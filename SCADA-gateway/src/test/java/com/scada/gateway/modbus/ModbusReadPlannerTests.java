@@ -0,0 +1,84 @@
+package com.scada.gateway.modbus;
+
+import com.scada.gateway.config.ServersConfig;
+import com.scada.gateway.tag.TagDataType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+class ModbusReadPlannerTests {
+
+    @Test
+    void mergesRegistersWithinGapToleranceAndSeparatesAreas() {
+        List<ModbusReadPlanner.Read> plan = ModbusReadPlanner.plan(List.of(
+                point(0, "hr:20:float32"),
+                point(1, "hr:10"),
+                point(2, "ir:10"),
+                point(3, "hr:11:int32"),
+                point(4, "hr:27"),
+                // The 9 unused registers between hr:27 and hr:37 exceed the tolerance of 8.
+                point(5, "hr:37"),
+                point(6, "hr:11")), 8, 125);
+
+        assertThat(plan).extracting(ModbusReadPlanner.Read::area, ModbusReadPlanner.Read::start,
+                        ModbusReadPlanner.Read::count)
+                .containsExactly(
+                        tuple(ModbusAddress.Area.HOLDING_REGISTERS, 10, 18),
+                        tuple(ModbusAddress.Area.HOLDING_REGISTERS, 37, 1),
+                        tuple(ModbusAddress.Area.INPUT_REGISTERS, 10, 1));
+        assertThat(plan.get(0).tagIndices()).containsExactly(1, 6, 3, 0, 4);
+    }
+
+    @Test
+    void keepsEveryRequestWithinTheRegisterLimit() {
+        List<ModbusReadPlanner.Point> points = new ArrayList<>();
+        for (int i = 0; i < 150; i++) {
+            points.add(point(i, "hr:" + (2 * i) + ":float32"));
+        }
+
+        List<ModbusReadPlanner.Read> plan = ModbusReadPlanner.plan(points, 8, 1000);
+
+        assertThat(plan).extracting(ModbusReadPlanner.Read::start, ModbusReadPlanner.Read::count)
+                .containsExactly(tuple(0, 124), tuple(124, 124), tuple(248, 52));
+        assertThat(plan).allSatisfy(read -> assertThat(read.count()).isLessThanOrEqualTo(125));
+    }
+
+    @Test
+    void rejectsValuesSpanningMoreRegistersThanOneRead() {
+        List<ModbusReadPlanner.Point> points = List.of(point(0, "hr:0"), point(1, "hr:2:float64"));
+
+        assertThatThrownBy(() -> ModbusReadPlanner.plan(points, 8, 2))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("4 registers");
+        assertThat(ModbusReadPlanner.plan(points, 8, 4)).extracting(ModbusReadPlanner.Read::start,
+                ModbusReadPlanner.Read::count).containsExactly(tuple(0, 1), tuple(2, 4));
+    }
+
+    @Test
+    void parsesAddressesWithTypeDefaultsAndWordOrder() {
+        ModbusAddress defaulted = ModbusAddress.parse("HR:7", TagDataType.FLOAT, ServersConfig.WordOrder.CDAB);
+        assertThat(defaulted.getType()).isEqualTo(ModbusDataType.FLOAT32);
+        assertThat(defaulted.getOrder()).isEqualTo(ServersConfig.WordOrder.CDAB);
+        assertThat(defaulted.end()).isEqualTo(9);
+
+        ModbusAddress explicit = ModbusAddress.parse("ir:3:uint32:dcba", TagDataType.INT, ServersConfig.WordOrder.ABCD);
+        assertThat(explicit.getArea()).isEqualTo(ModbusAddress.Area.INPUT_REGISTERS);
+        assertThat(explicit.getType()).isEqualTo(ModbusDataType.UINT32);
+        assertThat(explicit.getOrder()).isEqualTo(ServersConfig.WordOrder.DCBA);
+
+        assertThatThrownBy(() -> ModbusAddress.parse("coil:1", TagDataType.INT, ServersConfig.WordOrder.ABCD))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ModbusAddress.parse("hr:65535:int32", TagDataType.INT, ServersConfig.WordOrder.ABCD))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static ModbusReadPlanner.Point point(int tagIndex, String address) {
+        return new ModbusReadPlanner.Point(tagIndex,
+                ModbusAddress.parse(address, TagDataType.INT, ServersConfig.WordOrder.ABCD));
+    }
+}
@@ -0,0 +1,115 @@
+package com.scada.gateway.modbus;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * In-process stand-in for a Modbus TCP device with 1000 holding and 1000 input registers.
+ * Answers function codes 3, 4 and 16, refuses everything else and records every request.
+ * While {@link #silent} is set, requests are recorded but not answered.
+ */
+class ModbusTestSlave implements Closeable {
+
+    record Request(int functionCode, int start, int count) {
+    }
+
+    final short[] holding = new short[1000];
+    final short[] input = new short[1000];
+    final List<Request> requests = Collections.synchronizedList(new ArrayList<>());
+    volatile boolean silent;
+    private final ServerSocket server;
+
+    ModbusTestSlave() throws IOException {
+        server = new ServerSocket(0, 10, InetAddress.getLoopbackAddress());
+        Thread.ofPlatform().daemon().start(this::accept);
+    }
+
+    int port() {
+        return server.getLocalPort();
+    }
+
+    private void accept() {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                Thread.ofPlatform().daemon().start(() -> serve(socket));
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            while (true) {
+                int transactionId = in.readUnsignedShort();
+                in.readUnsignedShort();
+                byte[] pdu = new byte[in.readUnsignedShort() - 1];
+                int unitId = in.readUnsignedByte();
+                in.readFully(pdu);
+
+                byte[] response = respond(pdu);
+                if (silent) {
+                    continue;
+                }
+                out.writeShort(transactionId);
+                out.writeShort(0);
+                out.writeShort(response.length + 1);
+                out.writeByte(unitId);
+                out.write(response);
+                out.flush();
+            }
+        } catch (IOException e) {
+            // Client disconnected.
+        }
+    }
+
+    private byte[] respond(byte[] pdu) {
+        int functionCode = pdu[0] & 0xFF;
+        if (functionCode != 3 && functionCode != 4 && functionCode != 16) {
+            return new byte[]{(byte) (functionCode | 0x80), ModbusException.ILLEGAL_FUNCTION};
+        }
+        int start = (pdu[1] & 0xFF) << 8 | pdu[2] & 0xFF;
+        int count = (pdu[3] & 0xFF) << 8 | pdu[4] & 0xFF;
+        requests.add(new Request(functionCode, start, count));
+        if (functionCode == 16) {
+            if (count < 1 || count > 123 || start + count > holding.length) {
+                return new byte[]{(byte) (functionCode | 0x80), ModbusException.ILLEGAL_DATA_ADDRESS};
+            }
+            for (int i = 0; i < count; i++) {
+                holding[start + i] = (short) ((pdu[6 + 2 * i] & 0xFF) << 8 | pdu[7 + 2 * i] & 0xFF);
+            }
+            return Arrays.copyOf(pdu, 5);
+        }
+        short[] registers = functionCode == 3 ? holding : input;
+        if (count < 1 || count > 125 || start + count > registers.length) {
+            return new byte[]{(byte) (functionCode | 0x80), ModbusException.ILLEGAL_DATA_ADDRESS};
+        }
+        byte[] response = new byte[2 + 2 * count];
+        response[0] = (byte) functionCode;
+        response[1] = (byte) (2 * count);
+        for (int i = 0; i < count; i++) {
+            response[2 + 2 * i] = (byte) (registers[start + i] >>> 8);
+            response[3 + 2 * i] = (byte) registers[start + i];
+        }
+        return response;
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+    }
+}
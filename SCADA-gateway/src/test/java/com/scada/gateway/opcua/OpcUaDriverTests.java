@@ -0,0 +1,206 @@
+package com.scada.gateway.opcua;
+
+import com.scada.gateway.config.ServersConfig;
+import com.scada.gateway.event.EventRecorder;
+import com.scada.gateway.model.Status;
+import com.scada.gateway.tag.CompiledTag;
+import com.scada.gateway.tag.TagTable;
+import com.scada.gateway.tag.TestTags;
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.sdk.client.api.subscriptions.UaMonitoredItem;
+import org.eclipse.milo.opcua.sdk.client.api.subscriptions.UaSubscription;
+import org.eclipse.milo.opcua.sdk.client.api.subscriptions.UaSubscriptionManager;
+import org.eclipse.milo.opcua.sdk.client.subscriptions.OpcUaSubscriptionManager;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.StatusCodes;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.TimestampsToReturn;
+import org.eclipse.milo.opcua.stack.core.types.structured.MonitoredItemCreateRequest;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.Unsigned.uint;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OpcUaDriverTests {
+
+    private ServersConfig.ServerConfig server;
+
+    @Test
+    void splitsGroupsLargerThanMaxNodesPerReadIntoOrderedBatches() {
+        TagTable tagTable = tagTable(2500, 1000);
+        List<CompiledTag> tags = tagTable.getServerTags("plc");
+        OpcUaDriver driver = new OpcUaDriver(server, tagTable, mock(EventRecorder.class));
+
+        List<OpcUaDriver.ReadBatch> batches = driver.planReads(tags);
+
+        assertThat(batches).extracting(batch -> batch.tagIndices().length).containsExactly(1000, 1000, 500);
+        List<Integer> tagIndices = new ArrayList<>();
+        List<NodeId> nodeIds = new ArrayList<>();
+        for (OpcUaDriver.ReadBatch batch : batches) {
+            assertThat(batch.nodeIds()).hasSize(batch.tagIndices().length);
+            IntStream.of(batch.tagIndices()).forEach(tagIndices::add);
+            nodeIds.addAll(batch.nodeIds());
+        }
+        // Every tag is read exactly once, and each result maps back to the tag of its node.
+        assertThat(tagIndices).containsExactlyElementsOf(tags.stream().map(CompiledTag::getIndex).toList());
+        assertThat(nodeIds).containsExactlyElementsOf(tags.stream().map(CompiledTag::getNodeId).toList());
+    }
+
+    @Test
+    void readsGroupsUpToTheLimitInOneBatch() {
+        TagTable tagTable = tagTable(1000, 1000);
+        OpcUaDriver driver = new OpcUaDriver(server, tagTable, mock(EventRecorder.class));
+
+        assertThat(driver.planReads(tagTable.getServerTags("plc"))).hasSize(1);
+        assertThat(driver.planReads(List.of())).isEmpty();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void recreatesSubscriptionAndItemsWhenTheTransferToANewSessionFailed() throws Exception {
+        TagTable tagTable = tagTable(3, 1000);
+        List<CompiledTag> tags = tagTable.getServerTags("plc");
+        OpcUaDriver driver = new OpcUaDriver(server, tagTable, mock(EventRecorder.class));
+
+        OpcUaClient client = mock(OpcUaClient.class);
+        OpcUaSubscriptionManager subscriptions = mock(OpcUaSubscriptionManager.class);
+        UaSubscription subscription = mock(UaSubscription.class);
+        doReturn(CompletableFuture.completedFuture(client)).when(client).connect();
+        when(client.readValue(anyDouble(), any(), any()))
+                .thenReturn(CompletableFuture.completedFuture(new DataValue(Variant.NULL_VALUE)));
+        when(client.getSubscriptionManager()).thenReturn(subscriptions);
+        when(subscriptions.createSubscription(anyDouble())).thenReturn(CompletableFuture.completedFuture(subscription));
+        when(subscription.nextClientHandle()).thenReturn(uint(1));
+        when(subscription.createMonitoredItems(any(), anyList(), any())).thenAnswer(invocation -> {
+            List<MonitoredItemCreateRequest> requests = invocation.getArgument(1);
+            UaMonitoredItem item = mock(UaMonitoredItem.class);
+            when(item.getStatusCode()).thenReturn(StatusCode.GOOD);
+            return CompletableFuture.completedFuture(Collections.nCopies(requests.size(), item));
+        });
+
+        driver.connect(client);
+        driver.subscribe(tags, sample -> {
+        });
+        verify(subscriptions, times(1)).createSubscription(anyDouble());
+        verify(subscription, times(1)).createMonitoredItems(any(), anyList(), any());
+
+        ArgumentCaptor<UaSubscriptionManager.SubscriptionListener> listener =
+                ArgumentCaptor.forClass(UaSubscriptionManager.SubscriptionListener.class);
+        verify(subscriptions).addSubscriptionListener(listener.capture());
+        listener.getValue().onSubscriptionTransferFailed(subscription, new StatusCode(StatusCodes.Bad_SubscriptionIdInvalid));
+
+        verify(subscriptions, timeout(5000).times(2)).createSubscription(anyDouble());
+        ArgumentCaptor<List<MonitoredItemCreateRequest>> requests = ArgumentCaptor.forClass(List.class);
+        verify(subscription, timeout(5000).times(2)).createMonitoredItems(any(), requests.capture(), any());
+        assertThat(requests.getAllValues().get(1))
+                .extracting(request -> request.getItemToMonitor().getNodeId())
+                .containsExactlyElementsOf(tags.stream().map(CompiledTag::getNodeId).toList());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void createsMonitoredItemsInBatchesOfTheServersMaxMonitoredItemsPerCall() throws Exception {
+        TagTable tagTable = tagTable(2500, 5000);
+        List<CompiledTag> tags = tagTable.getServerTags("plc");
+        OpcUaDriver driver = new OpcUaDriver(server, tagTable, mock(EventRecorder.class));
+
+        OpcUaClient client = mock(OpcUaClient.class);
+        OpcUaSubscriptionManager subscriptions = mock(OpcUaSubscriptionManager.class);
+        UaSubscription subscription = mock(UaSubscription.class);
+        doReturn(CompletableFuture.completedFuture(client)).when(client).connect();
+        when(client.readValue(anyDouble(), any(), any()))
+                .thenReturn(CompletableFuture.completedFuture(new DataValue(Variant.NULL_VALUE)));
+        when(client.readValue(anyDouble(), any(),
+                eq(Identifiers.Server_ServerCapabilities_OperationLimits_MaxMonitoredItemsPerCall)))
+                .thenReturn(CompletableFuture.completedFuture(new DataValue(new Variant(uint(1000)))));
+        when(client.getSubscriptionManager()).thenReturn(subscriptions);
+        when(subscriptions.createSubscription(anyDouble())).thenReturn(CompletableFuture.completedFuture(subscription));
+        when(subscription.nextClientHandle()).thenReturn(uint(1));
+        when(subscription.createMonitoredItems(any(), anyList(), any())).thenAnswer(invocation -> {
+            List<MonitoredItemCreateRequest> requests = invocation.getArgument(1);
+            UaMonitoredItem item = mock(UaMonitoredItem.class);
+            when(item.getStatusCode()).thenReturn(StatusCode.GOOD);
+            return CompletableFuture.completedFuture(Collections.nCopies(requests.size(), item));
+        });
+
+        driver.connect(client);
+        driver.subscribe(tags, sample -> {
+        });
+
+        ArgumentCaptor<List<MonitoredItemCreateRequest>> requests = ArgumentCaptor.forClass(List.class);
+        verify(subscription, times(3)).createMonitoredItems(any(), requests.capture(), any());
+        assertThat(requests.getAllValues()).extracting(List::size).containsExactly(1000, 1000, 500);
+        assertThat(driver.planReads(tags)).hasSize(1);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void splitsWritesByMaxNodesPerWriteAndAnswersEveryTagInOrder() throws Exception {
+        TagTable tagTable = tagTable(5, 1000);
+        server.setMaxNodesPerWrite(2);
+        List<CompiledTag> tags = tagTable.getServerTags("plc");
+        OpcUaDriver driver = new OpcUaDriver(server, tagTable, mock(EventRecorder.class));
+
+        OpcUaClient client = mock(OpcUaClient.class);
+        doReturn(CompletableFuture.completedFuture(client)).when(client).connect();
+        when(client.getSubscriptionManager()).thenReturn(mock(OpcUaSubscriptionManager.class));
+        when(client.readValue(anyDouble(), any(), any()))
+                .thenReturn(CompletableFuture.completedFuture(new DataValue(Variant.NULL_VALUE)));
+        when(client.readValues(anyDouble(), eq(TimestampsToReturn.Neither), anyList())).thenAnswer(invocation -> {
+            List<NodeId> nodeIds = invocation.getArgument(2);
+            return CompletableFuture.completedFuture(
+                    Collections.nCopies(nodeIds.size(), new DataValue(new Variant(0.0))));
+        });
+        CompletableFuture<List<StatusCode>> failed = CompletableFuture.failedFuture(new IllegalStateException("Timeout"));
+        when(client.writeValues(anyList(), anyList())).thenReturn(
+                CompletableFuture.completedFuture(List.of(StatusCode.GOOD, new StatusCode(StatusCodes.Bad_OutOfRange))),
+                failed);
+
+        driver.connect(client);
+        int[] results = driver.write(tags, List.of(1, "not a number", 3, 4.5, 5)).get();
+
+        assertThat(results).containsExactly(Status.GOOD, Status.BAD_TYPE_MISMATCH, Status.BAD_OUT_OF_RANGE,
+                Status.BAD_COMMUNICATION_ERROR, Status.BAD_COMMUNICATION_ERROR);
+        ArgumentCaptor<List<NodeId>> nodeIds = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<List<DataValue>> dataValues = ArgumentCaptor.forClass(List.class);
+        verify(client, times(2)).writeValues(nodeIds.capture(), dataValues.capture());
+        assertThat(nodeIds.getAllValues()).containsExactly(
+                List.of(tags.get(0).getNodeId(), tags.get(2).getNodeId()),
+                List.of(tags.get(3).getNodeId(), tags.get(4).getNodeId()));
+        // Converted to the Double type read from the nodes.
+        assertThat(dataValues.getAllValues().get(0))
+                .extracting(dataValue -> dataValue.getValue().getValue())
+                .containsExactly(1.0, 3.0);
+    }
+
+    private TagTable tagTable(int tagCount, int maxNodesPerRead) {
+        List<ServersConfig.TagConfig> tags = IntStream.range(0, tagCount)
+                .mapToObj(i -> TestTags.tag("ns=2;i=" + (1000 + i), "DOUBLE", tag -> tag.setName("Tag " + i)))
+                .toList();
+        server = TestTags.server("plc", tags);
+        server.setName("Simulator");
+        server.setEndpoint("opc.tcp://localhost:4840");
+        server.setMaxNodesPerRead(maxNodesPerRead);
+        return TagTable.compile(TestTags.config(server));
+    }
+}
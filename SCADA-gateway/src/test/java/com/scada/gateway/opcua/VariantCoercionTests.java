@@ -0,0 +1,55 @@
+package com.scada.gateway.opcua;
+
+import com.scada.gateway.tag.TagDataType;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.UByte;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.UInteger;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.UShort;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class VariantCoercionTests {
+
+    @Test
+    void convertsJsonValuesToTheTypeOfTheNode() {
+        assertThat(VariantCoercion.coerce(42, Double.class)).isEqualTo(42.0);
+        assertThat(VariantCoercion.coerce(1.5, Float.class)).isEqualTo(1.5f);
+        assertThat(VariantCoercion.coerce(12.0, Integer.class)).isEqualTo(12);
+        assertThat(VariantCoercion.coerce("-7", Short.class)).isEqualTo((short) -7);
+        assertThat(VariantCoercion.coerce(255, UByte.class)).isEqualTo(UByte.valueOf(255));
+        assertThat(VariantCoercion.coerce(65535, UShort.class)).isEqualTo(UShort.valueOf(65535));
+        assertThat(VariantCoercion.coerce(4_000_000_000L, UInteger.class)).isEqualTo(UInteger.valueOf(4_000_000_000L));
+        assertThat(VariantCoercion.coerce(0, Boolean.class)).isEqualTo(false);
+        assertThat(VariantCoercion.coerce("TRUE", Boolean.class)).isEqualTo(true);
+        assertThat(VariantCoercion.coerce(true, Double.class)).isEqualTo(1.0);
+        assertThat(VariantCoercion.coerce(3, String.class)).isEqualTo("3");
+    }
+
+    @Test
+    void rejectsValuesTheNodeTypeCannotHold() {
+        assertThatThrownBy(() -> VariantCoercion.coerce(1.5, Integer.class))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> VariantCoercion.coerce(128, Byte.class))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("out of range");
+        assertThatThrownBy(() -> VariantCoercion.coerce(-1, UInteger.class))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> VariantCoercion.coerce("on", Boolean.class))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> VariantCoercion.coerce("abc", Double.class))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> VariantCoercion.coerce(null, Double.class))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void rejectsWritesToNodesOfUnknownType() {
+        Class<?> type = VariantCoercion.defaultType(TagDataType.VARIANT);
+
+        assertThatThrownBy(() -> VariantCoercion.coerce(42, type))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("unknown");
+        assertThat(VariantCoercion.coerce(42, VariantCoercion.defaultType(TagDataType.DOUBLE))).isEqualTo(42.0);
+    }
+}
@@ -0,0 +1,192 @@
+package com.scada.gateway.pipeline;
+
+import com.scada.gateway.alarm.AlarmEngine;
+import com.scada.gateway.alarm.AlarmListener;
+import com.scada.gateway.codec.FrameEncoder;
+import com.scada.gateway.codec.FrameReader;
+import com.scada.gateway.config.ScriptConfig;
+import com.scada.gateway.config.ServersConfig;
+import com.scada.gateway.config.TraceConfig;
+import com.scada.gateway.event.EventRecorder;
+import com.scada.gateway.model.Sample;
+import com.scada.gateway.script.ScriptEngine;
+import com.scada.gateway.state.CurrentValueTable;
+import com.scada.gateway.tag.TagTable;
+import com.scada.gateway.tag.TestTags;
+import com.scada.gateway.trace.ValueTracer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class AcquisitionPipelineTests {
+
+    @Test
+    void completesCycleOnceAfterLastRequestAndEncodesItAsOneFrame() {
+        TagTable tagTable = table(3);
+        FrameSink sink = new FrameSink();
+        AcquisitionPipeline pipeline = pipeline(tagTable, sink);
+
+        AcquisitionCycle cycle = pipeline.beginCycle("plc", 1000, 2, 3);
+        pipeline.publish(new Sample().set(0, 0, 10, 10, 11).setDouble(1.5), cycle);
+        pipeline.publish(new Sample().set(1, 0, 10, 10, 11).setLong(42), cycle);
+        pipeline.completeRequests(cycle, 1);
+        assertThat(sink.frames).isEmpty();
+
+        pipeline.publish(new Sample().set(2, 0, 10, 10, 12).setBoolean(true), cycle);
+        pipeline.completeRequests(cycle, 1);
+        assertThat(sink.frames).hasSize(1);
+        assertThat(sink.perSample).isZero();
+
+        FrameReader reader = new FrameReader().wrap(sink.frames.get(0));
+        assertThat(reader.getCount()).isEqualTo(3);
+        Sample sample = new Sample();
+        assertThat(reader.next(sample)).isTrue();
+        assertThat(sample.getTagIndex()).isZero();
+        assertThat(sample.doubleValue()).isEqualTo(1.5);
+        assertThat(reader.next(sample)).isTrue();
+        assertThat(sample.longValue()).isEqualTo(42);
+        assertThat(reader.next(sample)).isTrue();
+        assertThat(sample.booleanValue()).isTrue();
+        assertThat(reader.next(sample)).isFalse();
+    }
+
+    @Test
+    void samplesWithoutCycleGoToSinkDirectly() {
+        FrameSink sink = new FrameSink();
+        AcquisitionPipeline pipeline = pipeline(table(1), sink);
+
+        pipeline.publish(new Sample().set(0, 0, 10, 10, 11).setDouble(1.0));
+
+        assertThat(sink.perSample).isEqualTo(1);
+        assertThat(sink.frames).isEmpty();
+    }
+
+    @Test
+    void resetsTheStateOfChangedTagsWithTheirNextSampleInsteadOfOnTheUpdatingThread() {
+        TagTable tagTable = TagTable.compile(config(2, 0.5));
+        CurrentValueTable currentValues = new CurrentValueTable(tagTable);
+        FrameSink sink = new FrameSink();
+        AcquisitionPipeline pipeline = pipeline(tagTable, currentValues, sink);
+        pipeline.publish(new Sample().set(0, 0, 10, 10, 11).setDouble(1.0));
+        pipeline.publish(new Sample().set(0, 0, 10, 10, 12).setDouble(1.2));
+        pipeline.publish(new Sample().set(1, 0, 10, 10, 12).setDouble(7.0));
+        assertThat(sink.perSample).isEqualTo(2);
+
+        // Tag 0 gets a smaller deadband, tag 1 is removed.
+        tagTable.update(config(1, 0.1));
+
+        assertThat(sink.resets).isEmpty();
+        assertThat(currentValues.read(0, new Sample())).isFalse();
+        assertThat(currentValues.read(1, new Sample())).isFalse();
+
+        // Passes as the first sample under the new deadband, although it is within the old one.
+        pipeline.publish(new Sample().set(0, 0, 10, 10, 13).setDouble(1.2));
+        assertThat(sink.perSample).isEqualTo(3);
+        assertThat(sink.resets).containsExactly("0 changed");
+        pipeline.publish(new Sample().set(0, 0, 10, 10, 14).setDouble(1.25));
+        assertThat(sink.perSample).isEqualTo(3);
+        assertThat(sink.resets).hasSize(1);
+    }
+
+    @Test
+    void clearsActiveAlarmsOfRemovedTagsAndOfTagsWithoutAlarmLimits() {
+        ServersConfig.AlarmConfig alarms = new ServersConfig.AlarmConfig();
+        alarms.setHi(90.0);
+        ServersConfig config = config(3, null);
+        config.getServers().get(0).getTags().forEach(tag -> tag.setAlarms(alarms));
+        TagTable tagTable = TagTable.compile(config);
+        List<String> transitions = new ArrayList<>();
+        AcquisitionPipeline pipeline = pipeline(tagTable, new CurrentValueTable(tagTable), new FrameSink(),
+                transition -> transitions.add(transition.tag().getIndex() + " " + transition.condition()
+                        + (transition.raised() ? "+" : "-")));
+        for (int i = 0; i < 3; i++) {
+            pipeline.publish(new Sample().set(i, 0, 10, 10, 11).setDouble(95));
+        }
+        assertThat(transitions).containsExactly("0 HI+", "1 HI+", "2 HI+");
+
+        // Tag 1 loses its alarm limits, tag 2 is removed and gets no more samples.
+        ServersConfig updated = config(2, null);
+        updated.getServers().get(0).getTags().get(0).setAlarms(alarms);
+        tagTable.update(updated);
+        assertThat(transitions).containsExactly("0 HI+", "1 HI+", "2 HI+", "2 HI-");
+
+        pipeline.publish(new Sample().set(1, 0, 10, 10, 12).setDouble(95));
+        assertThat(transitions).containsExactly("0 HI+", "1 HI+", "2 HI+", "2 HI-", "1 HI-");
+    }
+
+    private static AcquisitionPipeline pipeline(TagTable tagTable, SampleSink sink) {
+        return pipeline(tagTable, new CurrentValueTable(tagTable), sink);
+    }
+
+    private static AcquisitionPipeline pipeline(TagTable tagTable, CurrentValueTable currentValues, SampleSink sink,
+                                                AlarmListener... listeners) {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("sink", sink);
+        for (int i = 0; i < listeners.length; i++) {
+            beanFactory.registerSingleton("listener" + i, listeners[i]);
+        }
+        return new AcquisitionPipeline(tagTable, currentValues,
+                new ScriptEngine(tagTable, new ScriptConfig(), mock(EventRecorder.class)),
+                new AlarmEngine(tagTable, mock(EventRecorder.class), beanFactory.getBeanProvider(AlarmListener.class)),
+                new ValueTracer(tagTable, new TraceConfig()), beanFactory.getBeanProvider(SampleSink.class));
+    }
+
+    private static TagTable table(int tags) {
+        return TagTable.compile(config(tags, null));
+    }
+
+    private static ServersConfig config(int tags, Double deadband) {
+        return TestTags.config(IntStream.range(0, tags)
+                .mapToObj(i -> TestTags.tag("ns=2;i=" + i, "DOUBLE", tag -> {
+                    tag.setName("Tag " + i);
+                    tag.setReportByException(deadband != null);
+                    tag.setDeadband(deadband);
+                }))
+                .toList());
+    }
+
+    private static class FrameSink implements SampleSink {
+
+        final List<byte[]> frames = new ArrayList<>();
+        final List<String> resets = new ArrayList<>();
+        int perSample;
+
+        @Override
+        public void accept(Sample sample) {
+            perSample++;
+        }
+
+        @Override
+        public void accept(Sample sample, AcquisitionCycle cycle) {
+            if (cycle == null) {
+                accept(sample);
+            }
+        }
+
+        @Override
+        public boolean collectsCycles() {
+            return true;
+        }
+
+        @Override
+        public void resetTag(int tagIndex, boolean removed) {
+            resets.add(tagIndex + (removed ? " removed" : " changed"));
+        }
+
+        @Override
+        public void cycleCompleted(AcquisitionCycle cycle) {
+            FrameEncoder encoder = new FrameEncoder().begin(cycle.getCycleTime());
+            Sample sample = new Sample();
+            for (int i = 0; i < cycle.getSamples().size(); i++) {
+                encoder.add(cycle.getSamples().get(i, sample));
+            }
+            frames.add(encoder.finish());
+        }
+    }
+}
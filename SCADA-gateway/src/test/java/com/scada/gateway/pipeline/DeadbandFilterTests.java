@@ -0,0 +1,76 @@
+package com.scada.gateway.pipeline;
+
+import com.scada.gateway.config.ServersConfig;
+import com.scada.gateway.model.Sample;
+import com.scada.gateway.tag.TagTable;
+import com.scada.gateway.tag.TestTags;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DeadbandFilterTests {
+
+    private static final int GOOD = 0;
+    private static final int BAD = 0x80000000;
+
+    @Test
+    void passesEverySampleOfUnfilteredTag() {
+        DeadbandFilter filter = new DeadbandFilter(table(tag -> { }));
+
+        assertThat(filter.accept(sample(GOOD).setDouble(1.0), 0)).isTrue();
+        assertThat(filter.accept(sample(GOOD).setDouble(1.0), 1)).isTrue();
+    }
+
+    @Test
+    void suppressesChangesWithinAbsoluteDeadband() {
+        DeadbandFilter filter = new DeadbandFilter(table(tag -> tag.setDeadband(0.5)));
+
+        assertThat(filter.accept(sample(GOOD).setDouble(10.0), 0)).isTrue();
+        assertThat(filter.accept(sample(GOOD).setDouble(10.4), 1)).isFalse();
+        assertThat(filter.accept(sample(GOOD).setDouble(10.6), 2)).isTrue();
+        assertThat(filter.accept(sample(GOOD).setDouble(10.9), 3)).isFalse();
+    }
+
+    @Test
+    void percentDeadbandUsesConfiguredRange() {
+        DeadbandFilter filter = new DeadbandFilter(table(tag -> {
+            tag.setDeadbandPercent(1.0);
+            tag.setRangeMin(0.0);
+            tag.setRangeMax(200.0);
+        }));
+
+        assertThat(filter.accept(sample(GOOD).setDouble(100.0), 0)).isTrue();
+        assertThat(filter.accept(sample(GOOD).setDouble(101.9), 1)).isFalse();
+        assertThat(filter.accept(sample(GOOD).setDouble(102.1), 2)).isTrue();
+    }
+
+    @Test
+    void reportByExceptionPassesStatusChangesAndHeartbeats() {
+        DeadbandFilter filter = new DeadbandFilter(table(tag -> {
+            tag.setReportByException(true);
+            tag.setHeartbeat(10);
+        }));
+        long heartbeat = TimeUnit.SECONDS.toNanos(10);
+
+        assertThat(filter.accept(sample(GOOD).setBoolean(true), 0)).isTrue();
+        assertThat(filter.accept(sample(GOOD).setBoolean(true), 1)).isFalse();
+        assertThat(filter.accept(sample(BAD).setBoolean(true), 2)).isTrue();
+        assertThat(filter.accept(sample(BAD).setBoolean(true), 3)).isFalse();
+        assertThat(filter.accept(sample(BAD).setBoolean(true), 2 + heartbeat)).isTrue();
+        assertThat(filter.accept(sample(BAD).setBoolean(false), 3 + heartbeat)).isTrue();
+    }
+
+    private static Sample sample(int statusCode) {
+        return new Sample().set(0, statusCode, 0, 0, 0);
+    }
+
+    private static TagTable table(Consumer<ServersConfig.TagConfig> customizer) {
+        return TestTags.table(TestTags.tag("ns=2;i=4", "DOUBLE", tag -> {
+            tag.setName("Motor Current");
+            customizer.accept(tag);
+        }));
+    }
+}
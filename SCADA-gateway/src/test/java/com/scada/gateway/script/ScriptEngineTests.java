@@ -0,0 +1,133 @@
+package com.scada.gateway.script;
+
+import com.scada.gateway.config.ScriptConfig;
+import com.scada.gateway.config.ServersConfig;
+import com.scada.gateway.event.EventRecorder;
+import com.scada.gateway.model.Sample;
+import com.scada.gateway.tag.CompiledTag;
+import com.scada.gateway.tag.TagTable;
+import com.scada.gateway.tag.TestTags;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class ScriptEngineTests {
+
+    private final EventRecorder events = mock(EventRecorder.class);
+
+    @Test
+    void compilesTagAndGroupScriptsAndAppliesTheMostSpecific() {
+        ScriptConfig config = new ScriptConfig();
+        config.setGroups(List.of(group("plc/S7/DB1", "value * 2.0")));
+        TagTable tagTable = TestTags.table(tag("Speed", "DB1", "scale(value, 0.0, 27648.0, 0.0, 3000.0)"),
+                tag("Current", "DB1", null), tag("Level", "DB3", null));
+        ScriptEngine engine = new ScriptEngine(tagTable, config, events);
+
+        assertThat(apply(engine, tagTable.get(0), 13824)).isEqualTo(1500.0);
+        assertThat(apply(engine, tagTable.get(1), 6)).isEqualTo(12.0);
+        assertThat(apply(engine, tagTable.get(2), 6)).isEqualTo(6.0);
+        assertThat(engine.getScripts()).hasSize(2).allSatisfy(info -> assertThat(info.compiled()).isTrue());
+    }
+
+    @Test
+    void replacesScriptsAtRuntimeAndRevertsToConfiguration() {
+        TagTable tagTable = TestTags.table(tag("Speed", "DB1", "value + 1.0"), tag("Current", "DB1", null));
+        ScriptEngine engine = new ScriptEngine(tagTable, new ScriptConfig(), events);
+
+        assertThat(engine.install("plc/S7/DB1/Current", "value > 10.0 ? value : null")).isEqualTo(1);
+        assertThat(apply(engine, tagTable.get(1), 20)).isEqualTo(20.0);
+        Sample dropped = new Sample().set(1, 0, 10, 10, 11).setDouble(5);
+        assertThat(engine.apply(tagTable.get(1), dropped)).isFalse();
+
+        assertThat(engine.install("plc/S7", "")).isEqualTo(2);
+        assertThat(apply(engine, tagTable.get(0), 5)).isEqualTo(5.0);
+
+        engine.remove("plc/S7");
+        assertThat(apply(engine, tagTable.get(0), 5)).isEqualTo(6.0);
+        assertThatThrownBy(() -> engine.install("plc", "value *")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void marksValuesBadAndDisablesScriptsOverBudget() {
+        ScriptConfig config = new ScriptConfig();
+        config.setBudget(Duration.ZERO);
+        config.setMaxOverruns(3);
+        String script = "value / 0.0 > 1.0 ? text.length() : value";
+        TagTable tagTable = TestTags.table(tag("Speed", "DB1", script), tag("Current", "DB1", script));
+        ScriptEngine engine = new ScriptEngine(tagTable, config, events);
+        CompiledTag tag = tagTable.get(0);
+
+        // Positive values divide to infinity and call length() on a null text.
+        Sample failed = new Sample().set(0, 0, 10, 10, 11).setDouble(1);
+        assertThat(engine.apply(tag, failed)).isTrue();
+        assertThat(failed.getStatusCode()).isEqualTo(ScriptEngine.BAD_SCRIPT_STATUS);
+        assertThat(failed.doubleValue()).isEqualTo(1.0);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(apply(engine, tag, -1)).isEqualTo(-1.0);
+        }
+        Sample disabled = new Sample().set(0, 0, 10, 10, 11).setDouble(-1);
+        engine.apply(tag, disabled);
+        assertThat(disabled.getStatusCode()).isEqualTo(ScriptEngine.BAD_SCRIPT_STATUS);
+        assertThat(engine.getScripts()).singleElement().satisfies(info -> {
+            assertThat(info.disabled()).isTrue();
+            assertThat(info.errors()).isEqualTo(1);
+        });
+        // The script is shared, so the other tag lost it too.
+        verify(events).scriptDisabled(tag);
+        verify(events).scriptDisabled(tagTable.get(1));
+    }
+
+    @Test
+    void callsNoMethodsButTheContextFunctions() {
+        TagTable tagTable = TestTags.table(tag("Speed", "DB1", "text.repeat(1000000000).length() > 0 ? 1.0 : 0.0"),
+                tag("Current", "DB1", "max(value, 0.0)"));
+        ScriptEngine engine = new ScriptEngine(tagTable, new ScriptConfig(), events);
+
+        Sample repeated = new Sample().set(0, 0, 10, 10, 11).setText("abc");
+        assertThat(engine.apply(tagTable.get(0), repeated)).isTrue();
+        assertThat(repeated.getStatusCode()).isEqualTo(ScriptEngine.BAD_SCRIPT_STATUS);
+        assertThat(repeated.getText()).isEqualTo("abc");
+        assertThat(apply(engine, tagTable.get(1), -4)).isZero();
+    }
+
+    @Test
+    void interpretsScriptsWhenCompilationIsOff() {
+        ScriptConfig config = new ScriptConfig();
+        config.setCompile(false);
+        TagTable tagTable = TestTags.table(tag("Speed", "DB1", "scale(value, 0.0, 27648.0, 0.0, 3000.0)"));
+        ScriptEngine engine = new ScriptEngine(tagTable, config, events);
+
+        assertThat(apply(engine, tagTable.get(0), 13824)).isEqualTo(1500.0);
+        assertThat(engine.getScripts()).singleElement().satisfies(info -> assertThat(info.compiled()).isFalse());
+    }
+
+    private static double apply(ScriptEngine engine, CompiledTag tag, double value) {
+        Sample sample = new Sample().set(tag.getIndex(), 0, 10, 10, 11).setDouble(value);
+        assertThat(engine.apply(tag, sample)).isTrue();
+        assertThat(sample.isGood()).isTrue();
+        return sample.doubleValue();
+    }
+
+    private static ScriptConfig.GroupScript group(String path, String expression) {
+        ScriptConfig.GroupScript group = new ScriptConfig.GroupScript();
+        group.setPath(path);
+        group.setExpression(expression);
+        return group;
+    }
+
+    private static ServersConfig.TagConfig tag(String name, String block, String script) {
+        return TestTags.tag("ns=2;s=" + name, "DOUBLE", tag -> {
+            tag.setName(name);
+            tag.setDevice("S7");
+            tag.setBlock(block);
+            tag.setScript(script);
+        });
+    }
+}
@@ -0,0 +1,65 @@
+package com.scada.gateway.state;
+
+import com.scada.gateway.model.Sample;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CurrentValueTableTests {
+
+    @Test
+    void returnsFalseUntilFirstUpdate() {
+        CurrentValueTable table = new CurrentValueTable(2);
+        Sample sample = new Sample();
+
+        assertThat(table.read(1, sample)).isFalse();
+
+        table.update(new Sample().set(1, 0, 100, 101, 102).setDouble(12.5));
+
+        assertThat(table.read(1, sample)).isTrue();
+        assertThat(sample.getTagIndex()).isEqualTo(1);
+        assertThat(sample.doubleValue()).isEqualTo(12.5);
+        assertThat(sample.getSourceTime()).isEqualTo(100);
+        assertThat(sample.getReceiveTime()).isEqualTo(102);
+        assertThat(table.version(1)).isEqualTo(1);
+        assertThat(table.read(0, sample)).isFalse();
+    }
+
+    @Test
+    void readersNeverObserveTornSlots() throws InterruptedException {
+        CurrentValueTable table = new CurrentValueTable(1);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<String> failure = new AtomicReference<>();
+
+        Thread writer = new Thread(() -> {
+            Sample sample = new Sample();
+            for (long i = 1; running.get(); i++) {
+                table.update(sample.set(0, (int) i, i, i, i).setLong(i));
+            }
+        });
+        Thread reader = new Thread(() -> {
+            Sample sample = new Sample();
+            for (int i = 0; i < 1_000_000; i++) {
+                if (table.read(0, sample)) {
+                    long value = sample.longValue();
+                    if (sample.getSourceTime() != value || sample.getReceiveTime() != value
+                            || sample.getStatusCode() != (int) value) {
+                        failure.set("torn read: " + sample);
+                        return;
+                    }
+                }
+            }
+        });
+
+        writer.start();
+        reader.start();
+        reader.join();
+        running.set(false);
+        writer.join();
+
+        assertThat(failure.get()).isNull();
+    }
+}
@@ -0,0 +1,59 @@
+package com.scada.gateway.tag;
+
+import com.scada.gateway.config.ServersConfig;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Tag configurations for tests. Tags are enabled and polled every second, servers are enabled,
+ * and tags given without a server belong to {@value #SERVER}.
+ */
+public final class TestTags {
+
+    public static final String SERVER = "plc";
+
+    private TestTags() {
+    }
+
+    public static ServersConfig.TagConfig tag(String address, String dataType) {
+        ServersConfig.TagConfig tag = new ServersConfig.TagConfig();
+        tag.setNodeId(address);
+        tag.setDataType(dataType);
+        tag.setPollingRate(1000);
+        tag.setEnabled(true);
+        return tag;
+    }
+
+    public static ServersConfig.TagConfig tag(String address, String dataType, Consumer<ServersConfig.TagConfig> customizer) {
+        ServersConfig.TagConfig tag = tag(address, dataType);
+        customizer.accept(tag);
+        return tag;
+    }
+
+    public static ServersConfig.ServerConfig server(String id, List<ServersConfig.TagConfig> tags) {
+        ServersConfig.ServerConfig server = new ServersConfig.ServerConfig();
+        server.setId(id);
+        server.setEnabled(true);
+        server.setTags(tags);
+        return server;
+    }
+
+    public static ServersConfig config(ServersConfig.ServerConfig... servers) {
+        ServersConfig config = new ServersConfig();
+        config.setServers(List.of(servers));
+        return config;
+    }
+
+    public static ServersConfig config(List<ServersConfig.TagConfig> tags) {
+        return config(server(SERVER, tags));
+    }
+
+    public static ServersConfig config(ServersConfig.TagConfig... tags) {
+        return config(List.of(tags));
+    }
+
+    public static TagTable table(ServersConfig.TagConfig... tags) {
+        return TagTable.compile(config(tags));
+    }
+}
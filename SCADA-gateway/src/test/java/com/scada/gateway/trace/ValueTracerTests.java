@@ -0,0 +1,109 @@
+package com.scada.gateway.trace;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import com.scada.gateway.config.TraceConfig;
+import com.scada.gateway.model.Sample;
+import com.scada.gateway.tag.CompiledTag;
+import com.scada.gateway.tag.TagTable;
+import com.scada.gateway.tag.TestTags;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class ValueTracerTests {
+
+    private final Logger logger = (Logger) LoggerFactory.getLogger("com.scada.gateway.trace");
+    private final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+    private final TagTable tagTable = TestTags.table(TestTags.tag("ns=2;i=0", "DOUBLE"), TestTags.tag("ns=2;i=1", "DOUBLE"));
+    private final ValueTracer tracer = new ValueTracer(tagTable, new TraceConfig());
+
+    @BeforeEach
+    void attach() {
+        appender.start();
+        logger.addAppender(appender);
+    }
+
+    @AfterEach
+    void detach() {
+        logger.detachAppender(appender);
+    }
+
+    @Test
+    void tracesOnlyEnabledTagsAtMostOncePerInterval() {
+        CompiledTag traced = tagTable.get(0);
+        CompiledTag other = tagTable.get(1);
+        tracer.enable(List.of(traced), Duration.ofMinutes(1), Duration.ofHours(1));
+
+        for (int i = 0; i < 5; i++) {
+            tracer.trace(traced, new Sample().set(0, 0, 10, 10, 11).setDouble(i), true);
+            tracer.trace(other, new Sample().set(1, 0, 10, 10, 11).setDouble(i), true);
+        }
+
+        assertThat(appender.list).hasSize(1);
+        assertThat(appender.list.get(0).getKeyValuePairs()).extracting(pair -> pair.key + "=" + pair.value)
+                .contains("tag=plc/ns=2;i=0", "value=0.0", "published=true");
+        assertThat(tracer.getTraced()).singleElement()
+                .satisfies(tag -> assertThat(tag.skipped()).isEqualTo(4));
+    }
+
+    @Test
+    void countsEverySkippedValueWhenTracedFromSeveralThreads() throws InterruptedException {
+        CompiledTag traced = tagTable.get(0);
+        tracer.enable(List.of(traced), Duration.ofMinutes(1), Duration.ofHours(1));
+        int threads = 4;
+        int perThread = 10_000;
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            workers.add(Thread.ofPlatform().start(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                Sample sample = new Sample().set(0, 0, 10, 10, 11).setDouble(1);
+                for (int i = 0; i < perThread; i++) {
+                    tracer.trace(traced, sample, true);
+                }
+            }));
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertThat(appender.list).hasSize(1);
+        assertThat(tracer.getTraced()).singleElement()
+                .satisfies(tag -> assertThat(tag.skipped()).isEqualTo(threads * perThread - 1));
+    }
+
+    @Test
+    void stopsTracingWhenDurationExpiresOrTagIsDisabled() {
+        tracer.enable(List.of(tagTable.get(0)), Duration.ofMillis(20), Duration.ZERO);
+        tracer.enable(List.of(tagTable.get(1)), Duration.ofMinutes(1), Duration.ZERO);
+        assertThat(tracer.getTracedCount()).isEqualTo(2);
+
+        // Expired tags are no longer listed, but stay counted until their next sample.
+        await().atMost(Duration.ofSeconds(2)).pollInterval(Duration.ofMillis(5))
+                .until(() -> tracer.getTraced().size() == 1);
+        assertThat(tracer.getTracedCount()).isEqualTo(2);
+        tracer.trace(tagTable.get(0), new Sample().set(0, 0, 10, 10, 11).setDouble(1), true);
+        tracer.disable(List.of(tagTable.get(1)));
+        tracer.trace(tagTable.get(1), new Sample().set(1, 0, 10, 10, 11).setDouble(1), true);
+
+        assertThat(appender.list).isEmpty();
+        assertThat(tracer.getTracedCount()).isZero();
+    }
+}